@@ -0,0 +1,19 @@
+package nz.co.sundar.testautomation.restfulbooker.base;
+
+import nz.co.sundar.testautomation.restfulbooker.filters.ExchangeRecorder;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.TestWatcher;
+
+/**
+ * JUnit 5 watcher that writes the recent HTTP exchanges of a failed test to the report.
+ * <p>
+ * {@code AssertionsUtils} already dumps the exchanges on soft assertion failures; this covers tests that fail
+ * through a plain JUnit assertion or an unexpected exception.
+ */
+public class FailureDiagnosticsWatcher implements TestWatcher {
+
+    @Override
+    public void testFailed(ExtensionContext context, Throwable cause) {
+        ExchangeRecorder.dumpToReport(cause.getClass().getSimpleName() + ": " + cause.getMessage());
+    }
+}
@@ -0,0 +1,56 @@
+package nz.co.sundar.testautomation.restfulbooker.base;
+
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Reruns a test method as a load scenario when {@code loadTest.enabled} is on, so the same test is both a
+ * regression test and a performance test. When it is off, the method runs once as usual.
+ * <p>
+ * As a load scenario, the method is called again and again from {@link #concurrency()} threads for
+ * {@link #duration()}, starting at most {@link #rate()} calls per second, with the arguments of its invocation, e.g.
+ * each CSV row of a {@code @ParameterizedTest} in turn. A failed assertion counts as a functional failure rather
+ * than failing the test, and any other exception as an error; the test fails only if more than
+ * {@link #maxFailureRate()} of the calls failed either way. {@code @BeforeEach} and {@code @AfterEach} methods run
+ * once around the whole scenario, not around each call. See {@link LoadTestExtension}.
+ * <pre>
+ * &#64;LoadTest(rate = 20, duration = "30s", concurrency = 4)
+ * &#64;Test
+ * public void deleteBookingTest() { ... }
+ * </pre>
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@ExtendWith(LoadTestExtension.class)
+public @interface LoadTest {
+
+    /**
+     * @return calls started per second across all threads, 0 for as many as the threads can make
+     */
+    double rate() default 0;
+
+    /**
+     * @return how long the scenario runs, such as {@code 30s} or {@code 500ms}
+     */
+    String duration() default "10s";
+
+    /**
+     * @return the number of threads calling the method at once
+     */
+    int concurrency() default 1;
+
+    /**
+     * @return the share of calls, from 0 to 1, that may fail before the test fails
+     */
+    double maxFailureRate() default 0;
+
+    /**
+     * @return whether to run as a load scenario even when {@code loadTest.enabled} is off, for tests that only make
+     * sense under load
+     */
+    boolean always() default false;
+}
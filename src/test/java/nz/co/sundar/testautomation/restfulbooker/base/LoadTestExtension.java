@@ -0,0 +1,147 @@
+package nz.co.sundar.testautomation.restfulbooker.base;
+
+import nz.co.sundar.testautomation.restfulbooker.standin.LatencyDistribution;
+import nz.co.sundar.testautomation.restfulbooker.utils.ConfigReader;
+import nz.co.sundar.testautomation.restfulbooker.utils.ReportManager;
+import nz.co.sundar.testautomation.restfulbooker.utils.TokenBucket;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.InvocationInterceptor;
+import org.junit.jupiter.api.extension.ReflectiveInvocationContext;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs {@link LoadTest} methods as load scenarios when {@code loadTest.enabled} is on, as a system property or in
+ * {@code config.properties}.
+ * <p>
+ * The scenario's latency percentiles, call counts and most frequent failures are attached to the test's Extent node.
+ * While the scenario runs, what the test method itself logs goes to throwaway nodes (see
+ * {@link ReportManager#beginIteration(String)}), so the report does not grow with every call.
+ */
+public class LoadTestExtension implements InvocationInterceptor {
+
+    private static final Logger logger = LogManager.getLogger(LoadTestExtension.class);
+
+    @Override
+    public void interceptTestMethod(Invocation<Void> invocation, ReflectiveInvocationContext<Method> invocationContext,
+                                    ExtensionContext extensionContext) throws Throwable {
+        intercept(invocation, invocationContext, extensionContext);
+    }
+
+    @Override
+    public void interceptTestTemplateMethod(Invocation<Void> invocation,
+                                            ReflectiveInvocationContext<Method> invocationContext,
+                                            ExtensionContext extensionContext) throws Throwable {
+        intercept(invocation, invocationContext, extensionContext);
+    }
+
+    private void intercept(Invocation<Void> invocation, ReflectiveInvocationContext<Method> invocationContext,
+                           ExtensionContext extensionContext) throws Throwable {
+        LoadTest loadTest = invocationContext.getExecutable().getAnnotation(LoadTest.class);
+        if (loadTest == null || !(loadTest.always() || isEnabled())) {
+            invocation.proceed();
+            return;
+        }
+        invocation.skip();
+        String name = extensionContext.getDisplayName();
+        LoadTestResult result = run(loadTest, invocationContext, name);
+        logger.info("Load test {}: {}", name, result.getSummary());
+
+        ReportManager report = ReportManager.getInstance();
+        if (report.getTest() == null) {
+            report.createTest(name);
+        }
+        report.logInfo(String.format("Load test at %s calls/s for %s with %d threads: %s",
+                loadTest.rate() > 0 ? String.valueOf(loadTest.rate()) : "unlimited", loadTest.duration(),
+                loadTest.concurrency(), result.getSummary()));
+        report.logTable(result.getLatencyTable());
+        List<Map.Entry<String, Long>> failures = result.getTopFailures();
+        if (!failures.isEmpty()) {
+            String[][] rows = new String[failures.size() + 1][];
+            rows[0] = new String[]{"Calls", "Failure"};
+            for (int i = 0; i < failures.size(); i++) {
+                rows[i + 1] = new String[]{String.valueOf(failures.get(i).getValue()), failures.get(i).getKey()};
+            }
+            report.logTable(rows);
+        }
+        result.check(loadTest.maxFailureRate());
+    }
+
+    private static boolean isEnabled() {
+        String enabled = System.getProperty("loadTest.enabled");
+        return Boolean.parseBoolean(enabled != null ? enabled : ConfigReader.getProperty("loadTest.enabled", "false"));
+    }
+
+    /**
+     * Calls the test method from the scenario's threads until its duration is up.
+     */
+    static LoadTestResult run(LoadTest loadTest, ReflectiveInvocationContext<Method> invocationContext, String name)
+            throws InterruptedException {
+        if (loadTest.concurrency() < 1 || loadTest.rate() < 0) {
+            throw new IllegalArgumentException("@LoadTest needs a concurrency of at least 1 and a non-negative rate");
+        }
+        Method method = invocationContext.getExecutable();
+        method.setAccessible(true);
+        Object target = invocationContext.getTarget().orElse(null);
+        Object[] arguments = invocationContext.getArguments().toArray();
+        TokenBucket rateLimit = loadTest.rate() > 0 ? new TokenBucket(loadTest.rate(), loadTest.concurrency()) : null;
+        LoadTestResult result = new LoadTestResult();
+        AtomicLong calls = new AtomicLong();
+        long start = System.nanoTime();
+        long deadline = start + LatencyDistribution.parseDuration(loadTest.duration());
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < loadTest.concurrency(); t++) {
+            Thread thread = new Thread(() -> {
+                while (System.nanoTime() < deadline && !Thread.currentThread().isInterrupted()) {
+                    if (rateLimit != null) {
+                        rateLimit.acquire();
+                        if (System.nanoTime() >= deadline) {
+                            break;
+                        }
+                    }
+                    call(method, target, arguments, name + " #" + calls.incrementAndGet(), result);
+                }
+            }, "load-test-" + t);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } finally {
+            threads.forEach(Thread::interrupt);
+        }
+        result.setDurationNanos(System.nanoTime() - start);
+        return result;
+    }
+
+    private static void call(Method method, Object target, Object[] arguments, String name, LoadTestResult result) {
+        ReportManager.getInstance().beginIteration(name);
+        long start = System.nanoTime();
+        try {
+            method.invoke(target, arguments);
+            result.recordPass(System.nanoTime() - start);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof AssertionError) {
+                result.recordFailure(System.nanoTime() - start, cause);
+            } else {
+                result.recordError(System.nanoTime() - start, cause);
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot call " + method, e);
+        } finally {
+            ReportManager.getInstance().endIteration();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package nz.co.sundar.testautomation.restfulbooker.base;
+
+import nz.co.sundar.testautomation.restfulbooker.utils.LatencyHistogram;
+import org.junit.jupiter.api.Assertions;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * What a {@link LoadTest} scenario did: the latency of every call, and how many failed an assertion or threw.
+ * Safe to record from several threads at once.
+ */
+public class LoadTestResult {
+
+    private static final double[] PERCENTILES = {50, 75, 90, 95, 99, 99.9};
+    private static final int MAX_FAILURE_MESSAGES = 5;
+
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final Map<String, LongAdder> failureMessages = new ConcurrentHashMap<>();
+    private volatile long durationNanos;
+
+    /**
+     * Records a call that passed.
+     */
+    public void recordPass(long latencyNanos) {
+        latencies.recordNanos(latencyNanos);
+    }
+
+    /**
+     * Records a call that failed an assertion.
+     */
+    public void recordFailure(long latencyNanos, Throwable failure) {
+        latencies.recordNanos(latencyNanos);
+        failures.increment();
+        countMessage(failure);
+    }
+
+    /**
+     * Records a call that threw anything other than an assertion failure.
+     */
+    public void recordError(long latencyNanos, Throwable error) {
+        latencies.recordNanos(latencyNanos);
+        errors.increment();
+        countMessage(error);
+    }
+
+    private void countMessage(Throwable failure) {
+        String message = failure.getClass().getSimpleName() + ": " + failure.getMessage();
+        int newline = message.indexOf('\n');
+        String firstLine = newline < 0 ? message : message.substring(0, newline);
+        failureMessages.computeIfAbsent(firstLine, m -> new LongAdder()).increment();
+    }
+
+    void setDurationNanos(long durationNanos) {
+        this.durationNanos = durationNanos;
+    }
+
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    public long getCalls() {
+        return latencies.getCount();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /**
+     * @return the share of calls that failed an assertion or threw, from 0 to 1
+     */
+    public double getFailureRate() {
+        long calls = getCalls();
+        return calls == 0 ? 0 : (double) (getFailures() + getErrors()) / calls;
+    }
+
+    /**
+     * @return the number of calls per failure message, most frequent first, up to five
+     */
+    public List<Map.Entry<String, Long>> getTopFailures() {
+        List<Map.Entry<String, Long>> top = new ArrayList<>();
+        failureMessages.forEach((message, count) -> top.add(Map.entry(message, count.sum())));
+        top.sort(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()));
+        return top.subList(0, Math.min(MAX_FAILURE_MESSAGES, top.size()));
+    }
+
+    /**
+     * @return a one-line summary such as {@code 200 calls in 10.0s (20.0/s), 3 failed assertions, 0 errors (1.50%),
+     * p50=41.0ms p99=120.3ms}
+     */
+    public String getSummary() {
+        return String.format("%d calls in %.1fs (%.1f/s), %d failed assertions, %d errors (%.2f%%), p50=%s p99=%s",
+                getCalls(), durationNanos / 1e9, durationNanos == 0 ? 0 : getCalls() * 1e9 / durationNanos,
+                getFailures(), getErrors(), 100 * getFailureRate(),
+                LatencyHistogram.formatMillis(latencies.getPercentileNanos(50)),
+                LatencyHistogram.formatMillis(latencies.getPercentileNanos(99)));
+    }
+
+    /**
+     * @return the latency histogram as a table of percentiles and the number of calls at or below each, with a
+     * header row
+     */
+    public String[][] getLatencyTable() {
+        String[][] rows = new String[PERCENTILES.length + 2][];
+        rows[0] = new String[]{"Percentile", "Latency", "Calls at or below"};
+        long calls = getCalls();
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            rows[i + 1] = new String[]{"p" + PERCENTILES[i], LatencyHistogram.formatMillis(
+                    latencies.getPercentileNanos(PERCENTILES[i])),
+                    String.valueOf((long) Math.ceil(PERCENTILES[i] / 100 * calls))};
+        }
+        rows[rows.length - 1] = new String[]{"max", LatencyHistogram.formatMillis(latencies.getMaxNanos()),
+                String.valueOf(calls)};
+        return rows;
+    }
+
+    /**
+     * Fails the test if more than {@code maxFailureRate} of the calls failed, with the summary and most frequent
+     * failures as the message.
+     */
+    public void check(double maxFailureRate) {
+        if (getFailureRate() > maxFailureRate) {
+            StringBuilder message = new StringBuilder(String.format("%.2f%% of calls failed, more than the %.2f%% "
+                    + "allowed: %s", 100 * getFailureRate(), 100 * maxFailureRate, getSummary()));
+            for (Map.Entry<String, Long> failure : getTopFailures()) {
+                message.append(System.lineSeparator()).append("  ").append(failure.getValue()).append(" x ")
+                        .append(failure.getKey());
+            }
+            Assertions.fail(message.toString());
+        }
+    }
+}
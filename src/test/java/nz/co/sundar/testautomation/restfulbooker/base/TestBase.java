@@ -1,9 +1,13 @@
 package nz.co.sundar.testautomation.restfulbooker.base;
 
 import io.restassured.RestAssured;
+import nz.co.sundar.testautomation.restfulbooker.filters.ExchangeRecorder;
+import nz.co.sundar.testautomation.restfulbooker.filters.RestAssuredFilters;
 import nz.co.sundar.testautomation.restfulbooker.utils.ConfigReader;
+import nz.co.sundar.testautomation.restfulbooker.utils.PhaseTimingHttpClient;
 import nz.co.sundar.testautomation.restfulbooker.utils.ReportManager;
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
 
 /**
  * Base class for REST API nz.co.sundar.testautomation.restfulbooker.tests against the Restful Booker API.
@@ -15,6 +19,7 @@ import org.junit.jupiter.api.*;
  */
 
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@ExtendWith(FailureDiagnosticsWatcher.class)
 public class TestBase {
     /**
      * ExtentReports object used to configure and manage the reporting system.
@@ -25,6 +30,8 @@ public class TestBase {
     public void setup() {
 
         RestAssured.baseURI = ConfigReader.getProperty("baseURI");
+        RestAssuredFilters.install();
+        PhaseTimingHttpClient.install();
 
     }
 
@@ -32,6 +39,7 @@ public class TestBase {
     public void startTest(TestInfo testInfo) {
         String testName = testInfo.getDisplayName().replace("()", "");
         ReportManager.getInstance().createTest(testName);
+        ExchangeRecorder.reset();
     }
     /**
      * Logs the request details including the method and resource path.
@@ -0,0 +1,102 @@
+package nz.co.sundar.testautomation.restfulbooker.filters;
+
+import io.restassured.filter.Filter;
+import io.restassured.filter.FilterContext;
+import io.restassured.response.Response;
+import io.restassured.specification.FilterableRequestSpecification;
+import io.restassured.specification.FilterableResponseSpecification;
+import nz.co.sundar.testautomation.restfulbooker.utils.ReportManager;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * REST Assured filter that writes request and response bodies to the report according to a
+ * {@link BodyCapturePolicy}.
+ * <p>
+ * This replaces logging bodies from each test: exchanges that are not selected by the policy cost a counter
+ * increment, and selected bodies longer than the configured limit are truncated in the report with the full
+ * body spilled to a per-test file that the report links to. Bodies and URLs are redacted by the policy's
+ * {@link FieldRedactor} first, so credentials and tokens reach neither the report nor the spill files.
+ */
+public class BodyCaptureFilter implements Filter {
+
+    private final BodyCapturePolicy policy;
+    private final AtomicLong sequence = new AtomicLong();
+
+    public BodyCaptureFilter(BodyCapturePolicy policy) {
+        this.policy = policy;
+    }
+
+    @Override
+    public Response filter(FilterableRequestSpecification requestSpec, FilterableResponseSpecification responseSpec,
+                           FilterContext ctx) {
+        Response response = ctx.next(requestSpec, responseSpec);
+
+        long exchange = sequence.incrementAndGet();
+        ReportManager reportManager = ReportManager.getInstance();
+        if (reportManager.getTest() != null && policy.shouldCapture(response.getStatusCode(), exchange)) {
+            String prefix = exchange + "-" + requestSpec.getMethod();
+            FieldRedactor redactor = policy.getRedactor();
+            reportManager.logInfo("Captured exchange: " + requestSpec.getMethod() + " "
+                    + escapeHtml(redactor.redactQuery(requestSpec.getURI()))
+                    + " | Status: " + response.getStatusCode());
+            byte[] requestBody = redactor.redactJson(requestBodyBytes(requestSpec.getBody()));
+            if (requestBody.length > 0) {
+                reportManager.logInfo("Request body: " + render(requestBody, prefix + "-request.txt"));
+            }
+            reportManager.logInfo("Response body: "
+                    + render(redactor.redactJson(response.asByteArray()), prefix + "-response.txt"));
+        }
+        return response;
+    }
+
+    /**
+     * Renders a body for the report, truncating it and spilling the full content to a file when it exceeds the
+     * policy limit.
+     */
+    private String render(byte[] body, String fileName) {
+        if (!policy.isTruncated(body.length)) {
+            return escapeHtml(new String(body, StandardCharsets.UTF_8));
+        }
+        int shown = policy.getShownLength(body);
+        String truncated = escapeHtml(new String(body, 0, shown, StandardCharsets.UTF_8))
+                + "... [truncated " + (body.length - shown) + " of " + body.length + " bytes]";
+        try {
+            Path spillFile = spill(body, fileName);
+            String link = Paths.get(ReportManager.REPORT_DIRECTORY).toAbsolutePath()
+                    .relativize(spillFile.toAbsolutePath()).toString().replace('\\', '/');
+            return truncated + " <a href='" + link + "' target='_blank'>full body</a>";
+        } catch (IOException e) {
+            return truncated + " (full body could not be written: " + e.getMessage() + ")";
+        }
+    }
+
+    private Path spill(byte[] body, String fileName) throws IOException {
+        Path testDirectory = policy.getSpillDirectory().resolve(sanitise(ReportManager.getInstance().getTestName()));
+        Files.createDirectories(testDirectory);
+        return Files.write(testDirectory.resolve(fileName), body);
+    }
+
+    private static byte[] requestBodyBytes(Object body) {
+        if (body == null) {
+            return new byte[0];
+        }
+        if (body instanceof byte[] bytes) {
+            return bytes;
+        }
+        return body.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String sanitise(String testName) {
+        return testName == null ? "unnamed" : testName.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    static String escapeHtml(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
@@ -0,0 +1,156 @@
+package nz.co.sundar.testautomation.restfulbooker.filters;
+
+import nz.co.sundar.testautomation.restfulbooker.utils.ConfigReader;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Decides which request/response bodies are written to the report and how much of each body is kept inline.
+ * <p>
+ * The policy is read from {@code config.properties} using the {@code capture.*} keys so the amount of
+ * report logging can be tuned per run without touching the tests. Captured bodies and URLs are redacted with the
+ * policy's {@link FieldRedactor}, by default the {@code token} and {@code password} fields, before they reach the
+ * report or a spill file.
+ */
+public class BodyCapturePolicy {
+
+    /**
+     * Which exchanges have their bodies captured.
+     */
+    public enum Mode {
+        /** Every exchange is captured. */
+        ALWAYS,
+        /**
+         * Only exchanges answered with an HTTP status of 400 or above are captured. This is decided when the
+         * response arrives, before the test asserts anything, so it includes the expected errors of negative tests
+         * and leaves out a failing test whose responses were all successful; the {@link ExchangeRecorder} dump
+         * covers failed tests.
+         */
+        ON_ERROR_STATUS,
+        /** One in every {@code sampleEvery} exchanges is captured. */
+        SAMPLED,
+        /** Bodies are never captured. */
+        NONE
+    }
+
+    /**
+     * The fields redacted unless {@code capture.redactFields} says otherwise: the {@code /auth} password and token.
+     */
+    public static final String DEFAULT_REDACT_FIELDS = "token,password";
+
+    private final Mode mode;
+    private final int maxBytes;
+    private final int sampleEvery;
+    private final Path spillDirectory;
+    private final FieldRedactor redactor;
+
+    /**
+     * @param mode           which exchanges are captured
+     * @param maxBytes       bodies longer than this are truncated in the report, 0 or less disables truncation
+     * @param sampleEvery    capture one in this many exchanges when the mode is {@link Mode#SAMPLED}
+     * @param spillDirectory directory that receives the full body of truncated captures
+     */
+    public BodyCapturePolicy(Mode mode, int maxBytes, int sampleEvery, Path spillDirectory) {
+        this(mode, maxBytes, sampleEvery, spillDirectory, FieldRedactor.of(DEFAULT_REDACT_FIELDS));
+    }
+
+    /**
+     * @param mode           which exchanges are captured
+     * @param maxBytes       bodies longer than this are truncated in the report, 0 or less disables truncation
+     * @param sampleEvery    capture one in this many exchanges when the mode is {@link Mode#SAMPLED}
+     * @param spillDirectory directory that receives the full body of truncated captures
+     * @param redactor       redacts captured bodies and URLs
+     */
+    public BodyCapturePolicy(Mode mode, int maxBytes, int sampleEvery, Path spillDirectory, FieldRedactor redactor) {
+        this.mode = mode;
+        this.maxBytes = maxBytes;
+        this.sampleEvery = Math.max(1, sampleEvery);
+        this.spillDirectory = spillDirectory;
+        this.redactor = redactor;
+    }
+
+    /**
+     * Builds the policy from the {@code capture.*} properties, falling back to capturing responses with an error
+     * status only.
+     *
+     * @return the configured capture policy
+     */
+    public static BodyCapturePolicy fromConfig() {
+        return new BodyCapturePolicy(
+                Mode.valueOf(ConfigReader.getProperty("capture.mode", "ON_ERROR_STATUS").toUpperCase()),
+                Integer.parseInt(ConfigReader.getProperty("capture.maxBytes", "1024")),
+                Integer.parseInt(ConfigReader.getProperty("capture.sampleEvery", "10")),
+                Paths.get(ConfigReader.getProperty("capture.spillDirectory", "target/test-results/bodies")),
+                FieldRedactor.of(ConfigReader.getProperty("capture.redactFields", DEFAULT_REDACT_FIELDS)));
+    }
+
+    /**
+     * Returns whether the exchange with the given status and sequence number should be captured.
+     *
+     * @param statusCode the HTTP status code of the response
+     * @param sequence   the 1-based sequence number of the exchange
+     * @return {@code true} if the bodies should be written to the report
+     */
+    public boolean shouldCapture(int statusCode, long sequence) {
+        return switch (mode) {
+            case ALWAYS -> true;
+            case ON_ERROR_STATUS -> statusCode >= 400;
+            case SAMPLED -> sequence % sampleEvery == 0;
+            case NONE -> false;
+        };
+    }
+
+    /**
+     * Returns whether a body of the given length has to be truncated in the report.
+     *
+     * @param length the body length in bytes
+     * @return {@code true} if the body exceeds {@link #getMaxBytes()}
+     */
+    public boolean isTruncated(int length) {
+        return maxBytes > 0 && length > maxBytes;
+    }
+
+    /**
+     * Returns how many leading bytes of a UTF-8 body are shown in the report: all of them unless the body exceeds
+     * {@link #getMaxBytes()}, otherwise at most that many, ending before any character that would be cut in two.
+     *
+     * @param body the body bytes
+     * @return the number of bytes to show
+     */
+    public int getShownLength(byte[] body) {
+        return isTruncated(body.length) ? charBoundary(body, maxBytes) : body.length;
+    }
+
+    /**
+     * @return the largest length up to {@code limit} that does not end inside a UTF-8 encoded character
+     */
+    static int charBoundary(byte[] bytes, int limit) {
+        int end = Math.min(limit, bytes.length);
+        // Continuation bytes look like 10xxxxxx; back up to the first byte of the character at the cut.
+        while (end > 0 && end < bytes.length && (bytes[end] & 0xC0) == 0x80) {
+            end--;
+        }
+        return end;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int getMaxBytes() {
+        return maxBytes;
+    }
+
+    public int getSampleEvery() {
+        return sampleEvery;
+    }
+
+    public Path getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    public FieldRedactor getRedactor() {
+        return redactor;
+    }
+}
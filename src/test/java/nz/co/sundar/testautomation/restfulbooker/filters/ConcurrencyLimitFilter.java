@@ -0,0 +1,124 @@
+package nz.co.sundar.testautomation.restfulbooker.filters;
+
+import io.restassured.filter.Filter;
+import io.restassured.filter.FilterContext;
+import io.restassured.response.Response;
+import io.restassured.specification.FilterableRequestSpecification;
+import io.restassured.specification.FilterableResponseSpecification;
+import nz.co.sundar.testautomation.restfulbooker.utils.AdaptiveConcurrencyLimiter;
+import nz.co.sundar.testautomation.restfulbooker.utils.AdaptiveConcurrencyLimiter.Outcome;
+import nz.co.sundar.testautomation.restfulbooker.utils.ConfigReader;
+import nz.co.sundar.testautomation.restfulbooker.utils.TokenBucket;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * REST Assured filter that keeps every request, including those from {@code BookingUtils} and {@code TokenManager},
+ * within a per-host {@link AdaptiveConcurrencyLimiter} and, optionally, a per-host {@link TokenBucket} rate cap.
+ * <p>
+ * Parallel fixture setup, bulk cleanup and load runs then go as fast as the server sustains: concurrency grows while
+ * latency stays flat and backs off when the server answers {@code 429}, {@code 502}, {@code 503} or {@code 504},
+ * fails with an I/O error or slows down. A single-threaded run never waits, since the limit is at least one.
+ * <p>
+ * The filter is installed last by {@link RestAssuredFilters}, so the latency it measures is the server's and each
+ * retry or hedge of a call takes its own permit.
+ */
+public class ConcurrencyLimitFilter implements Filter {
+
+    private final Function<String, AdaptiveConcurrencyLimiter> limiterFactory;
+    private final double ratePerSecond;
+    private final int rateBurst;
+    private final Map<String, AdaptiveConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * @param limiterFactory creates the limiter for a {@code host:port}, or returns {@code null} for no limit
+     * @param ratePerSecond  requests per second allowed to each host, 0 or less for no cap
+     * @param rateBurst      requests that may be sent to a host at once under the rate cap
+     */
+    public ConcurrencyLimitFilter(Function<String, AdaptiveConcurrencyLimiter> limiterFactory, double ratePerSecond,
+                                  int rateBurst) {
+        this.limiterFactory = limiterFactory;
+        this.ratePerSecond = ratePerSecond;
+        this.rateBurst = rateBurst;
+    }
+
+    /**
+     * Builds the filter from the {@code concurrency.*} properties.
+     *
+     * @return the configured filter
+     */
+    public static ConcurrencyLimitFilter fromConfig() {
+        boolean enabled = Boolean.parseBoolean(ConfigReader.getProperty("concurrency.enabled", "true"));
+        return new ConcurrencyLimitFilter(
+                enabled ? host -> AdaptiveConcurrencyLimiter.fromConfig("Concurrency limit " + host) : host -> null,
+                Double.parseDouble(ConfigReader.getProperty("concurrency.ratePerSecond", "0")),
+                Integer.parseInt(ConfigReader.getProperty("concurrency.rateBurst", "10")));
+    }
+
+    @Override
+    public Response filter(FilterableRequestSpecification requestSpec, FilterableResponseSpecification responseSpec,
+                           FilterContext ctx) {
+        String host = hostOf(requestSpec.getURI());
+        if (ratePerSecond > 0) {
+            buckets.computeIfAbsent(host, key -> new TokenBucket(ratePerSecond, rateBurst)).acquire();
+        }
+        AdaptiveConcurrencyLimiter limiter = limiters.computeIfAbsent(host, limiterFactory);
+        if (limiter == null) {
+            return ctx.next(requestSpec, responseSpec);
+        }
+
+        limiter.acquire();
+        long start = System.nanoTime();
+        Outcome outcome = Outcome.IGNORED;
+        try {
+            Response response = ctx.next(requestSpec, responseSpec);
+            outcome = outcomeOf(response.statusCode());
+            return response;
+        } catch (Throwable e) {
+            // Connect failures and timeouts arrive as undeclared IOExceptions, not RuntimeExceptions.
+            outcome = outcomeOf(e);
+            throw e;
+        } finally {
+            limiter.release(System.nanoTime() - start, outcome);
+        }
+    }
+
+    /**
+     * @param host a {@code host:port} as passed to the limiter factory
+     * @return the limiter for that host, or {@code null} if no request has been sent to it
+     */
+    public AdaptiveConcurrencyLimiter getLimiter(String host) {
+        return limiters.get(host);
+    }
+
+    static String hostOf(String uri) {
+        URI parsed = URI.create(uri);
+        int port = parsed.getPort();
+        if (port < 0) {
+            port = "https".equalsIgnoreCase(parsed.getScheme()) ? 443 : 80;
+        }
+        return parsed.getHost() + ":" + port;
+    }
+
+    private static Outcome outcomeOf(int statusCode) {
+        return switch (statusCode) {
+            case 429, 502, 503, 504 -> Outcome.DROPPED;
+            default -> Outcome.SUCCESS;
+        };
+    }
+
+    private static Outcome outcomeOf(Throwable failure) {
+        // REST Assured throws I/O errors undeclared, possibly wrapped.
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof IOException) {
+                return Outcome.DROPPED;
+            }
+        }
+        return Outcome.IGNORED;
+    }
+}
@@ -0,0 +1,182 @@
+package nz.co.sundar.testautomation.restfulbooker.filters;
+
+import io.restassured.response.Response;
+import io.restassured.specification.FilterableRequestSpecification;
+import nz.co.sundar.testautomation.restfulbooker.utils.ConfigReader;
+import nz.co.sundar.testautomation.restfulbooker.utils.ReportManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the most recent HTTP exchanges of each test thread in a preallocated ring buffer and writes them to the
+ * report only when a test fails.
+ * <p>
+ * Recording an exchange stores references to the request specification and response in a reused slot, so passing
+ * tests pay for a few field writes. Formatting happens in {@link #dumpToReport(String)}, which is called from
+ * {@code AssertionsUtils} and from the failure watcher registered on {@code TestBase}.
+ * <p>
+ * The ring size is read from {@code diagnostics.ringSize} and defaults to 16 exchanges per thread. Work done for a
+ * test on another thread, such as a hedged request, can record into the test thread's ring through
+ * {@link #recordingToCurrentThread(Supplier)}. URLs and bodies are redacted with the {@code capture.redactFields}
+ * fields, as for body captures, when they are dumped.
+ */
+public class ExchangeRecorder {
+
+    private static final int MAX_BODY_BYTES = 4096;
+    private static final ThreadLocal<Ring> RING = ThreadLocal.withInitial(Ring::new);
+
+    /**
+     * Records an exchange for the current thread, overwriting the oldest one when the buffer is full.
+     *
+     * @param requestSpec  the request that was sent
+     * @param response     the response received, or {@code null} if the request failed
+     * @param failure      the exception thrown while sending, or {@code null}
+     * @param elapsedNanos the time taken by the exchange
+     */
+    public static void record(FilterableRequestSpecification requestSpec, Response response, Throwable failure,
+                              long elapsedNanos) {
+        RING.get().add(requestSpec, response, failure, elapsedNanos);
+    }
+
+    /**
+     * Wraps a call that will run on another thread so that the exchanges it sends are recorded for the current
+     * thread, and are dumped if the current thread's test fails.
+     *
+     * @param call the call to run elsewhere
+     * @return the call, recording into the current thread's ring wherever it runs
+     */
+    public static <T> Supplier<T> recordingToCurrentThread(Supplier<T> call) {
+        Ring target = RING.get();
+        return () -> {
+            Ring own = RING.get();
+            RING.set(target);
+            try {
+                return call.get();
+            } finally {
+                RING.set(own);
+            }
+        };
+    }
+
+    /**
+     * Clears the exchanges of the current thread. Called at the start of every test.
+     */
+    public static void reset() {
+        RING.get().clear();
+    }
+
+    /**
+     * Writes the recorded exchanges of the current thread to the report, oldest first. Subsequent calls for the
+     * same test are ignored so a failure reported by several assertions is only dumped once.
+     *
+     * @param reason short description of the failure that triggered the dump
+     */
+    public static void dumpToReport(String reason) {
+        Ring ring = RING.get();
+        ReportManager reportManager = ReportManager.getInstance();
+        synchronized (ring) {
+            if (ring.size == 0 || ring.dumped || reportManager.getTest() == null) {
+                return;
+            }
+            ring.dumped = true;
+
+            reportManager.logInfo("Last " + ring.size + " HTTP exchange(s) before failure: " + reason);
+            int oldest = (ring.next - ring.size + ring.slots.length) % ring.slots.length;
+            for (int i = 0; i < ring.size; i++) {
+                reportManager.logInfo(describe(i + 1, ring.slots[(oldest + i) % ring.slots.length]));
+            }
+        }
+    }
+
+    private static String describe(int index, Slot slot) {
+        FieldRedactor redactor = Redaction.REDACTOR;
+        StringBuilder text = new StringBuilder("<pre>#").append(index).append(' ')
+                .append(slot.requestSpec.getMethod()).append(' ')
+                .append(BodyCaptureFilter.escapeHtml(redactor.redactQuery(slot.requestSpec.getURI())))
+                .append(" (").append(slot.elapsedNanos / 1_000_000).append(" ms)\n");
+        Object requestBody = slot.requestSpec.getBody();
+        if (requestBody != null) {
+            text.append("Request body: ").append(body(redactor.redactJson(requestBody instanceof byte[] bytes
+                    ? bytes : requestBody.toString().getBytes(StandardCharsets.UTF_8)))).append('\n');
+        }
+        if (slot.failure != null) {
+            text.append("Failed: ").append(BodyCaptureFilter.escapeHtml(String.valueOf(slot.failure)));
+        } else {
+            text.append("Status: ").append(slot.response.getStatusCode()).append('\n')
+                    .append("Response body: ").append(body(redactor.redactJson(slot.response.asByteArray())));
+        }
+        return text.append("</pre>").toString();
+    }
+
+    private static String body(byte[] bytes) {
+        if (bytes.length <= MAX_BODY_BYTES) {
+            return BodyCaptureFilter.escapeHtml(new String(bytes, StandardCharsets.UTF_8));
+        }
+        int shown = BodyCapturePolicy.charBoundary(bytes, MAX_BODY_BYTES);
+        return BodyCaptureFilter.escapeHtml(new String(bytes, 0, shown, StandardCharsets.UTF_8))
+                + "... [truncated " + (bytes.length - shown) + " bytes]";
+    }
+
+    /**
+     * Holds the redactor, read from the configuration on the first dump rather than when exchanges are recorded.
+     */
+    private static final class Redaction {
+        static final FieldRedactor REDACTOR = FieldRedactor.of(
+                ConfigReader.getProperty("capture.redactFields", BodyCapturePolicy.DEFAULT_REDACT_FIELDS));
+    }
+
+    /**
+     * A reusable entry in the ring buffer.
+     */
+    private static final class Slot {
+        FilterableRequestSpecification requestSpec;
+        Response response;
+        Throwable failure;
+        long elapsedNanos;
+    }
+
+    /**
+     * Fixed-capacity ring of slots, allocated on the first exchange. Synchronized because copies of a hedged request
+     * record into the test thread's ring from pooled threads.
+     */
+    private static final class Ring {
+        Slot[] slots;
+        int next;
+        int size;
+        boolean dumped;
+
+        synchronized void add(FilterableRequestSpecification requestSpec, Response response, Throwable failure,
+                              long elapsedNanos) {
+            if (slots == null) {
+                int capacity = Integer.parseInt(ConfigReader.getProperty("diagnostics.ringSize", "16"));
+                slots = new Slot[Math.max(1, capacity)];
+                for (int i = 0; i < slots.length; i++) {
+                    slots[i] = new Slot();
+                }
+            }
+            Slot slot = slots[next];
+            slot.requestSpec = requestSpec;
+            slot.response = response;
+            slot.failure = failure;
+            slot.elapsedNanos = elapsedNanos;
+            next = (next + 1) % slots.length;
+            if (size < slots.length) {
+                size++;
+            }
+        }
+
+        synchronized void clear() {
+            if (slots != null) {
+                for (Slot slot : slots) {
+                    slot.requestSpec = null;
+                    slot.response = null;
+                    slot.failure = null;
+                }
+            }
+            next = 0;
+            size = 0;
+            dumped = false;
+        }
+    }
+}
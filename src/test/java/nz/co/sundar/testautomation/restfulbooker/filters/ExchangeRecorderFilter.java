@@ -0,0 +1,29 @@
+package nz.co.sundar.testautomation.restfulbooker.filters;
+
+import io.restassured.filter.Filter;
+import io.restassured.filter.FilterContext;
+import io.restassured.response.Response;
+import io.restassured.specification.FilterableRequestSpecification;
+import io.restassured.specification.FilterableResponseSpecification;
+
+/**
+ * REST Assured filter that hands every exchange to the {@link ExchangeRecorder} ring buffer of the calling thread.
+ * Nothing is written to the report unless the test fails.
+ */
+public class ExchangeRecorderFilter implements Filter {
+
+    @Override
+    public Response filter(FilterableRequestSpecification requestSpec, FilterableResponseSpecification responseSpec,
+                           FilterContext ctx) {
+        long start = System.nanoTime();
+        try {
+            Response response = ctx.next(requestSpec, responseSpec);
+            ExchangeRecorder.record(requestSpec, response, null, System.nanoTime() - start);
+            return response;
+        } catch (Throwable e) {
+            // Connect failures and timeouts arrive as undeclared IOExceptions, not RuntimeExceptions.
+            ExchangeRecorder.record(requestSpec, null, e, System.nanoTime() - start);
+            throw e;
+        }
+    }
+}
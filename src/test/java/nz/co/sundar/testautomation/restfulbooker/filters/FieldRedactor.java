@@ -0,0 +1,95 @@
+package nz.co.sundar.testautomation.restfulbooker.filters;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Replaces the values of named JSON fields and query parameters with {@link #REDACTED}, such as the password sent
+ * to {@code /auth} and the token it returns, before an exchange is written anywhere a person may read it: HAR files,
+ * body captures and spill files, and failure dumps.
+ */
+public final class FieldRedactor {
+
+    public static final String REDACTED = "[redacted]";
+
+    private final Set<String> fields;
+    private final Pattern jsonFields;
+
+    /**
+     * @param fields JSON field and query parameter names whose values are redacted
+     */
+    public FieldRedactor(Set<String> fields) {
+        this.fields = Set.copyOf(fields);
+        this.jsonFields = fields.isEmpty() ? null : Pattern.compile("(\"(?:"
+                + fields.stream().map(Pattern::quote).collect(Collectors.joining("|"))
+                + ")\"\\s*:\\s*)(\"(?:[^\"\\\\]|\\\\.)*\"|[^,}\\]\\s]+)");
+    }
+
+    /**
+     * @param list comma-separated names, e.g. {@code token,password}
+     */
+    public static FieldRedactor of(String list) {
+        return new FieldRedactor(names(list));
+    }
+
+    /**
+     * @param list comma-separated names; blanks are ignored
+     * @return the trimmed names
+     */
+    public static Set<String> names(String list) {
+        return Arrays.stream(list.split(",")).map(String::trim).filter(s -> !s.isEmpty()).collect(Collectors.toSet());
+    }
+
+    /**
+     * @return whether values of the query parameter or JSON field with this name are redacted
+     */
+    public boolean isRedacted(String name) {
+        return fields.contains(name);
+    }
+
+    /**
+     * @return the text with the values of the named JSON fields replaced, wherever they are nested
+     */
+    public String redactJson(String text) {
+        if (jsonFields == null) {
+            return text;
+        }
+        Matcher matcher = jsonFields.matcher(text);
+        return matcher.find() ? matcher.replaceAll("$1\"" + Matcher.quoteReplacement(REDACTED) + "\"") : text;
+    }
+
+    /**
+     * @return a UTF-8 body with the values of the named JSON fields replaced, or the same array if none occur
+     */
+    public byte[] redactJson(byte[] body) {
+        if (jsonFields == null || body.length == 0) {
+            return body;
+        }
+        String text = new String(body, StandardCharsets.UTF_8);
+        String redacted = redactJson(text);
+        return redacted == text ? body : redacted.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the URL with the values of the named query parameters replaced
+     */
+    public String redactQuery(String url) {
+        int query = url.indexOf('?');
+        if (query < 0 || fields.isEmpty()) {
+            return url;
+        }
+        String[] parameters = url.substring(query + 1).split("&");
+        for (int i = 0; i < parameters.length; i++) {
+            int equals = parameters[i].indexOf('=');
+            String name = equals < 0 ? parameters[i] : parameters[i].substring(0, equals);
+            if (isRedacted(name)) {
+                parameters[i] = name + "=" + REDACTED;
+            }
+        }
+        return url.substring(0, query + 1) + String.join("&", parameters);
+    }
+}
@@ -0,0 +1,71 @@
+package nz.co.sundar.testautomation.restfulbooker.filters;
+
+import io.restassured.filter.Filter;
+import io.restassured.filter.FilterContext;
+import io.restassured.response.Response;
+import io.restassured.specification.FilterableRequestSpecification;
+import io.restassured.specification.FilterableResponseSpecification;
+
+import java.util.List;
+
+/**
+ * REST Assured filter that hands every exchange to a {@link HarExporter}.
+ * <p>
+ * Installed by {@link RestAssuredFilters} when {@code har.file} is set. The filter only copies references to the
+ * request and response and queues them; formatting, redaction and the disk are the exporter's writer thread's
+ * business, so load runs are not slowed down by the export.
+ */
+public class HarCaptureFilter implements Filter {
+
+    private final HarExporter exporter;
+
+    public HarCaptureFilter(HarExporter exporter) {
+        this.exporter = exporter;
+    }
+
+    /**
+     * Starts the exporter from {@code Config.properties} and closes it when the JVM exits.
+     *
+     * @return the filter, or {@code null} if {@code har.file} is not set
+     */
+    public static HarCaptureFilter fromConfig() {
+        HarExporter exporter = HarExporter.fromConfig();
+        if (exporter == null) {
+            return null;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(exporter::close, "har-export-close"));
+        return new HarCaptureFilter(exporter);
+    }
+
+    @Override
+    public Response filter(FilterableRequestSpecification requestSpec, FilterableResponseSpecification responseSpec,
+                           FilterContext ctx) {
+        long startedMillis = System.currentTimeMillis();
+        long start = System.nanoTime();
+        Response response = null;
+        try {
+            response = ctx.next(requestSpec, responseSpec);
+            return response;
+        } finally {
+            long duration = System.nanoTime() - start;
+            exporter.offer(new HarExporter.Entry(startedMillis, duration, requestSpec.getMethod(),
+                    requestSpec.getURI(), TrafficCaptureFilter.requestHeaders(requestSpec),
+                    TrafficCaptureFilter.bodyOf(requestSpec.getBody()),
+                    response == null ? 0 : response.getStatusCode(),
+                    response == null ? "" : statusText(response.getStatusLine()),
+                    response == null ? List.of() : TrafficCaptureFilter.headers(response.getHeaders()),
+                    response == null ? new byte[0] : response.asByteArray()));
+        }
+    }
+
+    /**
+     * @return the reason phrase of a status line such as {@code HTTP/1.1 200 OK}
+     */
+    private static String statusText(String statusLine) {
+        if (statusLine == null) {
+            return "";
+        }
+        String[] parts = statusLine.split(" ", 3);
+        return parts.length == 3 ? parts[2] : "";
+    }
+}
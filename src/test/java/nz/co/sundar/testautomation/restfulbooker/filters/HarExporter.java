@@ -0,0 +1,453 @@
+package nz.co.sundar.testautomation.restfulbooker.filters;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import nz.co.sundar.testautomation.restfulbooker.filters.TrafficLog.Header;
+import nz.co.sundar.testautomation.restfulbooker.utils.ConfigReader;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams exchanges to HAR 1.2 files that browsers' developer tools and HAR viewers can open.
+ * <p>
+ * {@link #offer(Entry)} only puts the entry on a bounded queue, so the request path never waits for the disk: when
+ * the queue is full the entry is dropped and counted instead. A single writer thread formats entries with Jackson's
+ * streaming generator straight into the file, gzipped if asked, so memory use is the queue and one entry however
+ * long the run. Once a file holds {@code maxFileBytes} of uncompressed HAR it is finished and the next one started,
+ * and only the newest {@code maxFiles} files are kept. Files are named after {@code file} with a sequence number,
+ * e.g. {@code run.0001.har.gz}; each is a complete HAR log once it is finished.
+ * <p>
+ * Entries are redacted before they are written. The values of the headers named in {@code redactHeaders}, such as
+ * the {@code Cookie: token=...} header sent with updates and deletes, are replaced by {@link #REDACTED}, as are the
+ * cookie values parsed from them. JSON fields and query parameters named in {@code redactFields}, such as the token
+ * in the {@code /auth} response and the password in its request, are redacted in bodies and URLs. Text bodies longer
+ * than {@code maxBodyBytes} are then truncated, with the original size kept in the HAR.
+ */
+public class HarExporter implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger(HarExporter.class);
+
+    public static final String REDACTED = FieldRedactor.REDACTED;
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    /**
+     * One exchange as seen by the client, before redaction.
+     *
+     * @param startedEpochMillis when the request was sent, in wall-clock time
+     * @param status             the response status, or {@code 0} if there was none
+     */
+    public record Entry(long startedEpochMillis, long durationNanos, String method, String url,
+                        List<Header> requestHeaders, byte[] requestBody, int status, String statusText,
+                        List<Header> responseHeaders, byte[] responseBody) {
+    }
+
+    private final Path directory;
+    private final String baseName;
+    private final String extension;
+    private final long maxFileBytes;
+    private final int maxFiles;
+    private final int maxBodyBytes;
+    private final Set<String> redactHeaders;
+    private final FieldRedactor redactor;
+    private final BlockingQueue<Entry> queue;
+    private final Thread writer;
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong exported = new AtomicLong();
+    private final Deque<Path> files = new ArrayDeque<>();
+    private volatile boolean closing;
+
+    // Only touched by the writer thread.
+    private CountingOutputStream counter;
+    private JsonGenerator json;
+    private int fileNumber;
+
+    /**
+     * Starts the writer thread. Nothing is written until the first entry arrives.
+     *
+     * @param file          where to write, e.g. {@code target/har/run.har}; a {@code .gz} suffix is added if gzipped
+     * @param maxFileBytes  uncompressed size after which a file is finished and the next one started
+     * @param maxFiles      how many files to keep; older ones are deleted
+     * @param maxBodyBytes  longest body written in full
+     * @param redactHeaders header names whose values are redacted, ignoring case
+     * @param redactFields  JSON field and query parameter names whose values are redacted
+     * @param queueSize     entries waiting to be written before new ones are dropped
+     */
+    public HarExporter(Path file, boolean gzip, long maxFileBytes, int maxFiles, int maxBodyBytes,
+                       Set<String> redactHeaders, Set<String> redactFields, int queueSize) {
+        if (maxFileBytes <= 0 || maxFiles < 1 || maxBodyBytes < 0 || queueSize < 1) {
+            throw new IllegalArgumentException("HAR export limits must be positive");
+        }
+        Path absolute = file.toAbsolutePath();
+        this.directory = absolute.getParent();
+        String name = absolute.getFileName().toString().replaceFirst("(\\.har)?(\\.gz)?$", "");
+        this.baseName = name.isEmpty() ? "run" : name;
+        this.extension = gzip ? ".har.gz" : ".har";
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = maxFiles;
+        this.maxBodyBytes = maxBodyBytes;
+        this.redactHeaders = redactHeaders.stream().map(h -> h.toLowerCase(Locale.ROOT)).collect(Collectors.toSet());
+        this.redactor = new FieldRedactor(redactFields);
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.writer = new Thread(this::drain, "har-exporter");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Reads the {@code har.*} keys of {@code Config.properties}.
+     *
+     * @return the exporter, or {@code null} if {@code har.file} is not set
+     */
+    public static HarExporter fromConfig() {
+        String file = ConfigReader.getProperty("har.file", "");
+        if (file.isBlank()) {
+            return null;
+        }
+        return new HarExporter(Path.of(file),
+                Boolean.parseBoolean(ConfigReader.getProperty("har.gzip", "true")),
+                Long.parseLong(ConfigReader.getProperty("har.maxFileBytes", "104857600")),
+                Integer.parseInt(ConfigReader.getProperty("har.maxFiles", "10")),
+                Integer.parseInt(ConfigReader.getProperty("har.maxBodyBytes", "4096")),
+                FieldRedactor.names(ConfigReader.getProperty("har.redactHeaders", "Cookie,Set-Cookie,Authorization")),
+                FieldRedactor.names(ConfigReader.getProperty("har.redactFields", "token,password")),
+                Integer.parseInt(ConfigReader.getProperty("har.queueSize", "8192")));
+    }
+
+    /**
+     * Queues an entry for writing without waiting.
+     *
+     * @return {@code false} if the queue was full or the exporter closed, and the entry was dropped
+     */
+    public boolean offer(Entry entry) {
+        if (!closing && queue.offer(entry)) {
+            return true;
+        }
+        dropped.incrementAndGet();
+        return false;
+    }
+
+    public long getExported() {
+        return exported.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return the files kept so far, oldest first
+     */
+    public synchronized List<Path> getFiles() {
+        return new ArrayList<>(files);
+    }
+
+    /**
+     * Writes the entries still queued, finishes the current file and stops the writer thread.
+     */
+    @Override
+    public void close() {
+        closing = true;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (dropped.get() > 0) {
+            logger.warn("HAR export dropped {} of {} entries because the writer fell behind", dropped.get(),
+                    dropped.get() + exported.get());
+        }
+    }
+
+    private void drain() {
+        List<Entry> batch = new ArrayList<>();
+        try {
+            while (!closing || !queue.isEmpty()) {
+                Entry first = queue.poll(50, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, 1_023);
+                for (Entry entry : batch) {
+                    write(entry);
+                    exported.incrementAndGet();
+                }
+                batch.clear();
+            }
+        } catch (IOException e) {
+            logger.error("HAR export stopped: {}", e.toString());
+            closing = true;
+            dropped.addAndGet(batch.size() + queue.size());
+            queue.clear();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                finishFile();
+            } catch (IOException e) {
+                logger.error("Could not finish HAR file: {}", e.toString());
+            }
+        }
+    }
+
+    private void write(Entry entry) throws IOException {
+        if (json == null) {
+            startFile();
+        }
+        writeEntry(entry);
+        json.flush();
+        if (counter.count >= maxFileBytes) {
+            finishFile();
+        }
+    }
+
+    private void startFile() throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve(String.format("%s.%04d%s", baseName, ++fileNumber, extension));
+        OutputStream out = Files.newOutputStream(file);
+        if (extension.endsWith(".gz")) {
+            out = new GZIPOutputStream(out, 64 * 1024);
+        }
+        counter = new CountingOutputStream(out);
+        json = JSON.createGenerator(counter);
+        json.writeStartObject();
+        json.writeObjectFieldStart("log");
+        json.writeStringField("version", "1.2");
+        json.writeObjectFieldStart("creator");
+        json.writeStringField("name", "restfulBookerAPI");
+        json.writeStringField("version", "1.0");
+        json.writeEndObject();
+        json.writeArrayFieldStart("entries");
+
+        synchronized (this) {
+            files.addLast(file);
+            while (files.size() > maxFiles) {
+                Files.deleteIfExists(files.removeFirst());
+            }
+        }
+    }
+
+    private void finishFile() throws IOException {
+        if (json == null) {
+            return;
+        }
+        json.writeEndArray();
+        json.writeEndObject();
+        json.writeEndObject();
+        json.close();
+        json = null;
+    }
+
+    private void writeEntry(Entry entry) throws IOException {
+        double millis = entry.durationNanos() / 1_000_000.0;
+        json.writeStartObject();
+        json.writeStringField("startedDateTime", Instant.ofEpochMilli(entry.startedEpochMillis()).toString());
+        json.writeNumberField("time", millis);
+
+        URI uri = URI.create(entry.url());
+        json.writeObjectFieldStart("request");
+        json.writeStringField("method", entry.method());
+        json.writeStringField("url", redactQuery(uri));
+        json.writeStringField("httpVersion", "HTTP/1.1");
+        writeCookies(entry.requestHeaders(), "Cookie");
+        writeHeaders(entry.requestHeaders());
+        json.writeArrayFieldStart("queryString");
+        for (String[] parameter : queryParameters(uri)) {
+            writeNameValue(parameter[0], parameter[1]);
+        }
+        json.writeEndArray();
+        if (entry.requestBody().length > 0) {
+            json.writeObjectFieldStart("postData");
+            String mimeType = header(entry.requestHeaders(), "Content-Type");
+            json.writeStringField("mimeType", mimeType);
+            writeBody(entry.requestBody(), mimeType, false);
+            json.writeEndObject();
+        }
+        json.writeNumberField("headersSize", -1);
+        json.writeNumberField("bodySize", entry.requestBody().length);
+        json.writeEndObject();
+
+        json.writeObjectFieldStart("response");
+        json.writeNumberField("status", entry.status());
+        json.writeStringField("statusText", entry.statusText());
+        json.writeStringField("httpVersion", "HTTP/1.1");
+        writeCookies(entry.responseHeaders(), "Set-Cookie");
+        writeHeaders(entry.responseHeaders());
+        json.writeObjectFieldStart("content");
+        json.writeNumberField("size", entry.responseBody().length);
+        String mimeType = header(entry.responseHeaders(), "Content-Type");
+        json.writeStringField("mimeType", mimeType);
+        writeBody(entry.responseBody(), mimeType, true);
+        json.writeEndObject();
+        json.writeStringField("redirectURL", "");
+        json.writeNumberField("headersSize", -1);
+        json.writeNumberField("bodySize", entry.responseBody().length);
+        json.writeEndObject();
+
+        json.writeObjectFieldStart("cache");
+        json.writeEndObject();
+        json.writeObjectFieldStart("timings");
+        json.writeNumberField("send", 0);
+        json.writeNumberField("wait", millis);
+        json.writeNumberField("receive", 0);
+        json.writeEndObject();
+        if (entry.status() == 0) {
+            json.writeStringField("comment", "No response");
+        }
+        json.writeEndObject();
+    }
+
+    private void writeHeaders(List<Header> headers) throws IOException {
+        json.writeArrayFieldStart("headers");
+        for (Header header : headers) {
+            writeNameValue(header.name(),
+                    redactHeaders.contains(header.name().toLowerCase(Locale.ROOT)) ? REDACTED : header.value());
+        }
+        json.writeEndArray();
+    }
+
+    /**
+     * Writes the cookies in the named headers; their values are redacted along with the header's.
+     */
+    private void writeCookies(List<Header> headers, String name) throws IOException {
+        boolean redacted = redactHeaders.contains(name.toLowerCase(Locale.ROOT));
+        json.writeArrayFieldStart("cookies");
+        for (Header header : headers) {
+            if (!header.name().equalsIgnoreCase(name)) {
+                continue;
+            }
+            // A Set-Cookie header is one cookie followed by its attributes.
+            String[] cookies = name.equalsIgnoreCase("Set-Cookie")
+                    ? new String[]{header.value().split(";", 2)[0]} : header.value().split(";");
+            for (String cookie : cookies) {
+                String[] pair = cookie.trim().split("=", 2);
+                if (!pair[0].isEmpty()) {
+                    writeNameValue(pair[0], redacted ? REDACTED : pair.length > 1 ? pair[1] : "");
+                }
+            }
+        }
+        json.writeEndArray();
+    }
+
+    private void writeNameValue(String name, String value) throws IOException {
+        json.writeStartObject();
+        json.writeStringField("name", name);
+        json.writeStringField("value", value);
+        json.writeEndObject();
+    }
+
+    /**
+     * Writes a body as {@code text}, redacted and then truncated to {@code maxBodyBytes}; bodies that are not text
+     * are written base64-encoded.
+     */
+    private void writeBody(byte[] body, String mimeType, boolean withEncoding) throws IOException {
+        if (body.length == 0) {
+            return;
+        }
+        if (isText(mimeType)) {
+            String text = redactor.redactJson(new String(body, StandardCharsets.UTF_8));
+            if (text.length() > maxBodyBytes) {
+                json.writeStringField("text", text.substring(0, maxBodyBytes));
+                json.writeStringField("comment", "Truncated from " + body.length + " bytes");
+            } else {
+                json.writeStringField("text", text);
+            }
+        } else if (withEncoding) {
+            json.writeStringField("text",
+                    Base64.getEncoder().encodeToString(Arrays.copyOf(body, Math.min(body.length, maxBodyBytes))));
+            json.writeStringField("encoding", "base64");
+            if (body.length > maxBodyBytes) {
+                json.writeStringField("comment", "Truncated from " + body.length + " bytes");
+            }
+        } else {
+            // HAR has no encoding for post data, so binary request bodies are left out.
+            json.writeStringField("comment", "Binary body of " + body.length + " bytes not exported");
+        }
+    }
+
+    private String redactQuery(URI uri) {
+        if (uri.getRawQuery() == null) {
+            return uri.toString();
+        }
+        String query = queryParameters(uri).stream().map(p -> p[0] + "=" + p[1]).collect(Collectors.joining("&"));
+        String url = uri.toString();
+        return url.substring(0, url.indexOf('?') + 1) + query;
+    }
+
+    private List<String[]> queryParameters(URI uri) {
+        List<String[]> parameters = new ArrayList<>();
+        if (uri.getRawQuery() == null) {
+            return parameters;
+        }
+        for (String parameter : uri.getRawQuery().split("&")) {
+            String[] pair = parameter.split("=", 2);
+            parameters.add(new String[]{pair[0],
+                    redactor.isRedacted(pair[0]) ? REDACTED : pair.length > 1 ? pair[1] : ""});
+        }
+        return parameters;
+    }
+
+    private static String header(List<Header> headers, String name) {
+        for (Header header : headers) {
+            if (header.name().equalsIgnoreCase(name)) {
+                return header.value();
+            }
+        }
+        return "";
+    }
+
+    private static boolean isText(String mimeType) {
+        String type = mimeType.toLowerCase(Locale.ROOT);
+        return type.isEmpty() || type.startsWith("text/") || type.contains("json") || type.contains("xml")
+                || type.contains("x-www-form-urlencoded");
+    }
+
+    /**
+     * Counts the uncompressed bytes written to the current file.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package nz.co.sundar.testautomation.restfulbooker.filters;
+
+import io.restassured.RestAssured;
+import io.restassured.filter.Filter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Registers the framework's REST Assured filters once per JVM.
+ * <p>
+ * {@link RestAssured#filters(List)} appends to a static list, so calling it from every test class would stack
+ * duplicate filters. {@code TestBase} calls {@link #install()} from its {@code @BeforeAll} and only the first call
+ * has any effect.
+ *
+ * @see nz.co.sundar.testautomation.restfulbooker.base.TestBase
+ */
+public class RestAssuredFilters {
+
+    private static boolean installed;
+
+    /**
+     * Installs the default filters if they have not been installed yet.
+     */
+    public static synchronized void install() {
+        if (installed) {
+            return;
+        }
+        List<Filter> filters = new ArrayList<>();
+        filters.add(new ExchangeRecorderFilter());
+        filters.add(new BodyCaptureFilter(BodyCapturePolicy.fromConfig()));
+        TrafficCaptureFilter capture = TrafficCaptureFilter.fromConfig();
+        if (capture != null) {
+            filters.add(capture);
+        }
+        HarCaptureFilter har = HarCaptureFilter.fromConfig();
+        if (har != null) {
+            filters.add(har);
+        }
+        // Last, so that the limiter measures the server's latency rather than the other filters'.
+        filters.add(ConcurrencyLimitFilter.fromConfig());
+
+        RestAssured.filters(filters);
+        installed = true;
+    }
+}
@@ -0,0 +1,126 @@
+package nz.co.sundar.testautomation.restfulbooker.filters;
+
+import io.restassured.filter.Filter;
+import io.restassured.filter.FilterContext;
+import io.restassured.http.Cookie;
+import io.restassured.http.Headers;
+import io.restassured.response.Response;
+import io.restassured.specification.FilterableRequestSpecification;
+import io.restassured.specification.FilterableResponseSpecification;
+import nz.co.sundar.testautomation.restfulbooker.filters.TrafficLog.Exchange;
+import nz.co.sundar.testautomation.restfulbooker.filters.TrafficLog.Header;
+import nz.co.sundar.testautomation.restfulbooker.utils.ConfigReader;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * REST Assured filter that appends every exchange to a {@link TrafficLog}, so that a functional run or a session
+ * against a production-like server can be replayed later as a load profile by {@code TrafficReplayer}.
+ * <p>
+ * Installed by {@link RestAssuredFilters} when {@code traffic.captureFile} is set, it sees everything sent through
+ * {@code BookingUtils} and {@code TokenManager}. Cookies are recorded as a {@code Cookie} header. The log is
+ * flushed when the JVM exits.
+ */
+public class TrafficCaptureFilter implements Filter {
+
+    private static final Logger logger = LogManager.getLogger(TrafficCaptureFilter.class);
+
+    private final TrafficLog.Writer log;
+
+    public TrafficCaptureFilter(TrafficLog.Writer log) {
+        this.log = log;
+    }
+
+    /**
+     * Opens {@code traffic.captureFile} and closes it when the JVM exits.
+     *
+     * @return the filter, or {@code null} if {@code traffic.captureFile} is not set
+     */
+    public static TrafficCaptureFilter fromConfig() {
+        String file = ConfigReader.getProperty("traffic.captureFile", "");
+        if (file.isBlank()) {
+            return null;
+        }
+        try {
+            TrafficLog.Writer log = TrafficLog.Writer.open(Path.of(file));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    log.close();
+                    logger.info("Captured {} exchanges to {}", log.getExchanges(), file);
+                } catch (IOException e) {
+                    logger.warn("Could not close traffic log {}: {}", file, e.toString());
+                }
+            }, "traffic-capture-close"));
+            return new TrafficCaptureFilter(log);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open traffic log " + file, e);
+        }
+    }
+
+    @Override
+    public Response filter(FilterableRequestSpecification requestSpec, FilterableResponseSpecification responseSpec,
+                           FilterContext ctx) {
+        long start = System.nanoTime();
+        Response response = null;
+        try {
+            response = ctx.next(requestSpec, responseSpec);
+            return response;
+        } finally {
+            long duration = System.nanoTime() - start;
+            try {
+                log.write(new Exchange(log.sinceOpened(start), duration, requestSpec.getMethod(),
+                        pathOf(requestSpec.getURI()), requestHeaders(requestSpec), bodyOf(requestSpec.getBody()),
+                        response == null ? 0 : response.getStatusCode(),
+                        response == null ? List.of() : headers(response.getHeaders()),
+                        response == null ? new byte[0] : response.asByteArray()));
+            } catch (IOException e) {
+                logger.warn("Could not capture {} {}: {}", requestSpec.getMethod(), requestSpec.getURI(),
+                        e.toString());
+            }
+        }
+    }
+
+    private static String pathOf(String uri) {
+        URI parsed = URI.create(uri);
+        return parsed.getRawPath() + (parsed.getRawQuery() == null ? "" : "?" + parsed.getRawQuery());
+    }
+
+    static List<Header> requestHeaders(FilterableRequestSpecification requestSpec) {
+        List<Header> headers = headers(requestSpec.getHeaders());
+        if (requestSpec.getContentType() != null && headers.stream()
+                .noneMatch(header -> header.name().equalsIgnoreCase("Content-Type"))) {
+            headers.add(new Header("Content-Type", requestSpec.getContentType()));
+        }
+        if (requestSpec.getCookies().exist()) {
+            List<String> cookies = new ArrayList<>();
+            for (Cookie cookie : requestSpec.getCookies()) {
+                cookies.add(cookie.getName() + "=" + cookie.getValue());
+            }
+            headers.add(new Header("Cookie", String.join("; ", cookies)));
+        }
+        return headers;
+    }
+
+    static List<Header> headers(Headers headers) {
+        List<Header> list = new ArrayList<>();
+        for (io.restassured.http.Header header : headers) {
+            list.add(new Header(header.getName(), header.getValue()));
+        }
+        return list;
+    }
+
+    static byte[] bodyOf(Object body) {
+        if (body == null) {
+            return new byte[0];
+        }
+        return body instanceof byte[] bytes ? bytes : body.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
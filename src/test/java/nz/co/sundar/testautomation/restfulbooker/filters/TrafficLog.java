@@ -0,0 +1,322 @@
+package nz.co.sundar.testautomation.restfulbooker.filters;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact binary log of HTTP exchanges, written by {@link TrafficCaptureFilter} and replayed by
+ * {@code TrafficReplayer}.
+ * <p>
+ * After a header of {@link #MAGIC} and {@link #VERSION}, the log is a sequence of entries, each starting with its
+ * type byte. Strings (methods, paths, header names and values) and bodies are written once, the first time they
+ * appear, as {@link #STRING} and {@link #BODY} entries that are numbered in order, and each {@link #EXCHANGE} refers
+ * to them by number. A run that sends the same headers and payloads again and again therefore costs a few bytes per
+ * exchange. Once it has numbered {@code 65536} strings or bodies, the writer writes a {@link #RESET} and numbers
+ * from the start again, so neither side's tables grow without bound. Numbers are unsigned variable-length integers,
+ * seven bits a byte; body 0 is the empty body.
+ * <p>
+ * An exchange is its start, relative to when the log was opened, and duration in microseconds, then method, path
+ * with query, request headers as a count and name/value pairs, request body, status ({@code 0} for no response),
+ * response headers and response body.
+ */
+public final class TrafficLog {
+
+    public static final int MAGIC = 0x424B5452;
+    public static final int VERSION = 1;
+
+    static final byte STRING = 1;
+    static final byte BODY = 2;
+    static final byte EXCHANGE = 3;
+    static final byte RESET = 4;
+
+    /** Once this many strings or bodies are numbered, the writer resets the numbering. */
+    private static final int MAX_INTERNED = 65_536;
+
+    private TrafficLog() {
+    }
+
+    public record Header(String name, String value) {
+    }
+
+    /**
+     * One request and its response.
+     *
+     * @param startNanos      when the request was sent, relative to when the log was opened
+     * @param durationNanos   how long the response took
+     * @param status          the response status, or {@code 0} if there was none
+     */
+    public record Exchange(long startNanos, long durationNanos, String method, String path,
+                           List<Header> requestHeaders, byte[] requestBody, int status, List<Header> responseHeaders,
+                           byte[] responseBody) {
+
+        /**
+         * @return the value of the first request header with this name, ignoring case, or {@code null}
+         */
+        public String requestHeader(String name) {
+            for (Header header : requestHeaders) {
+                if (header.name().equalsIgnoreCase(name)) {
+                    return header.value();
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Appends exchanges to a log. Safe to call from several threads at once.
+     */
+    public static final class Writer implements Closeable {
+
+        private final DataOutputStream out;
+        private final long openedNanos = System.nanoTime();
+        private final Map<String, Integer> strings = new HashMap<>();
+        private final Map<ByteBuffer, Integer> bodies = new HashMap<>();
+        private int nextString;
+        private int nextBody = 1;
+        private long exchanges;
+
+        public Writer(OutputStream out) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+            this.out.writeInt(MAGIC);
+            this.out.writeByte(VERSION);
+        }
+
+        /**
+         * Creates the file, and its directory if needed, replacing any earlier log.
+         */
+        public static Writer open(Path file) throws IOException {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            return new Writer(Files.newOutputStream(file));
+        }
+
+        /**
+         * @return the current time as an exchange start, from {@link System#nanoTime()}
+         */
+        public long sinceOpened(long nanoTime) {
+            return nanoTime - openedNanos;
+        }
+
+        public synchronized void write(Exchange exchange) throws IOException {
+            if (strings.size() + 2 * (exchange.requestHeaders().size() + exchange.responseHeaders().size()) + 2
+                    > MAX_INTERNED || bodies.size() + 2 > MAX_INTERNED) {
+                out.writeByte(RESET);
+                strings.clear();
+                bodies.clear();
+                nextString = 0;
+                nextBody = 1;
+            }
+            int method = string(exchange.method());
+            int path = string(exchange.path());
+            int[] requestHeaders = headers(exchange.requestHeaders());
+            int requestBody = body(exchange.requestBody());
+            int[] responseHeaders = headers(exchange.responseHeaders());
+            int responseBody = body(exchange.responseBody());
+
+            out.writeByte(EXCHANGE);
+            writeVar(out, exchange.startNanos() / 1_000);
+            writeVar(out, exchange.durationNanos() / 1_000);
+            writeVar(out, method);
+            writeVar(out, path);
+            writeVars(requestHeaders);
+            writeVar(out, requestBody);
+            writeVar(out, exchange.status());
+            writeVars(responseHeaders);
+            writeVar(out, responseBody);
+            exchanges++;
+        }
+
+        public synchronized long getExchanges() {
+            return exchanges;
+        }
+
+        public synchronized void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            out.close();
+        }
+
+        private int[] headers(List<Header> headers) throws IOException {
+            int[] ids = new int[headers.size() * 2];
+            for (int i = 0; i < headers.size(); i++) {
+                ids[2 * i] = string(headers.get(i).name());
+                ids[2 * i + 1] = string(headers.get(i).value());
+            }
+            return ids;
+        }
+
+        private void writeVars(int[] ids) throws IOException {
+            writeVar(out, ids.length / 2);
+            for (int id : ids) {
+                writeVar(out, id);
+            }
+        }
+
+        private int string(String value) throws IOException {
+            Integer id = strings.get(value);
+            if (id != null) {
+                return id;
+            }
+            out.writeByte(STRING);
+            out.writeUTF(value);
+            strings.put(value, nextString);
+            return nextString++;
+        }
+
+        private int body(byte[] value) throws IOException {
+            if (value.length == 0) {
+                return 0;
+            }
+            ByteBuffer key = ByteBuffer.wrap(value);
+            Integer id = bodies.get(key);
+            if (id != null) {
+                return id;
+            }
+            out.writeByte(BODY);
+            writeVar(out, value.length);
+            out.write(value);
+            bodies.put(key, nextBody);
+            return nextBody++;
+        }
+    }
+
+    /**
+     * Reads a log's exchanges in order.
+     */
+    public static final class Reader implements Closeable {
+
+        private final DataInputStream in;
+        private final List<String> strings = new ArrayList<>();
+        private final List<byte[]> bodies = new ArrayList<>(List.of(new byte[0]));
+
+        /**
+         * @throws IOException if the stream is not a traffic log of this version
+         */
+        public Reader(InputStream in) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(in, 64 * 1024));
+            if (this.in.readInt() != MAGIC) {
+                throw new IOException("Not a traffic log");
+            }
+            int version = this.in.readByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported traffic log version " + version);
+            }
+        }
+
+        public static Reader open(Path file) throws IOException {
+            return new Reader(Files.newInputStream(file));
+        }
+
+        /**
+         * @return the next exchange, or {@code null} at the end of the log
+         * @throws IOException if the log is corrupt or ends in the middle of an entry
+         */
+        public Exchange next() throws IOException {
+            while (true) {
+                int type = in.read();
+                switch (type) {
+                    case -1:
+                        return null;
+                    case STRING:
+                        strings.add(in.readUTF());
+                        break;
+                    case BODY: {
+                        byte[] body = new byte[(int) readVar(in)];
+                        in.readFully(body);
+                        bodies.add(body);
+                        break;
+                    }
+                    case RESET:
+                        strings.clear();
+                        bodies.subList(1, bodies.size()).clear();
+                        break;
+                    case EXCHANGE:
+                        return new Exchange(readVar(in) * 1_000, readVar(in) * 1_000, string(), string(), headers(),
+                                body(), (int) readVar(in), headers(), body());
+                    default:
+                        throw new IOException("Corrupt traffic log: entry type " + type);
+                }
+            }
+        }
+
+        /**
+         * Reads the whole log.
+         */
+        public static List<Exchange> readAll(Path file) throws IOException {
+            List<Exchange> exchanges = new ArrayList<>();
+            try (Reader reader = open(file)) {
+                Exchange exchange;
+                while ((exchange = reader.next()) != null) {
+                    exchanges.add(exchange);
+                }
+            }
+            return exchanges;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        private String string() throws IOException {
+            return strings.get((int) readVar(in));
+        }
+
+        private byte[] body() throws IOException {
+            return bodies.get((int) readVar(in));
+        }
+
+        private List<Header> headers() throws IOException {
+            int count = (int) readVar(in);
+            List<Header> headers = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                headers.add(new Header(string(), string()));
+            }
+            return headers;
+        }
+    }
+
+    static void writeVar(DataOutputStream out, long value) throws IOException {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value in traffic log: " + value);
+        }
+        while (value >= 0x80) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVar(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Traffic log ends in the middle of an entry");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt traffic log: number too long");
+    }
+}
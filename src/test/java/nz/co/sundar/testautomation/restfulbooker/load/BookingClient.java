@@ -0,0 +1,28 @@
+package nz.co.sundar.testautomation.restfulbooker.load;
+
+import nz.co.sundar.testautomation.restfulbooker.pojo.Booking;
+import nz.co.sundar.testautomation.restfulbooker.utils.DecodedResponse;
+
+/**
+ * Sends the requests of a load run. {@link BookingUtilsClient} goes through {@code BookingUtils} and the
+ * configured server; {@link DirectBookingClient} sends to any base URI.
+ * <p>
+ * Implementations must be safe to call from several worker threads at once.
+ */
+public interface BookingClient {
+
+    DecodedResponse createBooking(Booking booking);
+
+    DecodedResponse getBooking(int bookingId);
+
+    DecodedResponse updateBooking(int bookingId, Booking booking);
+
+    DecodedResponse deleteBooking(int bookingId);
+
+    DecodedResponse listBookings();
+
+    /**
+     * Requests a new token, as a client logging in would.
+     */
+    DecodedResponse authenticate();
+}
@@ -0,0 +1,52 @@
+package nz.co.sundar.testautomation.restfulbooker.load;
+
+import nz.co.sundar.testautomation.restfulbooker.pojo.Booking;
+import nz.co.sundar.testautomation.restfulbooker.utils.BookingUtils;
+import nz.co.sundar.testautomation.restfulbooker.utils.DecodedResponse;
+import nz.co.sundar.testautomation.restfulbooker.utils.TokenManager;
+import nz.co.sundar.testautomation.restfulbooker.utils.TokenPool.Credentials;
+
+/**
+ * Sends load through {@link BookingUtils} to {@code RestAssured.baseURI}, with the same token pool, retries,
+ * hedging and cache as the functional tests.
+ */
+public class BookingUtilsClient implements BookingClient {
+
+    @Override
+    public DecodedResponse createBooking(Booking booking) {
+        return BookingUtils.createTestBooking(booking.getFirstname(), booking.getLastname(),
+                booking.getTotalprice(), booking.isDepositpaid(), booking.getBookingdates().getCheckin(),
+                booking.getBookingdates().getCheckout(), booking.getAdditionalneeds());
+    }
+
+    @Override
+    public DecodedResponse getBooking(int bookingId) {
+        return BookingUtils.getSpecificBookingId(bookingId);
+    }
+
+    @Override
+    public DecodedResponse updateBooking(int bookingId, Booking booking) {
+        return BookingUtils.updateSpecificBooking(bookingId, booking.getFirstname(), booking.getLastname(),
+                booking.getTotalprice(), booking.isDepositpaid(), booking.getBookingdates().getCheckin(),
+                booking.getBookingdates().getCheckout(), booking.getAdditionalneeds());
+    }
+
+    @Override
+    public DecodedResponse deleteBooking(int bookingId) {
+        return BookingUtils.deleteTestBookingId(bookingId);
+    }
+
+    @Override
+    public DecodedResponse listBookings() {
+        return BookingUtils.getAllBookingIds(true);
+    }
+
+    /**
+     * Logs in with the token pool's credentials in turn, without replacing the pool's tokens.
+     */
+    @Override
+    public DecodedResponse authenticate() {
+        Credentials credentials = TokenManager.getTokenPool().next().getCredentials();
+        return TokenManager.generateTokenResponse(credentials.username(), credentials.password());
+    }
+}
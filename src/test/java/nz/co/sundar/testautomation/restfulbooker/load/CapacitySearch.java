@@ -0,0 +1,420 @@
+package nz.co.sundar.testautomation.restfulbooker.load;
+
+import io.restassured.RestAssured;
+import nz.co.sundar.testautomation.restfulbooker.filters.RestAssuredFilters;
+import nz.co.sundar.testautomation.restfulbooker.standin.LatencyDistribution;
+import nz.co.sundar.testautomation.restfulbooker.utils.ConfigReader;
+import nz.co.sundar.testautomation.restfulbooker.utils.LatencyHistogram;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Finds the highest request rate a server sustains for a workload's mix while meeting a latency and error SLO, such
+ * as p99 below 300ms with fewer than 0.1% errors.
+ * <p>
+ * Each trial is a short open-model phase (see {@link WorkloadDefinition.Model#OPEN}) at a fixed rate, so a server
+ * that falls behind shows it in latency instead of slowing the load down. The search doubles the rate from
+ * {@code startRate} until a trial fails (halving instead, down to 1 request per second, if the first one fails), then bisects between the highest
+ * passing and lowest failing rate until they are within {@code precision} of each other.
+ * <p>
+ * A trial's percentile and error rate are estimates, so each comes with a 95% confidence interval: the percentile's
+ * from the order statistics around it, the error rate's a Wilson score interval. A trial whose interval straddles
+ * the SLO is repeated, up to {@code maxAttempts} runs pooled together. The capacity is the highest rate that passed;
+ * its lower bound is the highest rate whose whole interval met the SLO and its upper bound the lowest rate whose
+ * whole interval missed it. Every trial is kept as a point on the latency curve.
+ * <p>
+ * When the workload warms up (see {@link WorkloadDefinition.Warmup}), the first trial does, and its warm-up is left
+ * out of its numbers.
+ */
+public class CapacitySearch {
+
+    private static final Logger logger = LogManager.getLogger(CapacitySearch.class);
+    private static final double Z_95 = 1.96;
+    private static final double MIN_RATE = 1;
+
+    /**
+     * The service level a rate must meet.
+     *
+     * @param percentile   the latency percentile, e.g. {@code 99}
+     * @param latencyNanos the most that percentile may reach
+     * @param maxErrorRate the highest share of failed or missed requests, e.g. {@code 0.001}
+     */
+    public record Slo(double percentile, long latencyNanos, double maxErrorRate) {
+
+        @Override
+        public String toString() {
+            return String.format("p%s < %s and errors < %.2f%%", formatPercentile(percentile),
+                    LatencyHistogram.formatMillis(latencyNanos), 100 * maxErrorRate);
+        }
+    }
+
+    private final LoadDriver driver;
+    private final Slo slo;
+    private final long trialNanos;
+    private final double startRate;
+    private final double maxRate;
+    private final double precision;
+    private final int workers;
+    private final int maxAttempts;
+    private boolean warmedUp;
+
+    /**
+     * @param driver      runs the trials with its workload's mix
+     * @param slo         the service level a rate must meet
+     * @param trialNanos  how long each trial runs
+     * @param startRate   the first rate tried, in requests per second
+     * @param maxRate     the highest rate tried
+     * @param precision   the search stops once the lowest failing rate is within this fraction of the highest
+     *                    passing one, e.g. {@code 0.05}
+     * @param workers     the most requests in flight during a trial
+     * @param maxAttempts how many runs of one rate may be pooled while its result is inconclusive, at least 1
+     */
+    public CapacitySearch(LoadDriver driver, Slo slo, long trialNanos, double startRate, double maxRate,
+                          double precision, int workers, int maxAttempts) {
+        if (startRate <= 0 || maxRate < startRate || precision <= 0 || workers < 1 || maxAttempts < 1) {
+            throw new IllegalArgumentException("Capacity search needs 0 < startRate <= maxRate, a positive precision,"
+                    + " at least one worker and at least one attempt");
+        }
+        this.driver = driver;
+        this.slo = slo;
+        this.trialNanos = trialNanos;
+        this.startRate = startRate;
+        this.maxRate = maxRate;
+        this.precision = precision;
+        this.workers = workers;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Builds a search from the {@code capacity.*} properties.
+     *
+     * @param driver runs the trials with its workload's mix
+     */
+    public static CapacitySearch fromConfig(LoadDriver driver) {
+        return new CapacitySearch(driver,
+                new Slo(Double.parseDouble(ConfigReader.getProperty("capacity.latencyPercentile", "99")),
+                        LatencyDistribution.parseDuration(ConfigReader.getProperty("capacity.latency", "300ms")),
+                        Double.parseDouble(ConfigReader.getProperty("capacity.maxErrorRate", "0.001"))),
+                LatencyDistribution.parseDuration(ConfigReader.getProperty("capacity.trialDuration", "10s")),
+                Double.parseDouble(ConfigReader.getProperty("capacity.startRate", "10")),
+                Double.parseDouble(ConfigReader.getProperty("capacity.maxRate", "10000")),
+                Double.parseDouble(ConfigReader.getProperty("capacity.precision", "0.05")),
+                Integer.parseInt(ConfigReader.getProperty("capacity.workers", "64")),
+                Integer.parseInt(ConfigReader.getProperty("capacity.maxAttempts", "3")));
+    }
+
+    /**
+     * Searches the configured {@code baseURI}'s capacity through {@code BookingUtils} for the workload file given
+     * as the first argument, or {@code load.workload} when there is none, and logs the result and latency curve.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        Path file = Path.of(args.length > 0 ? args[0]
+                : ConfigReader.getProperty("load.workload", "src/test/resources/workloads/read-heavy.properties"));
+        RestAssured.baseURI = ConfigReader.getProperty("baseURI");
+        RestAssuredFilters.install();
+        WorkloadDefinition workload = WorkloadDefinition.load(file);
+        CapacitySearch search = fromConfig(new LoadDriver(workload, new BookingUtilsClient()));
+        logger.info("Searching the capacity of {} for workload {} at {}", RestAssured.baseURI, workload.getName(),
+                search.slo);
+        logger.info("{}", search.run().getSummary());
+    }
+
+    /**
+     * Runs trials until the capacity is found to the configured precision, or {@code maxRate} passes.
+     *
+     * @throws InterruptedException if the calling thread is interrupted during a trial
+     */
+    public Result run() throws InterruptedException {
+        List<Trial> trials = new ArrayList<>();
+        double passing = 0;
+        double failing = Double.POSITIVE_INFINITY;
+
+        // Widen: double until a trial fails, or halve until one passes.
+        double rate = startRate;
+        Trial first = trial(rate);
+        trials.add(first);
+        if (first.passed()) {
+            passing = rate;
+            while (rate < maxRate) {
+                rate = Math.min(maxRate, rate * 2);
+                Trial trial = trial(rate);
+                trials.add(trial);
+                if (!trial.passed()) {
+                    failing = rate;
+                    break;
+                }
+                passing = rate;
+            }
+        } else {
+            failing = rate;
+            while (rate / 2 >= MIN_RATE) {
+                rate /= 2;
+                Trial trial = trial(rate);
+                trials.add(trial);
+                if (trial.passed()) {
+                    passing = rate;
+                    break;
+                }
+                failing = rate;
+            }
+        }
+
+        // Bisect between the highest passing and lowest failing rate.
+        while (passing > 0 && failing < Double.POSITIVE_INFINITY && failing - passing > precision * passing) {
+            double middle = (passing + failing) / 2;
+            Trial trial = trial(middle);
+            trials.add(trial);
+            if (trial.passed()) {
+                passing = middle;
+            } else {
+                failing = middle;
+            }
+        }
+        return new Result(slo, passing, trials);
+    }
+
+    private Trial trial(double rate) throws InterruptedException {
+        Trial trial = new Trial(rate, slo);
+        WorkloadDefinition.Phase phase = new WorkloadDefinition.Phase(String.format("trial %.1f/s", rate),
+                trialNanos, workers, rate, LatencyDistribution.NONE, null, WorkloadDefinition.Model.OPEN);
+        do {
+            // Only the first trial warms up: later ones find the client and server already warm, and a rate beyond
+            // capacity would never look steady.
+            trial.add(driver.runPhase(phase, warmedUp ? null : driver.getWorkload().getWarmup()));
+            warmedUp = true;
+        } while (!trial.isConclusive() && trial.getAttempts() < maxAttempts);
+        logger.info("Capacity trial {}", trial.getSummary());
+        return trial;
+    }
+
+    static String formatPercentile(double percentile) {
+        return percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+    }
+
+    /**
+     * One rate tried by the search, pooled over its attempts: a point on the latency curve.
+     */
+    public static final class Trial {
+
+        private final double rate;
+        private final Slo slo;
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        private long requests;
+        private long failures;
+        private long durationNanos;
+        private int attempts;
+
+        Trial(double rate, Slo slo) {
+            this.rate = rate;
+            this.slo = slo;
+        }
+
+        void add(PhaseResult phase) {
+            latencies.add(phase.getLatencies());
+            requests += phase.getCount() + phase.getMissed();
+            failures += phase.getErrors() + phase.getMissed();
+            durationNanos += phase.getDurationNanos();
+            attempts++;
+        }
+
+        /**
+         * @return the rate the trial offered, in requests per second
+         */
+        public double getRate() {
+            return rate;
+        }
+
+        /**
+         * @return the answered requests per second
+         */
+        public double getThroughput() {
+            return durationNanos == 0 ? 0 : latencies.getCount() * 1e9 / durationNanos;
+        }
+
+        public int getAttempts() {
+            return attempts;
+        }
+
+        public LatencyHistogram getLatencies() {
+            return latencies;
+        }
+
+        /**
+         * @return the SLO percentile of the answered requests' latency
+         */
+        public long getPercentileNanos() {
+            return latencies.getPercentileNanos(slo.percentile());
+        }
+
+        /**
+         * @return the low end of the 95% confidence interval of the SLO percentile
+         */
+        public long getPercentileLowerNanos() {
+            return orderStatistic(-Z_95);
+        }
+
+        /**
+         * @return the high end of the 95% confidence interval of the SLO percentile
+         */
+        public long getPercentileUpperNanos() {
+            return orderStatistic(Z_95);
+        }
+
+        /**
+         * The percentile's confidence interval runs between the order statistics {@code z} standard deviations
+         * of a binomial count either side of its rank.
+         */
+        private long orderStatistic(double z) {
+            long n = latencies.getCount();
+            if (n == 0) {
+                return z < 0 ? 0 : Long.MAX_VALUE;
+            }
+            double p = slo.percentile() / 100;
+            double rank = Math.ceil(n * p + z * Math.sqrt(n * p * (1 - p)));
+            if (rank > n) {
+                // Too few samples to bound the percentile from above.
+                return Long.MAX_VALUE;
+            }
+            return latencies.getPercentileNanos(100.0 * Math.max(1, rank) / n);
+        }
+
+        /**
+         * @return the share of requests that failed or were missed
+         */
+        public double getErrorRate() {
+            return requests == 0 ? 0 : (double) failures / requests;
+        }
+
+        public double getErrorRateLower() {
+            return wilson(-Z_95);
+        }
+
+        public double getErrorRateUpper() {
+            return wilson(Z_95);
+        }
+
+        private double wilson(double z) {
+            if (requests == 0) {
+                return z < 0 ? 0 : 1;
+            }
+            double p = getErrorRate();
+            double z2 = z * z;
+            double centre = p + z2 / (2 * requests);
+            double spread = z * Math.sqrt(p * (1 - p) / requests + z2 / (4.0 * requests * requests));
+            return Math.max(0, Math.min(1, (centre + spread) / (1 + z2 / requests)));
+        }
+
+        /**
+         * @return whether the measured percentile and error rate met the SLO
+         */
+        public boolean passed() {
+            return latencies.getCount() > 0 && getPercentileNanos() <= slo.latencyNanos()
+                    && getErrorRate() <= slo.maxErrorRate();
+        }
+
+        /**
+         * @return whether the SLO was met even at the high ends of both confidence intervals
+         */
+        public boolean passedConfidently() {
+            return getPercentileUpperNanos() <= slo.latencyNanos() && getErrorRateUpper() <= slo.maxErrorRate();
+        }
+
+        /**
+         * @return whether the SLO was missed even at the low end of either confidence interval
+         */
+        public boolean failedConfidently() {
+            return getPercentileLowerNanos() > slo.latencyNanos() || getErrorRateLower() > slo.maxErrorRate();
+        }
+
+        public boolean isConclusive() {
+            return passedConfidently() || failedConfidently();
+        }
+
+        /**
+         * @return a one-line summary such as {@code 200.0/s: 198.7/s answered p99=41.0ms [38.2ms, 45.1ms]
+         * errors=0.00% [0.00%, 0.19%] PASS}
+         */
+        public String getSummary() {
+            long upper = getPercentileUpperNanos();
+            return String.format("%.1f/s: %.1f/s answered p%s=%s [%s, %s] errors=%.2f%% [%.2f%%, %.2f%%] %s%s",
+                    rate, getThroughput(), formatPercentile(slo.percentile()),
+                    LatencyHistogram.formatMillis(getPercentileNanos()),
+                    LatencyHistogram.formatMillis(getPercentileLowerNanos()),
+                    upper == Long.MAX_VALUE ? "?" : LatencyHistogram.formatMillis(upper),
+                    100 * getErrorRate(), 100 * getErrorRateLower(), 100 * getErrorRateUpper(),
+                    passed() ? "PASS" : "FAIL", isConclusive() ? "" : " (inconclusive)")
+                    + (attempts > 1 ? " over " + attempts + " runs" : "");
+        }
+    }
+
+    /**
+     * The capacity found, its confidence bounds and the trials that found it.
+     */
+    public static final class Result {
+
+        private final Slo slo;
+        private final double capacity;
+        private final double lowerBound;
+        private final double upperBound;
+        private final List<Trial> curve;
+
+        Result(Slo slo, double capacity, List<Trial> trials) {
+            this.slo = slo;
+            this.capacity = capacity;
+            List<Trial> sorted = new ArrayList<>(trials);
+            sorted.sort(Comparator.comparingDouble(Trial::getRate));
+            this.curve = Collections.unmodifiableList(sorted);
+            this.upperBound = sorted.stream().filter(Trial::failedConfidently).mapToDouble(Trial::getRate)
+                    .min().orElse(Double.POSITIVE_INFINITY);
+            this.lowerBound = sorted.stream().filter(Trial::passedConfidently).mapToDouble(Trial::getRate)
+                    .filter(rate -> rate < upperBound).max().orElse(0);
+        }
+
+        /**
+         * @return the highest rate that met the SLO, in requests per second, or 0 if none did
+         */
+        public double getCapacity() {
+            return capacity;
+        }
+
+        /**
+         * @return the highest rate that met the SLO with 95% confidence, or 0 if none did
+         */
+        public double getLowerBound() {
+            return lowerBound;
+        }
+
+        /**
+         * @return the lowest rate that missed the SLO with 95% confidence, or infinity if none did
+         */
+        public double getUpperBound() {
+            return upperBound;
+        }
+
+        /**
+         * @return every trial, by rate
+         */
+        public List<Trial> getCurve() {
+            return curve;
+        }
+
+        /**
+         * @return the capacity and its bounds, followed by one line per trial
+         */
+        public String getSummary() {
+            StringBuilder summary = new StringBuilder(String.format(
+                    "capacity=%.1f req/s (95%% bounds %.1f to %s) for %s", capacity, lowerBound,
+                    upperBound == Double.POSITIVE_INFINITY ? "unbounded" : String.format("%.1f", upperBound), slo));
+            for (Trial trial : curve) {
+                summary.append(System.lineSeparator()).append("  ").append(trial.getSummary());
+            }
+            return summary.toString();
+        }
+    }
+}
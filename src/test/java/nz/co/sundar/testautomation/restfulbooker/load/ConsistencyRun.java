@@ -0,0 +1,203 @@
+package nz.co.sundar.testautomation.restfulbooker.load;
+
+import io.restassured.RestAssured;
+import nz.co.sundar.testautomation.restfulbooker.filters.RestAssuredFilters;
+import nz.co.sundar.testautomation.restfulbooker.load.History.Kind;
+import nz.co.sundar.testautomation.restfulbooker.load.History.Op;
+import nz.co.sundar.testautomation.restfulbooker.pojo.Booking;
+import nz.co.sundar.testautomation.restfulbooker.pojo.BookingDates;
+import nz.co.sundar.testautomation.restfulbooker.standin.LatencyDistribution;
+import nz.co.sundar.testautomation.restfulbooker.utils.ConfigReader;
+import nz.co.sundar.testautomation.restfulbooker.utils.DecodedResponse;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.SplittableRandom;
+
+/**
+ * Looks for lost updates and stale reads: workers update, read and delete a small shared set of bookings at once,
+ * recording a {@link History} of every operation for {@link LinearizabilityChecker} to check.
+ * <p>
+ * Each update writes a value no other update writes, {@code p<worker>-<sequence>}, to {@code additionalneeds}, and
+ * each read returns the value it found there. Responses are recorded as:
+ * <ul>
+ *   <li>a {@code 2xx} update or delete as a write or delete, and a {@code 200} read as a read of its value</li>
+ *   <li>a {@code 404} or {@code 405} to anything as a read finding the booking deleted</li>
+ *   <li>an update or delete with a {@code 5xx} or no response as a write or delete of unknown outcome</li>
+ *   <li>anything else, such as a {@code 403}, not at all, as it changed and showed nothing</li>
+ * </ul>
+ * With few bookings and many workers, most operations overlap others on the same booking.
+ */
+public class ConsistencyRun {
+
+    private static final Logger logger = LogManager.getLogger(ConsistencyRun.class);
+
+    private final BookingClient client;
+    private final int keys;
+    private final int workers;
+    private final long durationNanos;
+    private final double readWeight;
+    private final double updateWeight;
+    private final double deleteWeight;
+    private final long seed;
+
+    /**
+     * @param client        sends the requests
+     * @param keys          how many bookings the workers share
+     * @param workers       how many workers send at once
+     * @param durationNanos how long the workers run
+     * @param readWeight    relative share of reads
+     * @param updateWeight  relative share of updates
+     * @param deleteWeight  relative share of deletes; a deleted booking stays in the set, so later operations on it
+     *                      check that it stays deleted
+     * @param seed          seeds each worker's choices
+     */
+    public ConsistencyRun(BookingClient client, int keys, int workers, long durationNanos, double readWeight,
+                          double updateWeight, double deleteWeight, long seed) {
+        if (keys < 1 || workers < 1 || readWeight < 0 || updateWeight < 0 || deleteWeight < 0
+                || readWeight + updateWeight + deleteWeight <= 0) {
+            throw new IllegalArgumentException("A consistency run needs at least one booking and worker, and"
+                    + " non-negative weights that are not all 0");
+        }
+        this.client = client;
+        this.keys = keys;
+        this.workers = workers;
+        this.durationNanos = durationNanos;
+        this.readWeight = readWeight;
+        this.updateWeight = updateWeight;
+        this.deleteWeight = deleteWeight;
+        this.seed = seed;
+    }
+
+    /**
+     * Builds a run from the {@code consistency.*} properties.
+     *
+     * @param client sends the requests
+     */
+    public static ConsistencyRun fromConfig(BookingClient client) {
+        return new ConsistencyRun(client,
+                Integer.parseInt(ConfigReader.getProperty("consistency.keys", "5")),
+                Integer.parseInt(ConfigReader.getProperty("consistency.workers", "8")),
+                LatencyDistribution.parseDuration(ConfigReader.getProperty("consistency.duration", "30s")),
+                Double.parseDouble(ConfigReader.getProperty("consistency.readWeight", "6")),
+                Double.parseDouble(ConfigReader.getProperty("consistency.updateWeight", "3")),
+                Double.parseDouble(ConfigReader.getProperty("consistency.deleteWeight", "0.01")),
+                Long.parseLong(ConfigReader.getProperty("consistency.seed", "1")));
+    }
+
+    /**
+     * Runs against the configured {@code baseURI} through {@code BookingUtils}, checks the history and logs the
+     * result, and writes the history to {@code consistency.historyFile} if it is set.
+     */
+    public static void main(String[] args) throws InterruptedException, IOException {
+        RestAssured.baseURI = ConfigReader.getProperty("baseURI");
+        RestAssuredFilters.install();
+        History history = fromConfig(new BookingUtilsClient()).run();
+        String file = ConfigReader.getProperty("consistency.historyFile", "");
+        if (!file.isBlank()) {
+            history.writeTo(Path.of(file));
+            logger.info("Wrote {} operations to {}", history.size(), file);
+        }
+        logger.info("{}", new LinearizabilityChecker(20).check(history).getSummary());
+    }
+
+    /**
+     * Creates the bookings, then runs the workers until the duration is up.
+     *
+     * @return the history; the creates are the writes of process {@code workers}
+     * @throws IllegalStateException if a booking cannot be created
+     * @throws InterruptedException  if the calling thread is interrupted while the workers run
+     */
+    public History run() throws InterruptedException {
+        History history = new History(workers + 1);
+        int[] ids = new int[keys];
+        for (int k = 0; k < keys; k++) {
+            String value = "create-" + k;
+            long invoke = System.nanoTime();
+            DecodedResponse response = client.createBooking(booking(value));
+            long complete = System.nanoTime();
+            if (response.getStatusCode() != 200) {
+                throw new IllegalStateException("Could not create a booking to check: " + response.getStatusCode());
+            }
+            ids[k] = Integer.parseInt(response.getString("bookingid"));
+            history.record(new Op(workers, ids[k], Kind.WRITE, value, invoke, complete));
+        }
+
+        long deadline = System.nanoTime() + durationNanos;
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < workers; w++) {
+            int process = w;
+            Thread thread = new Thread(() -> work(process, ids, deadline, history), "consistency-" + w);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } finally {
+            threads.forEach(Thread::interrupt);
+        }
+        logger.info("Recorded {} operations on {} bookings from {} workers", history.size(), keys, workers);
+        return history;
+    }
+
+    private void work(int process, int[] ids, long deadline, History history) {
+        SplittableRandom random = new SplittableRandom(seed + process);
+        double total = readWeight + updateWeight + deleteWeight;
+        long sequence = 0;
+        while (System.nanoTime() < deadline && !Thread.currentThread().isInterrupted()) {
+            int id = ids[random.nextInt(ids.length)];
+            double choice = random.nextDouble() * total;
+            Kind kind = choice < readWeight ? Kind.READ : choice < readWeight + updateWeight ? Kind.WRITE : Kind.DELETE;
+            String value = kind == Kind.WRITE ? "p" + process + "-" + sequence++ : null;
+
+            long invoke = System.nanoTime();
+            DecodedResponse response = null;
+            try {
+                response = switch (kind) {
+                    case READ -> client.getBooking(id);
+                    case WRITE -> client.updateBooking(id, booking(value));
+                    case DELETE -> client.deleteBooking(id);
+                };
+            } catch (RuntimeException e) {
+                logger.debug("{} of booking {} failed: {}", kind, id, e.toString());
+            }
+            long complete = System.nanoTime();
+            int status = response == null ? OperationStats.NO_RESPONSE : response.getStatusCode();
+            Op op = toOp(process, id, kind, value, invoke, complete, status, response);
+            if (op != null) {
+                history.record(op);
+            }
+        }
+    }
+
+    private static Op toOp(int process, int id, Kind kind, String value, long invoke, long complete, int status,
+                           DecodedResponse response) {
+        if (status == 404 || status == 405) {
+            return new Op(process, id, Kind.READ, null, invoke, complete);
+        }
+        if (status >= 200 && status <= 299) {
+            return kind == Kind.READ
+                    // A booking without the field reads as "", which no update writes.
+                    ? new Op(process, id, Kind.READ, Objects.toString(response.getString("additionalneeds"), ""),
+                            invoke, complete)
+                    : new Op(process, id, kind, value, invoke, complete);
+        }
+        if (kind != Kind.READ && (status == OperationStats.NO_RESPONSE || status >= 500)) {
+            return new Op(process, id, kind, value, invoke, History.UNKNOWN);
+        }
+        return null;
+    }
+
+    private static Booking booking(String additionalneeds) {
+        return new Booking("Consistency", "Check", 100, true, new BookingDates("2026-01-01", "2026-01-02"),
+                additionalneeds);
+    }
+}
@@ -0,0 +1,101 @@
+package nz.co.sundar.testautomation.restfulbooker.load;
+
+import io.restassured.http.ContentType;
+import io.restassured.response.Response;
+import io.restassured.specification.RequestSpecification;
+import nz.co.sundar.testautomation.restfulbooker.payloads.BookingPayloads;
+import nz.co.sundar.testautomation.restfulbooker.pojo.Booking;
+import nz.co.sundar.testautomation.restfulbooker.utils.DecodedResponse;
+import nz.co.sundar.testautomation.restfulbooker.utils.TokenPool;
+import nz.co.sundar.testautomation.restfulbooker.utils.TokenPool.Assignment;
+import nz.co.sundar.testautomation.restfulbooker.utils.TokenPool.Credentials;
+
+import java.util.List;
+
+import static io.restassured.RestAssured.given;
+
+/**
+ * Sends load straight to a base URI, without {@code BookingUtils}' retries, hedging or cache, so that every
+ * operation is exactly one request. Used to load a stand-in or another host than the configured one.
+ * <p>
+ * Writes take a token from the client's own {@link TokenPool}; a {@code 403} drops it, and the next write fetches
+ * a new one.
+ */
+public class DirectBookingClient implements BookingClient {
+
+    private final String baseUri;
+    private final Credentials credentials;
+    private final TokenPool tokenPool;
+
+    /**
+     * @param baseUri     e.g. {@code http://localhost:3001}
+     * @param credentials the account used for {@code /auth} and writes
+     */
+    public DirectBookingClient(String baseUri, Credentials credentials) {
+        this.baseUri = baseUri;
+        this.credentials = credentials;
+        this.tokenPool = new TokenPool(List.of(credentials), Assignment.ROUND_ROBIN, 0, (username, password) -> {
+            DecodedResponse response = authenticate();
+            String token = response.statusCode() == 200 ? response.getString("token") : null;
+            if (token == null) {
+                throw new IllegalStateException("Failed to generate token for " + username + " at " + baseUri);
+            }
+            return token;
+        });
+    }
+
+    private RequestSpecification request() {
+        return given().baseUri(baseUri).contentType(ContentType.JSON);
+    }
+
+    private static String payload(Booking booking) {
+        return BookingPayloads.createBookingPayload(booking.getFirstname(), booking.getLastname(),
+                booking.getTotalprice(), booking.isDepositpaid(), booking.getBookingdates().getCheckin(),
+                booking.getBookingdates().getCheckout(), booking.getAdditionalneeds());
+    }
+
+    private DecodedResponse withToken(Response response) {
+        if (response.statusCode() == 403) {
+            tokenPool.invalidateLastToken();
+        }
+        return new DecodedResponse(response);
+    }
+
+    @Override
+    public DecodedResponse createBooking(Booking booking) {
+        return new DecodedResponse(request().body(payload(booking)).post("/booking"));
+    }
+
+    @Override
+    public DecodedResponse getBooking(int bookingId) {
+        return new DecodedResponse(request().get("/booking/" + bookingId));
+    }
+
+    @Override
+    public DecodedResponse updateBooking(int bookingId, Booking booking) {
+        return withToken(request().cookie("token", tokenPool.getToken()).body(payload(booking))
+                .put("/booking/" + bookingId));
+    }
+
+    @Override
+    public DecodedResponse deleteBooking(int bookingId) {
+        return withToken(request().cookie("token", tokenPool.getToken()).delete("/booking/" + bookingId));
+    }
+
+    @Override
+    public DecodedResponse listBookings() {
+        return new DecodedResponse(request().get("/booking"));
+    }
+
+    @Override
+    public DecodedResponse authenticate() {
+        return new DecodedResponse(request()
+                .body(String.format("{\"username\":\"%s\",\"password\":\"%s\"}",
+                        credentials.username(), credentials.password()))
+                .post("/auth"));
+    }
+
+    public String getBaseUri() {
+        return baseUri;
+    }
+}
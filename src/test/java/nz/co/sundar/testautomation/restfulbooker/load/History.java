@@ -0,0 +1,176 @@
+package nz.co.sundar.testautomation.restfulbooker.load;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The operations a {@link ConsistencyRun} made on a set of bookings, each with when it was sent and when it was
+ * answered, for {@link LinearizabilityChecker} to check.
+ * <p>
+ * Every booking is a register holding the value of one field: an update writes it, a read returns it, and a delete
+ * writes the booking's absence, after which nothing else may be written. Every write must write a value no other
+ * write of the same booking writes.
+ * <p>
+ * Each process records from one thread into its own list, so recording never contends; the lists may be read once
+ * the processes have finished.
+ */
+public class History {
+
+    /**
+     * The completion time of an operation whose outcome is unknown, such as a write that timed out: it may have
+     * taken effect at any time after it was sent, or not at all.
+     */
+    public static final long UNKNOWN = Long.MAX_VALUE;
+
+    public enum Kind {
+        /** Wrote {@link Op#value()}; the create that set a booking's first value is a write too. */
+        WRITE,
+        /** Returned {@link Op#value()}, or {@code null} if the booking did not exist. */
+        READ,
+        /** Deleted the booking. */
+        DELETE
+    }
+
+    /**
+     * One operation.
+     *
+     * @param process       the worker that made it
+     * @param key           the booking id
+     * @param kind          what it did
+     * @param value         the value written or read; {@code null} for deletes and reads of a deleted booking
+     * @param invokeNanos   when it was sent, from {@link System#nanoTime()}
+     * @param completeNanos when its answer arrived, or {@link #UNKNOWN}
+     */
+    public record Op(int process, int key, Kind kind, String value, long invokeNanos, long completeNanos) {
+
+        public Op {
+            if (kind == Kind.WRITE ? value == null || value.isEmpty() : kind == Kind.DELETE && value != null) {
+                throw new IllegalArgumentException("A write needs a value and a delete has none: " + kind);
+            }
+            if (value != null && (value.indexOf('\t') >= 0 || value.indexOf('\n') >= 0)) {
+                throw new IllegalArgumentException("Values may not contain tabs or line breaks: " + value);
+            }
+            if (completeNanos < invokeNanos) {
+                throw new IllegalArgumentException("An operation cannot complete before it was sent");
+            }
+        }
+
+        public boolean isUnknown() {
+            return completeNanos == UNKNOWN;
+        }
+
+        /**
+         * @param originNanos the time shown as 0
+         * @return e.g. {@code p3 write 12 = p3-41 [1.204ms, 1.530ms]}
+         */
+        public String format(long originNanos) {
+            String what = switch (kind) {
+                case WRITE -> "write " + key + " = " + value;
+                case READ -> "read " + key + " -> " + (value == null ? "(deleted)" : value);
+                case DELETE -> "delete " + key;
+            };
+            return String.format("p%d %s [%.3fms, %s]", process, what, (invokeNanos - originNanos) / 1e6,
+                    isUnknown() ? "unknown" : String.format("%.3fms", (completeNanos - originNanos) / 1e6));
+        }
+    }
+
+    private final List<List<Op>> processes = new ArrayList<>();
+
+    /**
+     * @param processes how many processes record into this history
+     */
+    public History(int processes) {
+        for (int i = 0; i < processes; i++) {
+            this.processes.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Records an operation of {@code op.process()}. Only that process's thread may call this.
+     */
+    public void record(Op op) {
+        processes.get(op.process()).add(op);
+    }
+
+    public int getProcesses() {
+        return processes.size();
+    }
+
+    /**
+     * @return the number of operations recorded
+     */
+    public int size() {
+        return processes.stream().mapToInt(List::size).sum();
+    }
+
+    /**
+     * @return every process's operations, one process after another
+     */
+    public List<Op> getOps() {
+        List<Op> ops = new ArrayList<>(size());
+        processes.forEach(ops::addAll);
+        return ops;
+    }
+
+    /**
+     * Writes the history as text, one tab-separated operation per line, for {@link LinearizabilityChecker#main}
+     * to check later.
+     */
+    public void writeTo(Path file) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("# process\tkey\tkind\tvalue\tinvokeNanos\tcompleteNanos");
+            out.newLine();
+            for (List<Op> ops : processes) {
+                for (Op op : ops) {
+                    out.write(op.process() + "\t" + op.key() + "\t" + op.kind() + "\t"
+                            + (op.value() == null ? "" : op.value()) + "\t" + op.invokeNanos() + "\t"
+                            + (op.isUnknown() ? "unknown" : String.valueOf(op.completeNanos())));
+                    out.newLine();
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a history written by {@link #writeTo(Path)}.
+     *
+     * @throws IllegalArgumentException if a line is malformed
+     */
+    public static History read(Path file) throws IOException {
+        List<Op> ops = new ArrayList<>();
+        int processes = 0;
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int number = 0;
+            while ((line = in.readLine()) != null) {
+                number++;
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\t", -1);
+                if (fields.length != 6) {
+                    throw new IllegalArgumentException(file + " line " + number + ": expected 6 fields");
+                }
+                try {
+                    Op op = new Op(Integer.parseInt(fields[0]), Integer.parseInt(fields[1]),
+                            Kind.valueOf(fields[2]), fields[3].isEmpty() ? null : fields[3],
+                            Long.parseLong(fields[4]),
+                            fields[5].equals("unknown") ? UNKNOWN : Long.parseLong(fields[5]));
+                    ops.add(op);
+                    processes = Math.max(processes, op.process() + 1);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException(file + " line " + number + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        History history = new History(processes);
+        ops.forEach(history::record);
+        return history;
+    }
+}
@@ -0,0 +1,195 @@
+package nz.co.sundar.testautomation.restfulbooker.load;
+
+import java.util.random.RandomGenerator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * How a load run chooses which live booking a read, update or delete targets.
+ * <p>
+ * A distribution picks a rank in the {@link LiveIdSet}, where rank 0 is the oldest live booking. Production
+ * traffic is skewed, and uniform choices never make concurrent writers meet on the same booking, so
+ * {@link #parse(String)} accepts these forms for {@code keys} in a workload file:
+ * <ul>
+ *   <li>{@code uniform} - every live booking equally</li>
+ *   <li>{@code zipfian(0.99)} - the booking at rank {@code r} with probability proportional to
+ *       {@code 1 / (r + 1)^exponent}, so the oldest bookings are the hot ones</li>
+ *   <li>{@code hotspot(0.01,0.9)} - 90% of picks go to the oldest 1% of bookings, the rest spread evenly over the
+ *       others</li>
+ *   <li>{@code latest(0.99)} - Zipfian by recency, so the newest bookings are the hot ones</li>
+ * </ul>
+ * The hot set follows the live set: as bookings are created and deleted, the ranks move with them.
+ */
+public abstract class KeyDistribution {
+
+    private static final KeyDistribution UNIFORM = new KeyDistribution("uniform") {
+        @Override
+        public int pickRank(int size, RandomGenerator random) {
+            return random.nextInt(size);
+        }
+    };
+
+    private final String spec;
+
+    private KeyDistribution(String spec) {
+        this.spec = spec;
+    }
+
+    /**
+     * @param size   the number of live bookings, at least 1
+     * @param random the worker's source of randomness
+     * @return a rank from 0 to {@code size - 1}
+     */
+    public abstract int pickRank(int size, RandomGenerator random);
+
+    public static KeyDistribution uniform() {
+        return UNIFORM;
+    }
+
+    /**
+     * @param exponent how skewed the picks are, above 0; YCSB uses {@code 0.99}
+     */
+    public static KeyDistribution zipfian(double exponent) {
+        ZipfianSampler sampler = new ZipfianSampler(exponent);
+        return new KeyDistribution("zipfian(" + exponent + ")") {
+            @Override
+            public int pickRank(int size, RandomGenerator random) {
+                return sampler.sample(size, random) - 1;
+            }
+        };
+    }
+
+    /**
+     * @param exponent how skewed the picks are towards the newest bookings, above 0
+     */
+    public static KeyDistribution latest(double exponent) {
+        ZipfianSampler sampler = new ZipfianSampler(exponent);
+        return new KeyDistribution("latest(" + exponent + ")") {
+            @Override
+            public int pickRank(int size, RandomGenerator random) {
+                return size - sampler.sample(size, random);
+            }
+        };
+    }
+
+    /**
+     * @param hotFraction          the share of bookings that are hot, e.g. {@code 0.01}; at least one booking is
+     * @param hotOperationFraction the share of picks that go to a hot booking, e.g. {@code 0.9}
+     */
+    public static KeyDistribution hotspot(double hotFraction, double hotOperationFraction) {
+        if (hotFraction <= 0 || hotFraction > 1 || hotOperationFraction < 0 || hotOperationFraction > 1) {
+            throw new IllegalArgumentException("Hotspot fractions must be in (0, 1] and [0, 1]");
+        }
+        return new KeyDistribution("hotspot(" + hotFraction + "," + hotOperationFraction + ")") {
+            @Override
+            public int pickRank(int size, RandomGenerator random) {
+                int hot = Math.max(1, (int) Math.ceil(size * hotFraction));
+                if (hot >= size || random.nextDouble() < hotOperationFraction) {
+                    return random.nextInt(Math.min(hot, size));
+                }
+                return random.nextInt(hot, size);
+            }
+        };
+    }
+
+    /**
+     * Parses a distribution from its workload file form, see the class description.
+     *
+     * @throws IllegalArgumentException if the form is not recognised
+     */
+    public static KeyDistribution parse(String spec) {
+        Matcher matcher = Pattern.compile("(\\w+)(?:\\((.*)\\))?").matcher(spec.trim());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Unrecognised key distribution: " + spec);
+        }
+        String[] args = matcher.group(2) == null || matcher.group(2).isBlank()
+                ? new String[0] : matcher.group(2).split(",");
+        switch (matcher.group(1).toLowerCase()) {
+            case "uniform":
+                requireArgs(spec, args, 0);
+                return uniform();
+            case "zipfian":
+                requireArgs(spec, args, 1);
+                return zipfian(Double.parseDouble(args[0].trim()));
+            case "latest":
+                requireArgs(spec, args, 1);
+                return latest(Double.parseDouble(args[0].trim()));
+            case "hotspot":
+                requireArgs(spec, args, 2);
+                return hotspot(Double.parseDouble(args[0].trim()), Double.parseDouble(args[1].trim()));
+            default:
+                throw new IllegalArgumentException("Unrecognised key distribution: " + spec);
+        }
+    }
+
+    private static void requireArgs(String spec, String[] args, int count) {
+        if (args.length != count) {
+            throw new IllegalArgumentException("Expected " + count + " arguments: " + spec);
+        }
+    }
+
+    /**
+     * @return the distribution in its workload file form, e.g. {@code zipfian(0.99)}
+     */
+    @Override
+    public String toString() {
+        return spec;
+    }
+
+    /**
+     * Draws Zipf-distributed integers from 1 to n by rejection-inversion (Hormann and Derflinger, 1996), which
+     * needs no table or harmonic sum, so n can change with every call at no cost.
+     */
+    private static final class ZipfianSampler {
+
+        private final double exponent;
+
+        ZipfianSampler(double exponent) {
+            if (!(exponent > 0)) {
+                throw new IllegalArgumentException("Zipfian exponent must be above 0");
+            }
+            this.exponent = exponent;
+        }
+
+        int sample(int n, RandomGenerator random) {
+            if (n <= 1) {
+                return 1;
+            }
+            double hIntegralX1 = hIntegral(1.5) - 1;
+            double hIntegralN = hIntegral(n + 0.5);
+            double squeeze = 2 - hIntegralInverse(hIntegral(2.5) - h(2));
+            while (true) {
+                double u = hIntegralN + random.nextDouble() * (hIntegralX1 - hIntegralN);
+                double x = hIntegralInverse(u);
+                int k = (int) Math.max(1, Math.min(n, (long) (x + 0.5)));
+                if (k - x <= squeeze || u >= hIntegral(k + 0.5) - h(k)) {
+                    return k;
+                }
+            }
+        }
+
+        private double h(double x) {
+            return Math.exp(-exponent * Math.log(x));
+        }
+
+        private double hIntegral(double x) {
+            double logX = Math.log(x);
+            return helper2((1 - exponent) * logX) * logX;
+        }
+
+        private double hIntegralInverse(double x) {
+            double t = Math.max(-1, x * (1 - exponent));
+            return Math.exp(helper1(t) * x);
+        }
+
+        /** {@code log(1 + x) / x}, accurate near 0. */
+        private static double helper1(double x) {
+            return Math.abs(x) > 1e-8 ? Math.log1p(x) / x : 1 - x * (0.5 - x * (1.0 / 3 - 0.25 * x));
+        }
+
+        /** {@code (exp(x) - 1) / x}, accurate near 0. */
+        private static double helper2(double x) {
+            return Math.abs(x) > 1e-8 ? Math.expm1(x) / x : 1 + x * 0.5 * (1 + x / 3 * (1 + 0.25 * x));
+        }
+    }
+}
@@ -0,0 +1,476 @@
+package nz.co.sundar.testautomation.restfulbooker.load;
+
+import nz.co.sundar.testautomation.restfulbooker.load.History.Kind;
+import nz.co.sundar.testautomation.restfulbooker.load.History.Op;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Checks that a {@link History} is linearizable for every booking on its own: that each operation can be given a
+ * single instant between when it was sent and when it was answered such that, in that order, every read returns
+ * the value of the write before it, and nothing is written or read after the booking is deleted.
+ * <p>
+ * Checking linearizability is NP-complete in general, but not for a register whose writes all write different
+ * values (Gibbons and Korach, 1997). Each value's write and the reads that returned it form a cluster, and the
+ * cluster's zone runs from the earliest answer among its operations to the latest send. If the earliest answer
+ * came first the zone is forward: the value must have been held for at least all of it. Otherwise it is backward,
+ * and the value may have been held for an instant within it. The history is linearizable if and only if every read
+ * returns a written value, no read is answered before its write was sent, no two forward zones overlap, no backward
+ * zone lies within a forward one, and, for the booking's absence, no other value's operation was sent after an
+ * operation on the deleted booking was answered. Sorting the zones makes the check {@code O(n log n)}, so histories
+ * of millions of operations take seconds.
+ * <p>
+ * Every anomaly found is counted. The first ones come with a counterexample: the few operations involved, shrunk
+ * until removing any one of them would make what is left linearizable, checked by exhaustive search.
+ */
+public class LinearizabilityChecker {
+
+    private static final Logger logger = LogManager.getLogger(LinearizabilityChecker.class);
+
+    /** The most operations {@link #isLinearizable(List)} searches, per booking. */
+    public static final int MAX_SEARCH_OPS = 24;
+
+    public enum AnomalyType {
+        /** A read returned a value no write wrote, or found a booking deleted that nothing deleted. */
+        PHANTOM_READ,
+        /** A read was answered before the write of the value it returned was sent. */
+        READ_BEFORE_WRITE,
+        /** Each of two values was seen after the other: the operations disagree on the order of two writes. */
+        CONFLICTING_ORDER,
+        /** A value was read after a write of another value had been sent and answered since it was first seen. */
+        STALE_READ,
+        /** A booking was written or read after an operation had found it deleted. */
+        SEEN_AFTER_DELETE,
+        /** Two deletes of one booking both succeeded. */
+        DOUBLE_DELETE
+    }
+
+    /**
+     * One anomaly.
+     *
+     * @param key            the booking id
+     * @param type           what went wrong
+     * @param counterexample operations that on their own are not linearizable, earliest sent first
+     */
+    public record Anomaly(int key, AnomalyType type, List<Op> counterexample) {
+
+        /**
+         * @param originNanos the time shown as 0
+         */
+        public String format(long originNanos) {
+            StringBuilder text = new StringBuilder(type + " on booking " + key + ":");
+            for (Op op : counterexample) {
+                text.append(System.lineSeparator()).append("    ").append(op.format(originNanos));
+            }
+            return text.toString();
+        }
+    }
+
+    /**
+     * What a check found.
+     */
+    public static final class Report {
+
+        private final Map<AnomalyType, Long> counts = new EnumMap<>(AnomalyType.class);
+        private final List<Anomaly> anomalies = new ArrayList<>();
+        private long ops;
+        private int keys;
+        private long originNanos = Long.MAX_VALUE;
+        private long elapsedNanos;
+
+        /**
+         * @return whether every booking's history is linearizable
+         */
+        public boolean isLinearizable() {
+            return counts.isEmpty();
+        }
+
+        public long getOps() {
+            return ops;
+        }
+
+        public int getKeys() {
+            return keys;
+        }
+
+        /**
+         * @return how many anomalies of each type were found
+         */
+        public Map<AnomalyType, Long> getCounts() {
+            return counts;
+        }
+
+        public long getCount(AnomalyType type) {
+            return counts.getOrDefault(type, 0L);
+        }
+
+        /**
+         * @return the anomalies with counterexamples, up to the checker's limit
+         */
+        public List<Anomaly> getAnomalies() {
+            return anomalies;
+        }
+
+        /**
+         * @return how long the check took
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public String getSummary() {
+            StringBuilder summary = new StringBuilder(String.format("Checked %d operations on %d bookings in %.0fms: ",
+                    ops, keys, elapsedNanos / 1e6));
+            if (isLinearizable()) {
+                return summary.append("linearizable").toString();
+            }
+            summary.append("NOT linearizable,");
+            counts.forEach((type, count) -> summary.append(' ').append(count).append(' ').append(type));
+            for (Anomaly anomaly : anomalies) {
+                summary.append(System.lineSeparator()).append("  ").append(anomaly.format(originNanos));
+            }
+            return summary.toString();
+        }
+    }
+
+    /**
+     * A value's write and the reads that returned it, and its zone.
+     */
+    private static final class Cluster {
+
+        private Op write;
+        private final List<Op> reads = new ArrayList<>();
+        /** The operation answered first, and the one sent last. */
+        private Op lowOp;
+        private Op highOp;
+
+        long low() {
+            return lowOp.completeNanos();
+        }
+
+        long high() {
+            return highOp.invokeNanos();
+        }
+
+        boolean isForward() {
+            return low() < high();
+        }
+
+        void computeZone() {
+            lowOp = write;
+            highOp = write;
+            for (Op read : reads) {
+                if (read.completeNanos() < lowOp.completeNanos()) {
+                    lowOp = read;
+                }
+                if (read.invokeNanos() > highOp.invokeNanos()) {
+                    highOp = read;
+                }
+            }
+        }
+
+        List<Op> zoneOps() {
+            return List.of(write, lowOp, highOp);
+        }
+    }
+
+    private final int maxCounterexamples;
+
+    /**
+     * @param maxCounterexamples how many anomalies to keep with counterexamples; all of them are counted
+     */
+    public LinearizabilityChecker(int maxCounterexamples) {
+        this.maxCounterexamples = maxCounterexamples;
+    }
+
+    /**
+     * Checks a history written by {@link History#writeTo(Path)}, given as the first argument, and logs the result.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: LinearizabilityChecker <history file>");
+            System.exit(2);
+        }
+        History history = History.read(Path.of(args[0]));
+        logger.info("{}", new LinearizabilityChecker(20).check(history).getSummary());
+    }
+
+    public Report check(History history) {
+        return check(history.getOps());
+    }
+
+    /**
+     * @throws IllegalArgumentException if two writes of one booking write the same value
+     */
+    public Report check(List<Op> ops) {
+        long start = System.nanoTime();
+        Report report = new Report();
+        report.ops = ops.size();
+        Op[] sorted = ops.toArray(new Op[0]);
+        Arrays.sort(sorted, Comparator.comparingInt(Op::key).thenComparingLong(Op::invokeNanos));
+        for (Op op : sorted) {
+            report.originNanos = Math.min(report.originNanos, op.invokeNanos());
+        }
+        List<Op> all = Arrays.asList(sorted);
+        int from = 0;
+        while (from < sorted.length) {
+            int to = from;
+            while (to < sorted.length && sorted[to].key() == sorted[from].key()) {
+                to++;
+            }
+            checkKey(sorted[from].key(), all.subList(from, to), report);
+            report.keys++;
+            from = to;
+        }
+        report.elapsedNanos = System.nanoTime() - start;
+        return report;
+    }
+
+    private void checkKey(int key, List<Op> ops, Report report) {
+        Map<String, Cluster> clusters = new HashMap<>();
+        Cluster absent = new Cluster();
+        List<Op> deletes = new ArrayList<>();
+        Op unknownDelete = null;
+        for (Op op : ops) {
+            switch (op.kind()) {
+                case WRITE -> {
+                    Cluster cluster = clusters.computeIfAbsent(op.value(), v -> new Cluster());
+                    if (cluster.write != null) {
+                        throw new IllegalArgumentException("Booking " + key + " has two writes of " + op.value()
+                                + "; every write must write a different value");
+                    }
+                    cluster.write = op;
+                }
+                case READ -> (op.value() == null ? absent
+                        : clusters.computeIfAbsent(op.value(), v -> new Cluster())).reads.add(op);
+                case DELETE -> {
+                    if (!op.isUnknown()) {
+                        deletes.add(op);
+                    } else if (unknownDelete == null) {
+                        // Ops are sorted by send time, and the earliest sent is the one that fits most histories.
+                        unknownDelete = op;
+                    }
+                }
+            }
+        }
+        if (deletes.size() > 1) {
+            report(report, key, AnomalyType.DOUBLE_DELETE, List.of(deletes.get(0), deletes.get(1)));
+        }
+        absent.write = !deletes.isEmpty() ? deletes.get(0) : absent.reads.isEmpty() ? null : unknownDelete;
+
+        List<Cluster> values = new ArrayList<>();
+        for (Cluster cluster : clusters.values()) {
+            if (checkCluster(key, cluster, report)) {
+                values.add(cluster);
+            }
+        }
+        if (checkCluster(key, absent, report)) {
+            // The absence is the last value: nothing may be sent after an operation on the deleted booking answers.
+            for (Cluster cluster : values) {
+                if (cluster.high() > absent.low()) {
+                    report(report, key, AnomalyType.SEEN_AFTER_DELETE, concat(cluster.zoneOps(), absent.zoneOps()));
+                }
+            }
+        }
+
+        List<Cluster> forward = new ArrayList<>();
+        for (Cluster cluster : values) {
+            if (cluster.isForward()) {
+                forward.add(cluster);
+            }
+        }
+        forward.sort(Comparator.comparingLong(Cluster::low));
+        // Each forward zone against the one that reaches furthest of those that start before it.
+        Cluster[] reach = new Cluster[forward.size()];
+        for (int i = 0; i < forward.size(); i++) {
+            Cluster zone = forward.get(i);
+            if (i > 0 && zone.low() < reach[i - 1].high()) {
+                report(report, key, AnomalyType.CONFLICTING_ORDER, concat(reach[i - 1].zoneOps(), zone.zoneOps()));
+            }
+            reach[i] = i > 0 && reach[i - 1].high() >= zone.high() ? reach[i - 1] : zone;
+        }
+        for (Cluster cluster : values) {
+            if (cluster.isForward()) {
+                continue;
+            }
+            // The backward zone is [high, low]: find the furthest-reaching forward zone starting before it.
+            int lo = 0;
+            int hi = forward.size();
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (forward.get(mid).low() < cluster.high()) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            if (lo > 0 && reach[lo - 1].high() > cluster.low()) {
+                report(report, key, AnomalyType.STALE_READ, concat(reach[lo - 1].zoneOps(), cluster.zoneOps()));
+            }
+        }
+    }
+
+    /**
+     * Checks what can be checked within one cluster and computes its zone.
+     *
+     * @return whether the cluster takes part in the zone checks
+     */
+    private boolean checkCluster(int key, Cluster cluster, Report report) {
+        if (cluster.write == null) {
+            if (!cluster.reads.isEmpty()) {
+                report(report, key, AnomalyType.PHANTOM_READ, List.of(cluster.reads.get(0)));
+            }
+            return false;
+        }
+        if (cluster.write.isUnknown() && cluster.reads.isEmpty()) {
+            // A write that timed out and was never seen need not have happened.
+            return false;
+        }
+        for (Op read : cluster.reads) {
+            if (read.completeNanos() < cluster.write.invokeNanos()) {
+                report(report, key, AnomalyType.READ_BEFORE_WRITE, List.of(cluster.write, read));
+            }
+        }
+        cluster.computeZone();
+        return true;
+    }
+
+    private static List<Op> concat(List<Op> first, List<Op> second) {
+        List<Op> ops = new ArrayList<>(first);
+        ops.addAll(second);
+        return ops;
+    }
+
+    private void report(Report report, int key, AnomalyType type, List<Op> candidate) {
+        report.counts.merge(type, 1L, Long::sum);
+        if (report.anomalies.size() < maxCounterexamples) {
+            List<Op> counterexample = shrink(new ArrayList<>(new LinkedHashSet<>(candidate)));
+            counterexample.sort(Comparator.comparingLong(Op::invokeNanos));
+            report.anomalies.add(new Anomaly(key, type, counterexample));
+        }
+    }
+
+    /**
+     * Drops operations from a non-linearizable set while it stays non-linearizable and every read keeps the write
+     * of its value, so that the counterexample shows the anomaly rather than a read of nothing.
+     */
+    static List<Op> shrink(List<Op> ops) {
+        if (ops.size() > MAX_SEARCH_OPS || isLinearizable(ops)) {
+            return ops;
+        }
+        for (int i = ops.size() - 1; i >= 0; i--) {
+            List<Op> without = new ArrayList<>(ops);
+            without.remove(i);
+            if (!without.isEmpty() && writesPresent(without) && !isLinearizable(without)) {
+                ops = without;
+            }
+        }
+        return ops;
+    }
+
+    private static boolean writesPresent(Collection<Op> ops) {
+        Set<String> written = new HashSet<>();
+        boolean deleted = false;
+        for (Op op : ops) {
+            if (op.kind() == Kind.WRITE) {
+                written.add(op.value());
+            }
+            deleted |= op.kind() == Kind.DELETE;
+        }
+        for (Op op : ops) {
+            if (op.kind() == Kind.READ && (op.value() == null ? !deleted : !written.contains(op.value()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decides linearizability by trying every order, with operations of unknown outcome allowed not to happen.
+     * The search is exponential, so each booking may have at most {@link #MAX_SEARCH_OPS} operations: it is for
+     * counterexamples and for testing {@link #check(List)} against.
+     *
+     * @throws IllegalArgumentException if a booking has too many operations
+     */
+    public static boolean isLinearizable(List<Op> ops) {
+        Map<Integer, List<Op>> byKey = new HashMap<>();
+        for (Op op : ops) {
+            byKey.computeIfAbsent(op.key(), k -> new ArrayList<>()).add(op);
+        }
+        for (List<Op> keyOps : byKey.values()) {
+            if (keyOps.size() > MAX_SEARCH_OPS) {
+                throw new IllegalArgumentException("Too many operations to search: " + keyOps.size());
+            }
+            if (!search(keyOps.toArray(new Op[0]), 0, NO_VALUE, new HashSet<>())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** States of the register during the search: before any write, and deleted; otherwise the writing op's index. */
+    private static final int NO_VALUE = -1;
+    private static final int DELETED = -2;
+
+    private static boolean search(Op[] ops, int done, int state, Set<Long> failed) {
+        if (done == (1 << ops.length) - 1) {
+            return true;
+        }
+        long memo = ((long) done << 6) | (state + 2);
+        if (failed.contains(memo)) {
+            return false;
+        }
+        // Only an operation sent before every remaining operation was answered may go next.
+        long firstAnswer = Long.MAX_VALUE;
+        for (int i = 0; i < ops.length; i++) {
+            if ((done & (1 << i)) == 0) {
+                firstAnswer = Math.min(firstAnswer, ops[i].completeNanos());
+            }
+        }
+        for (int i = 0; i < ops.length; i++) {
+            Op op = ops[i];
+            if ((done & (1 << i)) != 0 || op.invokeNanos() > firstAnswer) {
+                continue;
+            }
+            int next = apply(ops, i, state);
+            if (next != Integer.MIN_VALUE && search(ops, done | (1 << i), next, failed)) {
+                return true;
+            }
+            if (op.isUnknown() && search(ops, done | (1 << i), state, failed)) {
+                return true;
+            }
+        }
+        failed.add(memo);
+        return false;
+    }
+
+    /**
+     * @return the state after the operation, or {@link Integer#MIN_VALUE} if it cannot happen in this state
+     */
+    private static int apply(Op[] ops, int index, int state) {
+        Op op = ops[index];
+        return switch (op.kind()) {
+            case WRITE -> state == DELETED ? Integer.MIN_VALUE : index;
+            case DELETE -> state == DELETED ? Integer.MIN_VALUE : DELETED;
+            case READ -> {
+                boolean matches = op.value() == null ? state == DELETED
+                        : state >= 0 && ops[state].value().equals(op.value());
+                yield matches ? state : Integer.MIN_VALUE;
+            }
+        };
+    }
+}
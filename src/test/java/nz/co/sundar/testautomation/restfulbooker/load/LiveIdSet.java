@@ -0,0 +1,92 @@
+package nz.co.sundar.testautomation.restfulbooker.load;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * The ids of the bookings a load run has created and not yet deleted, which reads, updates and deletes target.
+ * <p>
+ * Ids are kept sorted in one {@code int} array. The server hands out ids in increasing order, so an id's rank
+ * is also its age: rank 0 is the oldest live booking and rank {@code size() - 1} the newest. Adding and removing
+ * shift the array, which costs far less than the request that caused them.
+ */
+public class LiveIdSet {
+
+    private int[] ids = new int[64];
+    private int size;
+
+    /**
+     * @return {@code false} if the id was already live
+     */
+    public synchronized boolean add(int id) {
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        if (index >= 0) {
+            return false;
+        }
+        index = -index - 1;
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        System.arraycopy(ids, index, ids, index + 1, size - index);
+        ids[index] = id;
+        size++;
+        return true;
+    }
+
+    /**
+     * @return {@code false} if the id was not live
+     */
+    public synchronized boolean remove(int id) {
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        if (index < 0) {
+            return false;
+        }
+        removeAt(index);
+        return true;
+    }
+
+    private void removeAt(int index) {
+        System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+        size--;
+    }
+
+    public synchronized boolean contains(int id) {
+        return Arrays.binarySearch(ids, 0, size, id) >= 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @param rank 0 for the oldest live booking, up to {@code size() - 1} for the newest
+     * @return the id at that rank, or -1 if the rank is out of range because the set shrank
+     */
+    public synchronized int idAt(int rank) {
+        return rank >= 0 && rank < size ? ids[rank] : -1;
+    }
+
+    /**
+     * @param keys which rank to pick
+     * @return the live id at the chosen rank, or -1 if there is none
+     */
+    public synchronized int pick(KeyDistribution keys, RandomGenerator random) {
+        return size == 0 ? -1 : ids[keys.pickRank(size, random)];
+    }
+
+    /**
+     * Removes and returns the live id at the chosen rank, so that no other worker picks it for a delete too.
+     *
+     * @param keys which rank to take
+     * @return the id, or -1 if there is none
+     */
+    public synchronized int take(KeyDistribution keys, RandomGenerator random) {
+        if (size == 0) {
+            return -1;
+        }
+        int index = keys.pickRank(size, random);
+        int id = ids[index];
+        removeAt(index);
+        return id;
+    }
+}
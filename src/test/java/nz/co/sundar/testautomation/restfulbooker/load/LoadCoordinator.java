@@ -0,0 +1,395 @@
+package nz.co.sundar.testautomation.restfulbooker.load;
+
+import nz.co.sundar.testautomation.restfulbooker.standin.LatencyDistribution;
+import nz.co.sundar.testautomation.restfulbooker.utils.ConfigReader;
+import nz.co.sundar.testautomation.restfulbooker.utils.LatencyHistogram;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a workload from several {@link LoadWorker} JVMs at once, for when one client JVM would become the bottleneck
+ * before the server does.
+ * <p>
+ * The coordinator listens on a plain socket, starts {@code localWorkers} worker JVMs on this machine and waits for
+ * {@code remoteWorkers} more, started by hand on other hosts with {@code LoadWorker.main <coordinator host> <port>}.
+ * Local workers write their output to {@code target/load-workers/worker-<port>-<n>.log}.
+ * Each worker is sent the workload's settings and runs its share (see {@link WorkloadDefinition#forWorker}), so
+ * together they send the workload's rates. Once every worker is ready they all start together.
+ * <p>
+ * Every second each worker sends back its running phase's results so far, and the coordinator logs the merged
+ * throughput and latency. After each phase a worker sends its final result, and the coordinator merges the workers'
+ * histograms and counters into one {@link PhaseResult} per phase. Each worker keeps its own live bookings, so skewed
+ * keys are skewed within each worker's bookings.
+ * <p>
+ * The protocol is a stream of messages, each a type byte followed by {@link DataOutputStream} fields:
+ * <pre>
+ * worker      -&gt; coordinator  HELLO    description
+ * coordinator -&gt; worker       ASSIGN   index, count, baseUri, client, workload name, workload settings
+ * worker      -&gt; coordinator  READY
+ * coordinator -&gt; worker       START
+ * worker      -&gt; coordinator  REPORT   phase index, result so far      (every second)
+ * worker      -&gt; coordinator  PHASE    phase index, final result       (after each phase)
+ * worker      -&gt; coordinator  DONE, or FAILED with a message
+ * </pre>
+ */
+public class LoadCoordinator {
+
+    private static final Logger logger = LogManager.getLogger(LoadCoordinator.class);
+
+    static final byte HELLO = 1;
+    static final byte ASSIGN = 2;
+    static final byte READY = 3;
+    static final byte START = 4;
+    static final byte REPORT = 5;
+    static final byte PHASE = 6;
+    static final byte DONE = 7;
+    static final byte FAILED = 8;
+
+    /** Where local workers write their output, one file per worker named by the coordinator's port. */
+    static final Path WORKER_LOG_DIRECTORY = Path.of("target", "load-workers");
+
+    /** The workers' client that sends through {@code BookingUtils}. */
+    public static final String BOOKING_UTILS = "bookingUtils";
+
+    private final Properties settings;
+    private final String workloadName;
+    private final String baseUri;
+    private final String client;
+    private final int port;
+    private final int localWorkers;
+    private final int remoteWorkers;
+    private final List<String> jvmOptions;
+    private final long connectTimeoutNanos;
+    private final AtomicLong reports = new AtomicLong();
+
+    /**
+     * @param settings            the workload file's settings, see {@link WorkloadDefinition}
+     * @param workloadName        the name used when the settings have no {@code name}
+     * @param baseUri             the server every worker loads
+     * @param client              how workers send: {@link #BOOKING_UTILS}, or {@code direct:<username>:<password>}
+     *                            for a {@link DirectBookingClient}
+     * @param port                the port to listen on, 0 for any free port (local workers only)
+     * @param localWorkers        worker JVMs to start on this machine
+     * @param remoteWorkers       workers to wait for from other hosts
+     * @param jvmOptions          options for the local worker JVMs, e.g. {@code -Xmx512m}
+     * @param connectTimeoutNanos how long to wait for each worker to connect
+     */
+    public LoadCoordinator(Properties settings, String workloadName, String baseUri, String client, int port,
+                           int localWorkers, int remoteWorkers, List<String> jvmOptions, long connectTimeoutNanos) {
+        if (localWorkers < 0 || remoteWorkers < 0 || localWorkers + remoteWorkers == 0) {
+            throw new IllegalArgumentException("Distributed load needs at least one worker");
+        }
+        if (!client.equals(BOOKING_UTILS) && !client.startsWith("direct:")) {
+            throw new IllegalArgumentException("Unrecognised worker client: " + client);
+        }
+        // Fail here rather than in every worker.
+        WorkloadDefinition.parse(settings, workloadName);
+        this.settings = settings;
+        this.workloadName = workloadName;
+        this.baseUri = baseUri;
+        this.client = client;
+        this.port = port;
+        this.localWorkers = localWorkers;
+        this.remoteWorkers = remoteWorkers;
+        this.jvmOptions = List.copyOf(jvmOptions);
+        this.connectTimeoutNanos = connectTimeoutNanos;
+    }
+
+    /**
+     * Builds a coordinator for a workload file from the {@code distributed.*} properties, whose workers send
+     * through {@code BookingUtils} to the configured {@code baseURI}.
+     */
+    public static LoadCoordinator fromConfig(Path workloadFile) {
+        Properties settings = new Properties();
+        try (Reader reader = Files.newBufferedReader(workloadFile)) {
+            settings.load(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read workload " + workloadFile, e);
+        }
+        String fileName = workloadFile.getFileName().toString();
+        String jvmOptions = ConfigReader.getProperty("distributed.jvmOptions", "");
+        return new LoadCoordinator(settings, fileName.replaceFirst("\\.properties$", ""),
+                ConfigReader.getProperty("baseURI"), BOOKING_UTILS,
+                Integer.parseInt(ConfigReader.getProperty("distributed.port", "7070")),
+                Integer.parseInt(ConfigReader.getProperty("distributed.localWorkers", "2")),
+                Integer.parseInt(ConfigReader.getProperty("distributed.remoteWorkers", "0")),
+                jvmOptions.isBlank() ? List.of() : Arrays.asList(jvmOptions.trim().split("\\s+")),
+                LatencyDistribution.parseDuration(ConfigReader.getProperty("distributed.connectTimeout", "60s")));
+    }
+
+    /**
+     * Loads the configured {@code baseURI} from several JVMs with the workload file given as the first argument,
+     * or {@code load.workload} when there is none, and logs each phase's merged results.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path file = Path.of(args.length > 0 ? args[0]
+                : ConfigReader.getProperty("load.workload", "src/test/resources/workloads/read-heavy.properties"));
+        List<PhaseResult> results = fromConfig(file).run();
+        if (results.size() > 1) {
+            logger.info("Phases compared:{}{}", System.lineSeparator(),
+                    SkewReport.format(results, Operation.GET_BOOKING, Operation.UPDATE_BOOKING));
+        }
+    }
+
+    /**
+     * Starts the local workers, waits for all workers to connect, runs the workload and merges the results.
+     *
+     * @return one merged result per phase
+     * @throws IOException           if the coordinator cannot listen, or a worker does not connect in time
+     * @throws IllegalStateException if a worker fails or disconnects during the run
+     */
+    public List<PhaseResult> run() throws IOException, InterruptedException {
+        WorkloadDefinition workload = WorkloadDefinition.parse(settings, workloadName);
+        int count = localWorkers + remoteWorkers;
+        List<Process> processes = new ArrayList<>();
+        List<WorkerConnection> connections = new ArrayList<>();
+        try (ServerSocket server = new ServerSocket(port)) {
+            server.setSoTimeout((int) Math.max(1, TimeUnit.NANOSECONDS.toMillis(connectTimeoutNanos)));
+            for (int i = 0; i < localWorkers; i++) {
+                processes.add(startLocalWorker(server.getLocalPort(), i + 1));
+            }
+            if (remoteWorkers > 0) {
+                logger.info("Waiting for {} remote workers: run LoadWorker.main <this host> {} on each",
+                        remoteWorkers, server.getLocalPort());
+            }
+            for (int i = 0; i < count; i++) {
+                Socket socket;
+                try {
+                    socket = server.accept();
+                } catch (SocketTimeoutException e) {
+                    throw new IOException("Only " + i + " of " + count + " load workers connected", e);
+                }
+                WorkerConnection connection = new WorkerConnection(socket, i, workload.getPhases().size());
+                connections.add(connection);
+                connection.assign(count);
+            }
+            logger.info("Running workload {} against {} from {} workers", workload.getName(), baseUri, count);
+            for (WorkerConnection connection : connections) {
+                connection.start();
+            }
+            monitor(connections);
+        } finally {
+            connections.forEach(WorkerConnection::close);
+            for (Process process : processes) {
+                if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            }
+        }
+
+        List<PhaseResult> results = new ArrayList<>();
+        for (int p = 0; p < workload.getPhases().size(); p++) {
+            WorkloadDefinition.Phase phase = workload.getPhases().get(p);
+            PhaseResult merged = new PhaseResult(phase.name(), workload.getKeyDistribution(phase).toString());
+            for (WorkerConnection connection : connections) {
+                merged.add(connection.finals[p]);
+            }
+            logger.info("Phase {} of {} merged from {} workers: {}", phase.name(), workload.getName(), count,
+                    merged.getSummary());
+            results.add(merged);
+        }
+        return results;
+    }
+
+    /**
+     * Starts a worker JVM whose output goes to its own log file rather than this JVM's console, which surefire
+     * reserves for talking to its fork.
+     */
+    private Process startLocalWorker(int boundPort, int number) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmOptions);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(LoadWorker.class.getName());
+        command.add("localhost");
+        command.add(String.valueOf(boundPort));
+        Files.createDirectories(WORKER_LOG_DIRECTORY);
+        Path log = WORKER_LOG_DIRECTORY.resolve("worker-" + boundPort + "-" + number + ".log");
+        logger.info("Local worker {} logs to {}", number, log.toAbsolutePath());
+        return new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log.toFile()).start();
+    }
+
+    /**
+     * Logs the merged progress of the running phase every second until every worker has finished, then fails if
+     * any of them did not.
+     */
+    private void monitor(List<WorkerConnection> connections) throws InterruptedException {
+        long lastCount = 0;
+        int lastPhase = -1;
+        while (connections.stream().anyMatch(WorkerConnection::isRunning)) {
+            TimeUnit.SECONDS.sleep(1);
+            int phase = connections.stream().mapToInt(connection -> connection.livePhase).max().orElse(-1);
+            PhaseResult live = null;
+            for (WorkerConnection connection : connections) {
+                PhaseResult snapshot = connection.live;
+                if (snapshot != null && connection.livePhase == phase) {
+                    if (live == null) {
+                        live = new PhaseResult(snapshot.getName(), snapshot.getKeys());
+                    }
+                    live.add(snapshot);
+                }
+            }
+            if (live != null) {
+                long count = live.getCount();
+                LatencyHistogram latencies = live.getLatencies();
+                logger.info("{}: {} req/s n={} errors={} p50={} p99={}", live.getName(),
+                        phase == lastPhase ? count - lastCount : count, count, live.getErrors(),
+                        LatencyHistogram.formatMillis(latencies.getPercentileNanos(50)),
+                        LatencyHistogram.formatMillis(latencies.getPercentileNanos(99)));
+                lastCount = count;
+                lastPhase = phase;
+            }
+        }
+        for (WorkerConnection connection : connections) {
+            connection.join();
+            if (connection.failure != null) {
+                throw new IllegalStateException("Load worker " + connection.index + " (" + connection.description
+                        + ") failed: " + connection.failure);
+            }
+        }
+    }
+
+    /**
+     * @return how many per-second reports the workers have sent so far
+     */
+    public long getReportsReceived() {
+        return reports.get();
+    }
+
+    /**
+     * The coordinator's side of one worker: sends it its assignment and start signal, then reads its reports on a
+     * thread of its own.
+     */
+    private final class WorkerConnection {
+
+        private final Socket socket;
+        private final int index;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private final PhaseResult[] finals;
+        private final Thread reader;
+        private String description = "?";
+        private volatile PhaseResult live;
+        private volatile int livePhase = -1;
+        private volatile boolean running = true;
+        private volatile String failure;
+
+        WorkerConnection(Socket socket, int index, int phases) throws IOException {
+            this.socket = socket;
+            this.index = index;
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            this.finals = new PhaseResult[phases];
+            this.reader = new Thread(this::read, "load-coordinator-" + index);
+            this.reader.setDaemon(true);
+        }
+
+        void assign(int count) throws IOException {
+            expect(HELLO);
+            description = in.readUTF();
+            StringWriter text = new StringWriter();
+            settings.store(text, null);
+            out.writeByte(ASSIGN);
+            out.writeInt(index);
+            out.writeInt(count);
+            out.writeUTF(baseUri);
+            out.writeUTF(client);
+            out.writeUTF(workloadName);
+            out.writeUTF(text.toString());
+            out.flush();
+            expect(READY);
+            logger.info("Load worker {} of {} ready: {}", index + 1, count, description);
+        }
+
+        void start() throws IOException {
+            out.writeByte(START);
+            out.flush();
+            reader.start();
+        }
+
+        private void expect(byte type) throws IOException {
+            byte received = in.readByte();
+            if (received != type) {
+                throw new IOException("Expected message " + type + " from load worker " + index + " but got "
+                        + received);
+            }
+        }
+
+        private void read() {
+            try {
+                while (true) {
+                    byte type = in.readByte();
+                    if (type == REPORT) {
+                        int phase = in.readInt();
+                        PhaseResult snapshot = PhaseResult.readFrom(in);
+                        livePhase = phase;
+                        live = snapshot;
+                        reports.incrementAndGet();
+                    } else if (type == PHASE) {
+                        int phase = in.readInt();
+                        finals[phase] = PhaseResult.readFrom(in);
+                    } else if (type == DONE) {
+                        for (int p = 0; p < finals.length; p++) {
+                            if (finals[p] == null) {
+                                failure = "finished without a result for phase " + p;
+                            }
+                        }
+                        return;
+                    } else if (type == FAILED) {
+                        failure = in.readUTF();
+                        return;
+                    } else {
+                        failure = "sent unknown message " + type;
+                        return;
+                    }
+                }
+            } catch (EOFException e) {
+                failure = "disconnected before it finished";
+            } catch (IOException e) {
+                failure = e.toString();
+            } finally {
+                running = false;
+            }
+        }
+
+        boolean isRunning() {
+            return running;
+        }
+
+        void join() throws InterruptedException {
+            if (reader.isAlive()) {
+                reader.join();
+            }
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                logger.debug("Failed to close load worker {}: {}", index, e.toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package nz.co.sundar.testautomation.restfulbooker.load;
+
+import io.restassured.RestAssured;
+import nz.co.sundar.testautomation.restfulbooker.filters.RestAssuredFilters;
+import nz.co.sundar.testautomation.restfulbooker.pojo.Booking;
+import nz.co.sundar.testautomation.restfulbooker.utils.ConfigReader;
+import nz.co.sundar.testautomation.restfulbooker.utils.DecodedResponse;
+import nz.co.sundar.testautomation.restfulbooker.utils.LatencyHistogram;
+import nz.co.sundar.testautomation.restfulbooker.utils.TokenBucket;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a {@link WorkloadDefinition}: each phase starts its workers, and each worker repeatedly picks an operation
+ * from the mix, sends it through a {@link BookingClient}, records its latency and status, and pauses for a think
+ * time, until the phase ends.
+ * <p>
+ * Reads, updates and deletes target the bookings in the driver's {@link LiveIdSet}: the preloaded bookings and
+ * those the run has created, chosen by the workload's {@link KeyDistribution}. When there are none, a create is sent instead, so the mix never stalls. A delete takes
+ * its booking out of the set before it is sent, and puts it back if the server answered that it is still there.
+ * <p>
+ * A phase's workers are either closed-loop, each sending its next request when the last was answered and it has
+ * thought, or open-model, sending arrivals on a fixed schedule however slowly the server answers (see
+ * {@link WorkloadDefinition.Model}).
+ * <p>
+ * When the workload has a {@link WorkloadDefinition.Warmup}, each phase first runs until its throughput and p50 are
+ * steady, recording into a separate warm-up result, and the phase's duration is measured from there.
+ * <p>
+ * Each worker draws from its own random generator, split from the workload's seed, so a run against the same
+ * server state makes the same choices. Run {@link #main(String[])} to load the configured {@code baseURI}.
+ */
+public class LoadDriver {
+
+    private static final Logger logger = LogManager.getLogger(LoadDriver.class);
+
+    private final WorkloadDefinition workload;
+    private final BookingClient client;
+    private final LiveIdSet liveIds = new LiveIdSet();
+    private final SplittableRandom random;
+    private boolean preloaded;
+    private volatile Recording running;
+
+    public LoadDriver(WorkloadDefinition workload, BookingClient client) {
+        this.workload = workload;
+        this.client = client;
+        this.random = new SplittableRandom(workload.getSeed());
+    }
+
+    /**
+     * Loads the configured {@code baseURI} through {@code BookingUtils} with the workload file given as the first
+     * argument, or {@code load.workload} when there is none, and logs each phase's results and a
+     * {@link SkewReport} comparing them.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        Path file = Path.of(args.length > 0 ? args[0]
+                : ConfigReader.getProperty("load.workload", "src/test/resources/workloads/read-heavy.properties"));
+        RestAssured.baseURI = ConfigReader.getProperty("baseURI");
+        RestAssuredFilters.install();
+        WorkloadDefinition workload = WorkloadDefinition.load(file);
+        logger.info("Running workload {} against {}", workload.getName(), RestAssured.baseURI);
+        List<PhaseResult> results = new LoadDriver(workload, new BookingUtilsClient()).run();
+        for (PhaseResult phase : results) {
+            logger.info("{}", phase.getSummary());
+        }
+        if (results.size() > 1) {
+            logger.info("Phases compared:{}{}", System.lineSeparator(),
+                    SkewReport.format(results, Operation.GET_BOOKING, Operation.UPDATE_BOOKING));
+        }
+    }
+
+    /**
+     * Creates the preloaded bookings, then runs every phase in order.
+     *
+     * @return one result per phase
+     * @throws InterruptedException if the calling thread is interrupted while waiting for a phase
+     */
+    public List<PhaseResult> run() throws InterruptedException {
+        List<PhaseResult> results = new ArrayList<>();
+        for (WorkloadDefinition.Phase phase : workload.getPhases()) {
+            results.add(runPhase(phase));
+        }
+        return results;
+    }
+
+    /**
+     * Runs one phase with the workload's mix, creating the preloaded bookings first if no phase has run yet. The
+     * phase need not be one of the workload's, so a {@link CapacitySearch} can run trials at rates of its choosing
+     * over the same live bookings.
+     *
+     * @return the phase's result
+     * @throws InterruptedException if the calling thread is interrupted while waiting for the phase
+     */
+    public PhaseResult runPhase(WorkloadDefinition.Phase phase) throws InterruptedException {
+        return runPhase(phase, workload.getWarmup());
+    }
+
+    /**
+     * Runs one phase as {@link #runPhase(WorkloadDefinition.Phase)} does, with its own warm-up.
+     *
+     * @param warmup how the phase warms up before it is measured, or {@code null} to measure from the start
+     */
+    public synchronized PhaseResult runPhase(WorkloadDefinition.Phase phase, WorkloadDefinition.Warmup warmup)
+            throws InterruptedException {
+        if (!preloaded) {
+            preload(random.split());
+            preloaded = true;
+        }
+        String keys = workload.getKeyDistribution(phase).toString();
+        PhaseResult result = new PhaseResult(phase.name(), keys);
+        TokenBucket rateLimit = phase.ratePerSecond() > 0 && phase.model() == WorkloadDefinition.Model.CLOSED
+                ? new TokenBucket(phase.ratePerSecond(), Math.max(1, phase.workers())) : null;
+        AtomicLong arrivals = new AtomicLong();
+        long start = System.nanoTime();
+        Recording recording = warmup == null
+                ? new Recording(result, null, start + phase.durationNanos())
+                : new Recording(new PhaseResult(phase.name() + " warm-up", keys), new LatencyHistogram(),
+                start + warmup.maxNanos() + phase.durationNanos());
+
+        running = recording;
+
+        List<Thread> workers = new ArrayList<>();
+        for (int w = 0; w < phase.workers(); w++) {
+            SplittableRandom workerRandom = random.split();
+            Runnable work = phase.model() == WorkloadDefinition.Model.OPEN
+                    ? () -> workOpen(phase, recording, arrivals, workerRandom, start)
+                    : () -> workClosed(phase, recording, rateLimit, workerRandom);
+            Thread worker = new Thread(work, "load-" + phase.name() + "-" + w);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+        long measuredFrom = start;
+        try {
+            if (warmup != null) {
+                measuredFrom = warmUp(phase, warmup, recording, result, start);
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } finally {
+            workers.forEach(Thread::interrupt);
+            running = null;
+        }
+        result.setDurationNanos(System.nanoTime() - measuredFrom);
+        logger.info("Phase {} of {} finished: {}", phase.name(), workload.getName(), result.getSummary());
+        return result;
+    }
+
+    /**
+     * Measures throughput and p50 every interval until the {@link SteadyStateDetector} finds them steady or the
+     * warm-up runs out of time, then switches the workers over to the phase's own result and gives them the phase's
+     * duration from there.
+     *
+     * @return when measuring started
+     */
+    private long warmUp(WorkloadDefinition.Phase phase, WorkloadDefinition.Warmup warmup, Recording recording,
+                        PhaseResult result, long start) throws InterruptedException {
+        SteadyStateDetector detector = warmup.newDetector();
+        boolean steady = false;
+        long tick = start;
+        while (!steady && tick - start < warmup.maxNanos()) {
+            tick += warmup.intervalNanos();
+            long waitNanos = tick - System.nanoTime();
+            if (waitNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            }
+            LatencyHistogram interval = recording.interval;
+            recording.interval = new LatencyHistogram();
+            steady = detector.add(interval.getCount() * 1e9 / warmup.intervalNanos(),
+                    interval.getPercentileNanos(50));
+        }
+        long now = System.nanoTime();
+        PhaseResult warmupResult = recording.current;
+        warmupResult.setDurationNanos(now - start);
+        result.setWarmup(warmupResult, detector, steady);
+        recording.interval = null;
+        recording.current = result;
+        recording.deadline = now + phase.durationNanos();
+        if (!steady) {
+            logger.warn("Phase {} of {} was not steady after {}s of warm-up; measuring anyway", phase.name(),
+                    workload.getName(), (now - start) / 1e9);
+        }
+        return now;
+    }
+
+    private void preload(SplittableRandom random) {
+        PayloadSource payloads = workload.getPayloadSource(Operation.CREATE_BOOKING);
+        for (int i = 0; i < workload.getPreload(); i++) {
+            DecodedResponse response = client.createBooking(payloads.next(random));
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("Failed to preload bookings, status " + response.statusCode());
+            }
+            liveIds.add(bookingIdOf(response));
+        }
+    }
+
+    private void workClosed(WorkloadDefinition.Phase phase, Recording recording, TokenBucket rateLimit,
+                            SplittableRandom random) {
+        try {
+            while (System.nanoTime() < recording.deadline) {
+                if (rateLimit != null) {
+                    rateLimit.acquire();
+                    if (System.nanoTime() >= recording.deadline) {
+                        break;
+                    }
+                }
+                execute(phase, workload.pick(random), random, recording, System.nanoTime());
+                long thinkNanos = Math.min(phase.thinkTime().sampleNanos(random),
+                        recording.deadline - System.nanoTime());
+                if (thinkNanos > 0) {
+                    TimeUnit.NANOSECONDS.sleep(thinkNanos);
+                }
+            }
+        } catch (InterruptedException | IllegalStateException e) {
+            // The phase was stopped; the worker ends with it.
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Sends the phase's arrivals at their scheduled times: arrival {@code i} is due {@code i / ratePerSecond}
+     * seconds after the start, whether or not earlier requests have been answered. Each worker takes the next
+     * arrival, waits until it is due and sends it, and its latency is measured from when it was due, so time spent
+     * waiting for a free worker behind a slow server counts. Arrivals that come due but cannot be sent before the
+     * phase ends are counted as missed.
+     */
+    private void workOpen(WorkloadDefinition.Phase phase, Recording recording, AtomicLong arrivals,
+                          SplittableRandom random, long start) {
+        double intervalNanos = TimeUnit.SECONDS.toNanos(1) / phase.ratePerSecond();
+        try {
+            while (true) {
+                long due = start + (long) (arrivals.getAndIncrement() * intervalNanos);
+                if (due >= recording.deadline) {
+                    break;
+                }
+                long waitNanos = due - System.nanoTime();
+                if (waitNanos > 0) {
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                } else if (System.nanoTime() >= recording.deadline) {
+                    recording.current.recordMissed();
+                    continue;
+                }
+                execute(phase, workload.pick(random), random, recording, due);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Sends one operation and records it under the operation that was actually sent, in the result that was current
+     * when it was sent.
+     *
+     * @param startNanos when the request was due, from which its latency is measured
+     */
+    private void execute(WorkloadDefinition.Phase phase, Operation operation, SplittableRandom random,
+                         Recording recording, long startNanos) {
+        PhaseResult result = recording.current;
+        LatencyHistogram interval = recording.interval;
+        int bookingId = -1;
+        if (operation.needsBooking()) {
+            KeyDistribution keys = workload.getKeyDistribution(operation, phase);
+            bookingId = operation == Operation.DELETE_BOOKING ? liveIds.take(keys, random) : liveIds.pick(keys, random);
+            if (bookingId < 0) {
+                operation = Operation.CREATE_BOOKING;
+            } else {
+                result.recordTarget(bookingId);
+            }
+        }
+        Booking payload = operation == Operation.CREATE_BOOKING || operation == Operation.UPDATE_BOOKING
+                ? workload.getPayloadSource(operation).next(random) : null;
+
+        DecodedResponse response = null;
+        try {
+            response = send(operation, bookingId, payload);
+        } catch (RuntimeException e) {
+            logger.debug("{} failed: {}", operation.getEndpoint(), e.toString());
+        }
+        long latencyNanos = System.nanoTime() - startNanos;
+        int status = response == null ? OperationStats.NO_RESPONSE : response.statusCode();
+        result.get(operation).record(latencyNanos, status);
+        if (interval != null) {
+            interval.recordNanos(latencyNanos);
+        }
+
+        if (operation == Operation.CREATE_BOOKING && status == 200) {
+            liveIds.add(bookingIdOf(response));
+        } else if (operation == Operation.DELETE_BOOKING && !isGone(status)) {
+            liveIds.add(bookingId);
+        }
+    }
+
+    private DecodedResponse send(Operation operation, int bookingId, Booking payload) {
+        return switch (operation) {
+            case GET_BOOKING -> client.getBooking(bookingId);
+            case CREATE_BOOKING -> client.createBooking(payload);
+            case UPDATE_BOOKING -> client.updateBooking(bookingId, payload);
+            case DELETE_BOOKING -> client.deleteBooking(bookingId);
+            case LIST_BOOKINGS -> client.listBookings();
+            case AUTH -> client.authenticate();
+        };
+    }
+
+    /**
+     * A delete that succeeded, or found the booking already gone ({@code 404}, or {@code 405} from the public
+     * API), leaves it out of the live set. After anything else the booking may still exist.
+     */
+    private static boolean isGone(int status) {
+        return (status >= 200 && status <= 299) || status == 404 || status == 405;
+    }
+
+    private static int bookingIdOf(DecodedResponse response) {
+        return Integer.parseInt(response.getString("bookingid"));
+    }
+
+    /**
+     * @return the result the running phase's workers are recording into, its warm-up's until it is steady, or
+     * {@code null} between phases; its duration is only set once it ends
+     */
+    public PhaseResult getRunningResult() {
+        Recording recording = running;
+        return recording == null ? null : recording.current;
+    }
+
+    public WorkloadDefinition getWorkload() {
+        return workload;
+    }
+
+    /**
+     * @return the bookings the run has created and not deleted, including the preloaded ones
+     */
+    public LiveIdSet getLiveIds() {
+        return liveIds;
+    }
+
+    /**
+     * Where a running phase's workers record: the warm-up's result until the run is steady, then the phase's own.
+     * During the warm-up each request is also recorded in the current interval's histogram.
+     */
+    private static final class Recording {
+
+        volatile PhaseResult current;
+        volatile LatencyHistogram interval;
+        volatile long deadline;
+
+        Recording(PhaseResult current, LatencyHistogram interval, long deadline) {
+            this.current = current;
+            this.interval = interval;
+            this.deadline = deadline;
+        }
+    }
+}
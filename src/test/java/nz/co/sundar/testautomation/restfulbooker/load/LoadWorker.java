@@ -0,0 +1,161 @@
+package nz.co.sundar.testautomation.restfulbooker.load;
+
+import io.restassured.RestAssured;
+import nz.co.sundar.testautomation.restfulbooker.filters.RestAssuredFilters;
+import nz.co.sundar.testautomation.restfulbooker.utils.TokenPool.Credentials;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One JVM of a distributed load run: connects to a {@link LoadCoordinator}, runs its share of the workload with a
+ * {@link LoadDriver}, and streams its results back over the same socket, see the coordinator for the protocol.
+ * <p>
+ * Local workers are started by the coordinator. To add a worker on another host, build the project there and run
+ * {@code LoadWorker.main <coordinator host> <port>}; it sends through {@code BookingUtils} with that host's
+ * {@code config.properties}, to the coordinator's {@code baseURI}.
+ */
+public final class LoadWorker {
+
+    private static final Logger logger = LogManager.getLogger(LoadWorker.class);
+
+    private LoadWorker() {
+    }
+
+    /**
+     * @param args the coordinator's host and port
+     */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: LoadWorker <coordinator host> <port>");
+            System.exit(2);
+        }
+        int status = 0;
+        try {
+            run(args[0], Integer.parseInt(args[1]));
+        } catch (Exception e) {
+            logger.error("Load worker failed", e);
+            status = 1;
+        }
+        // REST Assured and the token pool may leave non-daemon threads behind.
+        System.exit(status);
+    }
+
+    /**
+     * Connects to the coordinator and runs the workload it assigns.
+     *
+     * @throws IOException if the connection fails
+     */
+    public static void run(String host, int port) throws IOException, InterruptedException {
+        try (Socket socket = new Socket(host, port)) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeByte(LoadCoordinator.HELLO);
+            out.writeUTF(ManagementFactory.getRuntimeMXBean().getName() + " on "
+                    + InetAddress.getLocalHost().getHostName());
+            out.flush();
+
+            expect(in, LoadCoordinator.ASSIGN);
+            int index = in.readInt();
+            int count = in.readInt();
+            String baseUri = in.readUTF();
+            String client = in.readUTF();
+            String name = in.readUTF();
+            Properties settings = new Properties();
+            settings.load(new StringReader(in.readUTF()));
+            WorkloadDefinition workload = WorkloadDefinition.parse(settings, name).forWorker(index, count);
+            LoadDriver driver = new LoadDriver(workload, client(baseUri, client));
+            out.writeByte(LoadCoordinator.READY);
+            out.flush();
+            expect(in, LoadCoordinator.START);
+
+            List<WorkloadDefinition.Phase> phases = workload.getPhases();
+            AtomicInteger phaseIndex = new AtomicInteger();
+            Thread reporter = new Thread(() -> report(driver, out, phaseIndex), "load-worker-reporter");
+            reporter.setDaemon(true);
+            reporter.start();
+            try {
+                for (int p = 0; p < phases.size(); p++) {
+                    phaseIndex.set(p);
+                    PhaseResult result = driver.runPhase(phases.get(p));
+                    synchronized (out) {
+                        out.writeByte(LoadCoordinator.PHASE);
+                        out.writeInt(p);
+                        result.writeTo(out);
+                        out.flush();
+                    }
+                }
+                synchronized (out) {
+                    out.writeByte(LoadCoordinator.DONE);
+                    out.flush();
+                }
+            } catch (RuntimeException e) {
+                synchronized (out) {
+                    out.writeByte(LoadCoordinator.FAILED);
+                    out.writeUTF(e.toString());
+                    out.flush();
+                }
+                throw e;
+            } finally {
+                reporter.interrupt();
+            }
+        }
+    }
+
+    private static BookingClient client(String baseUri, String client) {
+        if (client.equals(LoadCoordinator.BOOKING_UTILS)) {
+            RestAssured.baseURI = baseUri;
+            RestAssuredFilters.install();
+            return new BookingUtilsClient();
+        }
+        String[] parts = client.split(":", 3);
+        if (parts.length != 3 || !parts[0].equals("direct")) {
+            throw new IllegalArgumentException("Unrecognised worker client: " + client);
+        }
+        return new DirectBookingClient(baseUri, new Credentials(parts[1], parts[2]));
+    }
+
+    /**
+     * Sends the running phase's results so far once a second, until interrupted.
+     */
+    private static void report(LoadDriver driver, DataOutputStream out, AtomicInteger phaseIndex) {
+        try {
+            while (true) {
+                TimeUnit.SECONDS.sleep(1);
+                PhaseResult running = driver.getRunningResult();
+                if (running != null) {
+                    synchronized (out) {
+                        out.writeByte(LoadCoordinator.REPORT);
+                        out.writeInt(phaseIndex.get());
+                        running.writeTo(out);
+                        out.flush();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            logger.warn("Stopped reporting to the coordinator: {}", e.toString());
+        }
+    }
+
+    private static void expect(DataInputStream in, byte type) throws IOException {
+        byte received = in.readByte();
+        if (received != type) {
+            throw new IOException("Expected message " + type + " from the coordinator but got " + received);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package nz.co.sundar.testautomation.restfulbooker.load;
+
+/**
+ * The requests a load run can send, named in workload files by their {@link #getKey() key}.
+ */
+public enum Operation {
+    GET_BOOKING("getBooking", "GET /booking/{id}", true),
+    CREATE_BOOKING("createBooking", "POST /booking", false),
+    UPDATE_BOOKING("updateBooking", "PUT /booking/{id}", true),
+    DELETE_BOOKING("deleteBooking", "DELETE /booking/{id}", true),
+    LIST_BOOKINGS("listBookings", "GET /booking", false),
+    AUTH("auth", "POST /auth", false);
+
+    private final String key;
+    private final String endpoint;
+    private final boolean needsBooking;
+
+    Operation(String key, String endpoint, boolean needsBooking) {
+        this.key = key;
+        this.endpoint = endpoint;
+        this.needsBooking = needsBooking;
+    }
+
+    /**
+     * @return the name used in workload files, e.g. {@code getBooking}
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return the method and path, e.g. {@code GET /booking/{id}}
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * @return whether the request targets an existing booking
+     */
+    public boolean needsBooking() {
+        return needsBooking;
+    }
+
+    /**
+     * @param key the name used in workload files
+     * @throws IllegalArgumentException if no operation has that name
+     */
+    public static Operation fromKey(String key) {
+        for (Operation operation : values()) {
+            if (operation.key.equalsIgnoreCase(key.trim())) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("Unknown operation '" + key + "'");
+    }
+}
@@ -0,0 +1,109 @@
+package nz.co.sundar.testautomation.restfulbooker.load;
+
+import nz.co.sundar.testautomation.restfulbooker.utils.LatencyHistogram;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The latencies and status codes of one operation in one phase of a load run. Safe to record from several
+ * workers at once.
+ */
+public class OperationStats {
+
+    /** The status recorded for a request that failed without a response, e.g. on a connection error. */
+    public static final int NO_RESPONSE = 0;
+
+    private final Operation operation;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+    private final Map<Integer, LongAdder> statusCounts = new ConcurrentHashMap<>();
+
+    public OperationStats(Operation operation) {
+        this.operation = operation;
+    }
+
+    /**
+     * Records one request. Any status outside 2xx, including {@link #NO_RESPONSE}, counts as an error.
+     *
+     * @param latencyNanos how long the request took
+     * @param status       the response status, or {@link #NO_RESPONSE}
+     */
+    public void record(long latencyNanos, int status) {
+        latencies.recordNanos(latencyNanos);
+        if (status < 200 || status > 299) {
+            errors.increment();
+        }
+        statusCounts.computeIfAbsent(status, s -> new LongAdder()).increment();
+    }
+
+    /**
+     * Adds another run's requests of the same operation, e.g. from another worker JVM.
+     */
+    public void add(OperationStats other) {
+        latencies.add(other.latencies);
+        errors.add(other.errors.sum());
+        other.statusCounts.forEach((status, count) ->
+                statusCounts.computeIfAbsent(status, s -> new LongAdder()).add(count.sum()));
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        latencies.writeTo(out);
+        out.writeLong(errors.sum());
+        Map<Integer, Long> counts = getStatusCounts();
+        out.writeInt(counts.size());
+        for (Map.Entry<Integer, Long> entry : counts.entrySet()) {
+            out.writeInt(entry.getKey());
+            out.writeLong(entry.getValue());
+        }
+    }
+
+    static OperationStats readFrom(Operation operation, DataInput in) throws IOException {
+        OperationStats stats = new OperationStats(operation);
+        stats.latencies.add(LatencyHistogram.readFrom(in));
+        stats.errors.add(in.readLong());
+        int statuses = in.readInt();
+        for (int i = 0; i < statuses; i++) {
+            int status = in.readInt();
+            stats.statusCounts.computeIfAbsent(status, s -> new LongAdder()).add(in.readLong());
+        }
+        return stats;
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    public long getCount() {
+        return latencies.getCount();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /**
+     * @return the number of responses per status, in status order
+     */
+    public Map<Integer, Long> getStatusCounts() {
+        Map<Integer, Long> counts = new TreeMap<>();
+        statusCounts.forEach((status, count) -> counts.put(status, count.sum()));
+        return counts;
+    }
+
+    /**
+     * @return a one-line summary such as {@code n=600 p50=2.1ms p95=4.0ms p99=9.3ms max=12.0ms errors=2 {200=598, 404=2}}
+     */
+    public String getSummary() {
+        return latencies.getSummary() + " errors=" + errors.sum() + " " + getStatusCounts();
+    }
+}
@@ -0,0 +1,110 @@
+package nz.co.sundar.testautomation.restfulbooker.load;
+
+import nz.co.sundar.testautomation.restfulbooker.pojo.Booking;
+import nz.co.sundar.testautomation.restfulbooker.pojo.BookingDates;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.random.RandomGenerator;
+
+/**
+ * Supplies the booking sent by each create or update in a load run.
+ * <p>
+ * {@link #parse(String)} accepts the forms used for {@code operation.<name>.payload} in a workload file:
+ * <ul>
+ *   <li>{@code defaults} - the booking {@code BookingUtils.createTestBooking()} sends</li>
+ *   <li>{@code csv:path/to/file.csv} - the rows of a file with the columns of {@code create_booking.csv}, in turn</li>
+ *   <li>{@code generated} - random names, prices and dates</li>
+ * </ul>
+ */
+@FunctionalInterface
+public interface PayloadSource {
+
+    /**
+     * @param random the worker's source of randomness, so that generated payloads are reproducible under a seed
+     * @return the booking to send
+     */
+    Booking next(RandomGenerator random);
+
+    /**
+     * @return the booking {@code BookingUtils.createTestBooking()} sends, every time
+     */
+    static PayloadSource defaults() {
+        return random -> new Booking("Jim", "Brown", 111, true,
+                new BookingDates("2023-01-01", "2023-01-02"), "Breakfast");
+    }
+
+    /**
+     * Reads every row of a CSV file with a header row naming {@code firstname}, {@code lastname},
+     * {@code totalprice}, {@code depositpaid}, {@code checkin}, {@code checkout} and {@code additionalneeds}.
+     * Other columns, such as {@code testcase}, are ignored.
+     *
+     * @return a source that cycles through the rows in file order, shared by all workers
+     */
+    static PayloadSource csv(Path file) {
+        List<Booking> rows = new ArrayList<>();
+        CSVFormat format = CSVFormat.DEFAULT.builder().setHeader().setSkipHeaderRecord(true).build();
+        try (Reader reader = Files.newBufferedReader(file)) {
+            for (CSVRecord record : format.parse(reader)) {
+                rows.add(new Booking(record.get("firstname"), record.get("lastname"),
+                        Integer.parseInt(record.get("totalprice").trim()),
+                        Boolean.parseBoolean(record.get("depositpaid").trim()),
+                        new BookingDates(record.get("checkin"), record.get("checkout")),
+                        record.get("additionalneeds")));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read payload rows from " + file, e);
+        }
+        if (rows.isEmpty()) {
+            throw new IllegalArgumentException("Payload file " + file + " has no rows");
+        }
+        AtomicLong next = new AtomicLong();
+        return random -> rows.get((int) (next.getAndIncrement() % rows.size()));
+    }
+
+    /**
+     * @return a source of random bookings: names from short lists, a price from 50 to 500, and a stay of 1 to 14
+     * nights starting within a year of 2025-01-01
+     */
+    static PayloadSource generated() {
+        String[] firstNames = {"Jim", "Sally", "Mark", "Susan", "Eric", "Mary", "John", "Aroha", "Sundar", "Mei"};
+        String[] lastNames = {"Brown", "Smith", "Jones", "Wilson", "Ericsson", "Ngata", "Ram", "Chen"};
+        String[] needs = {"Breakfast", "Lunch", "Dinner", ""};
+        LocalDate firstCheckin = LocalDate.of(2025, 1, 1);
+        return random -> {
+            LocalDate checkin = firstCheckin.plusDays(random.nextInt(365));
+            return new Booking(firstNames[random.nextInt(firstNames.length)],
+                    lastNames[random.nextInt(lastNames.length)], random.nextInt(50, 501), random.nextBoolean(),
+                    new BookingDates(checkin.toString(), checkin.plusDays(random.nextInt(1, 15)).toString()),
+                    needs[random.nextInt(needs.length)]);
+        };
+    }
+
+    /**
+     * Parses a payload source from its workload file form, see the class description.
+     *
+     * @throws IllegalArgumentException if the form is not recognised
+     */
+    static PayloadSource parse(String spec) {
+        String trimmed = spec.trim();
+        if (trimmed.equalsIgnoreCase("defaults")) {
+            return defaults();
+        }
+        if (trimmed.equalsIgnoreCase("generated")) {
+            return generated();
+        }
+        if (trimmed.toLowerCase().startsWith("csv:")) {
+            return csv(Path.of(trimmed.substring(4).trim()));
+        }
+        throw new IllegalArgumentException("Unrecognised payload source: " + spec);
+    }
+}
@@ -0,0 +1,289 @@
+package nz.co.sundar.testautomation.restfulbooker.load;
+
+import nz.co.sundar.testautomation.restfulbooker.utils.LatencyHistogram;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * What one phase of a load run sent and how the server answered, per operation, and how concentrated the targeted
+ * bookings were under the phase's {@link KeyDistribution}.
+ * <p>
+ * When the workload warms up (see {@link WorkloadDefinition.Warmup}), everything sent before the run was steady is
+ * kept apart in {@link #getWarmup()}, so the headline numbers of runs can be compared.
+ */
+public class PhaseResult {
+
+    private final String name;
+    private final String keys;
+    private final Map<Operation, OperationStats> operations;
+    private final Map<Integer, LongAdder> targets = new ConcurrentHashMap<>();
+    private final LongAdder targeted = new LongAdder();
+    private final LongAdder missed = new LongAdder();
+    private volatile long durationNanos;
+    private volatile PhaseResult warmup;
+    private volatile boolean steady = true;
+    private volatile int warmupIntervals;
+    private volatile double warmupThroughputCv = Double.NaN;
+    private volatile double warmupLatencyCv = Double.NaN;
+
+    /**
+     * @param name the phase's name
+     * @param keys the phase's key distribution, as reported
+     */
+    public PhaseResult(String name, String keys) {
+        this.name = name;
+        this.keys = keys;
+        Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new OperationStats(operation));
+        }
+        this.operations = Collections.unmodifiableMap(stats);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the phase's key distribution, e.g. {@code zipfian(0.99)}
+     */
+    public String getKeys() {
+        return keys;
+    }
+
+    public OperationStats get(Operation operation) {
+        return operations.get(operation);
+    }
+
+    /**
+     * @return the stats of every operation, including those that sent nothing
+     */
+    public Map<Operation, OperationStats> getOperations() {
+        return operations;
+    }
+
+    /**
+     * @return a new histogram of every operation's latencies together
+     */
+    public LatencyHistogram getLatencies() {
+        LatencyHistogram all = new LatencyHistogram();
+        operations.values().forEach(stats -> all.add(stats.getLatencies()));
+        return all;
+    }
+
+    /**
+     * Counts a request that targeted a booking.
+     */
+    public void recordTarget(int bookingId) {
+        targeted.increment();
+        targets.computeIfAbsent(bookingId, id -> new LongAdder()).increment();
+    }
+
+    /**
+     * @return how many different bookings were targeted
+     */
+    public int getDistinctTargets() {
+        return targets.size();
+    }
+
+    /**
+     * @return the share of targeted requests that went to the most targeted booking, from 0 to 1
+     */
+    public double getHottestTargetShare() {
+        long total = targeted.sum();
+        long hottest = targets.values().stream().mapToLong(LongAdder::sum).max().orElse(0);
+        return total == 0 ? 0 : (double) hottest / total;
+    }
+
+    /**
+     * Counts an open-model arrival that came due but could not be sent before the phase ended.
+     */
+    public void recordMissed() {
+        missed.increment();
+    }
+
+    public long getMissed() {
+        return missed.sum();
+    }
+
+    /**
+     * @return the share of requests that failed or were missed, from 0 to 1
+     */
+    public double getErrorRate() {
+        long attempted = getCount() + missed.sum();
+        return attempted == 0 ? 0 : (double) (getErrors() + missed.sum()) / attempted;
+    }
+
+    /**
+     * @return what was sent before the phase was steady, or {@code null} if it did not warm up
+     */
+    public PhaseResult getWarmup() {
+        return warmup;
+    }
+
+    /**
+     * @return false if the warm-up ran out of time before the run was steady, so the headline numbers may still
+     * include warm-up effects
+     */
+    public boolean isSteady() {
+        return steady;
+    }
+
+    void setWarmup(PhaseResult warmup, SteadyStateDetector detector, boolean steady) {
+        this.warmup = warmup;
+        this.steady = steady;
+        this.warmupIntervals = detector.getIntervals();
+        this.warmupThroughputCv = detector.getThroughputCv();
+        this.warmupLatencyCv = detector.getLatencyCv();
+    }
+
+    /**
+     * Adds the same phase as run by another worker, e.g. in another JVM: requests, targets and missed arrivals are
+     * summed, the duration is the longer of the two, and the warm-ups are merged the same way. The merged phase is
+     * steady only if both were, and reports the larger coefficients of variation.
+     */
+    public void add(PhaseResult other) {
+        operations.forEach((operation, stats) -> stats.add(other.get(operation)));
+        other.targets.forEach((id, count) -> targets.computeIfAbsent(id, i -> new LongAdder()).add(count.sum()));
+        targeted.add(other.targeted.sum());
+        missed.add(other.missed.sum());
+        durationNanos = Math.max(durationNanos, other.durationNanos);
+        if (other.warmup != null) {
+            if (warmup == null) {
+                warmup = new PhaseResult(other.warmup.name, other.warmup.keys);
+                warmupIntervals = other.warmupIntervals;
+                warmupThroughputCv = other.warmupThroughputCv;
+                warmupLatencyCv = other.warmupLatencyCv;
+            } else {
+                warmupIntervals = Math.max(warmupIntervals, other.warmupIntervals);
+                warmupThroughputCv = worse(warmupThroughputCv, other.warmupThroughputCv);
+                warmupLatencyCv = worse(warmupLatencyCv, other.warmupLatencyCv);
+            }
+            warmup.add(other.warmup);
+        }
+        steady = steady && other.steady;
+    }
+
+    private static double worse(double cv, double otherCv) {
+        return Double.isNaN(cv) || Double.isNaN(otherCv) ? Double.NaN : Math.max(cv, otherCv);
+    }
+
+    /**
+     * Writes the result, including its warm-up, so that another JVM can read it with {@link #readFrom(DataInput)}.
+     * Safe to call while the phase is running; the copy is then a snapshot of it so far.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeUTF(name);
+        out.writeUTF(keys);
+        out.writeLong(durationNanos);
+        out.writeLong(missed.sum());
+        for (Operation operation : Operation.values()) {
+            operations.get(operation).writeTo(out);
+        }
+        Map<Integer, Long> targetCounts = new HashMap<>();
+        targets.forEach((id, count) -> targetCounts.put(id, count.sum()));
+        out.writeInt(targetCounts.size());
+        for (Map.Entry<Integer, Long> entry : targetCounts.entrySet()) {
+            out.writeInt(entry.getKey());
+            out.writeLong(entry.getValue());
+        }
+        PhaseResult warmupResult = warmup;
+        out.writeBoolean(warmupResult != null);
+        if (warmupResult != null) {
+            out.writeBoolean(steady);
+            out.writeInt(warmupIntervals);
+            out.writeDouble(warmupThroughputCv);
+            out.writeDouble(warmupLatencyCv);
+            warmupResult.writeTo(out);
+        }
+    }
+
+    /**
+     * Reads a result written by {@link #writeTo(DataOutput)}.
+     */
+    public static PhaseResult readFrom(DataInput in) throws IOException {
+        PhaseResult result = new PhaseResult(in.readUTF(), in.readUTF());
+        result.durationNanos = in.readLong();
+        result.missed.add(in.readLong());
+        for (Operation operation : Operation.values()) {
+            result.operations.get(operation).add(OperationStats.readFrom(operation, in));
+        }
+        int targetCount = in.readInt();
+        for (int i = 0; i < targetCount; i++) {
+            int id = in.readInt();
+            long count = in.readLong();
+            result.targets.computeIfAbsent(id, t -> new LongAdder()).add(count);
+            result.targeted.add(count);
+        }
+        if (in.readBoolean()) {
+            result.steady = in.readBoolean();
+            result.warmupIntervals = in.readInt();
+            result.warmupThroughputCv = in.readDouble();
+            result.warmupLatencyCv = in.readDouble();
+            result.warmup = readFrom(in);
+        }
+        return result;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    void setDurationNanos(long durationNanos) {
+        this.durationNanos = durationNanos;
+    }
+
+    public long getCount() {
+        return operations.values().stream().mapToLong(OperationStats::getCount).sum();
+    }
+
+    public long getErrors() {
+        return operations.values().stream().mapToLong(OperationStats::getErrors).sum();
+    }
+
+    /**
+     * @return completed requests per second over the phase
+     */
+    public double getThroughput() {
+        return durationNanos == 0 ? 0 : getCount() * 1e9 / durationNanos;
+    }
+
+    /**
+     * @return a summary such as {@code steady: 60.0s 412.3 req/s n=24738 errors=3 keys=zipfian(0.99) targets=812
+     * hottest=9.4%}, followed by one line per operation that sent requests and then, if the phase warmed up, the
+     * warm-up's summary
+     */
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder(String.format(
+                "%s: %.1fs %.1f req/s n=%d errors=%d keys=%s targets=%d hottest=%.1f%%", name, durationNanos / 1e9,
+                getThroughput(), getCount(), getErrors(), keys, getDistinctTargets(), 100 * getHottestTargetShare()));
+        if (missed.sum() > 0) {
+            summary.append(" missed=").append(missed.sum());
+        }
+        for (OperationStats stats : operations.values()) {
+            if (stats.getCount() > 0) {
+                summary.append(System.lineSeparator()).append("  ").append(stats.getOperation().getEndpoint())
+                        .append(' ').append(stats.getSummary());
+            }
+        }
+        if (warmup != null) {
+            summary.append(System.lineSeparator()).append(String.format("  excluded warm-up, %s after %d intervals",
+                    steady ? "steady" : "NOT steady", warmupIntervals));
+            if (!Double.isNaN(warmupThroughputCv)) {
+                summary.append(String.format(" (throughput cv=%.1f%%, p50 cv=%.1f%%)", 100 * warmupThroughputCv,
+                        100 * warmupLatencyCv));
+            }
+            summary.append(": ")
+                    .append(warmup.getSummary().replace(System.lineSeparator(), System.lineSeparator() + "  "));
+        }
+        return summary.toString();
+    }
+}
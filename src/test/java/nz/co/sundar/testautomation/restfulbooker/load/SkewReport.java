@@ -0,0 +1,49 @@
+package nz.co.sundar.testautomation.restfulbooker.load;
+
+import nz.co.sundar.testautomation.restfulbooker.utils.LatencyHistogram;
+
+import java.util.List;
+
+/**
+ * Lays out the phases of a run side by side, so that phases with different {@link KeyDistribution}s show how
+ * latency and errors change with skew:
+ * <pre>
+ * phase    keys             targets hottest   req/s | PUT /booking/{id} p50  p99    errors
+ * uniform  uniform              200    1.2%   210.4 |                   4.1ms 12.0ms 0.00%
+ * zipf     zipfian(1.2)          61   38.0%   150.2 |                   6.3ms 48.5ms 0.40%
+ * </pre>
+ */
+public final class SkewReport {
+
+    private SkewReport() {
+    }
+
+    /**
+     * @param phases     the phases to compare, one row each
+     * @param operations the operations whose latency and error rate get columns
+     * @return the table, one line per phase after a header line
+     */
+    public static String format(List<PhaseResult> phases, Operation... operations) {
+        int nameWidth = Math.max(5, phases.stream().mapToInt(phase -> phase.getName().length()).max().orElse(0));
+        int keysWidth = Math.max(4, phases.stream().mapToInt(phase -> phase.getKeys().length()).max().orElse(0));
+        StringBuilder table = new StringBuilder(String.format("%-" + nameWidth + "s %-" + keysWidth
+                + "s %7s %7s %7s", "phase", "keys", "targets", "hottest", "req/s"));
+        for (Operation operation : operations) {
+            table.append(String.format(" | %s %8s %8s %7s", operation.getEndpoint(), "p50", "p99", "errors"));
+        }
+        for (PhaseResult phase : phases) {
+            table.append(System.lineSeparator()).append(String.format("%-" + nameWidth + "s %-" + keysWidth
+                            + "s %7d %6.1f%% %7.1f", phase.getName(), phase.getKeys(), phase.getDistinctTargets(),
+                    100 * phase.getHottestTargetShare(), phase.getThroughput()));
+            for (Operation operation : operations) {
+                OperationStats stats = phase.get(operation);
+                LatencyHistogram latencies = stats.getLatencies();
+                table.append(String.format(" | %" + operation.getEndpoint().length() + "s %8s %8s %6.2f%%", "",
+                        LatencyHistogram.formatMillis(latencies.getPercentileNanos(50)),
+                        LatencyHistogram.formatMillis(latencies.getPercentileNanos(99)),
+                        stats.getCount() == 0 ? 0.0 : 100.0 * stats.getErrors() / stats.getCount()));
+            }
+        }
+        return table.toString();
+    }
+}
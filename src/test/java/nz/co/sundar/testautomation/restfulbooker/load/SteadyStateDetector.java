@@ -0,0 +1,92 @@
+package nz.co.sundar.testautomation.restfulbooker.load;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Decides when a load run has warmed up, from its throughput and median latency measured over fixed intervals.
+ * <p>
+ * JIT compilation, filling connection pools, fetching tokens and the server's caches all make the first seconds of
+ * a run unlike the rest. The run is taken to be steady once, over the last {@code window} intervals, the
+ * coefficient of variation (standard deviation over mean) of both the throughput and the p50 is at most
+ * {@code maxCv}. An interval that answered nothing is never steady.
+ */
+public class SteadyStateDetector {
+
+    private final int window;
+    private final double maxCv;
+    private final Deque<double[]> samples = new ArrayDeque<>();
+    private int intervals;
+    private double throughputCv = Double.NaN;
+    private double latencyCv = Double.NaN;
+
+    /**
+     * @param window how many consecutive intervals must agree, at least 2
+     * @param maxCv  the largest coefficient of variation counted as steady, e.g. {@code 0.1}
+     */
+    public SteadyStateDetector(int window, double maxCv) {
+        if (window < 2 || !(maxCv > 0)) {
+            throw new IllegalArgumentException("Steady state needs a window of at least 2 intervals and maxCv above 0");
+        }
+        this.window = window;
+        this.maxCv = maxCv;
+    }
+
+    /**
+     * Adds the next interval's measurements.
+     *
+     * @param throughput the requests answered per second in the interval
+     * @param p50Nanos   the interval's median latency
+     * @return whether the run is steady as of this interval
+     */
+    public boolean add(double throughput, long p50Nanos) {
+        intervals++;
+        samples.addLast(new double[]{throughput, p50Nanos});
+        if (samples.size() > window) {
+            samples.removeFirst();
+        }
+        if (samples.size() < window) {
+            return false;
+        }
+        throughputCv = coefficientOfVariation(0);
+        latencyCv = coefficientOfVariation(1);
+        return throughputCv <= maxCv && latencyCv <= maxCv;
+    }
+
+    private double coefficientOfVariation(int column) {
+        double sum = 0;
+        for (double[] sample : samples) {
+            sum += sample[column];
+        }
+        double mean = sum / samples.size();
+        if (!(mean > 0)) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double squares = 0;
+        for (double[] sample : samples) {
+            squares += (sample[column] - mean) * (sample[column] - mean);
+        }
+        return Math.sqrt(squares / (samples.size() - 1)) / mean;
+    }
+
+    /**
+     * @return how many intervals have been added
+     */
+    public int getIntervals() {
+        return intervals;
+    }
+
+    /**
+     * @return the throughput's coefficient of variation over the last window, or NaN before a full window
+     */
+    public double getThroughputCv() {
+        return throughputCv;
+    }
+
+    /**
+     * @return the p50's coefficient of variation over the last window, or NaN before a full window
+     */
+    public double getLatencyCv() {
+        return latencyCv;
+    }
+}
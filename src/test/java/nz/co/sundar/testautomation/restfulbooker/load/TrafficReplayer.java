@@ -0,0 +1,467 @@
+package nz.co.sundar.testautomation.restfulbooker.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.restassured.response.Response;
+import io.restassured.specification.RequestSpecification;
+import nz.co.sundar.testautomation.restfulbooker.filters.TrafficCaptureFilter;
+import nz.co.sundar.testautomation.restfulbooker.filters.TrafficLog;
+import nz.co.sundar.testautomation.restfulbooker.filters.TrafficLog.Exchange;
+import nz.co.sundar.testautomation.restfulbooker.filters.TrafficLog.Header;
+import nz.co.sundar.testautomation.restfulbooker.utils.ConfigReader;
+import nz.co.sundar.testautomation.restfulbooker.utils.LatencyHistogram;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static io.restassured.RestAssured.given;
+
+/**
+ * Sends the traffic of a {@link TrafficLog} recorded by {@link TrafficCaptureFilter} again, to any base URI, and
+ * compares each response with the recorded one, so that a functional run or a captured session becomes a repeatable
+ * load profile.
+ * <p>
+ * Requests are sent at their recorded offsets divided by {@code speed}: {@code 1} for the recorded pace, {@code 4}
+ * for four times as fast, or {@code 0} for as fast as the workers can send them, in recorded order. Bookings created
+ * and tokens issued during the replay get other ids and values than in the recording, so a request for a recorded
+ * booking id or with a recorded token waits for the replayed create or login and uses its result instead. Requests
+ * for the same booking are also sent one after another, in recorded order, so that a read still follows the update
+ * it followed in the recording however fast the replay runs.
+ * <p>
+ * A response matches if its status is the recorded one and its body is too, ignoring the values of
+ * {@code bookingid} and {@code token} fields in JSON bodies. Bodies that depend on what else the server holds, such as
+ * the booking list, only match when the replay starts from the same data as the recording did.
+ */
+public class TrafficReplayer {
+
+    private static final Logger logger = LogManager.getLogger(TrafficReplayer.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Pattern BOOKING_ID = Pattern.compile("^/booking/(\\d+)");
+    private static final Pattern TOKEN_COOKIE = Pattern.compile("(^|;\\s*)token=([^;]*)");
+    private static final Set<String> IGNORED_FIELDS = Set.of("bookingid", "token");
+    /** Headers the HTTP client sets itself, and the cookie, which is rebuilt with the replayed token. */
+    private static final Set<String> NOT_REPLAYED = Set.of("host", "content-length", "connection",
+            "transfer-encoding", "cookie");
+    private static final long DEPENDENCY_TIMEOUT_SECONDS = 60;
+    private static final int MAX_EXAMPLES = 10;
+
+    private final List<Exchange> exchanges;
+    private final String baseUri;
+    private final double speed;
+    private final int workers;
+
+    /**
+     * @param exchanges the recorded traffic
+     * @param baseUri   where to send it, e.g. {@code http://localhost:3001}
+     * @param speed     how many times faster than recorded to send, or {@code 0} for as fast as possible
+     * @param workers   the most requests in flight at once
+     */
+    public TrafficReplayer(List<Exchange> exchanges, String baseUri, double speed, int workers) {
+        if (speed < 0 || workers < 1) {
+            throw new IllegalArgumentException("A replay needs a speed of at least 0 and at least one worker");
+        }
+        this.exchanges = new ArrayList<>(exchanges);
+        // The log is written as responses arrive; replay in the order the requests were sent.
+        this.exchanges.sort(Comparator.comparingLong(Exchange::startNanos));
+        this.baseUri = baseUri;
+        this.speed = speed;
+        this.workers = workers;
+    }
+
+    /**
+     * Builds a replayer from the {@code replay.*} properties.
+     *
+     * @param exchanges the recorded traffic
+     */
+    public static TrafficReplayer fromConfig(List<Exchange> exchanges) {
+        String baseUri = ConfigReader.getProperty("replay.baseURI", "");
+        return new TrafficReplayer(exchanges, baseUri.isBlank() ? ConfigReader.getProperty("baseURI") : baseUri,
+                Double.parseDouble(ConfigReader.getProperty("replay.speed", "1")),
+                Integer.parseInt(ConfigReader.getProperty("replay.workers", "16")));
+    }
+
+    /**
+     * Replays the log given as the first argument, or {@code replay.file} when there is none, and logs the result.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path file = Path.of(args.length > 0 ? args[0] : ConfigReader.getProperty("replay.file", "target/traffic.bin"));
+        TrafficReplayer replayer = fromConfig(TrafficLog.Reader.readAll(file));
+        logger.info("Replaying {} exchanges from {} to {}", replayer.exchanges.size(), file, replayer.baseUri);
+        logger.info("{}", replayer.run().getSummary());
+    }
+
+    /**
+     * Sends every exchange and waits for the last response.
+     *
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public Report run() throws InterruptedException {
+        // Which recorded ids and tokens the replay will have its own of, known before anything is sent.
+        Map<String, CompletableFuture<String>> ids = new HashMap<>();
+        Map<String, CompletableFuture<String>> tokens = new HashMap<>();
+        for (Exchange exchange : exchanges) {
+            String created = createdValue(exchange, exchange.status(), exchange.responseBody());
+            if (created != null) {
+                (isCreate(exchange) ? ids : tokens).put(created, new CompletableFuture<>());
+            }
+        }
+
+        Report report = new Report(baseUri, exchanges.isEmpty() ? 0
+                : exchanges.get(exchanges.size() - 1).startNanos() - exchanges.get(0).startNanos());
+        ExecutorService pool = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "traffic-replay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Map<String, CompletableFuture<String>> lastOnBooking = new HashMap<>();
+        long start = System.nanoTime();
+        try {
+            for (Exchange exchange : exchanges) {
+                String booking = recordedBooking(exchange);
+                CompletableFuture<String> previous = booking == null ? null : lastOnBooking.get(booking);
+                CompletableFuture<String> done = new CompletableFuture<>();
+                if (booking != null) {
+                    lastOnBooking.put(booking, done);
+                }
+                long due = start;
+                if (speed > 0) {
+                    due += (long) ((exchange.startNanos() - exchanges.get(0).startNanos()) / speed);
+                    long wait = due - System.nanoTime();
+                    if (wait > 0) {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    }
+                }
+                long dueNanos = due;
+                pool.execute(() -> {
+                    try {
+                        if (previous != null) {
+                            await(previous);
+                        }
+                        replay(exchange, dueNanos, ids, tokens, report);
+                    } finally {
+                        done.complete(null);
+                    }
+                });
+            }
+            pool.shutdown();
+            while (!pool.awaitTermination(1, TimeUnit.SECONDS)) {
+                logger.debug("Waiting for {} replayed requests", report.getReplayed());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        report.replaySpanNanos = System.nanoTime() - start;
+        return report;
+    }
+
+    private void replay(Exchange exchange, long dueNanos, Map<String, CompletableFuture<String>> ids,
+                        Map<String, CompletableFuture<String>> tokens, Report report) {
+        String created = createdValue(exchange, exchange.status(), exchange.responseBody());
+        CompletableFuture<String> result = created == null ? null : (isCreate(exchange) ? ids : tokens).get(created);
+        String replayedValue = null;
+        try {
+            String path = exchange.path();
+            Matcher id = BOOKING_ID.matcher(path);
+            if (id.find() && ids.containsKey(id.group(1))) {
+                String replayedId = await(ids.get(id.group(1)));
+                if (replayedId == null) {
+                    report.skip(exchange, "its booking was not created in the replay");
+                    return;
+                }
+                path = "/booking/" + replayedId + path.substring(id.end());
+                report.remapped();
+            }
+            String cookie = exchange.requestHeader("Cookie");
+            if (cookie != null) {
+                Matcher token = TOKEN_COOKIE.matcher(cookie);
+                if (token.find() && tokens.containsKey(token.group(2))) {
+                    String replayedToken = await(tokens.get(token.group(2)));
+                    if (replayedToken == null) {
+                        report.skip(exchange, "its token was not issued in the replay");
+                        return;
+                    }
+                    cookie = cookie.substring(0, token.start(2)) + replayedToken + cookie.substring(token.end(2));
+                }
+            }
+
+            RequestSpecification request = given().noFilters().baseUri(baseUri).urlEncodingEnabled(false);
+            for (Header header : exchange.requestHeaders()) {
+                if (!NOT_REPLAYED.contains(header.name().toLowerCase())) {
+                    request.header(header.name(), header.value());
+                }
+            }
+            if (cookie != null) {
+                request.header("Cookie", cookie);
+            }
+            if (exchange.requestBody().length > 0) {
+                request.body(exchange.requestBody());
+            }
+            long sent = System.nanoTime();
+            Response response = null;
+            try {
+                response = request.request(exchange.method(), path);
+            } catch (RuntimeException e) {
+                report.record(exchange, sent - dueNanos, System.nanoTime() - sent, 0, null,
+                        "no response: " + e.getMessage());
+                return;
+            }
+            long latency = System.nanoTime() - sent;
+            byte[] body = response.asByteArray();
+            if (result != null) {
+                replayedValue = createdValue(exchange, response.getStatusCode(), body);
+            }
+            report.record(exchange, sent - dueNanos, latency, response.getStatusCode(), body, null);
+        } catch (RuntimeException e) {
+            report.skip(exchange, e.toString());
+        } finally {
+            if (result != null) {
+                result.complete(replayedValue);
+            }
+        }
+    }
+
+    /**
+     * @return the recorded id of the booking the exchange reads, changes or creates, or {@code null}
+     */
+    private static String recordedBooking(Exchange exchange) {
+        if (isCreate(exchange)) {
+            return createdValue(exchange, exchange.status(), exchange.responseBody());
+        }
+        Matcher id = BOOKING_ID.matcher(exchange.path());
+        return id.find() ? id.group(1) : null;
+    }
+
+    private static String await(CompletableFuture<String> value) {
+        try {
+            return value.get(DEPENDENCY_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | TimeoutException e) {
+            return null;
+        }
+    }
+
+    private static boolean isCreate(Exchange exchange) {
+        return exchange.method().equals("POST") && exchange.path().equals("/booking");
+    }
+
+    /**
+     * @return the booking id a create returned, or the token a login returned, or {@code null}
+     */
+    private static String createdValue(Exchange exchange, int status, byte[] body) {
+        boolean create = isCreate(exchange);
+        if (status != 200 || !(create || exchange.method().equals("POST") && exchange.path().equals("/auth"))) {
+            return null;
+        }
+        try {
+            JsonNode value = MAPPER.readTree(body).get(create ? "bookingid" : "token");
+            return value == null || value.isNull() ? null : value.asText();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return whether the bodies are the same, apart from the values of ignored JSON fields
+     */
+    static boolean bodiesMatch(byte[] recorded, byte[] replayed) {
+        if (Arrays.equals(recorded, replayed)) {
+            return true;
+        }
+        try {
+            JsonNode expected = MAPPER.readTree(recorded);
+            JsonNode actual = MAPPER.readTree(replayed);
+            return expected != null && actual != null && withoutIgnored(expected).equals(withoutIgnored(actual));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static JsonNode withoutIgnored(JsonNode node) {
+        JsonNode copy = node.deepCopy();
+        strip(copy);
+        return copy;
+    }
+
+    private static void strip(JsonNode node) {
+        if (node instanceof ObjectNode object) {
+            for (Map.Entry<String, JsonNode> field : object.properties()) {
+                if (IGNORED_FIELDS.contains(field.getKey())) {
+                    field.setValue(MAPPER.nullNode());
+                } else {
+                    strip(field.getValue());
+                }
+            }
+        } else if (node.isArray()) {
+            node.forEach(TrafficReplayer::strip);
+        }
+    }
+
+    /**
+     * @return e.g. {@code GET /booking/{id}}
+     */
+    static String endpoint(Exchange exchange) {
+        String path = exchange.path();
+        int query = path.indexOf('?');
+        return exchange.method() + " " + (query < 0 ? path : path.substring(0, query)).replaceAll("/\\d+", "/{id}");
+    }
+
+    /**
+     * What a replay sent, how fast the responses came, and which did not match the recording. Safe to record into
+     * from several workers at once.
+     */
+    public static final class Report {
+
+        private final String baseUri;
+        private final long recordedSpanNanos;
+        private final Map<String, Endpoint> endpoints = new TreeMap<>();
+        private final List<String> examples = new ArrayList<>();
+        private long replayed;
+        private long statusMismatches;
+        private long bodyMismatches;
+        private long errors;
+        private long skipped;
+        private long remappedIds;
+        private long maxLagNanos;
+        private volatile long replaySpanNanos;
+
+        Report(String baseUri, long recordedSpanNanos) {
+            this.baseUri = baseUri;
+            this.recordedSpanNanos = recordedSpanNanos;
+        }
+
+        synchronized void record(Exchange exchange, long lagNanos, long latencyNanos, int status, byte[] body,
+                                 String error) {
+            replayed++;
+            maxLagNanos = Math.max(maxLagNanos, lagNanos);
+            Endpoint endpoint = endpoints.computeIfAbsent(endpoint(exchange), name -> new Endpoint());
+            endpoint.latencies.recordNanos(latencyNanos);
+            if (error != null) {
+                errors++;
+                example(exchange, error);
+            } else if (status != exchange.status()) {
+                statusMismatches++;
+                endpoint.statusMismatches++;
+                example(exchange, "status " + status + ", recorded " + exchange.status());
+            } else if (!bodiesMatch(exchange.responseBody(), body)) {
+                bodyMismatches++;
+                endpoint.bodyMismatches++;
+                example(exchange, "body differs from the recording");
+            }
+        }
+
+        synchronized void skip(Exchange exchange, String reason) {
+            skipped++;
+            example(exchange, "skipped: " + reason);
+        }
+
+        synchronized void remapped() {
+            remappedIds++;
+        }
+
+        private void example(Exchange exchange, String problem) {
+            if (examples.size() < MAX_EXAMPLES) {
+                examples.add(exchange.method() + " " + exchange.path() + ": " + problem);
+            }
+        }
+
+        public synchronized long getReplayed() {
+            return replayed;
+        }
+
+        public synchronized long getStatusMismatches() {
+            return statusMismatches;
+        }
+
+        public synchronized long getBodyMismatches() {
+            return bodyMismatches;
+        }
+
+        public synchronized long getErrors() {
+            return errors;
+        }
+
+        public synchronized long getSkipped() {
+            return skipped;
+        }
+
+        /**
+         * @return how many requests were sent to a replayed booking id instead of a recorded one
+         */
+        public synchronized long getRemappedIds() {
+            return remappedIds;
+        }
+
+        /**
+         * @return the longest a request was sent after its scaled recorded time
+         */
+        public synchronized long getMaxLagNanos() {
+            return maxLagNanos;
+        }
+
+        public long getRecordedSpanNanos() {
+            return recordedSpanNanos;
+        }
+
+        public long getReplaySpanNanos() {
+            return replaySpanNanos;
+        }
+
+        /**
+         * @return the replay's latency for each endpoint, such as {@code GET /booking/{id}}
+         */
+        public synchronized Map<String, LatencyHistogram> getLatencies() {
+            Map<String, LatencyHistogram> latencies = new TreeMap<>();
+            endpoints.forEach((name, endpoint) -> latencies.put(name, endpoint.latencies));
+            return latencies;
+        }
+
+        /**
+         * @return up to ten mismatches, errors and skipped requests, as {@code METHOD path: problem}
+         */
+        public synchronized List<String> getExamples() {
+            return List.copyOf(examples);
+        }
+
+        public synchronized String getSummary() {
+            StringBuilder summary = new StringBuilder(String.format("Replayed %d exchanges to %s in %.1fs (recorded"
+                            + " over %.1fs): %d status and %d body mismatches, %d errors, %d skipped, %d requests"
+                            + " remapped to replayed bookings, sent up to %s late",
+                    replayed, baseUri, replaySpanNanos / 1e9, recordedSpanNanos / 1e9, statusMismatches,
+                    bodyMismatches, errors, skipped, remappedIds, LatencyHistogram.formatMillis(maxLagNanos)));
+            endpoints.forEach((name, endpoint) -> summary.append(System.lineSeparator()).append(String.format(
+                    "  %-24s %s, %d status and %d body mismatches", name, endpoint.latencies.getSummary(),
+                    endpoint.statusMismatches, endpoint.bodyMismatches)));
+            for (String example : examples) {
+                summary.append(System.lineSeparator()).append("  ").append(example);
+            }
+            return summary.toString();
+        }
+    }
+
+    private static final class Endpoint {
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        private long statusMismatches;
+        private long bodyMismatches;
+    }
+}
@@ -0,0 +1,389 @@
+package nz.co.sundar.testautomation.restfulbooker.load;
+
+import nz.co.sundar.testautomation.restfulbooker.standin.LatencyDistribution;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.random.RandomGenerator;
+
+/**
+ * The traffic a {@link LoadDriver} sends: a weighted mix of operations, the payloads they send, the pause between a
+ * worker's requests, and a schedule of phases. It is read from a properties file such as
+ * {@code src/test/resources/workloads/read-heavy.properties}:
+ * <pre>
+ * name = read-heavy
+ * seed = 1
+ * preload = 50
+ * operation.getBooking.weight = 60
+ * operation.createBooking.weight = 15
+ * operation.createBooking.payload = csv:src/test/resources/csv/create_booking.csv
+ * operation.updateBooking.weight = 10
+ * operation.updateBooking.payload = generated
+ * keys = zipfian(0.99)
+ * thinkTime = lognormal(20ms,0.5)
+ * warmup = auto
+ * phases = steady
+ * phase.steady.duration = 60s
+ * phase.steady.workers = 8
+ * phase.steady.ratePerSecond = 100
+ * </pre>
+ * A phase is closed-loop unless {@code phase.<name>.model = open}, see {@link Model}.
+ * Operations are named by {@link Operation#getKey()}. Weights are relative and need not add up to 100; operations
+ * without a weight are not sent. Payloads are parsed by {@link PayloadSource#parse(String)} and default to
+ * {@code defaults}. Think times are parsed by {@link LatencyDistribution#parse(String)}, and a phase may override
+ * the workload's. {@code preload} bookings are created before the first phase, and are not measured.
+ * <p>
+ * {@code keys} chooses which live booking reads, updates and deletes target, parsed by
+ * {@link KeyDistribution#parse(String)}, and defaults to {@code uniform}. A phase's {@code keys} replaces it for
+ * that phase, so one workload can compare several levels of skew; {@code operation.<name>.keys} overrides both for
+ * one operation.
+ * <p>
+ * {@code warmup = auto} starts every phase with a warm-up that lasts until the run is steady, see {@link Warmup};
+ * the phase's {@code duration} is then measured from there. The default, {@code none}, measures from the start.
+ */
+public class WorkloadDefinition {
+
+    private static final Set<String> WARMUP_SETTINGS = Set.of("warmup.interval", "warmup.window", "warmup.maxCv",
+            "warmup.maxDuration");
+
+    /**
+     * How a phase's workers decide when to send, set with {@code phase.<name>.model}.
+     */
+    public enum Model {
+        /**
+         * Each worker sends its next request once the last was answered and it has paused for a think time, at no
+         * more than {@code ratePerSecond} across workers when that is set. A slow server slows the load down.
+         */
+        CLOSED,
+        /**
+         * Requests arrive at {@code ratePerSecond} on a fixed schedule whatever the server does, with up to
+         * {@code workers} in flight, and latency is measured from when each was due. Think times are not used.
+         */
+        OPEN
+    }
+
+    /**
+     * How each phase warms up before it is measured, set with {@code warmup = auto} and these settings:
+     * {@code warmup.interval} (default {@code 1s}), {@code warmup.window} ({@code 5}), {@code warmup.maxCv}
+     * ({@code 0.1}) and {@code warmup.maxDuration} ({@code 60s}).
+     *
+     * @param intervalNanos how often throughput and p50 are measured
+     * @param window        how many consecutive intervals must agree, see {@link SteadyStateDetector}
+     * @param maxCv         the largest coefficient of variation counted as steady
+     * @param maxNanos      the longest a warm-up runs before measuring starts anyway, reported as not steady
+     */
+    public record Warmup(long intervalNanos, int window, double maxCv, long maxNanos) {
+
+        public Warmup {
+            if (intervalNanos <= 0 || maxNanos < intervalNanos || window < 2 || !(maxCv > 0)) {
+                throw new IllegalArgumentException("Warm-up needs a positive interval, a maxDuration of at least one"
+                        + " interval, a window of at least 2 and maxCv above 0");
+            }
+        }
+
+        /**
+         * @return a detector for one phase's warm-up
+         */
+        public SteadyStateDetector newDetector() {
+            return new SteadyStateDetector(window, maxCv);
+        }
+    }
+
+    /**
+     * One stage of a run, with its own length, number of workers and optional rate cap.
+     *
+     * @param name          the name results are reported under
+     * @param durationNanos how long the phase runs
+     * @param workers       the number of concurrent workers, each sending one request at a time
+     * @param ratePerSecond the most requests per second across all workers, 0 for no cap
+     * @param thinkTime     the pause after each of a worker's requests
+     * @param keys          the phase's key distribution, or {@code null} for the workload's
+     * @param model         whether workers are closed-loop or follow an open arrival schedule
+     */
+    public record Phase(String name, long durationNanos, int workers, double ratePerSecond,
+                        LatencyDistribution thinkTime, KeyDistribution keys, Model model) {
+
+        public Phase {
+            if (durationNanos <= 0 || workers < 1 || ratePerSecond < 0) {
+                throw new IllegalArgumentException("Phase " + name
+                        + " needs a positive duration, at least one worker and a non-negative rate");
+            }
+            if (model == Model.OPEN && ratePerSecond == 0) {
+                throw new IllegalArgumentException("Open-model phase " + name + " needs a ratePerSecond");
+            }
+        }
+    }
+
+    private final String name;
+    private final long seed;
+    private final int preload;
+    private final Map<Operation, Integer> weights;
+    private final Map<Operation, PayloadSource> payloads;
+    private final KeyDistribution keys;
+    private final Map<Operation, KeyDistribution> operationKeys;
+    private final List<Phase> phases;
+    private final Warmup warmup;
+    private final Operation[] mix;
+    private final int[] cumulativeWeights;
+
+    /**
+     * @param name          the name results are reported under
+     * @param seed          the seed workers' random choices derive from
+     * @param preload       bookings created before the first phase
+     * @param weights       relative weight per operation; operations left out are not sent
+     * @param payloads      payload source per create or update operation; others use {@link PayloadSource#defaults()}
+     * @param keys          the key distribution of phases and operations that do not set their own
+     * @param operationKeys key distribution per operation that targets a booking, overriding the phase's
+     * @param phases        the phases to run, in order
+     * @param warmup        how each phase warms up before it is measured, or {@code null} to measure from the start
+     */
+    public WorkloadDefinition(String name, long seed, int preload, Map<Operation, Integer> weights,
+                              Map<Operation, PayloadSource> payloads, KeyDistribution keys,
+                              Map<Operation, KeyDistribution> operationKeys, List<Phase> phases, Warmup warmup) {
+        if (phases.isEmpty()) {
+            throw new IllegalArgumentException("Workload " + name + " has no phases");
+        }
+        if (preload < 0) {
+            throw new IllegalArgumentException("Workload " + name + " cannot preload a negative number of bookings");
+        }
+        this.name = name;
+        this.seed = seed;
+        this.preload = preload;
+        this.weights = Collections.unmodifiableMap(new EnumMap<>(weights));
+        this.payloads = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            this.payloads.put(operation, payloads.getOrDefault(operation, PayloadSource.defaults()));
+        }
+        this.keys = keys;
+        this.operationKeys = operationKeys.isEmpty()
+                ? Map.of() : Collections.unmodifiableMap(new EnumMap<>(operationKeys));
+        this.phases = List.copyOf(phases);
+        this.warmup = warmup;
+
+        List<Operation> operations = new ArrayList<>();
+        List<Integer> cumulative = new ArrayList<>();
+        int total = 0;
+        for (Map.Entry<Operation, Integer> entry : this.weights.entrySet()) {
+            if (entry.getValue() < 0) {
+                throw new IllegalArgumentException("Weight of " + entry.getKey().getKey() + " is negative");
+            }
+            if (entry.getValue() > 0) {
+                total += entry.getValue();
+                operations.add(entry.getKey());
+                cumulative.add(total);
+            }
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("Workload " + name + " gives no operation a weight");
+        }
+        this.mix = operations.toArray(new Operation[0]);
+        this.cumulativeWeights = cumulative.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Reads a workload file, see the class description.
+     *
+     * @throws IllegalArgumentException if a setting is missing or not recognised
+     */
+    public static WorkloadDefinition load(Path file) {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read workload " + file, e);
+        }
+        String fileName = file.getFileName().toString();
+        return parse(properties, fileName.endsWith(".properties")
+                ? fileName.substring(0, fileName.length() - ".properties".length()) : fileName);
+    }
+
+    /**
+     * Builds a workload from the settings of a workload file, see the class description.
+     *
+     * @param defaultName the name used when the settings have no {@code name}
+     * @throws IllegalArgumentException if a setting is missing or not recognised
+     */
+    public static WorkloadDefinition parse(Properties properties, String defaultName) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        Map<Operation, PayloadSource> payloads = new EnumMap<>(Operation.class);
+        Map<Operation, KeyDistribution> operationKeys = new EnumMap<>(Operation.class);
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith("warmup.") && !WARMUP_SETTINGS.contains(key)) {
+                throw new IllegalArgumentException("Unrecognised workload setting: " + key);
+            }
+            if (!key.startsWith("operation.")) {
+                continue;
+            }
+            String[] parts = key.split("\\.");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Unrecognised workload setting: " + key);
+            }
+            Operation operation = Operation.fromKey(parts[1]);
+            String value = properties.getProperty(key).trim();
+            switch (parts[2]) {
+                case "weight" -> weights.put(operation, Integer.parseInt(value));
+                case "payload" -> {
+                    if (operation != Operation.CREATE_BOOKING && operation != Operation.UPDATE_BOOKING) {
+                        throw new IllegalArgumentException(operation.getKey() + " does not send a payload");
+                    }
+                    payloads.put(operation, PayloadSource.parse(value));
+                }
+                case "keys" -> {
+                    if (!operation.needsBooking()) {
+                        throw new IllegalArgumentException(operation.getKey() + " does not target a booking");
+                    }
+                    operationKeys.put(operation, KeyDistribution.parse(value));
+                }
+                default -> throw new IllegalArgumentException("Unrecognised workload setting: " + key);
+            }
+        }
+
+        LatencyDistribution thinkTime = parseThinkTime(properties.getProperty("thinkTime", ""));
+        List<Phase> phases = new ArrayList<>();
+        for (String phaseName : properties.getProperty("phases", "").split(",")) {
+            phaseName = phaseName.trim();
+            if (phaseName.isEmpty()) {
+                continue;
+            }
+            String prefix = "phase." + phaseName + ".";
+            String duration = properties.getProperty(prefix + "duration");
+            if (duration == null) {
+                throw new IllegalArgumentException("Phase " + phaseName + " has no duration");
+            }
+            String phaseThinkTime = properties.getProperty(prefix + "thinkTime");
+            String phaseKeys = properties.getProperty(prefix + "keys");
+            phases.add(new Phase(phaseName, LatencyDistribution.parseDuration(duration),
+                    Integer.parseInt(properties.getProperty(prefix + "workers", "1").trim()),
+                    Double.parseDouble(properties.getProperty(prefix + "ratePerSecond", "0").trim()),
+                    phaseThinkTime == null ? thinkTime : parseThinkTime(phaseThinkTime),
+                    phaseKeys == null ? null : KeyDistribution.parse(phaseKeys),
+                    Model.valueOf(properties.getProperty(prefix + "model", "CLOSED").trim().toUpperCase())));
+        }
+
+        return new WorkloadDefinition(properties.getProperty("name", defaultName).trim(),
+                Long.parseLong(properties.getProperty("seed", "1").trim()),
+                Integer.parseInt(properties.getProperty("preload", "0").trim()),
+                weights, payloads, KeyDistribution.parse(properties.getProperty("keys", "uniform")), operationKeys,
+                phases, parseWarmup(properties));
+    }
+
+    private static Warmup parseWarmup(Properties properties) {
+        String mode = properties.getProperty("warmup", "none").trim().toLowerCase();
+        if (mode.equals("none")) {
+            return null;
+        }
+        if (!mode.equals("auto")) {
+            throw new IllegalArgumentException("Unrecognised warmup, expected auto or none: " + mode);
+        }
+        return new Warmup(LatencyDistribution.parseDuration(properties.getProperty("warmup.interval", "1s")),
+                Integer.parseInt(properties.getProperty("warmup.window", "5").trim()),
+                Double.parseDouble(properties.getProperty("warmup.maxCv", "0.1").trim()),
+                LatencyDistribution.parseDuration(properties.getProperty("warmup.maxDuration", "60s")));
+    }
+
+    private static LatencyDistribution parseThinkTime(String spec) {
+        return spec.isBlank() ? LatencyDistribution.NONE : LatencyDistribution.parse(spec);
+    }
+
+    /**
+     * Chooses the next operation with probability proportional to its weight.
+     *
+     * @param random the worker's source of randomness
+     */
+    public Operation pick(RandomGenerator random) {
+        int ticket = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (ticket < cumulativeWeights[i]) {
+                return mix[i];
+            }
+        }
+        throw new IllegalStateException("Unreachable: ticket beyond the total weight");
+    }
+
+    /**
+     * Returns one worker's share of this workload when {@code count} workers, such as the JVMs of a
+     * {@link LoadCoordinator}, run it together: each phase's rate, workers and the preloaded bookings are divided
+     * between them, and each worker draws from its own seed.
+     *
+     * @param index the worker, from 0 to {@code count - 1}
+     * @param count how many workers share the workload
+     */
+    public WorkloadDefinition forWorker(int index, int count) {
+        if (index < 0 || index >= count) {
+            throw new IllegalArgumentException("Worker " + index + " is not one of " + count);
+        }
+        List<Phase> shares = new ArrayList<>();
+        for (Phase phase : phases) {
+            shares.add(new Phase(phase.name(), phase.durationNanos(), Math.max(1, share(phase.workers(), index, count)),
+                    phase.ratePerSecond() / count, phase.thinkTime(), phase.keys(), phase.model()));
+        }
+        return new WorkloadDefinition(name, seed + index, share(preload, index, count), weights, payloads, keys,
+                operationKeys, shares, warmup);
+    }
+
+    private static int share(int total, int index, int count) {
+        return total / count + (index < total % count ? 1 : 0);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return how each phase warms up before it is measured, or {@code null} if phases are measured from the start
+     */
+    public Warmup getWarmup() {
+        return warmup;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getPreload() {
+        return preload;
+    }
+
+    /**
+     * @return the configured weight per operation; operations that are not sent are absent or 0
+     */
+    public Map<Operation, Integer> getWeights() {
+        return weights;
+    }
+
+    public PayloadSource getPayloadSource(Operation operation) {
+        return payloads.get(operation);
+    }
+
+    /**
+     * @return the distribution an operation's target is chosen by during a phase
+     */
+    public KeyDistribution getKeyDistribution(Operation operation, Phase phase) {
+        KeyDistribution distribution = operationKeys.get(operation);
+        if (distribution == null) {
+            distribution = phase.keys() == null ? keys : phase.keys();
+        }
+        return distribution;
+    }
+
+    /**
+     * @return the distribution a phase's operations use unless they set their own
+     */
+    public KeyDistribution getKeyDistribution(Phase phase) {
+        return phase.keys() == null ? keys : phase.keys();
+    }
+
+    public List<Phase> getPhases() {
+        return phases;
+    }
+}
@@ -0,0 +1,297 @@
+package nz.co.sundar.testautomation.restfulbooker.standin;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import nz.co.sundar.testautomation.restfulbooker.utils.PojoUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Implements the Restful Booker endpoints on top of a {@link BookingStore}.
+ * <p>
+ * Status codes and bodies match what the public API returns and what the {@code tests/*} classes assert on:
+ * <ul>
+ *   <li>{@code POST /auth} - {@code 200} with a token, or {@code 200 {"reason":"Bad credentials"}}</li>
+ *   <li>{@code GET /booking}, {@code POST /booking} - list ids, optionally filtered, and create (missing names give
+ *       {@code 500})</li>
+ *   <li>{@code GET /booking/{id}} - the booking or {@code 404 Not Found}</li>
+ *   <li>{@code PUT/PATCH/DELETE /booking/{id}} - {@code 403 Forbidden} without a valid token,
+ *       {@code 405 Method Not Allowed} for unknown ids, {@code 404 Not Found} for an empty id</li>
+ *   <li>{@code GET /ping} - {@code 201 Created}</li>
+ *   <li>{@code GET /standin/contention} - lock contention counters of a {@link StripedBookingStore}, not part of
+ *       the public API</li>
+ *   <li>{@code GET /standin/snapshots}, {@code PUT/DELETE /standin/snapshots/{name}} and
+ *       {@code POST /standin/snapshots/{name}/restore} - list, take, delete and restore named snapshots of the
+ *       store, {@code 501} unless it is a {@link SnapshottableStore}; not part of the public API</li>
+ * </ul>
+ * Writes are authorised by a {@code token} cookie issued by {@code /auth} or by HTTP basic authentication with
+ * the configured credentials. Only the most recently issued tokens are kept, {@link #DEFAULT_MAX_TOKENS} unless
+ * configured otherwise; older ones are forgotten as if they had expired, so clients that keep fetching tokens, such
+ * as load tests, do not grow the set without bound.
+ */
+public class BookingHandler {
+
+    private static final String BOOKING_PATH = "/booking";
+    private static final String BOOKING_ID_PREFIX = BOOKING_PATH + "/";
+    private static final String SNAPSHOTS_PATH = "/standin/snapshots";
+    private static final String SNAPSHOT_PREFIX = SNAPSHOTS_PATH + "/";
+    private static final String RESTORE_SUFFIX = "/restore";
+    private static final Pattern SNAPSHOT_NAME = Pattern.compile("[A-Za-z0-9_.-]{1,64}");
+    /** The number of issued tokens kept when the constructor is not given one. */
+    public static final int DEFAULT_MAX_TOKENS = 10_000;
+
+    private static final HttpResponse BAD_CREDENTIALS =
+            HttpResponse.json(200, "{\"reason\":\"Bad credentials\"}".getBytes(StandardCharsets.UTF_8));
+
+    private final BookingStore store;
+    private final String username;
+    private final String password;
+    private final String basicAuthorization;
+    private final int maxTokens;
+    private final Set<String> tokens = ConcurrentHashMap.newKeySet();
+    /** Issued tokens, oldest first; may still hold revoked tokens, which are skipped when evicting. */
+    private final Queue<String> tokenOrder = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param store    where bookings are kept
+     * @param username the username {@code /auth} accepts
+     * @param password the password {@code /auth} accepts
+     */
+    public BookingHandler(BookingStore store, String username, String password) {
+        this(store, username, password, DEFAULT_MAX_TOKENS);
+    }
+
+    /**
+     * @param store     where bookings are kept
+     * @param username  the username {@code /auth} accepts
+     * @param password  the password {@code /auth} accepts
+     * @param maxTokens how many issued tokens stay valid; issuing another forgets the oldest
+     */
+    public BookingHandler(BookingStore store, String username, String password, int maxTokens) {
+        if (maxTokens < 1) {
+            throw new IllegalArgumentException("maxTokens must be at least 1: " + maxTokens);
+        }
+        this.maxTokens = maxTokens;
+        this.store = store;
+        this.username = username;
+        this.password = password;
+        this.basicAuthorization = "Basic " + Base64.getEncoder()
+                .encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public BookingStore getStore() {
+        return store;
+    }
+
+    /**
+     * Routes a request to its endpoint.
+     *
+     * @param request the parsed request
+     * @return the response to send
+     */
+    public HttpResponse handle(HttpRequest request) {
+        String path = request.getPath();
+        String method = request.getMethod();
+
+        if (path.startsWith(BOOKING_ID_PREFIX) && path.length() > BOOKING_ID_PREFIX.length()) {
+            return handleBooking(request, method, path.substring(BOOKING_ID_PREFIX.length()));
+        }
+        if (path.equals(BOOKING_PATH) || path.equals(BOOKING_ID_PREFIX)) {
+            return switch (method) {
+                case "GET" -> list(request);
+                case "POST" -> create(request);
+                default -> HttpResponse.NOT_FOUND;
+            };
+        }
+        if (path.equals("/auth") && method.equals("POST")) {
+            return auth(request);
+        }
+        if (path.equals("/ping") && method.equals("GET")) {
+            return HttpResponse.CREATED;
+        }
+        if (path.equals("/standin/contention") && method.equals("GET")
+                && store instanceof StripedBookingStore striped) {
+            return HttpResponse.json(200, striped.getContention().toJson());
+        }
+        if (path.equals(SNAPSHOTS_PATH) || path.startsWith(SNAPSHOT_PREFIX)) {
+            return handleSnapshot(method, path);
+        }
+        return HttpResponse.NOT_FOUND;
+    }
+
+    private HttpResponse handleBooking(HttpRequest request, String method, String idText) {
+        int id = parseId(idText);
+        switch (method) {
+            case "GET": {
+                StoredBooking booking = id < 0 ? null : store.get(id);
+                return booking == null ? HttpResponse.NOT_FOUND : booking.toResponse();
+            }
+            case "PUT":
+            case "PATCH": {
+                if (!isAuthorised(request)) {
+                    return HttpResponse.FORBIDDEN;
+                }
+                StoredBooking existing = id < 0 ? null : store.get(id);
+                if (existing == null) {
+                    return HttpResponse.METHOD_NOT_ALLOWED;
+                }
+                StoredBooking updated;
+                try {
+                    updated = method.equals("PUT")
+                            ? BookingJson.parse(request.getBody())
+                            : BookingJson.merge(existing, request.getBody());
+                } catch (IOException | IllegalArgumentException e) {
+                    return HttpResponse.BAD_REQUEST;
+                }
+                return store.update(id, updated) ? updated.toResponse() : HttpResponse.METHOD_NOT_ALLOWED;
+            }
+            case "DELETE": {
+                if (!isAuthorised(request)) {
+                    return HttpResponse.FORBIDDEN;
+                }
+                return id >= 0 && store.delete(id) ? HttpResponse.CREATED : HttpResponse.METHOD_NOT_ALLOWED;
+            }
+            default:
+                return HttpResponse.NOT_FOUND;
+        }
+    }
+
+    private HttpResponse handleSnapshot(String method, String path) {
+        if (!(store instanceof SnapshottableStore snapshots)) {
+            return HttpResponse.NOT_IMPLEMENTED;
+        }
+        if (path.equals(SNAPSHOTS_PATH)) {
+            return method.equals("GET") ? snapshotJson("snapshots", snapshots.getSnapshotNames().stream()
+                    .map(name -> "\"" + name + "\"").collect(Collectors.joining(",", "[", "]")))
+                    : HttpResponse.NOT_FOUND;
+        }
+        String name = path.substring(SNAPSHOT_PREFIX.length());
+        boolean restore = name.endsWith(RESTORE_SUFFIX);
+        if (restore) {
+            name = name.substring(0, name.length() - RESTORE_SUFFIX.length());
+        }
+        if (!SNAPSHOT_NAME.matcher(name).matches()) {
+            return HttpResponse.BAD_REQUEST;
+        }
+        if (restore) {
+            if (!method.equals("POST")) {
+                return HttpResponse.NOT_FOUND;
+            }
+            return snapshots.restore(name) ? snapshotJson("restored", "\"" + name + "\"") : HttpResponse.NOT_FOUND;
+        }
+        switch (method) {
+            case "PUT":
+                snapshots.snapshot(name);
+                return snapshotJson("snapshot", "\"" + name + "\"");
+            case "DELETE":
+                return snapshots.deleteSnapshot(name) ? HttpResponse.CREATED : HttpResponse.NOT_FOUND;
+            default:
+                return HttpResponse.NOT_FOUND;
+        }
+    }
+
+    private HttpResponse snapshotJson(String field, String value) {
+        return HttpResponse.json(200, ("{\"" + field + "\":" + value + ",\"bookings\":" + store.size() + "}")
+                .getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Lists the ids of all bookings, or of those matching the {@code firstname}, {@code lastname}, {@code checkin}
+     * and {@code checkout} query parameters. An invalid date filter gives {@code 500}, as on the public API.
+     */
+    protected HttpResponse list(HttpRequest request) {
+        BookingQuery query;
+        try {
+            query = BookingQuery.parse(request.getQuery());
+        } catch (IllegalArgumentException e) {
+            return HttpResponse.INTERNAL_SERVER_ERROR;
+        }
+        return HttpResponse.json(200, BookingJson.writeIds(query.isEmpty() ? store.ids() : store.query(query)));
+    }
+
+    private HttpResponse create(HttpRequest request) {
+        StoredBooking booking;
+        try {
+            booking = BookingJson.parse(request.getBody());
+        } catch (IOException e) {
+            return HttpResponse.BAD_REQUEST;
+        } catch (IllegalArgumentException e) {
+            return HttpResponse.INTERNAL_SERVER_ERROR;
+        }
+        int id = store.create(booking);
+        return HttpResponse.json(200, BookingJson.writeCreated(id, booking));
+    }
+
+    private HttpResponse auth(HttpRequest request) {
+        try {
+            JsonNode credentials = PojoUtils.getObjectMapper().readTree(request.getBody());
+            if (credentials != null && username.equals(credentials.path("username").asText(null))
+                    && password.equals(credentials.path("password").asText(null))) {
+                String token = Long.toHexString(ThreadLocalRandom.current().nextLong() | Long.MIN_VALUE).substring(1);
+                issueToken(token);
+                return HttpResponse.json(200, ("{\"token\":\"" + token + "\"}").getBytes(StandardCharsets.US_ASCII));
+            }
+        } catch (IOException e) {
+            return HttpResponse.BAD_REQUEST;
+        }
+        return BAD_CREDENTIALS;
+    }
+
+    private void issueToken(String token) {
+        tokens.add(token);
+        tokenOrder.add(token);
+        // The queue is at least as long as the set, so it holds the oldest token whenever the set is over the cap.
+        while (tokens.size() > maxTokens) {
+            String oldest = tokenOrder.poll();
+            if (oldest == null) {
+                break;
+            }
+            tokens.remove(oldest);
+        }
+    }
+
+    /**
+     * Forgets the token a request carries, as if it had expired. Used by fault injection.
+     */
+    void revokeToken(HttpRequest request) {
+        String token = request.getCookieValue("token");
+        if (token != null) {
+            tokens.remove(token);
+            tokenOrder.remove(token);
+        }
+    }
+
+    /**
+     * @return whether the request carries a token issued by {@code /auth} or valid basic credentials
+     */
+    protected boolean isAuthorised(HttpRequest request) {
+        String token = request.getCookieValue("token");
+        return (token != null && tokens.contains(token)) || basicAuthorization.equals(request.getAuthorization());
+    }
+
+    /**
+     * Parses a positive decimal booking id, returning -1 for anything else such as {@code "abc"}.
+     */
+    static int parseId(String text) {
+        if (text.isEmpty() || text.length() > 10) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value > Integer.MAX_VALUE ? -1 : (int) value;
+    }
+}
@@ -0,0 +1,168 @@
+package nz.co.sundar.testautomation.restfulbooker.standin;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.IntFunction;
+
+/**
+ * Secondary indexes for filtered {@code GET /booking} queries: hash indexes on first and last name and sorted
+ * indexes on the check-in and check-out dates, each mapping a key to the set of booking ids that have it.
+ * <p>
+ * A query reads the postings of its most selective filter only and checks each candidate against the stored
+ * booking, so the cost is proportional to the smallest matching posting list rather than the number of bookings.
+ * Because every candidate is re-checked, a posting left behind by a racing update can never produce a wrong
+ * result.
+ * <p>
+ * {@link #onChange} must be called with all changes to a given id serialized, which {@link StripedBookingStore}
+ * does by calling it under the stripe's write lock.
+ */
+public final class BookingIndex {
+
+    private final ConcurrentHashMap<String, IntHashSet> firstnames = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, IntHashSet> lastnames = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Integer, IntHashSet> checkins = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<Integer, IntHashSet> checkouts = new ConcurrentSkipListMap<>();
+
+    /**
+     * Updates the postings of one booking.
+     *
+     * @param id       the booking id
+     * @param previous the booking before the change, or {@code null} if it was created
+     * @param current  the booking after the change, or {@code null} if it was deleted
+     */
+    void onChange(int id, StoredBooking previous, StoredBooking current) {
+        String oldFirstname = previous == null ? null : previous.getFirstname();
+        String newFirstname = current == null ? null : current.getFirstname();
+        if (!Objects.equals(oldFirstname, newFirstname)) {
+            removeName(firstnames, oldFirstname, id);
+            addName(firstnames, newFirstname, id);
+        }
+        String oldLastname = previous == null ? null : previous.getLastname();
+        String newLastname = current == null ? null : current.getLastname();
+        if (!Objects.equals(oldLastname, newLastname)) {
+            removeName(lastnames, oldLastname, id);
+            addName(lastnames, newLastname, id);
+        }
+        int oldCheckin = previous == null ? BookingQuery.NO_DATE : BookingQuery.dateKey(previous.getCheckin());
+        int newCheckin = current == null ? BookingQuery.NO_DATE : BookingQuery.dateKey(current.getCheckin());
+        if (oldCheckin != newCheckin) {
+            removeDate(checkins, oldCheckin, id);
+            addDate(checkins, newCheckin, id);
+        }
+        int oldCheckout = previous == null ? BookingQuery.NO_DATE : BookingQuery.dateKey(previous.getCheckout());
+        int newCheckout = current == null ? BookingQuery.NO_DATE : BookingQuery.dateKey(current.getCheckout());
+        if (oldCheckout != newCheckout) {
+            removeDate(checkouts, oldCheckout, id);
+            addDate(checkouts, newCheckout, id);
+        }
+    }
+
+    /**
+     * Finds the bookings matching a query.
+     *
+     * @param query  the filters, at least one of which is set
+     * @param lookup returns the current booking for an id, or {@code null}
+     * @return the matching ids in ascending order
+     */
+    int[] query(BookingQuery query, IntFunction<StoredBooking> lookup) {
+        IntList candidates = candidates(query);
+        IntList matches = new IntList(candidates.size());
+        for (int i = 0; i < candidates.size(); i++) {
+            int candidate = candidates.get(i);
+            if (query.matches(lookup.apply(candidate))) {
+                matches.add(candidate);
+            }
+        }
+        return matches.toSortedArray();
+    }
+
+    /**
+     * Collects the postings of the most selective filter.
+     */
+    private IntList candidates(BookingQuery query) {
+        IntHashSet names = null;
+        if (query.getFirstname() != null) {
+            names = firstnames.get(query.getFirstname());
+            if (names == null) {
+                return new IntList(0);
+            }
+        }
+        if (query.getLastname() != null) {
+            IntHashSet byLastname = lastnames.get(query.getLastname());
+            if (byLastname == null) {
+                return new IntList(0);
+            }
+            if (names == null || byLastname.size() < names.size()) {
+                names = byLastname;
+            }
+        }
+        IntList ids = new IntList(names == null ? 64 : names.size());
+        if (names != null) {
+            names.addTo(ids);
+            return ids;
+        }
+
+        NavigableMap<Integer, IntHashSet> range = null;
+        if (query.getCheckinKey() != BookingQuery.NO_DATE) {
+            range = checkins.tailMap(query.getCheckinKey(), true);
+        }
+        if (query.getCheckoutKey() != BookingQuery.NO_DATE) {
+            NavigableMap<Integer, IntHashSet> byCheckout = checkouts.tailMap(query.getCheckoutKey(), true);
+            if (range == null || count(byCheckout) < count(range)) {
+                range = byCheckout;
+            }
+        }
+        if (range != null) {
+            for (IntHashSet postings : range.values()) {
+                postings.addTo(ids);
+            }
+        }
+        return ids;
+    }
+
+    private static long count(NavigableMap<Integer, IntHashSet> range) {
+        long count = 0;
+        for (IntHashSet postings : range.values()) {
+            count += postings.size();
+        }
+        return count;
+    }
+
+    private static void addName(ConcurrentHashMap<String, IntHashSet> index, String name, int id) {
+        if (name != null) {
+            index.compute(name, (key, postings) -> {
+                IntHashSet set = postings == null ? new IntHashSet() : postings;
+                set.add(id);
+                return set;
+            });
+        }
+    }
+
+    private static void removeName(ConcurrentHashMap<String, IntHashSet> index, String name, int id) {
+        if (name != null) {
+            index.computeIfPresent(name, (key, postings) -> postings.remove(id) && postings.size() == 0 ? null : postings);
+        }
+    }
+
+    /**
+     * Date postings are never removed from the map once created, so adding needs no atomic compute. The number of
+     * distinct dates stays small.
+     */
+    private static void addDate(Map<Integer, IntHashSet> index, int date, int id) {
+        if (date != BookingQuery.NO_DATE) {
+            index.computeIfAbsent(date, key -> new IntHashSet()).add(id);
+        }
+    }
+
+    private static void removeDate(Map<Integer, IntHashSet> index, int date, int id) {
+        if (date != BookingQuery.NO_DATE) {
+            IntHashSet postings = index.get(date);
+            if (postings != null) {
+                postings.remove(id);
+            }
+        }
+    }
+}
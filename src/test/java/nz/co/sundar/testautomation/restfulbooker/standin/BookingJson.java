@@ -0,0 +1,207 @@
+package nz.co.sundar.testautomation.restfulbooker.standin;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import nz.co.sundar.testautomation.restfulbooker.utils.PojoUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Reads booking payloads and writes booking JSON the way the Restful Booker API does.
+ * <p>
+ * The real API coerces values the way its JavaScript backend does. A non-numeric {@code totalprice} is stored as
+ * {@code null}, a non-empty string {@code depositpaid} is {@code true}, and a date that does not parse is
+ * rendered as {@code "0NaN-aN-aN"}. Missing names or booking dates make it fail with
+ * {@code 500 Internal Server Error}. The stand-in reproduces those rules so the negative tests see the same
+ * responses.
+ */
+public final class BookingJson {
+
+    static final String INVALID_DATE = "0NaN-aN-aN";
+
+    private BookingJson() {
+    }
+
+    /**
+     * Parses a create or update payload.
+     *
+     * @param body the request body
+     * @return the booking to store
+     * @throws IOException              if the body is not a JSON object
+     * @throws IllegalArgumentException if a field the API requires is missing
+     */
+    public static StoredBooking parse(byte[] body) throws IOException {
+        JsonNode root = PojoUtils.getObjectMapper().readTree(body);
+        if (root == null || !root.isObject()) {
+            throw new IOException("Booking payload is not a JSON object");
+        }
+        JsonNode dates = root.path("bookingdates");
+        if (!dates.isObject()) {
+            throw new IllegalArgumentException("bookingdates is required");
+        }
+        return new StoredBooking(
+                requiredText(root, "firstname"),
+                requiredText(root, "lastname"),
+                price(root.path("totalprice")),
+                truthy(root.path("depositpaid")),
+                date(dates.path("checkin")),
+                date(dates.path("checkout")),
+                optionalText(root.path("additionalneeds")));
+    }
+
+    /**
+     * Applies a partial update to an existing booking, as {@code PATCH /booking/{id}} does.
+     *
+     * @param existing the current booking
+     * @param body     the partial payload
+     * @return the updated booking
+     * @throws IOException if the body is not a JSON object
+     */
+    public static StoredBooking merge(StoredBooking existing, byte[] body) throws IOException {
+        JsonNode root = PojoUtils.getObjectMapper().readTree(body);
+        if (root == null || !root.isObject()) {
+            throw new IOException("Booking payload is not a JSON object");
+        }
+        JsonNode dates = root.path("bookingdates");
+        return new StoredBooking(
+                root.has("firstname") ? optionalText(root.get("firstname")) : existing.getFirstname(),
+                root.has("lastname") ? optionalText(root.get("lastname")) : existing.getLastname(),
+                root.has("totalprice") ? price(root.get("totalprice")) : existing.getTotalprice(),
+                root.has("depositpaid") ? truthy(root.get("depositpaid")) : existing.isDepositpaid(),
+                dates.has("checkin") ? date(dates.get("checkin")) : existing.getCheckin(),
+                dates.has("checkout") ? date(dates.get("checkout")) : existing.getCheckout(),
+                root.has("additionalneeds") ? optionalText(root.get("additionalneeds")) : existing.getAdditionalneeds());
+    }
+
+    /**
+     * Encodes a booking in the field order the real API uses.
+     *
+     * @param booking the booking to encode
+     * @return the UTF-8 JSON bytes
+     */
+    public static byte[] write(StoredBooking booking) {
+        StringBuilder json = new StringBuilder(192).append("{\"firstname\":");
+        string(json, booking.getFirstname()).append(",\"lastname\":");
+        string(json, booking.getLastname()).append(",\"totalprice\":").append(booking.getTotalprice())
+                .append(",\"depositpaid\":").append(booking.isDepositpaid())
+                .append(",\"bookingdates\":{\"checkin\":");
+        string(json, booking.getCheckin()).append(",\"checkout\":");
+        string(json, booking.getCheckout()).append('}');
+        if (booking.getAdditionalneeds() != null) {
+            string(json.append(",\"additionalneeds\":"), booking.getAdditionalneeds());
+        }
+        return json.append('}').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Encodes the {@code POST /booking} response body.
+     *
+     * @param id      the new booking id
+     * @param booking the stored booking
+     * @return the UTF-8 JSON bytes of {@code {"bookingid":id,"booking":{...}}}
+     */
+    public static byte[] writeCreated(int id, StoredBooking booking) {
+        byte[] prefix = ("{\"bookingid\":" + id + ",\"booking\":").getBytes(StandardCharsets.US_ASCII);
+        byte[] bookingJson = booking.getJson();
+        byte[] json = new byte[prefix.length + bookingJson.length + 1];
+        System.arraycopy(prefix, 0, json, 0, prefix.length);
+        System.arraycopy(bookingJson, 0, json, prefix.length, bookingJson.length);
+        json[json.length - 1] = '}';
+        return json;
+    }
+
+    /**
+     * Encodes the {@code GET /booking} response body.
+     *
+     * @param ids the booking ids to list
+     * @return the UTF-8 JSON bytes of {@code [{"bookingid":1},...]}
+     */
+    public static byte[] writeIds(int[] ids) {
+        ByteArrayOutputStream json = new ByteArrayOutputStream(ids.length * 16 + 2);
+        json.write('[');
+        for (int i = 0; i < ids.length; i++) {
+            byte[] entry = ((i == 0 ? "" : ",") + "{\"bookingid\":" + ids[i] + "}").getBytes(StandardCharsets.US_ASCII);
+            json.write(entry, 0, entry.length);
+        }
+        json.write(']');
+        return json.toByteArray();
+    }
+
+    private static String requiredText(JsonNode root, String field) {
+        String value = optionalText(root.path(field));
+        if (value == null) {
+            throw new IllegalArgumentException(field + " is required");
+        }
+        return value;
+    }
+
+    private static String optionalText(JsonNode node) {
+        return node == null || node.isMissingNode() || node.isNull() || node.isContainerNode() ? null : node.asText();
+    }
+
+    private static Integer price(JsonNode node) {
+        if (node.isNumber()) {
+            return node.intValue();
+        }
+        if (node.isTextual()) {
+            try {
+                return Integer.parseInt(node.asText().trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static boolean truthy(JsonNode node) {
+        if (node.isBoolean()) {
+            return node.booleanValue();
+        }
+        if (node.isTextual()) {
+            return !node.asText().isEmpty();
+        }
+        if (node.isNumber()) {
+            return node.doubleValue() != 0;
+        }
+        return node.isContainerNode();
+    }
+
+    private static String date(JsonNode node) {
+        if (!node.isTextual()) {
+            return INVALID_DATE;
+        }
+        try {
+            return LocalDate.parse(node.asText().trim()).toString();
+        } catch (DateTimeParseException e) {
+            return INVALID_DATE;
+        }
+    }
+
+    private static StringBuilder string(StringBuilder json, String value) {
+        if (value == null) {
+            return json.append("null");
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        return json.append('"');
+    }
+}
@@ -0,0 +1,149 @@
+package nz.co.sundar.testautomation.restfulbooker.standin;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The filters of {@code GET /booking?firstname=&lastname=&checkin=&checkout=}.
+ * <p>
+ * As documented for the Restful Booker API, names must match exactly and a booking matches {@code checkin} or
+ * {@code checkout} when its own date is on or after the given date. Bookings stored with an invalid date never
+ * match a date filter.
+ */
+public final class BookingQuery {
+
+    /** Date key used for dates that are absent or invalid. */
+    static final int NO_DATE = -1;
+
+    private final String firstname;
+    private final String lastname;
+    private final int checkin;
+    private final int checkout;
+
+    /**
+     * @param firstname the exact first name, or {@code null} for any
+     * @param lastname  the exact last name, or {@code null} for any
+     * @param checkin   the earliest check-in date as {@code yyyy-MM-dd}, or {@code null} for any
+     * @param checkout  the earliest check-out date as {@code yyyy-MM-dd}, or {@code null} for any
+     * @throws IllegalArgumentException if a date is not a {@code yyyy-MM-dd} date
+     */
+    public BookingQuery(String firstname, String lastname, String checkin, String checkout) {
+        this.firstname = firstname;
+        this.lastname = lastname;
+        this.checkin = requiredDateKey(checkin);
+        this.checkout = requiredDateKey(checkout);
+    }
+
+    /**
+     * Parses the query string of a {@code GET /booking} request. Unknown parameters are ignored.
+     *
+     * @param queryString the raw query string, or {@code null}
+     * @return the parsed filters
+     * @throws IllegalArgumentException if a date filter is not a {@code yyyy-MM-dd} date
+     */
+    public static BookingQuery parse(String queryString) {
+        String firstname = null;
+        String lastname = null;
+        String checkin = null;
+        String checkout = null;
+        if (queryString != null) {
+            for (String parameter : queryString.split("&")) {
+                int equals = parameter.indexOf('=');
+                String name = equals < 0 ? parameter : parameter.substring(0, equals);
+                String value = equals < 0 ? "" : URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8);
+                switch (name) {
+                    case "firstname" -> firstname = value;
+                    case "lastname" -> lastname = value;
+                    case "checkin" -> checkin = value;
+                    case "checkout" -> checkout = value;
+                    default -> {
+                        // Not a filter.
+                    }
+                }
+            }
+        }
+        return new BookingQuery(firstname, lastname, checkin, checkout);
+    }
+
+    /**
+     * @return whether no filter is set
+     */
+    public boolean isEmpty() {
+        return firstname == null && lastname == null && checkin == NO_DATE && checkout == NO_DATE;
+    }
+
+    /**
+     * @return whether the booking passes every filter
+     */
+    public boolean matches(StoredBooking booking) {
+        return booking != null
+                && (firstname == null || firstname.equals(booking.getFirstname()))
+                && (lastname == null || lastname.equals(booking.getLastname()))
+                && (checkin == NO_DATE || dateKey(booking.getCheckin()) >= checkin)
+                && (checkout == NO_DATE || dateKey(booking.getCheckout()) >= checkout);
+    }
+
+    public String getFirstname() {
+        return firstname;
+    }
+
+    public String getLastname() {
+        return lastname;
+    }
+
+    /**
+     * @return the check-in filter as a {@code yyyyMMdd} number, or {@link #NO_DATE}
+     */
+    int getCheckinKey() {
+        return checkin;
+    }
+
+    /**
+     * @return the check-out filter as a {@code yyyyMMdd} number, or {@link #NO_DATE}
+     */
+    int getCheckoutKey() {
+        return checkout;
+    }
+
+    /**
+     * Converts a {@code yyyy-MM-dd} date to the number {@code yyyyMMdd}, which sorts in date order.
+     *
+     * @return the date key, or {@link #NO_DATE} if the text is not a {@code yyyy-MM-dd} date
+     */
+    static int dateKey(String date) {
+        if (date == null || date.length() != 10 || date.charAt(4) != '-' || date.charAt(7) != '-') {
+            return NO_DATE;
+        }
+        int key = 0;
+        for (int i = 0; i < 10; i++) {
+            if (i == 4 || i == 7) {
+                continue;
+            }
+            char c = date.charAt(i);
+            if (c < '0' || c > '9') {
+                return NO_DATE;
+            }
+            key = key * 10 + (c - '0');
+        }
+        int month = key / 100 % 100;
+        int day = key % 100;
+        return month >= 1 && month <= 12 && day >= 1 && day <= 31 ? key : NO_DATE;
+    }
+
+    private static int requiredDateKey(String date) {
+        if (date == null) {
+            return NO_DATE;
+        }
+        int key = dateKey(date.trim());
+        if (key == NO_DATE) {
+            throw new IllegalArgumentException("Invalid date filter: " + date);
+        }
+        return key;
+    }
+
+    @Override
+    public String toString() {
+        return "BookingQuery{firstname=" + firstname + ", lastname=" + lastname
+                + ", checkin=" + checkin + ", checkout=" + checkout + "}";
+    }
+}
@@ -0,0 +1,65 @@
+package nz.co.sundar.testautomation.restfulbooker.standin;
+
+/**
+ * Storage used by the stand-in server for bookings keyed by their integer id.
+ * <p>
+ * Implementations must be safe for concurrent use by all event loop threads.
+ */
+public interface BookingStore {
+
+    /**
+     * Stores a new booking under a freshly allocated id.
+     *
+     * @param booking the booking to store
+     * @return the new booking id, starting at 1
+     */
+    int create(StoredBooking booking);
+
+    /**
+     * @param id the booking id
+     * @return the booking, or {@code null} if there is no booking with that id
+     */
+    StoredBooking get(int id);
+
+    /**
+     * Replaces an existing booking.
+     *
+     * @param id      the booking id
+     * @param booking the new booking
+     * @return {@code false} if there is no booking with that id
+     */
+    boolean update(int id, StoredBooking booking);
+
+    /**
+     * @param id the booking id
+     * @return {@code false} if there is no booking with that id
+     */
+    boolean delete(int id);
+
+    /**
+     * @return the ids of all bookings in ascending order
+     */
+    int[] ids();
+
+    /**
+     * @return the number of bookings
+     */
+    int size();
+
+    /**
+     * Finds the bookings matching the filters of a {@code GET /booking} request. This implementation scans every
+     * booking; indexed stores override it.
+     *
+     * @param query the filters
+     * @return the matching ids in ascending order
+     */
+    default int[] query(BookingQuery query) {
+        IntList matches = new IntList(16);
+        for (int id : ids()) {
+            if (query.matches(get(id))) {
+                matches.add(id);
+            }
+        }
+        return matches.toSortedArray();
+    }
+}
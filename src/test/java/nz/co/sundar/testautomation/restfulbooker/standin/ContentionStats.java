@@ -0,0 +1,134 @@
+package nz.co.sundar.testautomation.restfulbooker.standin;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A snapshot of the lock contention counters of a {@link StripedBookingStore}, one entry per stripe.
+ * <p>
+ * {@code contendedWrites} counts writes whose lock fast path (a single compare-and-set) failed and that had to wait;
+ * {@code lockWaitNanos} is the time they waited. {@code readRetries} counts optimistic reads that a concurrent write
+ * invalidated. Together they show how much of a request's latency was spent inside the stand-in rather than on the
+ * network.
+ */
+public final class ContentionStats {
+
+    private final long[] writes;
+    private final long[] contendedWrites;
+    private final long[] lockWaitNanos;
+    private final long[] readRetries;
+
+    ContentionStats(long[] writes, long[] contendedWrites, long[] lockWaitNanos, long[] readRetries) {
+        this.writes = writes;
+        this.contendedWrites = contendedWrites;
+        this.lockWaitNanos = lockWaitNanos;
+        this.readRetries = readRetries;
+    }
+
+    public int getStripeCount() {
+        return writes.length;
+    }
+
+    public long getWrites(int stripe) {
+        return writes[stripe];
+    }
+
+    public long getContendedWrites(int stripe) {
+        return contendedWrites[stripe];
+    }
+
+    public long getLockWaitNanos(int stripe) {
+        return lockWaitNanos[stripe];
+    }
+
+    public long getReadRetries(int stripe) {
+        return readRetries[stripe];
+    }
+
+    public long getTotalWrites() {
+        return sum(writes);
+    }
+
+    public long getTotalContendedWrites() {
+        return sum(contendedWrites);
+    }
+
+    public long getTotalLockWaitNanos() {
+        return sum(lockWaitNanos);
+    }
+
+    public long getTotalReadRetries() {
+        return sum(readRetries);
+    }
+
+    /**
+     * @return the stripe with the most lock wait time, or 0 if nothing waited
+     */
+    public int getHottestStripe() {
+        int hottest = 0;
+        for (int i = 1; i < lockWaitNanos.length; i++) {
+            if (lockWaitNanos[i] > lockWaitNanos[hottest]) {
+                hottest = i;
+            }
+        }
+        return hottest;
+    }
+
+    /**
+     * Returns the counters minus an earlier snapshot of the same store, e.g. to report one load phase only.
+     *
+     * @param earlier a snapshot taken before this one
+     * @return the per-stripe differences
+     */
+    public ContentionStats since(ContentionStats earlier) {
+        return new ContentionStats(minus(writes, earlier.writes), minus(contendedWrites, earlier.contendedWrites),
+                minus(lockWaitNanos, earlier.lockWaitNanos), minus(readRetries, earlier.readRetries));
+    }
+
+    /**
+     * @return the totals and per-stripe counters as JSON, as served by {@code GET /standin/contention}
+     */
+    public byte[] toJson() {
+        StringBuilder json = new StringBuilder(64 + writes.length * 64);
+        json.append("{\"stripes\":").append(writes.length)
+                .append(",\"writes\":").append(getTotalWrites())
+                .append(",\"contendedWrites\":").append(getTotalContendedWrites())
+                .append(",\"lockWaitNanos\":").append(getTotalLockWaitNanos())
+                .append(",\"readRetries\":").append(getTotalReadRetries())
+                .append(",\"perStripe\":[");
+        for (int i = 0; i < writes.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"writes\":").append(writes[i])
+                    .append(",\"contendedWrites\":").append(contendedWrites[i])
+                    .append(",\"lockWaitNanos\":").append(lockWaitNanos[i])
+                    .append(",\"readRetries\":").append(readRetries[i]).append('}');
+        }
+        return json.append("]}").toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Override
+    public String toString() {
+        return "ContentionStats{stripes=" + writes.length + ", writes=" + getTotalWrites()
+                + ", contendedWrites=" + getTotalContendedWrites()
+                + ", lockWaitMillis=" + getTotalLockWaitNanos() / 1_000_000
+                + ", readRetries=" + getTotalReadRetries()
+                + ", hottestStripe=" + getHottestStripe() + "}";
+    }
+
+    private static long sum(long[] values) {
+        long total = 0;
+        for (long value : values) {
+            total += value;
+        }
+        return total;
+    }
+
+    private static long[] minus(long[] values, long[] earlier) {
+        long[] result = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = values[i] - earlier[i];
+        }
+        return result;
+    }
+}
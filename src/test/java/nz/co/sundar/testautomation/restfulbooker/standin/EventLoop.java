@@ -0,0 +1,172 @@
+package nz.co.sundar.testautomation.restfulbooker.standin;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A single selector thread serving the connections assigned to it.
+ * <p>
+ * Connections never move between loops, so all state of a connection is touched by one thread only and needs no
+ * locking. The acceptor hands new channels over through a queue and wakes the selector up.
+ * <p>
+ * Connections delay responses with {@link #schedule}, a timer queue run by the same thread between selects, so
+ * fault injection never blocks the loop or hands a connection to another thread.
+ */
+final class EventLoop implements Runnable {
+
+    private static final Logger logger = LogManager.getLogger(EventLoop.class);
+
+    private final Selector selector;
+    private final BookingHandler handler;
+    private final Queue<SocketChannel> pending = new ConcurrentLinkedQueue<>();
+    private final PriorityQueue<Timer> timers = new PriorityQueue<>();
+    private long timerSequence;
+    private volatile FaultInjector faults;
+    private volatile boolean running = true;
+
+    EventLoop(BookingHandler handler) throws IOException {
+        this.selector = Selector.open();
+        this.handler = handler;
+    }
+
+    /**
+     * Hands an accepted channel to this loop. May be called from any thread.
+     */
+    void register(SocketChannel channel) {
+        pending.add(channel);
+        selector.wakeup();
+    }
+
+    FaultInjector getFaults() {
+        return faults;
+    }
+
+    void setFaults(FaultInjector faults) {
+        this.faults = faults;
+    }
+
+    /**
+     * Runs a task on this loop once {@code delayNanos} have passed. Must be called from the loop's own thread;
+     * tasks due at the same time run in the order they were scheduled.
+     */
+    void schedule(long delayNanos, Runnable task) {
+        timers.add(new Timer(System.nanoTime() + delayNanos, timerSequence++, task));
+    }
+
+    void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                long timeout = selectTimeoutMillis();
+                if (timeout < 0) {
+                    selector.selectNow(this::dispatch);
+                } else {
+                    selector.select(this::dispatch, timeout);
+                }
+                registerPending();
+                runDueTimers();
+            }
+        } catch (IOException e) {
+            logger.error("Stand-in event loop stopped", e);
+        } finally {
+            closeAll();
+        }
+    }
+
+    /**
+     * @return how long to block until the next timer is due, 0 to block until woken, or -1 not to block at all
+     */
+    private long selectTimeoutMillis() {
+        Timer next = timers.peek();
+        if (next == null) {
+            return 0;
+        }
+        long remaining = next.deadline - System.nanoTime();
+        return remaining <= 0 ? -1 : Math.max(1, (remaining + 999_999) / 1_000_000);
+    }
+
+    private void runDueTimers() {
+        long now = System.nanoTime();
+        Timer timer;
+        while ((timer = timers.peek()) != null && timer.deadline - now <= 0) {
+            timers.poll();
+            try {
+                timer.task.run();
+            } catch (RuntimeException e) {
+                logger.error("Stand-in timer task failed", e);
+            }
+        }
+    }
+
+    private void registerPending() {
+        SocketChannel channel;
+        while ((channel = pending.poll()) != null) {
+            try {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                key.attach(new HttpConnection(channel, key, handler, this));
+            } catch (IOException e) {
+                closeQuietly(channel);
+            }
+        }
+    }
+
+    private void dispatch(SelectionKey key) {
+        HttpConnection connection = (HttpConnection) key.attachment();
+        boolean open;
+        try {
+            open = key.isValid() && (key.isWritable() ? connection.onWritable() : connection.onReadable());
+        } catch (IOException e) {
+            open = false;
+        }
+        if (!open) {
+            connection.close();
+        }
+    }
+
+    private void closeAll() {
+        for (SelectionKey key : selector.keys()) {
+            ((HttpConnection) key.attachment()).close();
+        }
+        SocketChannel channel;
+        while ((channel = pending.poll()) != null) {
+            closeQuietly(channel);
+        }
+        try {
+            selector.close();
+        } catch (IOException ignored) {
+            // Already shutting down.
+        }
+    }
+
+    private record Timer(long deadline, long sequence, Runnable task) implements Comparable<Timer> {
+        @Override
+        public int compareTo(Timer other) {
+            int byDeadline = Long.compare(deadline - other.deadline, 0);
+            return byDeadline != 0 ? byDeadline : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Nothing more can be done with a channel that fails to close.
+        }
+    }
+}
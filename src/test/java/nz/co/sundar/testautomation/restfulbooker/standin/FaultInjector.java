@@ -0,0 +1,219 @@
+package nz.co.sundar.testautomation.restfulbooker.standin;
+
+import nz.co.sundar.testautomation.restfulbooker.utils.ConfigReader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides which faults the stand-in adds to each request, from a list of {@link FaultRule}s where the first rule
+ * matching a request's method and path applies.
+ * <p>
+ * Decisions are reproducible: the n-th request matched by a rule always gets the same fault for the same seed,
+ * whichever event loop handles it, because its random numbers come from the seed, the rule's position and n
+ * rather than from a generator shared between threads.
+ */
+public final class FaultInjector {
+
+    private final long seed;
+    private final FaultRule[] rules;
+    private final AtomicLong[] sequences;
+    private final LongAdder delayed = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder resets = new LongAdder();
+    private final LongAdder drips = new LongAdder();
+
+    /**
+     * @param seed  the seed all decisions derive from
+     * @param rules the rules, first match wins
+     */
+    public FaultInjector(long seed, List<FaultRule> rules) {
+        this.seed = seed;
+        this.rules = rules.toArray(new FaultRule[0]);
+        this.sequences = new AtomicLong[this.rules.length];
+        for (int i = 0; i < this.rules.length; i++) {
+            this.rules[i].validate();
+            sequences[i] = new AtomicLong();
+        }
+    }
+
+    /**
+     * Parses rules separated by {@code ;}, each in the form accepted by {@link FaultRule#parse(String)}.
+     */
+    public static FaultInjector parse(String spec, long seed) {
+        List<FaultRule> rules = new ArrayList<>();
+        for (String rule : spec.split(";")) {
+            if (!rule.isBlank()) {
+                rules.add(FaultRule.parse(rule));
+            }
+        }
+        return new FaultInjector(seed, rules);
+    }
+
+    /**
+     * Builds the injector configured by {@code standin.faults} and {@code standin.faultSeed}.
+     *
+     * @return the injector, or {@code null} if no faults are configured
+     */
+    public static FaultInjector fromConfig() {
+        String spec = ConfigReader.getProperty("standin.faults", null);
+        if (spec == null || spec.isBlank()) {
+            return null;
+        }
+        return parse(spec, Long.parseLong(ConfigReader.getProperty("standin.faultSeed", "1")));
+    }
+
+    /**
+     * Decides the fault for a request.
+     *
+     * @return the fault, or {@code null} if the request should be handled normally
+     */
+    public Fault decide(String method, String path) {
+        for (int i = 0; i < rules.length; i++) {
+            FaultRule rule = rules[i];
+            if (rule.matches(method, path)) {
+                long n = sequences[i].getAndIncrement();
+                return decide(rule, new SplittableRandom(mix(seed + mix(i + 1) + mix(n ^ 0x5DEECE66DL))));
+            }
+        }
+        return null;
+    }
+
+    private Fault decide(FaultRule rule, SplittableRandom random) {
+        long delayNanos = rule.getLatency().sampleNanos(random);
+        double outcome = random.nextDouble();
+        boolean drip = rule.getDripBytes() > 0 && random.nextDouble() < rule.getDripRate();
+
+        Fault fault;
+        if ((outcome -= rule.getTokenExpiryRate()) < 0) {
+            fault = new Fault(delayNanos, HttpResponse.FORBIDDEN, true, false, 0, 0);
+        } else if ((outcome -= rule.getError500Rate()) < 0) {
+            fault = new Fault(delayNanos, HttpResponse.INTERNAL_SERVER_ERROR, false, false, 0, 0);
+        } else if ((outcome -= rule.getError503Rate()) < 0) {
+            fault = new Fault(delayNanos, HttpResponse.SERVICE_UNAVAILABLE, false, false, 0, 0);
+        } else if (outcome - rule.getResetRate() < 0) {
+            fault = new Fault(delayNanos, null, false, true, 0, 0);
+        } else if (delayNanos > 0 || drip) {
+            fault = new Fault(delayNanos, null, false, false, 0, 0);
+        } else {
+            return null;
+        }
+        if (drip && !fault.isReset()) {
+            fault = new Fault(delayNanos, fault.getResponse(), fault.isTokenExpiry(), false,
+                    rule.getDripBytes(), rule.getDripIntervalNanos());
+        }
+        count(fault);
+        return fault;
+    }
+
+    private void count(Fault fault) {
+        if (fault.getDelayNanos() > 0) {
+            delayed.increment();
+        }
+        if (fault.getResponse() != null) {
+            errors.increment();
+        }
+        if (fault.isReset()) {
+            resets.increment();
+        }
+        if (fault.getDripBytes() > 0) {
+            drips.increment();
+        }
+    }
+
+    /**
+     * @return how many requests were delayed, answered with an error, reset and dripped so far
+     */
+    public String getSummary() {
+        return "delayed=" + delayed.sum() + " errors=" + errors.sum() + " resets=" + resets.sum()
+                + " drips=" + drips.sum();
+    }
+
+    /**
+     * SplitMix64 finaliser, spreading nearby seeds and sequence numbers over unrelated streams.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * What happens to one request.
+     */
+    public static final class Fault {
+        private final long delayNanos;
+        private final HttpResponse response;
+        private final boolean tokenExpiry;
+        private final boolean reset;
+        private final int dripBytes;
+        private final long dripIntervalNanos;
+
+        Fault(long delayNanos, HttpResponse response, boolean tokenExpiry, boolean reset, int dripBytes,
+              long dripIntervalNanos) {
+            this.delayNanos = delayNanos;
+            this.response = response;
+            this.tokenExpiry = tokenExpiry;
+            this.reset = reset;
+            this.dripBytes = dripBytes;
+            this.dripIntervalNanos = dripIntervalNanos;
+        }
+
+        /**
+         * @return how long to wait before handling the request
+         */
+        public long getDelayNanos() {
+            return delayNanos;
+        }
+
+        /**
+         * @return the error to answer with instead of handling the request, or {@code null}
+         */
+        public HttpResponse getResponse() {
+            return response;
+        }
+
+        /**
+         * @return whether the request's token is revoked
+         */
+        public boolean isTokenExpiry() {
+            return tokenExpiry;
+        }
+
+        /**
+         * @return whether the connection is reset after handling the request
+         */
+        public boolean isReset() {
+            return reset;
+        }
+
+        /**
+         * @return the body chunk size for a slow-drip response, or 0 to write it at once
+         */
+        public int getDripBytes() {
+            return dripBytes;
+        }
+
+        public long getDripIntervalNanos() {
+            return dripIntervalNanos;
+        }
+
+        /**
+         * @return whether the request can be answered straight away, without a timer
+         */
+        boolean isImmediate() {
+            return delayNanos == 0 && !reset && dripBytes == 0;
+        }
+
+        @Override
+        public String toString() {
+            return "Fault{delay=" + delayNanos / 1_000 + "us"
+                    + (response != null ? ", status=" + response.getStatus() : "")
+                    + (tokenExpiry ? ", tokenExpiry" : "") + (reset ? ", reset" : "")
+                    + (dripBytes > 0 ? ", drip=" + dripBytes + "/" + dripIntervalNanos / 1_000 + "us" : "") + "}";
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package nz.co.sundar.testautomation.restfulbooker.standin;
+
+/**
+ * The faults a {@link FaultInjector} adds to requests for one endpoint.
+ * <p>
+ * The endpoint is a method and a path, either of which may be {@code *}; a {@code *} path segment matches any one
+ * segment, so {@code PUT /booking/*} covers every booking update. The outcome rates are probabilities per request
+ * and are mutually exclusive, so they must add up to at most 1:
+ * <ul>
+ *   <li>{@code expire} - the request's token is revoked and the response is {@code 403 Forbidden}, as when a token
+ *       expires between requests</li>
+ *   <li>{@code error500}, {@code error503} - the response is that error and the request is not handled</li>
+ *   <li>{@code reset} - the request is handled, then the connection is reset without a response, so the client
+ *       cannot tell whether the change was applied</li>
+ * </ul>
+ * Every matching request is delayed by a sample of {@link #latency}, and {@code dripRate} of the responses have
+ * their body written {@code dripBytes} at a time, one chunk every {@code dripInterval}.
+ */
+public final class FaultRule {
+
+    private final String method;
+    private final String[] pathSegments;
+    private LatencyDistribution latency = LatencyDistribution.NONE;
+    private double tokenExpiryRate;
+    private double error500Rate;
+    private double error503Rate;
+    private double resetRate;
+    private int dripBytes;
+    private long dripIntervalNanos;
+    private double dripRate = 1;
+
+    /**
+     * @param endpoint the method and path to match, e.g. {@code DELETE /booking/*} or {@code * /booking}
+     */
+    public FaultRule(String endpoint) {
+        String[] parts = endpoint.trim().split("\\s+");
+        if (parts.length != 2 || !parts[1].startsWith("/")) {
+            throw new IllegalArgumentException("Endpoint must be <method> <path>: " + endpoint);
+        }
+        this.method = parts[0].toUpperCase();
+        this.pathSegments = parts[1].substring(1).split("/", -1);
+    }
+
+    /**
+     * Parses a rule in the form used by {@code standin.faults}, for example
+     * {@code PUT /booking/* : latency=lognormal(20ms,0.5) expire=0.1 error503=0.02 drip=16/50ms dripRate=0.1}.
+     *
+     * @throws IllegalArgumentException if the rule is malformed
+     */
+    public static FaultRule parse(String spec) {
+        int colon = spec.indexOf(':');
+        if (colon < 0) {
+            throw new IllegalArgumentException("Fault rule must be <method> <path> : <faults>: " + spec);
+        }
+        FaultRule rule = new FaultRule(spec.substring(0, colon));
+        for (String setting : spec.substring(colon + 1).trim().split("\\s+")) {
+            if (setting.isEmpty()) {
+                continue;
+            }
+            int equals = setting.indexOf('=');
+            if (equals < 0) {
+                throw new IllegalArgumentException("Fault setting must be <name>=<value>: " + setting);
+            }
+            String value = setting.substring(equals + 1);
+            switch (setting.substring(0, equals)) {
+                case "latency" -> rule.latency(LatencyDistribution.parse(value));
+                case "expire" -> rule.tokenExpiryRate(Double.parseDouble(value));
+                case "error500" -> rule.error500Rate(Double.parseDouble(value));
+                case "error503" -> rule.error503Rate(Double.parseDouble(value));
+                case "reset" -> rule.resetRate(Double.parseDouble(value));
+                case "drip" -> {
+                    String[] drip = value.split("/");
+                    if (drip.length != 2) {
+                        throw new IllegalArgumentException("Drip must be <bytes>/<interval>: " + value);
+                    }
+                    rule.drip(Integer.parseInt(drip[0]), LatencyDistribution.parseDuration(drip[1]));
+                }
+                case "dripRate" -> rule.dripRate(Double.parseDouble(value));
+                default -> throw new IllegalArgumentException("Unknown fault setting: " + setting);
+            }
+        }
+        rule.validate();
+        return rule;
+    }
+
+    public FaultRule latency(LatencyDistribution latency) {
+        this.latency = latency;
+        return this;
+    }
+
+    public FaultRule tokenExpiryRate(double rate) {
+        this.tokenExpiryRate = rate;
+        return this;
+    }
+
+    public FaultRule error500Rate(double rate) {
+        this.error500Rate = rate;
+        return this;
+    }
+
+    public FaultRule error503Rate(double rate) {
+        this.error503Rate = rate;
+        return this;
+    }
+
+    public FaultRule resetRate(double rate) {
+        this.resetRate = rate;
+        return this;
+    }
+
+    /**
+     * Writes response bodies {@code bytes} at a time, one chunk every {@code intervalNanos}.
+     */
+    public FaultRule drip(int bytes, long intervalNanos) {
+        this.dripBytes = bytes;
+        this.dripIntervalNanos = intervalNanos;
+        return this;
+    }
+
+    public FaultRule dripRate(double rate) {
+        this.dripRate = rate;
+        return this;
+    }
+
+    /**
+     * @throws IllegalArgumentException if a rate is outside [0, 1] or the outcome rates add up to more than 1
+     */
+    void validate() {
+        for (double rate : new double[]{tokenExpiryRate, error500Rate, error503Rate, resetRate, dripRate}) {
+            if (rate < 0 || rate > 1) {
+                throw new IllegalArgumentException("Fault rates must be between 0 and 1");
+            }
+        }
+        if (tokenExpiryRate + error500Rate + error503Rate + resetRate > 1 + 1e-9) {
+            throw new IllegalArgumentException("expire, error500, error503 and reset add up to more than 1");
+        }
+        if (dripBytes < 0 || (dripBytes > 0 && dripIntervalNanos <= 0)) {
+            throw new IllegalArgumentException("Drip needs a positive chunk size and interval");
+        }
+    }
+
+    boolean matches(String requestMethod, String path) {
+        if (!method.equals("*") && !method.equals(requestMethod)) {
+            return false;
+        }
+        int segment = 0;
+        int start = 1;
+        while (start <= path.length()) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = path.length();
+            }
+            if (segment == pathSegments.length) {
+                return false;
+            }
+            String expected = pathSegments[segment++];
+            boolean wildcard = expected.equals("*") && end > start;
+            if (!wildcard && !path.regionMatches(start, expected, 0, Math.max(expected.length(), end - start))) {
+                return false;
+            }
+            start = end + 1;
+        }
+        return segment == pathSegments.length;
+    }
+
+    LatencyDistribution getLatency() {
+        return latency;
+    }
+
+    double getTokenExpiryRate() {
+        return tokenExpiryRate;
+    }
+
+    double getError500Rate() {
+        return error500Rate;
+    }
+
+    double getError503Rate() {
+        return error503Rate;
+    }
+
+    double getResetRate() {
+        return resetRate;
+    }
+
+    int getDripBytes() {
+        return dripBytes;
+    }
+
+    long getDripIntervalNanos() {
+        return dripIntervalNanos;
+    }
+
+    double getDripRate() {
+        return dripRate;
+    }
+
+    @Override
+    public String toString() {
+        return method + " /" + String.join("/", pathSegments);
+    }
+}
@@ -0,0 +1,13 @@
+package nz.co.sundar.testautomation.restfulbooker.standin;
+
+/**
+ * When a {@link PersistentBookingStore} forces its mutation log to disk.
+ */
+public enum FsyncPolicy {
+    /** Leave write-back to the operating system; a process crash loses nothing, a machine crash may. */
+    NEVER,
+    /** Force every record before the request is answered. Slowest, loses nothing. */
+    EVERY_WRITE,
+    /** Force the log from a background thread at a fixed interval, bounding what a machine crash can lose. */
+    INTERVAL
+}
@@ -0,0 +1,433 @@
+package nz.co.sundar.testautomation.restfulbooker.standin;
+
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * State of one keep-alive connection on an {@link EventLoop}.
+ * <p>
+ * Bytes are read into a per-connection buffer and every complete request in it is parsed and handled in order,
+ * so pipelined requests are answered in a single pass and their responses leave in one write. Reading stops
+ * while responses are still waiting to be written, which pushes back on clients that pipeline faster than they
+ * read.
+ * <p>
+ * When the loop's {@link FaultInjector} delays a request, drips its response or resets the connection, the
+ * connection becomes busy: later pipelined requests wait in the input buffer and reading stops until the
+ * delayed response has been written, so responses still leave in request order.
+ */
+final class HttpConnection {
+
+    private static final int INITIAL_BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_HEADER_SIZE = 16 * 1024;
+    private static final int MAX_BODY_SIZE = 1 << 20;
+    private static final byte[] EMPTY = new byte[0];
+
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final BookingHandler handler;
+    private final EventLoop loop;
+
+    /** Received bytes not yet consumed, in write mode: data occupies {@code [0, position)}. */
+    private ByteBuffer in = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    /** Encoded responses not yet written, in write mode: data occupies {@code [0, position)}. */
+    private ByteBuffer out = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private boolean closeAfterWrite;
+    /** A delayed or dripping response is in progress; set and cleared on the loop thread only. */
+    private boolean busy;
+
+    // Fields of the request head being parsed.
+    private String method;
+    private String path;
+    private String query;
+    private String cookie;
+    private String authorization;
+    private int contentLength;
+    private boolean keepAlive;
+    private boolean chunked;
+
+    HttpConnection(SocketChannel channel, SelectionKey key, BookingHandler handler, EventLoop loop) {
+        this.channel = channel;
+        this.key = key;
+        this.handler = handler;
+        this.loop = loop;
+    }
+
+    /**
+     * Reads available bytes, handles every complete request and writes what it can.
+     *
+     * @return {@code false} if the connection should be closed
+     */
+    boolean onReadable() throws IOException {
+        if (channel.read(in) < 0) {
+            return false;
+        }
+        processRequests();
+        return flush();
+    }
+
+    /**
+     * Continues writing pending responses.
+     *
+     * @return {@code false} if the connection should be closed
+     */
+    boolean onWritable() throws IOException {
+        return flush();
+    }
+
+    void close() {
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Nothing more can be done with a connection that fails to close.
+        }
+    }
+
+    private void processRequests() {
+        byte[] buffer = in.array();
+        int limit = in.position();
+        int position = 0;
+
+        while (!busy && !closeAfterWrite && position < limit) {
+            int headerEnd = indexOfHeaderEnd(buffer, position, limit);
+            if (headerEnd < 0) {
+                if (limit - position > MAX_HEADER_SIZE) {
+                    respond(HttpResponse.PAYLOAD_TOO_LARGE, false);
+                }
+                break;
+            }
+            if (!parseHead(buffer, position, headerEnd)) {
+                respond(HttpResponse.BAD_REQUEST, false);
+                break;
+            }
+            if (chunked) {
+                respond(HttpResponse.NOT_IMPLEMENTED, false);
+                break;
+            }
+            if (contentLength > MAX_BODY_SIZE) {
+                respond(HttpResponse.PAYLOAD_TOO_LARGE, false);
+                break;
+            }
+            int bodyStart = headerEnd + 4;
+            if (limit - bodyStart < contentLength) {
+                ensureInputCapacity(bodyStart - position + contentLength);
+                break;
+            }
+            byte[] body = contentLength == 0 ? EMPTY : Arrays.copyOfRange(buffer, bodyStart, bodyStart + contentLength);
+            position = bodyStart + contentLength;
+
+            HttpRequest request = new HttpRequest(method, path, query, cookie, authorization, body);
+            FaultInjector faults = loop.getFaults();
+            FaultInjector.Fault fault = faults == null ? null : faults.decide(method, path);
+            if (fault == null) {
+                respond(handle(request), keepAlive);
+            } else if (fault.isImmediate()) {
+                respond(handleWithFault(request, fault), keepAlive);
+            } else {
+                busy = true;
+                boolean keepOpen = keepAlive;
+                loop.schedule(fault.getDelayNanos(), () -> deliver(request, fault, keepOpen));
+            }
+        }
+
+        // Keep the unconsumed tail at the start of the buffer.
+        buffer = in.array();
+        System.arraycopy(buffer, position, buffer, 0, in.position() - position);
+        in.position(in.position() - position);
+        if (!in.hasRemaining()) {
+            ensureInputCapacity(in.capacity() * 2);
+        }
+    }
+
+    private HttpResponse handle(HttpRequest request) {
+        try {
+            return handler.handle(request);
+        } catch (RuntimeException e) {
+            return HttpResponse.INTERNAL_SERVER_ERROR;
+        }
+    }
+
+    private HttpResponse handleWithFault(HttpRequest request, FaultInjector.Fault fault) {
+        if (fault.isTokenExpiry()) {
+            handler.revokeToken(request);
+        }
+        return fault.getResponse() != null ? fault.getResponse() : handle(request);
+    }
+
+    /**
+     * Handles a request whose delay has passed, then resets the connection, drips the response or writes it.
+     * Runs as a timer task on the loop thread.
+     */
+    private void deliver(HttpRequest request, FaultInjector.Fault fault, boolean keepOpen) {
+        if (!channel.isOpen()) {
+            return;
+        }
+        HttpResponse response = handleWithFault(request, fault);
+        if (fault.isReset()) {
+            reset();
+        } else if (fault.getDripBytes() > 0) {
+            drip(response.getEncoded(), 0, response.getBodyOffset() + fault.getDripBytes(), fault, keepOpen);
+        } else {
+            respond(response, keepOpen);
+            resume();
+        }
+    }
+
+    /**
+     * Writes {@code [from, to)} of a response and schedules the next chunk, so the body arrives
+     * {@link FaultInjector.Fault#getDripBytes()} at a time.
+     */
+    private void drip(byte[] encoded, int from, int to, FaultInjector.Fault fault, boolean keepOpen) {
+        if (!channel.isOpen()) {
+            return;
+        }
+        int end = Math.min(to, encoded.length);
+        append(encoded, from, end);
+        if (end < encoded.length) {
+            if (flushOrClose()) {
+                loop.schedule(fault.getDripIntervalNanos(),
+                        () -> drip(encoded, end, end + fault.getDripBytes(), fault, keepOpen));
+            }
+        } else {
+            if (!keepOpen) {
+                closeAfterWrite = true;
+            }
+            resume();
+        }
+    }
+
+    /**
+     * Ends a delayed response and carries on with any requests that arrived behind it.
+     */
+    private void resume() {
+        busy = false;
+        processRequests();
+        flushOrClose();
+    }
+
+    private boolean flushOrClose() {
+        try {
+            if (flush()) {
+                return true;
+            }
+        } catch (IOException e) {
+            // Treated like any other failed write.
+        }
+        close();
+        return false;
+    }
+
+    /**
+     * Closes the connection with an RST instead of a FIN.
+     */
+    private void reset() {
+        try {
+            channel.setOption(StandardSocketOptions.SO_LINGER, 0);
+        } catch (IOException ignored) {
+            // Closing normally is the best that can be done.
+        }
+        close();
+    }
+
+    private void respond(HttpResponse response, boolean keepOpen) {
+        byte[] encoded = response.getEncoded();
+        append(encoded, 0, encoded.length);
+        if (!keepOpen) {
+            closeAfterWrite = true;
+        }
+    }
+
+    private void append(byte[] bytes, int from, int to) {
+        int length = to - from;
+        if (out.remaining() < length) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + length));
+            out.flip();
+            larger.put(out);
+            out = larger;
+        }
+        out.put(bytes, from, length);
+    }
+
+    private boolean flush() throws IOException {
+        if (out.position() > 0) {
+            out.flip();
+            channel.write(out);
+            out.compact();
+        }
+        if (out.position() > 0) {
+            setInterest(SelectionKey.OP_WRITE);
+            return true;
+        }
+        if (busy) {
+            setInterest(0);
+            return true;
+        }
+        if (closeAfterWrite) {
+            return false;
+        }
+        setInterest(SelectionKey.OP_READ);
+        return true;
+    }
+
+    private void setInterest(int ops) {
+        if (key.interestOps() != ops) {
+            key.interestOps(ops);
+        }
+    }
+
+    private void ensureInputCapacity(int required) {
+        if (in.capacity() >= required) {
+            return;
+        }
+        ByteBuffer larger = ByteBuffer.allocate(Math.min(Math.max(required, in.capacity() * 2),
+                MAX_HEADER_SIZE + MAX_BODY_SIZE + 4));
+        in.flip();
+        larger.put(in);
+        in = larger;
+    }
+
+    private static int indexOfHeaderEnd(byte[] buffer, int from, int limit) {
+        for (int i = from; i + 3 < limit; i++) {
+            if (buffer[i] == '\r' && buffer[i + 1] == '\n' && buffer[i + 2] == '\r' && buffer[i + 3] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parses the request line and the headers the handler needs.
+     *
+     * @return {@code false} if the request line is malformed
+     */
+    private boolean parseHead(byte[] buffer, int start, int end) {
+        // Without headers the request line's own CRLF is the one at end.
+        int lineEnd = indexOf(buffer, start, end + 1, (byte) '\r');
+        int firstSpace = indexOf(buffer, start, lineEnd, (byte) ' ');
+        int secondSpace = firstSpace < 0 ? -1 : indexOf(buffer, firstSpace + 1, lineEnd, (byte) ' ');
+        if (secondSpace < 0) {
+            return false;
+        }
+        method = method(buffer, start, firstSpace);
+        int queryStart = indexOf(buffer, firstSpace + 1, secondSpace, (byte) '?');
+        if (queryStart < 0) {
+            path = ascii(buffer, firstSpace + 1, secondSpace);
+            query = null;
+        } else {
+            path = ascii(buffer, firstSpace + 1, queryStart);
+            query = ascii(buffer, queryStart + 1, secondSpace);
+        }
+        keepAlive = !regionEquals(buffer, secondSpace + 1, lineEnd, "HTTP/1.0");
+        cookie = null;
+        authorization = null;
+        contentLength = 0;
+        chunked = false;
+
+        int line = lineEnd + 2;
+        while (line < end) {
+            int next = indexOf(buffer, line, end, (byte) '\r');
+            if (next < 0) {
+                next = end;
+            }
+            int colon = indexOf(buffer, line, next, (byte) ':');
+            if (colon > 0) {
+                int valueStart = colon + 1;
+                while (valueStart < next && buffer[valueStart] == ' ') {
+                    valueStart++;
+                }
+                if (regionEquals(buffer, line, colon, "content-length")) {
+                    contentLength = parseLength(buffer, valueStart, next);
+                } else if (regionEquals(buffer, line, colon, "connection")) {
+                    if (regionEquals(buffer, valueStart, next, "close")) {
+                        keepAlive = false;
+                    } else if (regionEquals(buffer, valueStart, next, "keep-alive")) {
+                        keepAlive = true;
+                    }
+                } else if (regionEquals(buffer, line, colon, "cookie")) {
+                    cookie = ascii(buffer, valueStart, next);
+                } else if (regionEquals(buffer, line, colon, "authorization")) {
+                    authorization = ascii(buffer, valueStart, next);
+                } else if (regionEquals(buffer, line, colon, "transfer-encoding")) {
+                    chunked = !regionEquals(buffer, valueStart, next, "identity");
+                }
+            }
+            line = next + 2;
+        }
+        return contentLength >= 0;
+    }
+
+    private static String method(byte[] buffer, int start, int end) {
+        if (regionEquals(buffer, start, end, "GET")) {
+            return "GET";
+        }
+        if (regionEquals(buffer, start, end, "POST")) {
+            return "POST";
+        }
+        if (regionEquals(buffer, start, end, "PUT")) {
+            return "PUT";
+        }
+        if (regionEquals(buffer, start, end, "DELETE")) {
+            return "DELETE";
+        }
+        if (regionEquals(buffer, start, end, "PATCH")) {
+            return "PATCH";
+        }
+        return ascii(buffer, start, end);
+    }
+
+    private static int parseLength(byte[] buffer, int start, int end) {
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            byte b = buffer[i];
+            if (b == ' ') {
+                continue;
+            }
+            if (b < '0' || b > '9' || value > Integer.MAX_VALUE) {
+                return -1;
+            }
+            value = value * 10 + (b - '0');
+        }
+        return value > Integer.MAX_VALUE ? -1 : (int) value;
+    }
+
+    /**
+     * Compares a byte range with a lower-case ASCII string, ignoring the case of the bytes.
+     */
+    private static boolean regionEquals(byte[] buffer, int start, int end, String lowerCase) {
+        if (end - start != lowerCase.length()) {
+            return false;
+        }
+        for (int i = 0; i < lowerCase.length(); i++) {
+            int b = buffer[start + i];
+            if (b >= 'A' && b <= 'Z') {
+                b += 'a' - 'A';
+            }
+            char expected = lowerCase.charAt(i);
+            if (expected >= 'A' && expected <= 'Z') {
+                expected += 'a' - 'A';
+            }
+            if (b != expected) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(byte[] buffer, int from, int to, byte value) {
+        for (int i = from; i < to; i++) {
+            if (buffer[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String ascii(byte[] buffer, int start, int end) {
+        return new String(buffer, start, end - start, StandardCharsets.ISO_8859_1);
+    }
+}
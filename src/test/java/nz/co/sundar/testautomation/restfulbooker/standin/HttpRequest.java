@@ -0,0 +1,80 @@
+package nz.co.sundar.testautomation.restfulbooker.standin;
+
+/**
+ * A parsed HTTP/1.1 request as seen by the {@link BookingHandler}.
+ * <p>
+ * Only the parts of the request the Restful Booker endpoints need are kept: the method, the path and query,
+ * the {@code Cookie} and {@code Authorization} headers and the body.
+ */
+public final class HttpRequest {
+
+    private final String method;
+    private final String path;
+    private final String query;
+    private final String cookie;
+    private final String authorization;
+    private final byte[] body;
+
+    public HttpRequest(String method, String path, String query, String cookie, String authorization, byte[] body) {
+        this.method = method;
+        this.path = path;
+        this.query = query;
+        this.cookie = cookie;
+        this.authorization = authorization;
+        this.body = body;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * @return the request path without the query string, e.g. {@code /booking/12}
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return the raw query string without the leading {@code ?}, or {@code null} if there is none
+     */
+    public String getQuery() {
+        return query;
+    }
+
+    public String getCookie() {
+        return cookie;
+    }
+
+    public String getAuthorization() {
+        return authorization;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    /**
+     * Returns the value of a cookie from the {@code Cookie} header.
+     *
+     * @param name the cookie name
+     * @return the cookie value, or {@code null} if the cookie was not sent
+     */
+    public String getCookieValue(String name) {
+        if (cookie == null) {
+            return null;
+        }
+        for (String pair : cookie.split(";")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0 && pair.substring(0, equals).trim().equals(name)) {
+                return pair.substring(equals + 1).trim();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return method + " " + path + (query == null ? "" : "?" + query);
+    }
+}
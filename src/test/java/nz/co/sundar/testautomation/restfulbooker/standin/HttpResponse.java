@@ -0,0 +1,82 @@
+package nz.co.sundar.testautomation.restfulbooker.standin;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A fully encoded HTTP/1.1 response: status line, headers and body in one byte array.
+ * <p>
+ * Responses are encoded once when created so that the event loop only has to copy bytes into the connection's
+ * output buffer. The plain text responses the Restful Booker API returns for errors are kept as shared constants.
+ */
+public final class HttpResponse {
+
+    public static final String JSON = "application/json; charset=utf-8";
+    public static final String TEXT = "text/plain; charset=utf-8";
+
+    public static final HttpResponse CREATED = text(201, "Created");
+    public static final HttpResponse BAD_REQUEST = text(400, "Bad Request");
+    public static final HttpResponse FORBIDDEN = text(403, "Forbidden");
+    public static final HttpResponse NOT_FOUND = text(404, "Not Found");
+    public static final HttpResponse METHOD_NOT_ALLOWED = text(405, "Method Not Allowed");
+    public static final HttpResponse PAYLOAD_TOO_LARGE = text(413, "Payload Too Large");
+    public static final HttpResponse INTERNAL_SERVER_ERROR = text(500, "Internal Server Error");
+    public static final HttpResponse NOT_IMPLEMENTED = text(501, "Not Implemented");
+    public static final HttpResponse SERVICE_UNAVAILABLE = text(503, "Service Unavailable");
+
+    private final int status;
+    private final byte[] encoded;
+    private final int bodyOffset;
+
+    private HttpResponse(int status, String contentType, byte[] body) {
+        this.status = status;
+        byte[] head = ("HTTP/1.1 " + status + " " + reason(status) + "\r\n"
+                + "Content-Type: " + contentType + "\r\n"
+                + "Content-Length: " + body.length + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+        this.encoded = new byte[head.length + body.length];
+        System.arraycopy(head, 0, encoded, 0, head.length);
+        System.arraycopy(body, 0, encoded, head.length, body.length);
+        this.bodyOffset = head.length;
+    }
+
+    public static HttpResponse json(int status, byte[] body) {
+        return new HttpResponse(status, JSON, body);
+    }
+
+    public static HttpResponse text(int status, String body) {
+        return new HttpResponse(status, TEXT, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the complete response bytes, including the status line and headers. Must not be modified.
+     */
+    public byte[] getEncoded() {
+        return encoded;
+    }
+
+    /**
+     * @return the offset of the body within {@link #getEncoded()}
+     */
+    public int getBodyOffset() {
+        return bodyOffset;
+    }
+
+    static String reason(int status) {
+        return switch (status) {
+            case 200 -> "OK";
+            case 201 -> "Created";
+            case 400 -> "Bad Request";
+            case 403 -> "Forbidden";
+            case 404 -> "Not Found";
+            case 405 -> "Method Not Allowed";
+            case 413 -> "Payload Too Large";
+            case 500 -> "Internal Server Error";
+            case 501 -> "Not Implemented";
+            case 503 -> "Service Unavailable";
+            default -> "Unknown";
+        };
+    }
+}
@@ -0,0 +1,104 @@
+package nz.co.sundar.testautomation.restfulbooker.standin;
+
+/**
+ * A set of positive {@code int}s in a linear-probing table, used for the posting lists of {@link BookingIndex}.
+ * <p>
+ * All methods are synchronized: each posting list is its own lock, so index writers only meet when they touch the
+ * same name or date.
+ */
+final class IntHashSet {
+
+    private int[] slots = new int[4];
+    private int size;
+
+    synchronized boolean add(int value) {
+        if ((size + 1) * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+        int index = indexOf(slots, value);
+        if (index >= 0) {
+            return false;
+        }
+        slots[-index - 1] = value;
+        size++;
+        return true;
+    }
+
+    synchronized boolean remove(int value) {
+        int hole = indexOf(slots, value);
+        if (hole < 0) {
+            return false;
+        }
+        // Backward-shift deletion, as in StripedBookingStore.
+        int mask = slots.length - 1;
+        int next = hole;
+        while (true) {
+            next = (next + 1) & mask;
+            int key = slots[next];
+            if (key == 0) {
+                break;
+            }
+            int home = hash(key) & mask;
+            boolean movable = next > hole ? (home <= hole || home > next) : (home <= hole && home > next);
+            if (movable) {
+                slots[hole] = key;
+                hole = next;
+            }
+        }
+        slots[hole] = 0;
+        size--;
+        if (size * 8 < slots.length && slots.length > 4) {
+            rehash(slots.length / 2);
+        }
+        return true;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    synchronized boolean contains(int value) {
+        return indexOf(slots, value) >= 0;
+    }
+
+    /**
+     * Appends all members to {@code target}.
+     */
+    synchronized void addTo(IntList target) {
+        target.ensureSpare(size);
+        for (int value : slots) {
+            if (value != 0) {
+                target.add(value);
+            }
+        }
+    }
+
+    private void rehash(int capacity) {
+        int[] old = slots;
+        slots = new int[capacity];
+        for (int value : old) {
+            if (value != 0) {
+                slots[-indexOf(slots, value) - 1] = value;
+            }
+        }
+    }
+
+    private static int hash(int value) {
+        return value * 0x9E3779B9;
+    }
+
+    private static int indexOf(int[] slots, int value) {
+        int mask = slots.length - 1;
+        int index = hash(value) & mask;
+        while (true) {
+            int key = slots[index];
+            if (key == value) {
+                return index;
+            }
+            if (key == 0) {
+                return -index - 1;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package nz.co.sundar.testautomation.restfulbooker.standin;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of primitive {@code int}s. Not thread-safe.
+ */
+final class IntList {
+
+    private int[] values;
+    private int size;
+
+    IntList(int initialCapacity) {
+        values = new int[Math.max(4, initialCapacity)];
+    }
+
+    void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    /**
+     * Makes room for {@code count} more values without further copying.
+     */
+    void ensureSpare(int count) {
+        if (values.length - size < count) {
+            values = Arrays.copyOf(values, Math.max(values.length * 2, size + count));
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    int get(int index) {
+        return values[index];
+    }
+
+    /**
+     * @return the values sorted in ascending order
+     */
+    int[] toSortedArray() {
+        int[] sorted = Arrays.copyOf(values, size);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+}
@@ -0,0 +1,190 @@
+package nz.co.sundar.testautomation.restfulbooker.standin;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.random.RandomGenerator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A distribution of added response latencies for a {@link FaultRule}.
+ * <p>
+ * {@link #parse(String)} accepts the forms used in {@code standin.faults}:
+ * <ul>
+ *   <li>{@code fixed(50ms)}</li>
+ *   <li>{@code uniform(10ms,80ms)}</li>
+ *   <li>{@code lognormal(20ms,0.6)} - median and shape (sigma of the underlying normal)</li>
+ *   <li>{@code histogram(1ms:120,5ms:300,20ms:40)} - bucket upper bounds and counts, sampled uniformly within
+ *       the chosen bucket; {@code histogram(@path/to/file.csv)} reads {@code <upper bound>,<count>} lines, e.g.
+ *       latencies recorded from the public API</li>
+ * </ul>
+ * Durations take an {@code ns}, {@code us}, {@code ms} or {@code s} suffix and default to milliseconds.
+ */
+@FunctionalInterface
+public interface LatencyDistribution {
+
+    /** Latencies are capped here so that a long-tailed distribution cannot stall a connection indefinitely. */
+    long MAX_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    LatencyDistribution NONE = random -> 0;
+
+    /**
+     * @param random the source of randomness, so that samples are reproducible under a seed
+     * @return a latency in nanoseconds, between 0 and {@link #MAX_NANOS}
+     */
+    long sampleNanos(RandomGenerator random);
+
+    static LatencyDistribution fixed(long nanos) {
+        long clamped = clamp(nanos);
+        return random -> clamped;
+    }
+
+    static LatencyDistribution uniform(long minNanos, long maxNanos) {
+        if (maxNanos < minNanos) {
+            throw new IllegalArgumentException("Uniform latency maximum is below its minimum");
+        }
+        long min = clamp(minNanos);
+        long max = clamp(maxNanos);
+        return random -> min == max ? min : random.nextLong(min, max + 1);
+    }
+
+    /**
+     * @param medianNanos the median latency
+     * @param sigma       the standard deviation of the latency's logarithm; larger values give a longer tail
+     */
+    static LatencyDistribution logNormal(long medianNanos, double sigma) {
+        if (medianNanos <= 0 || sigma < 0) {
+            throw new IllegalArgumentException("Log-normal latency needs a positive median and a non-negative sigma");
+        }
+        double mu = Math.log(medianNanos);
+        return random -> clamp((long) Math.exp(mu + sigma * random.nextGaussian()));
+    }
+
+    /**
+     * @param upperBoundsNanos ascending bucket upper bounds; the first bucket starts at 0
+     * @param counts           how many recorded latencies fell into each bucket
+     */
+    static LatencyDistribution histogram(long[] upperBoundsNanos, long[] counts) {
+        if (upperBoundsNanos.length == 0 || upperBoundsNanos.length != counts.length) {
+            throw new IllegalArgumentException("Histogram needs one count per bucket");
+        }
+        long[] bounds = upperBoundsNanos.clone();
+        long[] cumulative = new long[counts.length];
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] < 0 || (i > 0 && bounds[i] <= bounds[i - 1])) {
+                throw new IllegalArgumentException("Histogram buckets must ascend and have non-negative counts");
+            }
+            total += counts[i];
+            cumulative[i] = total;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("Histogram has no recorded latencies");
+        }
+        long sum = total;
+        return random -> {
+            long pick = random.nextLong(sum);
+            int bucket = Arrays.binarySearch(cumulative, pick + 1);
+            if (bucket < 0) {
+                bucket = -bucket - 1;
+            }
+            long low = bucket == 0 ? 0 : bounds[bucket - 1];
+            return clamp(random.nextLong(low, bounds[bucket] + 1));
+        };
+    }
+
+    /**
+     * Parses a distribution from its configuration form, see the class description.
+     *
+     * @throws IllegalArgumentException if the form is not recognised
+     */
+    static LatencyDistribution parse(String spec) {
+        Matcher matcher = Pattern.compile("(\\w+)\\((.*)\\)").matcher(spec.trim());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Unrecognised latency distribution: " + spec);
+        }
+        String[] args = matcher.group(2).split(",");
+        switch (matcher.group(1).toLowerCase()) {
+            case "fixed":
+                return fixed(parseDuration(args[0]));
+            case "uniform":
+                requireArgs(spec, args, 2);
+                return uniform(parseDuration(args[0]), parseDuration(args[1]));
+            case "lognormal":
+                requireArgs(spec, args, 2);
+                return logNormal(parseDuration(args[0]), Double.parseDouble(args[1].trim()));
+            case "histogram":
+                return matcher.group(2).startsWith("@")
+                        ? readHistogram(Path.of(matcher.group(2).substring(1)))
+                        : parseHistogram(List.of(args), ":");
+            default:
+                throw new IllegalArgumentException("Unrecognised latency distribution: " + spec);
+        }
+    }
+
+    /**
+     * Parses a duration such as {@code 250us}, {@code 20ms} or {@code 1.5s}; a bare number is milliseconds.
+     *
+     * @return the duration in nanoseconds
+     */
+    static long parseDuration(String text) {
+        Matcher matcher = Pattern.compile("(\\d+(?:\\.\\d+)?)\\s*(ns|us|ms|s)?").matcher(text.trim());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Unrecognised duration: " + text);
+        }
+        double value = Double.parseDouble(matcher.group(1));
+        String unit = matcher.group(2) == null ? "ms" : matcher.group(2);
+        double nanosPerUnit = switch (unit) {
+            case "ns" -> 1;
+            case "us" -> 1_000;
+            case "ms" -> 1_000_000;
+            default -> 1_000_000_000;
+        };
+        return (long) (value * nanosPerUnit);
+    }
+
+    private static LatencyDistribution readHistogram(Path file) {
+        try {
+            List<String> lines = new ArrayList<>();
+            for (String line : Files.readAllLines(file)) {
+                if (!line.isBlank() && !line.startsWith("#") && Character.isDigit(line.trim().charAt(0))) {
+                    lines.add(line);
+                }
+            }
+            return parseHistogram(lines, ",");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read latency histogram " + file, e);
+        }
+    }
+
+    private static LatencyDistribution parseHistogram(List<String> buckets, String separator) {
+        long[] bounds = new long[buckets.size()];
+        long[] counts = new long[buckets.size()];
+        for (int i = 0; i < buckets.size(); i++) {
+            String[] parts = buckets.get(i).split(separator);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Histogram bucket must be <upper bound>" + separator + "<count>: "
+                        + buckets.get(i));
+            }
+            bounds[i] = parseDuration(parts[0]);
+            counts[i] = Long.parseLong(parts[1].trim());
+        }
+        return histogram(bounds, counts);
+    }
+
+    private static void requireArgs(String spec, String[] args, int count) {
+        if (args.length != count) {
+            throw new IllegalArgumentException("Expected " + count + " arguments: " + spec);
+        }
+    }
+
+    private static long clamp(long nanos) {
+        return Math.max(0, Math.min(MAX_NANOS, nanos));
+    }
+}
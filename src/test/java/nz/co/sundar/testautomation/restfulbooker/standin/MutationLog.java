@@ -0,0 +1,392 @@
+package nz.co.sundar.testautomation.restfulbooker.standin;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of booking mutations written through memory-mapped segment files.
+ * <p>
+ * The log is split into fixed-size segments named {@code bookings-<generation>-<segment>.log}; compaction writes
+ * a new generation. A record never spans segments and is addressed by its position in the log, {@code segment *
+ * segmentBytes + offset}. Each record is
+ * <pre>
+ *   int  length   total record length, including this header
+ *   int  crc      CRC-32 of everything after this field
+ *   byte type     {@link #PUT} or {@link #DELETE}
+ *   int  id       booking id
+ *   ...  booking  for {@link #PUT} only
+ * </pre>
+ * Unused space is zero, so a zero length marks the end of a segment. Recovery stops at the first record whose
+ * length or checksum is wrong, which drops a torn write at the tail.
+ * <p>
+ * Appends must be serialized by the caller. Reads use absolute buffer access only and may run concurrently with
+ * appends.
+ */
+final class MutationLog implements AutoCloseable {
+
+    static final byte PUT = 1;
+    static final byte DELETE = 2;
+
+    private static final int HEADER_BYTES = 13;
+    private static final String PREFIX = "bookings-";
+    private static final String SUFFIX = ".log";
+
+    private final Path directory;
+    private final int generation;
+    private final int segmentBytes;
+    private final List<FileChannel> channels = new ArrayList<>();
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer scratch = ByteBuffer.allocate(512);
+    private long tail;
+
+    private MutationLog(Path directory, int generation, int segmentBytes) {
+        this.directory = directory;
+        this.generation = generation;
+        this.segmentBytes = segmentBytes;
+    }
+
+    /**
+     * Opens the segments of a generation, or creates its first segment if there are none. The tail is left at 0;
+     * call {@link #replay} to find it.
+     */
+    static MutationLog open(Path directory, int generation, int segmentBytes) throws IOException {
+        MutationLog log = new MutationLog(directory, generation, segmentBytes);
+        int segment = 0;
+        while (Files.exists(log.segmentPath(segment))) {
+            log.mapSegment(segment++);
+        }
+        if (segment == 0) {
+            log.mapSegment(0);
+        }
+        return log;
+    }
+
+    /**
+     * @return the generations that have segment files in the directory, in ascending order
+     */
+    static int[] generations(Path directory) throws IOException {
+        List<Integer> generations = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                int generation = Integer.parseInt(name.substring(PREFIX.length(), name.indexOf('-', PREFIX.length())));
+                if (!generations.contains(generation)) {
+                    generations.add(generation);
+                }
+            }
+        }
+        return generations.stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+
+    /**
+     * Deletes every segment file of a generation.
+     */
+    static void deleteGeneration(Path directory, int generation) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                PREFIX + String.format("%06d", generation) + "-*" + SUFFIX)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    int getGeneration() {
+        return generation;
+    }
+
+    int getSegmentBytes() {
+        return segmentBytes;
+    }
+
+    /**
+     * @return the position the next record will be written at
+     */
+    long getTail() {
+        return tail;
+    }
+
+    /**
+     * @return the number of bytes of segment files
+     */
+    long getFileBytes() {
+        return (long) segments.length * segmentBytes;
+    }
+
+    /**
+     * Appends a record.
+     *
+     * @param type    {@link #PUT} or {@link #DELETE}
+     * @param id      the booking id
+     * @param booking the booking for {@link #PUT}, otherwise {@code null}
+     * @return the position of the record
+     */
+    long append(byte type, int id, StoredBooking booking) {
+        scratch.clear();
+        scratch.position(8);
+        scratch.put(type).putInt(id);
+        if (booking != null) {
+            encode(booking);
+        }
+        int length = scratch.position();
+        scratch.putInt(0, length);
+        crc.reset();
+        crc.update(scratch.array(), 8, length - 8);
+        scratch.putInt(4, (int) crc.getValue());
+        return appendRaw(scratch.array(), length);
+    }
+
+    /**
+     * Copies the record at {@code position} of another log to the end of this one, e.g. during compaction.
+     *
+     * @return the position of the copy
+     */
+    long copyFrom(MutationLog source, long position) {
+        int length = source.recordLength(position);
+        byte[] record = new byte[length];
+        source.segment(position).get(source.offset(position), record);
+        return appendRaw(record, length);
+    }
+
+    private long appendRaw(byte[] record, int length) {
+        if (length > segmentBytes) {
+            throw new IllegalArgumentException("Record of " + length + " bytes does not fit a segment");
+        }
+        int offset = offset(tail);
+        if (offset + length > segmentBytes) {
+            tail = (tail / segmentBytes + 1) * segmentBytes;
+            offset = 0;
+        }
+        int segment = (int) (tail / segmentBytes);
+        if (segment >= segments.length) {
+            try {
+                mapSegment(segment);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to add log segment " + segment, e);
+            }
+        }
+        segments[segment].put(offset, record, 0, length);
+        long position = tail;
+        tail += length;
+        return position;
+    }
+
+    /**
+     * Forces the record at {@code position} to disk.
+     */
+    void force(long position) {
+        segment(position).force(offset(position), recordLength(position));
+    }
+
+    /**
+     * Forces every segment to disk.
+     */
+    void force() {
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+
+    int recordLength(long position) {
+        return segment(position).getInt(offset(position));
+    }
+
+    byte recordType(long position) {
+        return segment(position).get(offset(position) + 8);
+    }
+
+    int recordId(long position) {
+        return segment(position).getInt(offset(position) + 9);
+    }
+
+    /**
+     * Decodes the booking of a {@link #PUT} record.
+     */
+    StoredBooking readBooking(long position) {
+        MappedByteBuffer segment = segment(position);
+        int[] cursor = {offset(position) + HEADER_BYTES};
+        String firstname = readString(segment, cursor);
+        String lastname = readString(segment, cursor);
+        Integer totalprice = segment.get(cursor[0]) == 0 ? null : segment.getInt(cursor[0] + 1);
+        boolean depositpaid = segment.get(cursor[0] + 5) != 0;
+        cursor[0] += 6;
+        String checkin = readString(segment, cursor);
+        String checkout = readString(segment, cursor);
+        String additionalneeds = readString(segment, cursor);
+        return new StoredBooking(firstname, lastname, totalprice, depositpaid, checkin, checkout, additionalneeds);
+    }
+
+    /**
+     * Receives the records found by {@link #replay}.
+     */
+    interface RecordVisitor {
+        void visit(byte type, int id, long position, int length);
+    }
+
+    /**
+     * Visits every valid record from {@code from} on and leaves the tail after the last one.
+     *
+     * @param from    the position to start at, 0 or the start of a record
+     * @param visitor receives each record
+     */
+    void replay(long from, RecordVisitor visitor) {
+        long position = from;
+        while (true) {
+            int segment = (int) (position / segmentBytes);
+            if (segment >= segments.length) {
+                break;
+            }
+            int offset = offset(position);
+            int length = offset + 4 <= segmentBytes ? segments[segment].getInt(offset) : 0;
+            if (length == 0) {
+                // End of this segment; a record may continue in the next one.
+                long next = (long) (segment + 1) * segmentBytes;
+                if (segment + 1 >= segments.length || segments[segment + 1].getInt(0) == 0) {
+                    break;
+                }
+                position = next;
+                continue;
+            }
+            if (!isValid(segments[segment], offset, length)) {
+                break;
+            }
+            visitor.visit(segments[segment].get(offset + 8), segments[segment].getInt(offset + 9), position, length);
+            position += length;
+        }
+        tail = position;
+        clearFrom(position);
+    }
+
+    private boolean isValid(MappedByteBuffer segment, int offset, int length) {
+        if (length < HEADER_BYTES || offset + length > segmentBytes) {
+            return false;
+        }
+        crc.reset();
+        crc.update(segment.slice(offset + 8, length - 8));
+        return (int) crc.getValue() == segment.getInt(offset + 4);
+    }
+
+    /**
+     * Zeroes whatever a torn write left after the tail, including any later segments, so that it is not mistaken
+     * for records once appends reach it.
+     */
+    private void clearFrom(long position) {
+        byte[] zeros = new byte[8192];
+        int offset = offset(position);
+        for (int segment = (int) (position / segmentBytes); segment < segments.length; segment++) {
+            for (; offset < segmentBytes; offset += zeros.length) {
+                int length = Math.min(zeros.length, segmentBytes - offset);
+                if (!isZero(segments[segment], offset, length)) {
+                    segments[segment].put(offset, zeros, 0, length);
+                }
+            }
+            offset = 0;
+        }
+    }
+
+    private static boolean isZero(MappedByteBuffer segment, int offset, int length) {
+        for (int i = offset; i + 8 <= offset + length; i += 8) {
+            if (segment.getLong(i) != 0) {
+                return false;
+            }
+        }
+        for (int i = offset + (length & ~7); i < offset + length; i++) {
+            if (segment.get(i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void encode(StoredBooking booking) {
+        writeString(booking.getFirstname());
+        writeString(booking.getLastname());
+        ensureScratch(6);
+        scratch.put((byte) (booking.getTotalprice() == null ? 0 : 1))
+                .putInt(booking.getTotalprice() == null ? 0 : booking.getTotalprice())
+                .put((byte) (booking.isDepositpaid() ? 1 : 0));
+        writeString(booking.getCheckin());
+        writeString(booking.getCheckout());
+        writeString(booking.getAdditionalneeds());
+    }
+
+    private void writeString(String value) {
+        if (value == null) {
+            ensureScratch(4);
+            scratch.putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ensureScratch(4 + bytes.length);
+        scratch.putInt(bytes.length).put(bytes);
+    }
+
+    private static String readString(MappedByteBuffer segment, int[] cursor) {
+        int length = segment.getInt(cursor[0]);
+        cursor[0] += 4;
+        if (length < 0) {
+            return null;
+        }
+        if (length > segment.capacity() - cursor[0]) {
+            // Only possible when a reader races with compaction; the caller retries under the lock.
+            throw new IllegalStateException("Corrupt string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        segment.get(cursor[0], bytes);
+        cursor[0] += length;
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void ensureScratch(int bytes) {
+        if (scratch.remaining() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(scratch.capacity() * 2, scratch.position() + bytes));
+            larger.put(Arrays.copyOf(scratch.array(), scratch.position()));
+            scratch = larger;
+        }
+    }
+
+    private MappedByteBuffer segment(long position) {
+        return segments[(int) (position / segmentBytes)];
+    }
+
+    private int offset(long position) {
+        return (int) (position % segmentBytes);
+    }
+
+    private Path segmentPath(int segment) {
+        return directory.resolve(PREFIX + String.format("%06d-%06d", generation, segment) + SUFFIX);
+    }
+
+    private void mapSegment(int segment) throws IOException {
+        FileChannel channel = FileChannel.open(segmentPath(segment),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channels.add(channel);
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        MappedByteBuffer[] grown = Arrays.copyOf(segments, segment + 1);
+        grown[segment] = mapped;
+        segments = grown;
+    }
+
+    /**
+     * Closes the files. Mappings stay valid until they are garbage collected, so concurrent readers of a closed
+     * log still see its contents.
+     */
+    @Override
+    public void close() throws IOException {
+        for (FileChannel channel : channels) {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,509 @@
+package nz.co.sundar.testautomation.restfulbooker.standin;
+
+import nz.co.sundar.testautomation.restfulbooker.utils.ConfigReader;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A {@link BookingStore} that keeps bookings in a memory-mapped {@link MutationLog} on disk, so they survive
+ * restarts and are not limited by the heap. Only the id to log position index is held in memory, as a
+ * {@code long[]} indexed by id.
+ * <p>
+ * The index is checkpointed to {@code bookings.idx} on close and after compaction. On startup the checkpoint is
+ * loaded and only the log written after it is replayed, so recovery time depends on what changed since the last
+ * clean shutdown rather than on the number of bookings. Without a checkpoint the whole log is replayed.
+ * <p>
+ * Updates and deletes leave dead records behind. A background task compacts the log into a new generation once
+ * dead bytes exceed {@link Options#compactionRatio} of the log. Writes are serialized by one lock, which also
+ * covers compaction; reads are optimistic and do not block each other.
+ */
+public class PersistentBookingStore implements BookingStore, AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(PersistentBookingStore.class);
+
+    private static final String INDEX_FILE = "bookings.idx";
+    private static final int INDEX_MAGIC = 0x424B4958;
+    private static final int INDEX_VERSION = 1;
+    private static final int INDEX_HEADER_BYTES = 48;
+    private static final long ABSENT = -1;
+
+    private final Path directory;
+    private final Options options;
+    private final StampedLock lock = new StampedLock();
+    private final ScheduledExecutorService maintenance;
+
+    // Guarded by lock; read optimistically by get().
+    private MutationLog log;
+    private long[] positions;
+    private int nextId;
+    private int size;
+    private long liveBytes;
+    private long deadBytes;
+
+    /**
+     * Settings of a {@link PersistentBookingStore}.
+     */
+    public static final class Options {
+        private FsyncPolicy fsyncPolicy = FsyncPolicy.NEVER;
+        private long fsyncIntervalMillis = 1000;
+        private int segmentBytes = 64 << 20;
+        private double compactionRatio = 0.5;
+        private long compactionCheckMillis = 10_000;
+
+        /**
+         * Reads {@code standin.fsync}, {@code standin.fsyncIntervalMillis}, {@code standin.segmentBytes},
+         * {@code standin.compactionRatio} and {@code standin.compactionCheckMillis}.
+         */
+        public static Options fromConfig() {
+            return new Options()
+                    .fsyncPolicy(FsyncPolicy.valueOf(ConfigReader.getProperty("standin.fsync", "NEVER").toUpperCase()))
+                    .fsyncIntervalMillis(Long.parseLong(ConfigReader.getProperty("standin.fsyncIntervalMillis", "1000")))
+                    .segmentBytes(Integer.parseInt(ConfigReader.getProperty("standin.segmentBytes",
+                            String.valueOf(64 << 20))))
+                    .compactionRatio(Double.parseDouble(ConfigReader.getProperty("standin.compactionRatio", "0.5")))
+                    .compactionCheckMillis(Long.parseLong(
+                            ConfigReader.getProperty("standin.compactionCheckMillis", "10000")));
+        }
+
+        public Options fsyncPolicy(FsyncPolicy fsyncPolicy) {
+            this.fsyncPolicy = fsyncPolicy;
+            return this;
+        }
+
+        public Options fsyncIntervalMillis(long fsyncIntervalMillis) {
+            this.fsyncIntervalMillis = fsyncIntervalMillis;
+            return this;
+        }
+
+        /**
+         * @param segmentBytes the size of each log segment file; only used when a new log is created
+         */
+        public Options segmentBytes(int segmentBytes) {
+            this.segmentBytes = segmentBytes;
+            return this;
+        }
+
+        /**
+         * @param compactionRatio compact once this fraction of the log is dead records, or 0 to never compact
+         *                        automatically
+         */
+        public Options compactionRatio(double compactionRatio) {
+            this.compactionRatio = compactionRatio;
+            return this;
+        }
+
+        public Options compactionCheckMillis(long compactionCheckMillis) {
+            this.compactionCheckMillis = compactionCheckMillis;
+            return this;
+        }
+    }
+
+    private PersistentBookingStore(Path directory, Options options) {
+        this.directory = directory;
+        this.options = options;
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "standin-log-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Opens the store in a directory, recovering the bookings written by earlier runs.
+     *
+     * @param directory where the log and checkpoint are kept; created if missing
+     * @param options   fsync, segment and compaction settings
+     * @return the open store
+     * @throws IOException if the files cannot be read or created
+     */
+    public static PersistentBookingStore open(Path directory, Options options) throws IOException {
+        Files.createDirectories(directory);
+        PersistentBookingStore store = new PersistentBookingStore(directory, options);
+        long start = System.nanoTime();
+        store.recover();
+        logger.info("Recovered {} bookings from {} in {} ms", store.size, directory,
+                (System.nanoTime() - start) / 1_000_000);
+        store.scheduleMaintenance();
+        return store;
+    }
+
+    /**
+     * Opens the store in {@code standin.dataDirectory} (default {@code target/standin-data}) with
+     * {@link Options#fromConfig()}.
+     */
+    public static PersistentBookingStore openFromConfig() throws IOException {
+        return open(Paths.get(ConfigReader.getProperty("standin.dataDirectory", "target/standin-data")),
+                Options.fromConfig());
+    }
+
+    private void recover() throws IOException {
+        Path indexFile = directory.resolve(INDEX_FILE);
+        int generation;
+        long replayFrom = 0;
+        int segmentBytes = options.segmentBytes;
+        positions = new long[1024];
+        Arrays.fill(positions, ABSENT);
+
+        if (Files.exists(indexFile)) {
+            try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+                MappedByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (index.getInt(0) != INDEX_MAGIC || index.getInt(4) != INDEX_VERSION) {
+                    throw new IOException("Not a booking index: " + indexFile);
+                }
+                generation = index.getInt(8);
+                segmentBytes = index.getInt(12);
+                nextId = index.getInt(16);
+                replayFrom = index.getLong(20);
+                liveBytes = index.getLong(28);
+                deadBytes = index.getLong(36);
+                int count = index.getInt(44);
+                positions = new long[Math.max(1024, count)];
+                Arrays.fill(positions, count, positions.length, ABSENT);
+                LongBuffer stored = index.position(INDEX_HEADER_BYTES).slice().asLongBuffer();
+                stored.get(positions, 0, count);
+                for (int id = 0; id < count; id++) {
+                    if (positions[id] != ABSENT) {
+                        size++;
+                    }
+                }
+            }
+        } else {
+            int[] generations = MutationLog.generations(directory);
+            generation = generations.length == 0 ? 0 : generations[0];
+            Path firstSegment = directory.resolve(String.format("bookings-%06d-%06d.log", generation, 0));
+            if (Files.exists(firstSegment)) {
+                segmentBytes = (int) Files.size(firstSegment);
+            }
+        }
+        // Generations other than the checkpointed one are left over from an interrupted compaction.
+        for (int other : MutationLog.generations(directory)) {
+            if (other != generation) {
+                MutationLog.deleteGeneration(directory, other);
+            }
+        }
+
+        log = MutationLog.open(directory, generation, segmentBytes);
+        log.replay(replayFrom, this::apply);
+    }
+
+    /**
+     * Applies a replayed record to the in-memory index.
+     */
+    private void apply(byte type, int id, long position, int length) {
+        ensurePositions(id);
+        long previous = positions[id];
+        if (previous != ABSENT) {
+            int previousLength = log.recordLength(previous);
+            liveBytes -= previousLength;
+            deadBytes += previousLength;
+            size--;
+        }
+        if (type == MutationLog.PUT) {
+            positions[id] = position;
+            liveBytes += length;
+            size++;
+        } else {
+            positions[id] = ABSENT;
+            deadBytes += length;
+        }
+        nextId = Math.max(nextId, id);
+    }
+
+    private void scheduleMaintenance() {
+        if (options.fsyncPolicy == FsyncPolicy.INTERVAL) {
+            maintenance.scheduleWithFixedDelay(this::forceLog, options.fsyncIntervalMillis,
+                    options.fsyncIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        if (options.compactionRatio > 0) {
+            maintenance.scheduleWithFixedDelay(this::compactIfNeeded, options.compactionCheckMillis,
+                    options.compactionCheckMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void forceLog() {
+        long stamp = lock.readLock();
+        try {
+            log.force();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private void compactIfNeeded() {
+        try {
+            long dead;
+            long total;
+            long stamp = lock.readLock();
+            try {
+                dead = deadBytes;
+                total = liveBytes + deadBytes;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+            if (total > 0 && dead >= log.getSegmentBytes() / 4 && (double) dead / total >= options.compactionRatio) {
+                compact();
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.error("Compaction of {} failed", directory, e);
+        }
+    }
+
+    @Override
+    public int create(StoredBooking booking) {
+        long stamp = lock.writeLock();
+        try {
+            int id = ++nextId;
+            write(id, booking);
+            return id;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public StoredBooking get(int id) {
+        if (id <= 0) {
+            return null;
+        }
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                long[] current = positions;
+                long position = id < current.length ? current[id] : ABSENT;
+                StoredBooking booking = position == ABSENT ? null : log.readBooking(position);
+                if (lock.validate(stamp)) {
+                    return booking;
+                }
+            } catch (RuntimeException e) {
+                // A concurrent compaction moved the record; read again under the lock.
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            long position = id < positions.length ? positions[id] : ABSENT;
+            return position == ABSENT ? null : log.readBooking(position);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean update(int id, StoredBooking booking) {
+        long stamp = lock.writeLock();
+        try {
+            if (id <= 0 || id >= positions.length || positions[id] == ABSENT) {
+                return false;
+            }
+            write(id, booking);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean delete(int id) {
+        long stamp = lock.writeLock();
+        try {
+            if (id <= 0 || id >= positions.length || positions[id] == ABSENT) {
+                return false;
+            }
+            long position = log.append(MutationLog.DELETE, id, null);
+            sync(position);
+            apply(MutationLog.DELETE, id, position, log.recordLength(position));
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void write(int id, StoredBooking booking) {
+        long position = log.append(MutationLog.PUT, id, booking);
+        sync(position);
+        apply(MutationLog.PUT, id, position, log.recordLength(position));
+    }
+
+    private void sync(long position) {
+        if (options.fsyncPolicy == FsyncPolicy.EVERY_WRITE) {
+            log.force(position);
+        }
+    }
+
+    @Override
+    public int[] ids() {
+        long stamp = lock.readLock();
+        try {
+            int[] ids = new int[size];
+            int count = 0;
+            for (int id = 1; id <= nextId && id < positions.length; id++) {
+                if (positions[id] != ABSENT) {
+                    ids[count++] = id;
+                }
+            }
+            return ids;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return the bytes of the log taken by superseded and deleted records
+     */
+    public long getDeadBytes() {
+        long stamp = lock.readLock();
+        try {
+            return deadBytes;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return the bytes of segment files on disk
+     */
+    public long getLogFileBytes() {
+        long stamp = lock.readLock();
+        try {
+            return log.getFileBytes();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Rewrites the live records into a new log generation, checkpoints it and deletes the old generation.
+     * Writes wait while this runs.
+     *
+     * @throws IOException if the new generation cannot be written
+     */
+    public void compact() throws IOException {
+        long stamp = lock.writeLock();
+        try {
+            long start = System.nanoTime();
+            MutationLog old = log;
+            MutationLog.deleteGeneration(directory, old.getGeneration() + 1);
+            MutationLog compacted = MutationLog.open(directory, old.getGeneration() + 1, old.getSegmentBytes());
+            long[] moved = new long[positions.length];
+            Arrays.fill(moved, ABSENT);
+            long live = 0;
+            for (int id = 1; id <= nextId && id < positions.length; id++) {
+                if (positions[id] != ABSENT) {
+                    moved[id] = compacted.copyFrom(old, positions[id]);
+                    live += compacted.recordLength(moved[id]);
+                }
+            }
+            compacted.force();
+            long before = old.getTail();
+
+            log = compacted;
+            positions = moved;
+            liveBytes = live;
+            deadBytes = 0;
+            writeCheckpoint();
+            old.close();
+            MutationLog.deleteGeneration(directory, old.getGeneration());
+            logger.info("Compacted {} from {} to {} bytes in {} ms", directory, before, compacted.getTail(),
+                    (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Forces the log and writes the index checkpoint, so that the next start only replays later writes.
+     */
+    public void checkpoint() throws IOException {
+        long stamp = lock.writeLock();
+        try {
+            writeCheckpoint();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Writes the checkpoint; the caller holds the write lock. The log is forced first so that the checkpoint
+     * never refers to records that are not on disk, and the file is replaced atomically.
+     */
+    private void writeCheckpoint() throws IOException {
+        log.force();
+        int count = Math.min(positions.length, nextId + 1);
+        Path temporary = directory.resolve(INDEX_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                     Channels.newOutputStream(channel), 1 << 16))) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(INDEX_VERSION);
+            out.writeInt(log.getGeneration());
+            out.writeInt(log.getSegmentBytes());
+            out.writeInt(nextId);
+            out.writeLong(log.getTail());
+            out.writeLong(liveBytes);
+            out.writeLong(deadBytes);
+            out.writeInt(count);
+            for (int id = 0; id < count; id++) {
+                out.writeLong(positions[id]);
+            }
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temporary, directory.resolve(INDEX_FILE), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void ensurePositions(int id) {
+        if (id >= positions.length) {
+            int length = positions.length;
+            long[] grown = Arrays.copyOf(positions, Math.max(length * 2, id + 1));
+            Arrays.fill(grown, length, grown.length, ABSENT);
+            positions = grown;
+        }
+    }
+
+    /**
+     * Stops background maintenance, writes a checkpoint and closes the log.
+     */
+    @Override
+    public void close() {
+        maintenance.shutdownNow();
+        long stamp = lock.writeLock();
+        try {
+            writeCheckpoint();
+            log.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to close booking log in " + directory, e);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+}
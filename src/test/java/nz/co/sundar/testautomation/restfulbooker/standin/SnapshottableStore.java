@@ -0,0 +1,39 @@
+package nz.co.sundar.testautomation.restfulbooker.standin;
+
+import java.util.Set;
+
+/**
+ * A {@link BookingStore} that can record its bookings under a name and return to them later, e.g. to reset the
+ * stand-in to a seeded dataset between tests. The snapshot control endpoints of {@link BookingHandler} answer
+ * {@code 501} for stores that do not implement it.
+ */
+public interface SnapshottableStore extends BookingStore {
+
+    /**
+     * Records the current bookings under a name so that {@link #restore(String)} can return to them, replacing
+     * any snapshot of that name.
+     *
+     * @param name the snapshot name
+     */
+    void snapshot(String name);
+
+    /**
+     * Puts the store back into the state recorded by {@link #snapshot(String)}. The snapshot is kept and can be
+     * restored again.
+     *
+     * @param name the snapshot name
+     * @return {@code false} if there is no snapshot with that name
+     */
+    boolean restore(String name);
+
+    /**
+     * @param name the snapshot name
+     * @return {@code false} if there is no snapshot with that name
+     */
+    boolean deleteSnapshot(String name);
+
+    /**
+     * @return the names of the stored snapshots in ascending order
+     */
+    Set<String> getSnapshotNames();
+}
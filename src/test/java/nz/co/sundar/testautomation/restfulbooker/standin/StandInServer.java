@@ -0,0 +1,201 @@
+package nz.co.sundar.testautomation.restfulbooker.standin;
+
+import nz.co.sundar.testautomation.restfulbooker.utils.ConfigReader;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.time.LocalDate;
+
+/**
+ * A local stand-in for the Restful Booker API, used as a fast and predictable target for the functional tests
+ * and for load runs.
+ * <p>
+ * One acceptor thread hands connections round-robin to a fixed set of {@link EventLoop}s, each running its own
+ * selector. Connections are HTTP/1.1 keep-alive and may pipeline requests. Only {@code Content-Length} request
+ * bodies are supported; chunked requests are answered with {@code 501} and the connection is closed.
+ * <p>
+ * Point the tests at it by setting {@code baseURI} and {@code authURL} in {@code config.properties} to
+ * {@code http://localhost:<port>} and {@code http://localhost:<port>/auth}.
+ */
+public final class StandInServer implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(StandInServer.class);
+
+    private final ServerSocketChannel serverChannel;
+    private final EventLoop[] loops;
+    private final Thread[] threads;
+    private final Thread acceptor;
+    private final BookingHandler handler;
+    private volatile boolean running = true;
+
+    private StandInServer(ServerSocketChannel serverChannel, BookingHandler handler, int loopCount) throws IOException {
+        this.serverChannel = serverChannel;
+        this.handler = handler;
+        this.loops = new EventLoop[loopCount];
+        this.threads = new Thread[loopCount];
+        for (int i = 0; i < loopCount; i++) {
+            loops[i] = new EventLoop(handler);
+            threads[i] = new Thread(loops[i], "standin-loop-" + i);
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+        this.acceptor = new Thread(this::acceptLoop, "standin-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Starts a server on the loopback interface.
+     *
+     * @param port      the port to listen on, or 0 for any free port
+     * @param loopCount the number of event loop threads
+     * @param handler   the request handler
+     * @return the running server
+     * @throws IOException if the port cannot be bound
+     */
+    public static StandInServer start(int port, int loopCount, BookingHandler handler) throws IOException {
+        ServerSocketChannel channel = ServerSocketChannel.open();
+        channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        logger.info("Stand-in server listening on port {} with {} event loops",
+                ((InetSocketAddress) channel.getLocalAddress()).getPort(), loopCount);
+        return new StandInServer(channel, handler, loopCount);
+    }
+
+    /**
+     * Starts a server on any free loopback port with an empty store, one event loop per processor and the
+     * given credentials.
+     */
+    public static StandInServer start(String username, String password) throws IOException {
+        return start(0, Runtime.getRuntime().availableProcessors(),
+                new BookingHandler(new StripedBookingStore(), username, password));
+    }
+
+    public int getPort() {
+        try {
+            return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+        } catch (IOException e) {
+            throw new IllegalStateException("Stand-in server is closed", e);
+        }
+    }
+
+    /**
+     * @return the base URI to give REST Assured, e.g. {@code http://localhost:3001}
+     */
+    public String getBaseUri() {
+        return "http://localhost:" + getPort();
+    }
+
+    public BookingHandler getHandler() {
+        return handler;
+    }
+
+    /**
+     * Replaces the faults injected into requests from now on; {@code null} turns fault injection off. Requests
+     * already delayed keep the fault they were given.
+     */
+    public void setFaults(FaultInjector faults) {
+        for (EventLoop loop : loops) {
+            loop.setFaults(faults);
+        }
+    }
+
+    private void acceptLoop() {
+        int next = 0;
+        while (running) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                loops[next].register(channel);
+                next = (next + 1) % loops.length;
+            } catch (IOException e) {
+                if (running) {
+                    logger.error("Stand-in server failed to accept a connection", e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            serverChannel.close();
+        } catch (IOException ignored) {
+            // Closing is best effort.
+        }
+        for (EventLoop loop : loops) {
+            loop.shutdown();
+        }
+        try {
+            acceptor.join(1000);
+            for (Thread thread : threads) {
+                thread.join(1000);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.info("Stand-in server stopped");
+    }
+
+    /**
+     * Runs the server until the process is stopped. The port comes from {@code standin.port} (default 3001),
+     * the number of event loops from {@code standin.eventLoops} (default one per processor) and the credentials
+     * from {@code username} and {@code password} (default {@code admin} / {@code password123}). Bookings are kept
+     * in memory unless {@code standin.dataDirectory} is set, in which case they are persisted there by a
+     * {@link PersistentBookingStore}. Like the public API, an empty store starts with {@code standin.seedBookings}
+     * sample bookings (default 10). Faults from {@code standin.faults} are injected with the seed
+     * {@code standin.faultSeed}; see {@link FaultInjector}.
+     */
+    public static void main(String[] args) throws Exception {
+        int port = Integer.parseInt(ConfigReader.getProperty("standin.port", "3001"));
+        int loopCount = Integer.parseInt(ConfigReader.getProperty("standin.eventLoops",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        BookingStore store = ConfigReader.getProperty("standin.dataDirectory", null) == null
+                ? new StripedBookingStore()
+                : PersistentBookingStore.openFromConfig();
+        if (store.size() == 0) {
+            seed(store, Integer.parseInt(ConfigReader.getProperty("standin.seedBookings", "10")));
+        }
+        BookingHandler handler = new BookingHandler(store,
+                ConfigReader.getProperty("username", "admin"), ConfigReader.getProperty("password", "password123"));
+        StandInServer server = start(port, loopCount, handler);
+        FaultInjector faults = FaultInjector.fromConfig();
+        if (faults != null) {
+            server.setFaults(faults);
+            logger.info("Stand-in server injecting faults: {}", ConfigReader.getProperty("standin.faults", ""));
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            if (store instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    logger.error("Failed to close the booking store", e);
+                }
+            }
+        }));
+        Thread.currentThread().join();
+    }
+
+    /**
+     * Adds sample bookings, cycling through a few names and dates.
+     *
+     * @param store the store to fill
+     * @param count the number of bookings to add
+     */
+    public static void seed(BookingStore store, int count) {
+        String[] firstnames = {"Jim", "Sally", "Mark", "Eric", "Susan", "Mary"};
+        String[] lastnames = {"Brown", "Wilson", "Jones", "Smith", "Ericsson"};
+        LocalDate checkin = LocalDate.of(2023, 1, 1);
+        for (int i = 0; i < count; i++) {
+            LocalDate date = checkin.plusDays(i % 365);
+            store.create(new StoredBooking(firstnames[i % firstnames.length], lastnames[i % lastnames.length],
+                    100 + i % 900, i % 2 == 0, date.toString(), date.plusDays(1 + i % 7).toString(),
+                    i % 3 == 0 ? "Breakfast" : null));
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package nz.co.sundar.testautomation.restfulbooker.standin;
+
+import nz.co.sundar.testautomation.restfulbooker.pojo.Booking;
+import nz.co.sundar.testautomation.restfulbooker.pojo.BookingDates;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * An immutable booking held by the stand-in server.
+ * <p>
+ * The JSON representation is encoded once on construction and the {@code GET /booking/{id}} response is built
+ * lazily from it and kept, so serving a read is a lookup plus a buffer copy. Because instances never change,
+ * stores can share them freely between snapshots and threads.
+ */
+public final class StoredBooking {
+
+    private final String firstname;
+    private final String lastname;
+    private final Integer totalprice;
+    private final boolean depositpaid;
+    private final String checkin;
+    private final String checkout;
+    private final String additionalneeds;
+    private final byte[] json;
+    private HttpResponse response;
+
+    public StoredBooking(String firstname, String lastname, Integer totalprice, boolean depositpaid,
+                         String checkin, String checkout, String additionalneeds) {
+        this.firstname = firstname;
+        this.lastname = lastname;
+        this.totalprice = totalprice;
+        this.depositpaid = depositpaid;
+        this.checkin = checkin;
+        this.checkout = checkout;
+        this.additionalneeds = additionalneeds;
+        this.json = BookingJson.write(this);
+    }
+
+    /**
+     * Creates a stored booking from the test framework's {@link Booking} POJO.
+     *
+     * @param booking the booking to store
+     * @return the stored copy
+     */
+    public static StoredBooking of(Booking booking) {
+        BookingDates dates = booking.getBookingdates();
+        return new StoredBooking(booking.getFirstname(), booking.getLastname(), booking.getTotalprice(),
+                booking.isDepositpaid(), dates == null ? null : dates.getCheckin(),
+                dates == null ? null : dates.getCheckout(), booking.getAdditionalneeds());
+    }
+
+    /**
+     * @return the booking as the framework's {@link Booking} POJO, with a {@code null} price read as 0
+     */
+    public Booking toBooking() {
+        return new Booking(firstname, lastname, totalprice == null ? 0 : totalprice, depositpaid,
+                new BookingDates(checkin, checkout), additionalneeds);
+    }
+
+    /**
+     * @return the {@code 200 OK} response for {@code GET /booking/{id}}, encoded on first use
+     */
+    public HttpResponse toResponse() {
+        HttpResponse cached = response;
+        if (cached == null) {
+            cached = HttpResponse.json(200, json);
+            response = cached;
+        }
+        return cached;
+    }
+
+    /**
+     * @return the encoded JSON object. Must not be modified.
+     */
+    public byte[] getJson() {
+        return json;
+    }
+
+    public String getFirstname() {
+        return firstname;
+    }
+
+    public String getLastname() {
+        return lastname;
+    }
+
+    public Integer getTotalprice() {
+        return totalprice;
+    }
+
+    public boolean isDepositpaid() {
+        return depositpaid;
+    }
+
+    public String getCheckin() {
+        return checkin;
+    }
+
+    public String getCheckout() {
+        return checkout;
+    }
+
+    public String getAdditionalneeds() {
+        return additionalneeds;
+    }
+
+    @Override
+    public String toString() {
+        return new String(json, StandardCharsets.UTF_8);
+    }
+}
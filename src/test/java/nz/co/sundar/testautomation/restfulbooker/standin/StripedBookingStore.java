@@ -0,0 +1,494 @@
+package nz.co.sundar.testautomation.restfulbooker.standin;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Concurrent {@link BookingStore} split into lock stripes, each holding an open-addressing table keyed by the
+ * primitive booking id.
+ * <p>
+ * Ids are allocated with a single atomic increment and booking {@code id} lives in stripe {@code id & (stripes - 1)},
+ * so consecutive ids land on different stripes and concurrent writes to different bookings only share a lock when
+ * their ids are congruent modulo the stripe count. Reads are optimistic: they run without locking and only fall
+ * back to the stripe's read lock when a write raced with them.
+ * <p>
+ * Unless disabled, a {@link BookingIndex} on names and dates is maintained under the same stripe locks and answers
+ * {@link #query(BookingQuery)} without scanning.
+ * <p>
+ * Named snapshots are copy-on-write: {@link #snapshot(String)} only marks each stripe's table as shared, and the
+ * first write to a stripe afterwards copies that stripe's table, so taking a snapshot costs the same however many
+ * bookings are stored. {@link #restore(String)} swaps the shared tables back in and updates the index from the
+ * stripes that changed since.
+ * <p>
+ * Every stripe counts its writes, how many of them lost the lock fast path and had to wait, the total time spent
+ * waiting, and how many optimistic reads had to be retried; see {@link #getContention()}.
+ */
+public class StripedBookingStore implements SnapshottableStore {
+
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final Stripe[] stripes;
+    private final int stripeMask;
+    private final int stripeShift;
+    private final BookingIndex index;
+    private final ConcurrentHashMap<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an indexed store with 16 stripes per processor, and at least 64.
+     */
+    public StripedBookingStore() {
+        this(Math.max(64, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 16 - 1) << 1), true);
+    }
+
+    /**
+     * Creates an indexed store.
+     *
+     * @param stripeCount the number of lock stripes, a power of two
+     */
+    public StripedBookingStore(int stripeCount) {
+        this(stripeCount, true);
+    }
+
+    /**
+     * @param stripeCount the number of lock stripes, a power of two
+     * @param indexed     whether to maintain a {@link BookingIndex} for filtered queries
+     */
+    public StripedBookingStore(int stripeCount, boolean indexed) {
+        if (stripeCount <= 0 || Integer.bitCount(stripeCount) != 1) {
+            throw new IllegalArgumentException("Stripe count must be a power of two: " + stripeCount);
+        }
+        this.index = indexed ? new BookingIndex() : null;
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(index);
+        }
+        this.stripeMask = stripeCount - 1;
+        this.stripeShift = Integer.numberOfTrailingZeros(stripeCount);
+    }
+
+    private Stripe stripeFor(int id) {
+        return stripes[id & stripeMask];
+    }
+
+    @Override
+    public int create(StoredBooking booking) {
+        int id = nextId.incrementAndGet();
+        stripeFor(id).insert(id, booking, stripeShift);
+        return id;
+    }
+
+    @Override
+    public StoredBooking get(int id) {
+        return id <= 0 ? null : stripeFor(id).get(id, stripeShift);
+    }
+
+    @Override
+    public boolean update(int id, StoredBooking booking) {
+        return id > 0 && stripeFor(id).replace(id, booking, stripeShift);
+    }
+
+    @Override
+    public boolean delete(int id) {
+        return id > 0 && stripeFor(id).remove(id, stripeShift);
+    }
+
+    @Override
+    public int[] ids() {
+        int[] ids = new int[size() + 16];
+        int count = 0;
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.readLock();
+            try {
+                int[] keys = stripe.table.keys;
+                if (count + stripe.size > ids.length) {
+                    ids = Arrays.copyOf(ids, Math.max(ids.length * 2, count + stripe.size));
+                }
+                for (int key : keys) {
+                    if (key != 0) {
+                        ids[count++] = key;
+                    }
+                }
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+        }
+        ids = Arrays.copyOf(ids, count);
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size;
+        }
+        return size;
+    }
+
+    @Override
+    public int[] query(BookingQuery query) {
+        if (query.isEmpty()) {
+            return ids();
+        }
+        return index == null ? SnapshottableStore.super.query(query) : index.query(query, this::get);
+    }
+
+    /**
+     * Records the current bookings and id counter under {@code name}, replacing any snapshot of that name. No
+     * bookings are copied.
+     */
+    @Override
+    public void snapshot(String name) {
+        long[] stamps = lockAll();
+        try {
+            Table[] tables = new Table[stripes.length];
+            int[] sizes = new int[stripes.length];
+            for (int i = 0; i < stripes.length; i++) {
+                tables[i] = stripes[i].share();
+                sizes[i] = stripes[i].size;
+            }
+            snapshots.put(name, new Snapshot(tables, sizes, nextId.get()));
+        } finally {
+            unlockAll(stamps);
+        }
+    }
+
+    /**
+     * Puts the store back into the state recorded by {@link #snapshot(String)}, including the id counter, so
+     * bookings created afterwards get the same ids as they did after the snapshot was taken. Requests running
+     * concurrently with a restore may land on either side of it.
+     */
+    @Override
+    public boolean restore(String name) {
+        Snapshot snapshot = snapshots.get(name);
+        if (snapshot == null) {
+            return false;
+        }
+        long[] stamps = lockAll();
+        try {
+            for (int i = 0; i < stripes.length; i++) {
+                stripes[i].restore(snapshot.tables[i], snapshot.sizes[i], stripeShift);
+            }
+            nextId.set(snapshot.nextId);
+        } finally {
+            unlockAll(stamps);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean deleteSnapshot(String name) {
+        return snapshots.remove(name) != null;
+    }
+
+    @Override
+    public Set<String> getSnapshotNames() {
+        return new TreeSet<>(snapshots.keySet());
+    }
+
+    /**
+     * Takes every stripe's write lock in order, which is the only place more than one is held.
+     */
+    private long[] lockAll() {
+        long[] stamps = new long[stripes.length];
+        for (int i = 0; i < stripes.length; i++) {
+            stamps[i] = stripes[i].lock.writeLock();
+        }
+        return stamps;
+    }
+
+    private void unlockAll(long[] stamps) {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            stripes[i].lock.unlockWrite(stamps[i]);
+        }
+    }
+
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    /**
+     * @return a snapshot of the per-stripe contention counters
+     */
+    public ContentionStats getContention() {
+        int count = stripes.length;
+        long[] writes = new long[count];
+        long[] contendedWrites = new long[count];
+        long[] lockWaitNanos = new long[count];
+        long[] readRetries = new long[count];
+        for (int i = 0; i < count; i++) {
+            Stripe stripe = stripes[i];
+            long stamp = stripe.lock.readLock();
+            try {
+                writes[i] = stripe.writes;
+                contendedWrites[i] = stripe.contendedWrites;
+                lockWaitNanos[i] = stripe.lockWaitNanos;
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+            readRetries[i] = stripe.readRetries.sum();
+        }
+        return new ContentionStats(writes, contendedWrites, lockWaitNanos, readRetries);
+    }
+
+    /**
+     * Id keys and bookings of one stripe. Replaced as a whole when the stripe grows, so an optimistic reader
+     * always sees arrays of the same length.
+     */
+    private static final class Table {
+        final int[] keys;
+        final StoredBooking[] values;
+
+        Table(int capacity) {
+            this(new int[capacity], new StoredBooking[capacity]);
+        }
+
+        private Table(int[] keys, StoredBooking[] values) {
+            this.keys = keys;
+            this.values = values;
+        }
+
+        Table copy() {
+            return new Table(keys.clone(), values.clone());
+        }
+    }
+
+    /**
+     * The stripe tables and id counter at the time of a snapshot. The tables are shared with the stripes until
+     * they are next written to and are never modified.
+     */
+    private record Snapshot(Table[] tables, int[] sizes, int nextId) {
+    }
+
+    private static final class Stripe {
+        final StampedLock lock = new StampedLock();
+        final LongAdder readRetries = new LongAdder();
+        final BookingIndex index;
+        Table table = new Table(16);
+        volatile int size;
+        // Whether the table is referenced by a snapshot and must be copied before it is written to.
+        boolean shared;
+
+        // Guarded by the write lock.
+        long writes;
+        long contendedWrites;
+        long lockWaitNanos;
+
+        Stripe(BookingIndex index) {
+            this.index = index;
+        }
+
+        StoredBooking get(int id, int shift) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                Table t = table;
+                int slot = indexOf(t.keys, id, shift);
+                StoredBooking booking = slot >= 0 ? t.values[slot] : null;
+                if (lock.validate(stamp)) {
+                    return booking;
+                }
+                readRetries.increment();
+            }
+            stamp = lock.readLock();
+            try {
+                Table t = table;
+                int slot = indexOf(t.keys, id, shift);
+                return slot >= 0 ? t.values[slot] : null;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        void insert(int id, StoredBooking booking, int shift) {
+            long stamp = writeLock();
+            try {
+                if ((size + 1) * 2 > table.keys.length) {
+                    grow(shift);
+                } else {
+                    unshare();
+                }
+                int slot = indexOf(table.keys, id, shift);
+                StoredBooking previous = null;
+                if (slot >= 0) {
+                    previous = table.values[slot];
+                } else {
+                    slot = -slot - 1;
+                    table.keys[slot] = id;
+                    size++;
+                }
+                table.values[slot] = booking;
+                if (index != null) {
+                    index.onChange(id, previous, booking);
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        boolean replace(int id, StoredBooking booking, int shift) {
+            long stamp = writeLock();
+            try {
+                int slot = indexOf(table.keys, id, shift);
+                if (slot < 0) {
+                    return false;
+                }
+                unshare();
+                StoredBooking previous = table.values[slot];
+                table.values[slot] = booking;
+                if (index != null) {
+                    index.onChange(id, previous, booking);
+                }
+                return true;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        boolean remove(int id, int shift) {
+            long stamp = writeLock();
+            try {
+                int hole = indexOf(table.keys, id, shift);
+                if (hole < 0) {
+                    return false;
+                }
+                unshare();
+                int[] keys = table.keys;
+                StoredBooking[] values = table.values;
+                StoredBooking removed = values[hole];
+                // Backward-shift deletion keeps probe chains intact without tombstones.
+                int mask = keys.length - 1;
+                int next = hole;
+                while (true) {
+                    next = (next + 1) & mask;
+                    int key = keys[next];
+                    if (key == 0) {
+                        break;
+                    }
+                    int home = (key >>> shift) & mask;
+                    boolean movable = next > hole ? (home <= hole || home > next) : (home <= hole && home > next);
+                    if (movable) {
+                        keys[hole] = key;
+                        values[hole] = values[next];
+                        hole = next;
+                    }
+                }
+                keys[hole] = 0;
+                values[hole] = null;
+                size--;
+                if (index != null) {
+                    index.onChange(id, removed, null);
+                }
+                return true;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        private long writeLock() {
+            long stamp = lock.tryWriteLock();
+            if (stamp == 0) {
+                long start = System.nanoTime();
+                stamp = lock.writeLock();
+                lockWaitNanos += System.nanoTime() - start;
+                contendedWrites++;
+            }
+            writes++;
+            return stamp;
+        }
+
+        private void grow(int shift) {
+            Table old = table;
+            Table grown = new Table(old.keys.length * 2);
+            for (int i = 0; i < old.keys.length; i++) {
+                int key = old.keys[i];
+                if (key != 0) {
+                    int slot = -indexOf(grown.keys, key, shift) - 1;
+                    grown.keys[slot] = key;
+                    grown.values[slot] = old.values[i];
+                }
+            }
+            table = grown;
+            shared = false;
+        }
+
+        /**
+         * Copies the table if a snapshot references it. Called under the write lock before any change.
+         */
+        private void unshare() {
+            if (shared) {
+                table = table.copy();
+                shared = false;
+            }
+        }
+
+        /**
+         * Marks the table as referenced by a snapshot. Called under the write lock.
+         */
+        Table share() {
+            shared = true;
+            return table;
+        }
+
+        /**
+         * Switches to a snapshot's table, updating the index with the bookings that differ from it. Called under
+         * the write lock; a stripe that has not been written to since the snapshot still holds the same table and
+         * costs nothing.
+         */
+        void restore(Table target, int targetSize, int shift) {
+            if (table != target) {
+                if (index != null) {
+                    reindex(table, target, shift);
+                }
+                table = target;
+                size = targetSize;
+            }
+            shared = true;
+        }
+
+        private void reindex(Table current, Table target, int shift) {
+            for (int i = 0; i < current.keys.length; i++) {
+                int key = current.keys[i];
+                if (key != 0) {
+                    int slot = indexOf(target.keys, key, shift);
+                    StoredBooking restored = slot >= 0 ? target.values[slot] : null;
+                    if (restored != current.values[i]) {
+                        index.onChange(key, current.values[i], restored);
+                    }
+                }
+            }
+            for (int i = 0; i < target.keys.length; i++) {
+                int key = target.keys[i];
+                if (key != 0 && indexOf(current.keys, key, shift) < 0) {
+                    index.onChange(key, null, target.values[i]);
+                }
+            }
+        }
+
+        /**
+         * Linear probe for {@code id}. The probe is bounded by the table length so that an optimistic reader
+         * racing with a writer always terminates.
+         *
+         * @return the slot of {@code id}, or {@code -(free slot) - 1} if it is absent
+         */
+        private static int indexOf(int[] keys, int id, int shift) {
+            int mask = keys.length - 1;
+            int index = (id >>> shift) & mask;
+            for (int probes = 0; probes < keys.length; probes++) {
+                int key = keys[index];
+                if (key == id) {
+                    return index;
+                }
+                if (key == 0) {
+                    return -index - 1;
+                }
+                index = (index + 1) & mask;
+            }
+            return Integer.MIN_VALUE;
+        }
+    }
+}
@@ -1,9 +1,10 @@
 package nz.co.sundar.testautomation.restfulbooker.tests;
 
-import io.restassured.response.Response;
 import nz.co.sundar.testautomation.restfulbooker.base.TestBase;
 import nz.co.sundar.testautomation.restfulbooker.utils.AssertionsUtils;
 import nz.co.sundar.testautomation.restfulbooker.utils.ConfigReader;
+import nz.co.sundar.testautomation.restfulbooker.utils.DecodedResponse;
+import nz.co.sundar.testautomation.restfulbooker.utils.ResponseSchema;
 import nz.co.sundar.testautomation.restfulbooker.utils.TokenManager;
 import org.junit.jupiter.api.Test;
 
@@ -23,7 +24,7 @@ public class AuthTokenTests extends TestBase {
         String username = "testuser"; // Intentionally incorrect username
         String password = "testpassword"; // Intentionally incorrect password
 
-        Response response = TokenManager.generateTokenResponse(username, password);
+        DecodedResponse response = TokenManager.generateTokenResponse(username, password);
 
         try {
             AssertionsUtils.assertAuthErrorResponse(response, 200, "Bad credentials");
@@ -45,10 +46,11 @@ public class AuthTokenTests extends TestBase {
         String username = ConfigReader.getProperty("username"); // Correct username from a properties file
         String password = ConfigReader.getProperty("password"); // Correct password from a properties file
 
-        Response response = TokenManager.generateTokenResponse(username, password);
+        DecodedResponse response = TokenManager.generateTokenResponse(username, password);
 
         try {
             AssertionsUtils.assertAuthValidResponse(response, 200);
+            AssertionsUtils.assertMatchesSchema(response, ResponseSchema.AUTH_TOKEN);
         } catch (AssertionError e) {
             reportManager.logFail("Token validation failed:" + e.getMessage());
             throw e; // Re-throw to fail the test
@@ -0,0 +1,172 @@
+package nz.co.sundar.testautomation.restfulbooker.tests;
+
+import com.aventstack.extentreports.model.Log;
+import io.restassured.http.ContentType;
+import nz.co.sundar.testautomation.restfulbooker.filters.BodyCaptureFilter;
+import nz.co.sundar.testautomation.restfulbooker.filters.BodyCapturePolicy;
+import nz.co.sundar.testautomation.restfulbooker.filters.BodyCapturePolicy.Mode;
+import nz.co.sundar.testautomation.restfulbooker.standin.StandInServer;
+import nz.co.sundar.testautomation.restfulbooker.utils.ReportManager;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInfo;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static io.restassured.RestAssured.given;
+
+/**
+ * Test class for {@link BodyCapturePolicy} and {@link BodyCaptureFilter}: which exchanges each mode selects, where
+ * long bodies are cut, and what the filter writes to the report and the spill files.
+ *
+ * <p>These tests start the stand-in on a free loopback port and do not call the public Restful Booker API.</p>
+ */
+public class BodyCaptureTests {
+
+    private static StandInServer server;
+
+    @BeforeAll
+    public static void startServer() throws IOException {
+        server = StandInServer.start("admin", "password123");
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        server.close();
+    }
+
+    @BeforeEach
+    public void createReportNode(TestInfo testInfo) {
+        ReportManager.getInstance().createTest(testInfo.getDisplayName());
+    }
+
+    private static String reportText() {
+        List<Log> logs = ReportManager.getInstance().getTest().getModel().getLogs();
+        return logs.stream().map(Log::getDetails).collect(Collectors.joining("\n"));
+    }
+
+    /**
+     * {@link Mode#ON_ERROR_STATUS} selects by the response status alone, {@link Mode#SAMPLED} by the sequence
+     * number, and the other two select everything or nothing.
+     */
+    @Test
+    public void modesSelectExchanges() {
+        BodyCapturePolicy onError = new BodyCapturePolicy(Mode.ON_ERROR_STATUS, 0, 1, null);
+        Assertions.assertFalse(onError.shouldCapture(200, 1));
+        Assertions.assertFalse(onError.shouldCapture(399, 2));
+        Assertions.assertTrue(onError.shouldCapture(400, 3));
+        Assertions.assertTrue(onError.shouldCapture(503, 4));
+
+        BodyCapturePolicy sampled = new BodyCapturePolicy(Mode.SAMPLED, 0, 3, null);
+        Assertions.assertEquals(List.of(false, false, true, false, false, true),
+                List.of(sampled.shouldCapture(500, 1), sampled.shouldCapture(200, 2), sampled.shouldCapture(200, 3),
+                        sampled.shouldCapture(200, 4), sampled.shouldCapture(200, 5), sampled.shouldCapture(500, 6)));
+        Assertions.assertEquals(1, new BodyCapturePolicy(Mode.SAMPLED, 0, 0, null).getSampleEvery());
+
+        Assertions.assertTrue(new BodyCapturePolicy(Mode.ALWAYS, 0, 1, null).shouldCapture(200, 1));
+        Assertions.assertFalse(new BodyCapturePolicy(Mode.NONE, 0, 1, null).shouldCapture(500, 1));
+    }
+
+    /**
+     * A body over the limit is cut before the character that would not fit whole, so the shown part never ends
+     * in half a character; a body within the limit, or any body without a limit, is shown in full.
+     */
+    @Test
+    public void truncationKeepsWholeCharacters() {
+        // "ab" then three two-byte and one four-byte character: 2 + 6 + 4 = 12 bytes.
+        byte[] body = "ab\u00e9\u00e8\u00ea\ud83d\ude00".getBytes(StandardCharsets.UTF_8);
+        int[] expected = {0, 1, 2, 2, 4, 4, 6, 6, 8, 8, 8, 8};
+        for (int maxBytes = 1; maxBytes < body.length; maxBytes++) {
+            BodyCapturePolicy policy = new BodyCapturePolicy(Mode.ALWAYS, maxBytes, 1, null);
+            int shown = policy.getShownLength(body);
+            Assertions.assertEquals(expected[maxBytes], shown, "maxBytes " + maxBytes);
+            Assertions.assertFalse(new String(body, 0, shown, StandardCharsets.UTF_8).contains("\ufffd"));
+        }
+        Assertions.assertEquals(12, new BodyCapturePolicy(Mode.ALWAYS, 12, 1, null).getShownLength(body));
+        Assertions.assertEquals(12, new BodyCapturePolicy(Mode.ALWAYS, 0, 1, null).getShownLength(body));
+        Assertions.assertFalse(new BodyCapturePolicy(Mode.ALWAYS, 0, 1, null).isTruncated(body.length));
+    }
+
+    /**
+     * With {@link Mode#ON_ERROR_STATUS} the filter logs the 404 but not the successful ping before it.
+     */
+    @Test
+    public void filterCapturesErrorStatusOnly() {
+        BodyCaptureFilter filter = new BodyCaptureFilter(new BodyCapturePolicy(Mode.ON_ERROR_STATUS, 0, 1, null));
+
+        Assertions.assertEquals(201,
+                given().baseUri(server.getBaseUri()).filter(filter).get("/ping").getStatusCode());
+        Assertions.assertEquals(404,
+                given().baseUri(server.getBaseUri()).filter(filter).get("/booking/999999").getStatusCode());
+
+        String report = reportText();
+        Assertions.assertFalse(report.contains("/ping"), report);
+        Assertions.assertTrue(report.contains("/booking/999999 | Status: 404"), report);
+        Assertions.assertTrue(report.contains("Response body: Not Found"), report);
+    }
+
+    /**
+     * A request body over the limit is shown up to the last whole character and written in full to the test's
+     * spill directory.
+     */
+    @Test
+    public void filterTruncatesAndSpillsLongBodies(@TempDir Path directory) throws IOException {
+        String body = "{\"firstname\":\"Zo\u00eb \u00c5ngstr\u00f6m\",\"lastname\":\"Brown\",\"totalprice\":111,"
+                + "\"depositpaid\":true,\"bookingdates\":{\"checkin\":\"2026-01-01\",\"checkout\":\"2026-01-02\"},"
+                + "\"additionalneeds\":\"\"}";
+        // The cut at 17 bytes falls inside the two bytes of the first accented letter.
+        BodyCaptureFilter filter = new BodyCaptureFilter(new BodyCapturePolicy(Mode.ALWAYS, 17, 1, directory));
+
+        Assertions.assertEquals(200, given().baseUri(server.getBaseUri()).filter(filter)
+                .contentType(ContentType.JSON).body(body).post("/booking").getStatusCode());
+
+        String report = reportText();
+        int total = body.getBytes(StandardCharsets.UTF_8).length;
+        Assertions.assertTrue(report.contains("Request body: {\"firstname\":\"Zo... [truncated " + (total - 16)
+                + " of " + total + " bytes]"), report);
+        Assertions.assertFalse(report.contains("\ufffd"), report);
+        Path testDirectory;
+        try (var listing = Files.list(directory)) {
+            testDirectory = listing.findFirst().orElseThrow();
+        }
+        Assertions.assertEquals(body, Files.readString(testDirectory.resolve("1-POST-request.txt")));
+        Assertions.assertTrue(Files.exists(testDirectory.resolve("1-POST-response.txt")));
+    }
+
+    /**
+     * The password sent to {@code /auth} and the token it returns are redacted before the bodies are logged or
+     * spilled, while the other fields are kept.
+     */
+    @Test
+    public void filterRedactsCredentialsAndTokens(@TempDir Path directory) throws IOException {
+        // A 10-byte limit truncates both bodies, so the spill files are written too.
+        BodyCaptureFilter filter = new BodyCaptureFilter(new BodyCapturePolicy(Mode.ALWAYS, 10, 1, directory));
+
+        String token = given().baseUri(server.getBaseUri()).filter(filter).contentType(ContentType.JSON)
+                .body("{\"username\":\"admin\",\"password\":\"password123\"}")
+                .post("/auth?token=abc").jsonPath().getString("token");
+        Assertions.assertNotNull(token);
+
+        String report = reportText();
+        Assertions.assertTrue(report.contains("/auth?token=[redacted] | Status: 200"), report);
+        Assertions.assertFalse(report.contains("password123"), report);
+        Assertions.assertFalse(report.contains(token), report);
+        Path testDirectory;
+        try (var listing = Files.list(directory)) {
+            testDirectory = listing.findFirst().orElseThrow();
+        }
+        Assertions.assertEquals("{\"username\":\"admin\",\"password\":\"[redacted]\"}",
+                Files.readString(testDirectory.resolve("1-POST-request.txt")));
+        Assertions.assertEquals("{\"token\":\"[redacted]\"}",
+                Files.readString(testDirectory.resolve("1-POST-response.txt")));
+    }
+}
@@ -0,0 +1,235 @@
+package nz.co.sundar.testautomation.restfulbooker.tests;
+
+import io.restassured.http.ContentType;
+import io.restassured.response.Response;
+import io.restassured.specification.RequestSpecification;
+import nz.co.sundar.testautomation.restfulbooker.payloads.BookingPayloads;
+import nz.co.sundar.testautomation.restfulbooker.standin.StandInServer;
+import nz.co.sundar.testautomation.restfulbooker.utils.BookingCache;
+import nz.co.sundar.testautomation.restfulbooker.utils.DecodedResponse;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static io.restassured.RestAssured.given;
+
+/**
+ * Test class for the client-side {@link BookingCache}: eviction, invalidation after writes, bypassing, and
+ * freshness under concurrent readers and writers.
+ *
+ * <p>These tests start the stand-in on a free loopback port and do not call the public Restful Booker API.</p>
+ */
+public class BookingCacheTests {
+
+    private static StandInServer server;
+    private static String token;
+
+    @BeforeAll
+    public static void startServer() throws IOException {
+        server = StandInServer.start("admin", "password123");
+        token = request().body("{\"username\":\"admin\",\"password\":\"password123\"}")
+                .post("/auth").jsonPath().getString("token");
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        server.close();
+    }
+
+    private static RequestSpecification request() {
+        return given().baseUri(server.getBaseUri()).contentType(ContentType.JSON);
+    }
+
+    private static String createBooking(int totalPrice) {
+        return request().body(payload(totalPrice)).post("/booking").jsonPath().getString("bookingid");
+    }
+
+    private static String payload(int totalPrice) {
+        return BookingPayloads.createBookingPayload("Jim", "Brown", totalPrice, true,
+                "2023-01-01", "2023-01-05", "Breakfast");
+    }
+
+    private static void update(String id, int totalPrice) {
+        Assertions.assertEquals(200, request().cookie("token", token).body(payload(totalPrice))
+                .put("/booking/" + id).getStatusCode());
+    }
+
+    private static Supplier<Response> fetch(String id, AtomicInteger requests) {
+        return () -> {
+            requests.incrementAndGet();
+            return request().get("/booking/" + id);
+        };
+    }
+
+    /**
+     * Repeated reads are served from the cache, and the least recently read booking is evicted first.
+     */
+    @Test
+    public void hitsAndLeastRecentlyReadEviction() {
+        BookingCache cache = new BookingCache(true, 2);
+        String a = createBooking(1);
+        String b = createBooking(2);
+        String c = createBooking(3);
+        AtomicInteger requests = new AtomicInteger();
+
+        Assertions.assertEquals(1, cache.get(a, fetch(a, requests)).booking().getTotalprice());
+        cache.get(b, fetch(b, requests));
+        DecodedResponse hit = cache.get(a, fetch(a, requests));
+        Assertions.assertEquals(2, requests.get());
+        Assertions.assertEquals(200, hit.statusCode());
+        Assertions.assertEquals(1, hit.booking().getTotalprice());
+
+        // a was read more recently than b, so c evicts b.
+        cache.get(c, fetch(c, requests));
+        cache.get(a, fetch(a, requests));
+        Assertions.assertEquals(3, requests.get());
+        cache.get(b, fetch(b, requests));
+        Assertions.assertEquals(4, requests.get());
+
+        Assertions.assertEquals(2, cache.getHits());
+        Assertions.assertEquals(4, cache.getMisses());
+        Assertions.assertEquals(2, cache.getEvictions());
+        Assertions.assertEquals(2, cache.size());
+        Assertions.assertTrue(cache.getSummary().startsWith("hits=2 (33.3%) misses=4 evictions=2"),
+                cache.getSummary());
+    }
+
+    /**
+     * Only successful reads are cached, so a booking that is not found yet is looked up again.
+     */
+    @Test
+    public void errorResponsesAreNotCached() {
+        BookingCache cache = new BookingCache(true, 10);
+        AtomicInteger requests = new AtomicInteger();
+        Assertions.assertEquals(404, cache.get("99999999", fetch("99999999", requests)).statusCode());
+        Assertions.assertEquals(404, cache.get("99999999", fetch("99999999", requests)).statusCode());
+        Assertions.assertEquals(2, requests.get());
+        Assertions.assertEquals(0, cache.size());
+
+        Supplier<Response> failing = () -> {
+            throw new IllegalStateException("connection refused");
+        };
+        Assertions.assertThrows(IllegalStateException.class, () -> cache.get("1", failing));
+        Assertions.assertEquals(0, cache.size());
+    }
+
+    /**
+     * A write invalidates the cached booking, and a read that was in flight during the write does not put the old
+     * booking back.
+     */
+    @Test
+    public void writesInvalidateCachedAndInFlightReads() {
+        BookingCache cache = new BookingCache(true, 10);
+        String id = createBooking(100);
+        AtomicInteger requests = new AtomicInteger();
+        cache.get(id, fetch(id, requests));
+
+        update(id, 200);
+        cache.invalidate(id);
+        Assertions.assertEquals(200, cache.get(id, fetch(id, requests)).booking().getTotalprice());
+        Assertions.assertEquals(2, requests.get());
+
+        // The write lands after this read was answered but before the read fills the cache.
+        cache.invalidate(id);
+        DecodedResponse stale = cache.get(id, () -> {
+            Response response = fetch(id, requests).get();
+            update(id, 300);
+            cache.invalidate(id);
+            return response;
+        });
+        Assertions.assertEquals(200, stale.booking().getTotalprice());
+        Assertions.assertEquals(300, cache.get(id, fetch(id, requests)).booking().getTotalprice());
+        Assertions.assertEquals(4, requests.get());
+        Assertions.assertEquals(3, cache.getInvalidations());
+    }
+
+    /**
+     * Reads inside a bypass scope always reach the server and are not cached; a disabled cache never caches.
+     */
+    @Test
+    public void bypassAndDisabledCacheReachTheServer() {
+        BookingCache cache = new BookingCache(true, 10);
+        String id = createBooking(5);
+        AtomicInteger requests = new AtomicInteger();
+        BookingCache.Bypass bypass = BookingCache.bypass();
+        try {
+            cache.get(id, fetch(id, requests));
+            cache.get(id, fetch(id, requests));
+        } finally {
+            bypass.close();
+        }
+        Assertions.assertEquals(2, requests.get());
+        Assertions.assertEquals(0, cache.size());
+        cache.get(id, fetch(id, requests));
+        cache.get(id, fetch(id, requests));
+        Assertions.assertEquals(3, requests.get());
+
+        BookingCache disabled = new BookingCache(false, 10);
+        disabled.get(id, fetch(id, requests));
+        disabled.get(id, fetch(id, requests));
+        Assertions.assertEquals(5, requests.get());
+        Assertions.assertEquals(0, disabled.getHits() + disabled.getMisses());
+    }
+
+    /**
+     * With readers and writers racing on a few bookings, no read that starts after a write has returned sees the
+     * booking as it was before that write.
+     */
+    @Test
+    public void readsNeverSeeBookingsOlderThanACompletedWrite() throws InterruptedException {
+        BookingCache cache = new BookingCache(true, 8);
+        int keys = 12;
+        String[] ids = new String[keys];
+        int[] versions = new int[keys];
+        AtomicInteger[] committed = new AtomicInteger[keys];
+        for (int k = 0; k < keys; k++) {
+            ids[k] = createBooking(0);
+            committed[k] = new AtomicInteger();
+        }
+        AtomicReference<String> violation = new AtomicReference<>();
+        AtomicInteger requests = new AtomicInteger();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Random random = new Random(t);
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 200 && violation.get() == null; i++) {
+                    int k = random.nextInt(keys);
+                    if (random.nextInt(4) == 0) {
+                        synchronized (committed[k]) {
+                            int version = ++versions[k];
+                            update(ids[k], version);
+                            cache.invalidate(ids[k]);
+                            committed[k].set(version);
+                        }
+                    } else {
+                        int before = committed[k].get();
+                        int seen = cache.get(ids[k], fetch(ids[k], requests)).booking().getTotalprice();
+                        if (seen < before) {
+                            violation.compareAndSet(null, "Booking " + ids[k] + " read as version " + seen
+                                    + " after version " + before + " was written");
+                        }
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assertions.assertNull(violation.get());
+        Assertions.assertTrue(cache.getHits() > 0, cache.getSummary());
+        Assertions.assertEquals(cache.getMisses(), requests.get(), cache.getSummary());
+    }
+}
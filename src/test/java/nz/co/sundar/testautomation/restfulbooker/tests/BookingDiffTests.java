@@ -0,0 +1,104 @@
+package nz.co.sundar.testautomation.restfulbooker.tests;
+
+import com.sun.management.ThreadMXBean;
+import nz.co.sundar.testautomation.restfulbooker.pojo.Booking;
+import nz.co.sundar.testautomation.restfulbooker.pojo.BookingDates;
+import nz.co.sundar.testautomation.restfulbooker.utils.BookingDiff;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test class for the {@link BookingDiff} comparison engine used by {@code AssertionsUtils}.
+ *
+ * <p>These tests run without the Restful Booker API; they only exercise the comparison of booking objects.</p>
+ */
+public class BookingDiffTests {
+
+    private static Booking booking(String firstname, int totalprice, String checkin) {
+        return new Booking(firstname, "Brown", totalprice, true, new BookingDates(checkin, "2023-01-02"), "Breakfast");
+    }
+
+    /**
+     * Matching bookings return the shared {@link BookingDiff#NONE} result.
+     */
+    @Test
+    public void matchingBookingsHaveNoDiff() {
+        BookingDiff diff = BookingDiff.compare(booking("Jim", 111, "2023-01-01"), booking("Jim", 111, "2023-01-01"));
+
+        Assertions.assertSame(BookingDiff.NONE, diff);
+        Assertions.assertTrue(diff.describe().isEmpty());
+    }
+
+    /**
+     * Only the mismatching fields are flagged and described.
+     */
+    @Test
+    public void mismatchingFieldsAreDescribed() {
+        BookingDiff diff = BookingDiff.compare(booking("Jim", 111, "2023-01-01"), booking("Jack", 111, "2023-02-01"));
+
+        Assertions.assertEquals(BookingDiff.FIRSTNAME | BookingDiff.CHECKIN, diff.getMismatches());
+        Assertions.assertEquals(List.of(
+                "Validating First Name | expected: Jim but was: Jack",
+                "Validating Check-in date | expected: 2023-01-01 but was: 2023-02-01"), diff.describe());
+    }
+
+    /**
+     * Missing booking dates and a missing booking are reported as mismatches instead of throwing.
+     */
+    @Test
+    public void missingValuesAreMismatches() {
+        Booking withoutDates = new Booking("Jim", "Brown", 111, true, null, "Breakfast");
+
+        BookingDiff diff = BookingDiff.compare(booking("Jim", 111, "2023-01-01"), withoutDates);
+        Assertions.assertEquals(BookingDiff.CHECKIN | BookingDiff.CHECKOUT, diff.getMismatches());
+
+        BookingDiff missing = BookingDiff.compare(booking("Jim", 111, "2023-01-01"), null);
+        Assertions.assertTrue(missing.hasMismatch(BookingDiff.BOOKING_MISSING));
+        Assertions.assertEquals(1, missing.describe().size());
+    }
+
+    /**
+     * Bulk comparison counts mismatches and only collects diffs for the pairs that differ.
+     */
+    @Test
+    public void compareAllCollectsOnlyMismatches() {
+        List<Booking> expected = List.of(booking("Jim", 1, "2023-01-01"), booking("Jim", 2, "2023-01-01"),
+                booking("Jim", 3, "2023-01-01"));
+        List<Booking> actual = List.of(booking("Jim", 1, "2023-01-01"), booking("Jim", 5, "2023-01-01"));
+        List<BookingDiff> diffs = new ArrayList<>();
+
+        Assertions.assertEquals(2, BookingDiff.compareAll(expected, actual, diffs));
+        Assertions.assertEquals(BookingDiff.TOTALPRICE, diffs.get(0).getMismatches());
+        Assertions.assertTrue(diffs.get(1).hasMismatch(BookingDiff.BOOKING_MISSING));
+    }
+
+    /**
+     * Comparing matching bookings does not allocate, measured with the HotSpot per-thread allocation counter.
+     */
+    @Test
+    public void matchingComparisonDoesNotAllocate() {
+        ThreadMXBean threadMXBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Booking expected = booking("Jim", 111, "2023-01-01");
+        Booking actual = booking(new String("Jim"), 111, new String("2023-01-01"));
+        int iterations = 200_000;
+
+        for (int i = 0; i < iterations; i++) {
+            BookingDiff.mismatches(expected, actual);
+        }
+        long threadId = Thread.currentThread().getId();
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        int mismatches = 0;
+        for (int i = 0; i < iterations; i++) {
+            mismatches |= BookingDiff.compare(expected, actual).getMismatches();
+        }
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+
+        Assertions.assertEquals(0, mismatches);
+        Assertions.assertTrue(allocated < 64 * 1024,
+                "Expected no per-comparison allocation but " + iterations + " comparisons allocated " + allocated + " bytes");
+    }
+}
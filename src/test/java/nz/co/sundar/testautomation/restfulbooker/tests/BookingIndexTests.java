@@ -0,0 +1,186 @@
+package nz.co.sundar.testautomation.restfulbooker.tests;
+
+import nz.co.sundar.testautomation.restfulbooker.standin.BookingQuery;
+import nz.co.sundar.testautomation.restfulbooker.standin.StoredBooking;
+import nz.co.sundar.testautomation.restfulbooker.standin.StripedBookingStore;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Test class for filtered {@code GET /booking} queries answered by the stand-in's booking index.
+ *
+ * <p>Every filtered result is compared with a brute-force scan of the same bookings. These tests run without
+ * the Restful Booker API.</p>
+ */
+public class BookingIndexTests {
+
+    private static final String[] FIRST_NAMES = {"Jim", "Sally", "Mark", "Eric", "Susan", "Mary", "John"};
+    private static final String[] LAST_NAMES = {"Brown", "Wilson", "Jones", "Smith", "Ericsson"};
+    private static final LocalDate FIRST_DATE = LocalDate.of(2023, 1, 1);
+
+    private static StoredBooking randomBooking(Random random) {
+        LocalDate checkin = FIRST_DATE.plusDays(random.nextInt(60));
+        String checkinText = random.nextInt(20) == 0 ? "0NaN-aN-aN" : checkin.toString();
+        return new StoredBooking(FIRST_NAMES[random.nextInt(FIRST_NAMES.length)],
+                LAST_NAMES[random.nextInt(LAST_NAMES.length)], random.nextInt(500), random.nextBoolean(),
+                checkinText, checkin.plusDays(1 + random.nextInt(14)).toString(), null);
+    }
+
+    private static String randomDate(Random random) {
+        return random.nextInt(3) == 0 ? null : FIRST_DATE.plusDays(random.nextInt(80) - 10).toString();
+    }
+
+    private static String randomName(Random random, String[] names) {
+        int pick = random.nextInt(names.length + 2);
+        return pick < names.length ? names[pick] : pick == names.length ? "Nobody" : null;
+    }
+
+    /**
+     * Brute-force scan, written independently of {@link BookingQuery#matches}.
+     */
+    private static int[] scan(Map<Integer, StoredBooking> bookings, String firstname, String lastname,
+                              String checkin, String checkout) {
+        return bookings.entrySet().stream()
+                .filter(e -> firstname == null || firstname.equals(e.getValue().getFirstname()))
+                .filter(e -> lastname == null || lastname.equals(e.getValue().getLastname()))
+                .filter(e -> checkin == null || (!e.getValue().getCheckin().contains("NaN")
+                        && e.getValue().getCheckin().compareTo(checkin) >= 0))
+                .filter(e -> checkout == null || e.getValue().getCheckout().compareTo(checkout) >= 0)
+                .mapToInt(Map.Entry::getKey)
+                .sorted()
+                .toArray();
+    }
+
+    /**
+     * Random filters over a store receiving creates, updates and deletes match a brute-force scan.
+     */
+    @Test
+    public void filteredQueriesMatchBruteForceScan() {
+        Random random = new Random(42);
+        StripedBookingStore store = new StripedBookingStore(8);
+        TreeMap<Integer, StoredBooking> reference = new TreeMap<>();
+        List<Integer> live = new ArrayList<>();
+
+        for (int round = 0; round < 50; round++) {
+            for (int i = 0; i < 200; i++) {
+                int op = random.nextInt(10);
+                if (op < 6 || live.isEmpty()) {
+                    StoredBooking booking = randomBooking(random);
+                    int id = store.create(booking);
+                    reference.put(id, booking);
+                    live.add(id);
+                } else if (op < 8) {
+                    int id = live.get(random.nextInt(live.size()));
+                    StoredBooking booking = randomBooking(random);
+                    store.update(id, booking);
+                    reference.put(id, booking);
+                } else {
+                    int id = live.remove(random.nextInt(live.size()));
+                    store.delete(id);
+                    reference.remove(id);
+                }
+            }
+            for (int q = 0; q < 20; q++) {
+                String firstname = randomName(random, FIRST_NAMES);
+                String lastname = randomName(random, LAST_NAMES);
+                String checkin = randomDate(random);
+                String checkout = randomDate(random);
+                BookingQuery query = new BookingQuery(firstname, lastname, checkin, checkout);
+
+                Assertions.assertArrayEquals(scan(reference, firstname, lastname, checkin, checkout),
+                        store.query(query), query::toString);
+            }
+        }
+    }
+
+    /**
+     * Concurrent writers renaming bookings leave the index consistent with the stored bookings.
+     */
+    @Test
+    public void indexStaysConsistentUnderConcurrentUpdates() throws Exception {
+        StripedBookingStore store = new StripedBookingStore(16);
+        int bookings = 2_000;
+        Random seed = new Random(7);
+        for (int i = 0; i < bookings; i++) {
+            store.create(randomBooking(seed));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                long threadSeed = t;
+                writers.add(executor.submit(() -> {
+                    Random random = new Random(threadSeed);
+                    for (int i = 0; i < 20_000; i++) {
+                        store.update(1 + random.nextInt(bookings), randomBooking(random));
+                        if (i % 100 == 0) {
+                            store.query(new BookingQuery(FIRST_NAMES[random.nextInt(FIRST_NAMES.length)],
+                                    null, null, null));
+                        }
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        TreeMap<Integer, StoredBooking> reference = new TreeMap<>();
+        for (int id : store.ids()) {
+            reference.put(id, store.get(id));
+        }
+        for (String firstname : FIRST_NAMES) {
+            Assertions.assertArrayEquals(scan(reference, firstname, null, null, null),
+                    store.query(new BookingQuery(firstname, null, null, null)), firstname);
+        }
+        for (String lastname : LAST_NAMES) {
+            Assertions.assertArrayEquals(scan(reference, null, lastname, "2023-02-01", null),
+                    store.query(new BookingQuery(null, lastname, "2023-02-01", null)), lastname);
+        }
+    }
+
+    /**
+     * Selective name queries read only their postings, so they stay fast however many bookings are stored.
+     */
+    @Test
+    public void selectiveQueriesDoNotScan() {
+        StripedBookingStore store = new StripedBookingStore(64);
+        int bookings = 300_000;
+        for (int i = 0; i < bookings; i++) {
+            store.create(new StoredBooking("Guest" + (i % 30_000), "Brown", 100, true,
+                    "2023-01-01", "2023-01-02", null));
+        }
+
+        int queries = 2_000;
+        long start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            Assertions.assertEquals(10, store.query(new BookingQuery("Guest" + i, null, null, null)).length);
+        }
+        double averageMillis = (System.nanoTime() - start) / 1_000_000.0 / queries;
+        Assertions.assertTrue(averageMillis < 1.0, "Average query time " + averageMillis + " ms");
+    }
+
+    /**
+     * Invalid date filters are rejected, as the public API fails them with status 500.
+     */
+    @Test
+    public void invalidDateFiltersAreRejected() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> BookingQuery.parse("checkin=tomorrow"));
+        Assertions.assertTrue(BookingQuery.parse(null).isEmpty());
+        Assertions.assertTrue(BookingQuery.parse("page=2").isEmpty());
+        Assertions.assertEquals("Mary Ann", BookingQuery.parse("firstname=Mary+Ann&checkout=2023-01-02").getFirstname());
+    }
+}
@@ -0,0 +1,170 @@
+package nz.co.sundar.testautomation.restfulbooker.tests;
+
+import io.restassured.builder.ResponseBuilder;
+import nz.co.sundar.testautomation.restfulbooker.load.BookingClient;
+import nz.co.sundar.testautomation.restfulbooker.load.CapacitySearch;
+import nz.co.sundar.testautomation.restfulbooker.load.LoadDriver;
+import nz.co.sundar.testautomation.restfulbooker.load.Operation;
+import nz.co.sundar.testautomation.restfulbooker.load.PhaseResult;
+import nz.co.sundar.testautomation.restfulbooker.load.WorkloadDefinition;
+import nz.co.sundar.testautomation.restfulbooker.pojo.Booking;
+import nz.co.sundar.testautomation.restfulbooker.standin.LatencyDistribution;
+import nz.co.sundar.testautomation.restfulbooker.utils.DecodedResponse;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test class for open-model load phases and the {@link CapacitySearch} that runs them to find the highest rate
+ * meeting an SLO.
+ *
+ * <p>These tests load a simulated server inside the test JVM and do not call the public Restful Booker API.</p>
+ */
+public class CapacitySearchTests {
+
+    /**
+     * Answers every request after {@code serviceMillis}, at most {@code concurrency} at a time and in arrival
+     * order, so it serves at most {@code concurrency * 1000 / serviceMillis} requests per second and queues the rest.
+     */
+    private static final class SimulatedServer implements BookingClient {
+
+        private final Semaphore slots;
+        private final long serviceMillis;
+
+        SimulatedServer(int concurrency, long serviceMillis) {
+            this.slots = new Semaphore(concurrency, true);
+            this.serviceMillis = serviceMillis;
+        }
+
+        private DecodedResponse serve(String body) {
+            slots.acquireUninterruptibly();
+            try {
+                TimeUnit.MILLISECONDS.sleep(serviceMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                slots.release();
+            }
+            return new DecodedResponse(new ResponseBuilder().setStatusCode(200)
+                    .setContentType("application/json").setBody(body).build());
+        }
+
+        @Override
+        public DecodedResponse createBooking(Booking booking) {
+            return serve("{\"bookingid\":1}");
+        }
+
+        @Override
+        public DecodedResponse getBooking(int bookingId) {
+            return serve("{}");
+        }
+
+        @Override
+        public DecodedResponse updateBooking(int bookingId, Booking booking) {
+            return serve("{}");
+        }
+
+        @Override
+        public DecodedResponse deleteBooking(int bookingId) {
+            return serve("Created");
+        }
+
+        @Override
+        public DecodedResponse listBookings() {
+            return serve("[]");
+        }
+
+        @Override
+        public DecodedResponse authenticate() {
+            return serve("{\"token\":\"abc123\"}");
+        }
+    }
+
+    @BeforeAll
+    public static void warmUp() {
+        // Building the first REST Assured response is slow; keep it out of the timed phases.
+        new SimulatedServer(1, 0).listBookings();
+    }
+
+    private static LoadDriver listingDriver(BookingClient client) throws IOException {
+        Properties properties = new Properties();
+        properties.load(new StringReader("""
+                operation.listBookings.weight = 1
+                phases = none
+                phase.none.duration = 1s
+                """));
+        return new LoadDriver(WorkloadDefinition.parse(properties, "list"), client);
+    }
+
+    /**
+     * An open-model phase keeps to its arrival schedule when the server falls behind: latency is measured from
+     * when each request was due, so queueing shows, and arrivals that never got sent are counted as missed.
+     */
+    @Test
+    public void openPhaseMeasuresFromScheduleAndCountsMissedArrivals() throws Exception {
+        LoadDriver driver = listingDriver(new SimulatedServer(1, 20));
+
+        PhaseResult within = driver.runPhase(new WorkloadDefinition.Phase("within", TimeUnit.SECONDS.toNanos(1), 4,
+                20, LatencyDistribution.NONE, null, WorkloadDefinition.Model.OPEN));
+        Assertions.assertEquals(20, within.getCount(), 1, within.getSummary());
+        Assertions.assertEquals(0, within.getMissed(), within.getSummary());
+        Assertions.assertTrue(within.getLatencies().getPercentileNanos(50) < TimeUnit.MILLISECONDS.toNanos(100),
+                within.getSummary());
+
+        // Twice what the server can answer: the queue and each request's wait grow for the whole phase.
+        PhaseResult beyond = driver.runPhase(new WorkloadDefinition.Phase("beyond", TimeUnit.SECONDS.toNanos(1), 4,
+                100, LatencyDistribution.NONE, null, WorkloadDefinition.Model.OPEN));
+        Assertions.assertTrue(beyond.getCount() <= 60, beyond.getSummary());
+        Assertions.assertTrue(beyond.getMissed() >= 30, beyond.getSummary());
+        Assertions.assertTrue(beyond.getErrorRate() >= 0.3, beyond.getSummary());
+        Assertions.assertTrue(beyond.getLatencies().getMaxNanos() > TimeUnit.MILLISECONDS.toNanos(200),
+                beyond.getSummary());
+        Assertions.assertTrue(beyond.get(Operation.LIST_BOOKINGS).getCount() == beyond.getCount());
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new WorkloadDefinition.Phase("rateless",
+                1, 1, 0, LatencyDistribution.NONE, null, WorkloadDefinition.Model.OPEN));
+    }
+
+    /**
+     * The search widens past a server that answers 200 requests per second, bisects back, and reports a capacity
+     * below it with confidence bounds around it and every trial on the latency curve.
+     */
+    @Test
+    public void searchFindsTheRateTheServerSustains() throws Exception {
+        CapacitySearch.Slo slo = new CapacitySearch.Slo(99, TimeUnit.MILLISECONDS.toNanos(100), 0.01);
+        CapacitySearch search = new CapacitySearch(listingDriver(new SimulatedServer(2, 10)), slo,
+                TimeUnit.SECONDS.toNanos(1), 50, 1_000, 0.25, 32, 2);
+        CapacitySearch.Result result = search.run();
+
+        Assertions.assertTrue(result.getCapacity() >= 100 && result.getCapacity() <= 250, result.getSummary());
+        Assertions.assertTrue(result.getLowerBound() <= result.getCapacity(), result.getSummary());
+        Assertions.assertTrue(result.getUpperBound() > result.getCapacity(), result.getSummary());
+
+        List<CapacitySearch.Trial> curve = result.getCurve();
+        Assertions.assertTrue(curve.size() >= 4, result.getSummary());
+        Assertions.assertEquals(50, curve.get(0).getRate());
+        Assertions.assertTrue(curve.get(0).passed(), result.getSummary());
+        Assertions.assertFalse(curve.get(curve.size() - 1).passed(), result.getSummary());
+        for (int i = 0; i < curve.size(); i++) {
+            CapacitySearch.Trial trial = curve.get(i);
+            Assertions.assertTrue(i == 0 || curve.get(i - 1).getRate() < trial.getRate(), result.getSummary());
+            Assertions.assertTrue(trial.getPercentileLowerNanos() <= trial.getPercentileNanos()
+                    && trial.getPercentileNanos() <= trial.getPercentileUpperNanos(), trial.getSummary());
+            Assertions.assertTrue(trial.getErrorRateLower() <= trial.getErrorRate()
+                    && trial.getErrorRate() <= trial.getErrorRateUpper(), trial.getSummary());
+            Assertions.assertTrue(trial.getAttempts() >= 1 && trial.getAttempts() <= 2, trial.getSummary());
+        }
+
+        String[] lines = result.getSummary().split(System.lineSeparator());
+        Assertions.assertEquals(curve.size() + 1, lines.length);
+        Assertions.assertTrue(lines[0].startsWith("capacity="), lines[0]);
+        Assertions.assertTrue(lines[0].contains("p99 < 100.0ms"), lines[0]);
+    }
+}
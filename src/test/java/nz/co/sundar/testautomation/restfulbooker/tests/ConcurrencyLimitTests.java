@@ -0,0 +1,272 @@
+package nz.co.sundar.testautomation.restfulbooker.tests;
+
+import io.restassured.http.ContentType;
+import io.restassured.specification.RequestSpecification;
+import nz.co.sundar.testautomation.restfulbooker.filters.ConcurrencyLimitFilter;
+import nz.co.sundar.testautomation.restfulbooker.payloads.BookingPayloads;
+import nz.co.sundar.testautomation.restfulbooker.standin.FaultInjector;
+import nz.co.sundar.testautomation.restfulbooker.standin.StandInServer;
+import nz.co.sundar.testautomation.restfulbooker.utils.AdaptiveConcurrencyLimiter;
+import nz.co.sundar.testautomation.restfulbooker.utils.AdaptiveConcurrencyLimiter.Outcome;
+import nz.co.sundar.testautomation.restfulbooker.utils.TokenBucket;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.restassured.RestAssured.given;
+
+/**
+ * Test class for {@link AdaptiveConcurrencyLimiter}, {@link TokenBucket} and the {@link ConcurrencyLimitFilter}
+ * that applies them to REST Assured requests.
+ *
+ * <p>These tests use a simulated server and the stand-in on a free loopback port, and do not call the public
+ * Restful Booker API.</p>
+ */
+public class ConcurrencyLimitTests {
+
+    private static StandInServer server;
+
+    @BeforeAll
+    public static void startServer() throws IOException {
+        server = StandInServer.start("admin", "password123");
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        server.close();
+    }
+
+    @AfterEach
+    public void clearFaults() {
+        server.setFaults(null);
+    }
+
+    private static int createBooking() {
+        return given().baseUri(server.getBaseUri()).contentType(ContentType.JSON)
+                .body(BookingPayloads.createBookingPayload("Jim", "Brown", 111, true,
+                        "2023-01-01", "2023-01-05", "Breakfast"))
+                .post("/booking").jsonPath().getInt("bookingid");
+    }
+
+    private static String hostOf(String baseUri) {
+        URI uri = URI.create(baseUri);
+        return uri.getHost() + ":" + uri.getPort();
+    }
+
+    /**
+     * The limit grows while it is in use and latency is flat, shrinks by the backoff ratio on a drop, and stays
+     * within its bounds.
+     */
+    @Test
+    public void limitGrowsAdditivelyAndShrinksMultiplicatively() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("Limit test AIMD", 10, 2, 40, 0.5, 2.0);
+        for (int round = 0; round < 60; round++) {
+            int permits = (int) limiter.getLimit();
+            for (int i = 0; i < permits; i++) {
+                Assertions.assertTrue(limiter.tryAcquire());
+            }
+            Assertions.assertFalse(limiter.tryAcquire(), "Limit " + limiter.getLimit() + " was exceeded");
+            for (int i = 0; i < permits; i++) {
+                limiter.release(1_000, Outcome.SUCCESS);
+            }
+        }
+        Assertions.assertTrue(limiter.getLimit() > 25, limiter.getSummary());
+        Assertions.assertTrue(limiter.getLimit() <= 40, limiter.getSummary());
+
+        double before = limiter.getLimit();
+        limiter.acquire();
+        limiter.release(1_000, Outcome.DROPPED);
+        Assertions.assertEquals(before * 0.5, limiter.getLimit(), 1e-9);
+
+        // A client-side error says nothing about load.
+        before = limiter.getLimit();
+        limiter.acquire();
+        limiter.release(1_000, Outcome.IGNORED);
+        Assertions.assertEquals(before, limiter.getLimit(), 1e-9);
+
+        for (int i = 0; i < 100; i++) {
+            limiter.acquire();
+            limiter.release(1_000, Outcome.DROPPED);
+        }
+        Assertions.assertEquals(2, limiter.getLimit(), 1e-9);
+        Assertions.assertEquals(101, limiter.getDrops());
+        Assertions.assertEquals(0, limiter.getInFlight());
+    }
+
+    /**
+     * A server whose latency rises as requests queue inside it makes the limit fall even without errors, but slow
+     * calls from a mostly idle client leave it alone.
+     */
+    @Test
+    public void latencyInflationLowersTheLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("Limit test latency", 30, 1, 100, 0.9, 2.0);
+        for (int i = 0; i < 50; i++) {
+            limiter.acquire();
+            limiter.release(100_000, Outcome.SUCCESS);
+        }
+        double before = limiter.getLimit();
+        for (int i = 0; i < 50; i++) {
+            limiter.acquire();
+            limiter.release(1_000_000, Outcome.SUCCESS);
+        }
+        Assertions.assertEquals(before, limiter.getLimit(), 1e-9, limiter.getSummary());
+
+        // Half the limit in flight, each round trip taking 1ms against 0.1ms unloaded.
+        for (int round = 0; round < 20; round++) {
+            int permits = (int) Math.ceil(limiter.getLimit() / 2);
+            for (int i = 0; i < permits; i++) {
+                limiter.acquire();
+            }
+            busyWait(1_100_000);
+            for (int i = 0; i < permits; i++) {
+                limiter.release(1_000_000, Outcome.SUCCESS);
+            }
+        }
+        Assertions.assertTrue(limiter.getLimit() < before / 2, limiter.getSummary());
+        Assertions.assertTrue(limiter.getSummary().contains("drops=0"), limiter.getSummary());
+    }
+
+    /**
+     * Against a server with 8 workers that queues up to 24 requests and sheds the rest, 32 eager clients settle
+     * near the server's capacity and are rarely shed.
+     */
+    @Test
+    public void limitConvergesOnServerCapacity() throws InterruptedException {
+        Semaphore workers = new Semaphore(8);
+        AtomicInteger inServer = new AtomicInteger();
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("Limit test capacity", 40, 1, 200, 0.9,
+                2.0);
+        AtomicLong served = new AtomicLong();
+        AtomicLong shed = new AtomicLong();
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(3);
+
+        List<Thread> clients = new ArrayList<>();
+        for (int c = 0; c < 32; c++) {
+            Thread client = new Thread(() -> {
+                while (System.nanoTime() < end) {
+                    limiter.acquire();
+                    long start = System.nanoTime();
+                    Outcome outcome;
+                    if (inServer.incrementAndGet() > 24) {
+                        shed.incrementAndGet();
+                        outcome = Outcome.DROPPED;
+                    } else {
+                        workers.acquireUninterruptibly();
+                        sleepMillis(2);
+                        workers.release();
+                        served.incrementAndGet();
+                        outcome = Outcome.SUCCESS;
+                    }
+                    inServer.decrementAndGet();
+                    limiter.release(System.nanoTime() - start, outcome);
+                }
+            });
+            client.start();
+            clients.add(client);
+        }
+        for (Thread client : clients) {
+            client.join();
+        }
+
+        Assertions.assertTrue(limiter.getLimit() >= 4 && limiter.getLimit() <= 24, limiter.getSummary());
+        Assertions.assertTrue(shed.get() < 0.05 * served.get(), shed + " shed for " + served + " served, " + limiter.getSummary());
+        Assertions.assertTrue(served.get() > 3_000, served + " served");
+    }
+
+    /**
+     * The token bucket lets a burst through at once and then holds requests to its rate.
+     */
+    @Test
+    public void tokenBucketCapsTheRate() {
+        TokenBucket bucket = new TokenBucket(50, 5);
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            bucket.acquire();
+        }
+        Assertions.assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(50));
+        for (int i = 0; i < 25; i++) {
+            bucket.acquire();
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Assertions.assertTrue(elapsedMillis >= 480 && elapsedMillis < 1_000, elapsedMillis + "ms for 30 requests");
+    }
+
+    /**
+     * Through the filter, the stand-in's 503s lower the host's limit, and the rate cap spaces requests out.
+     */
+    @Test
+    public void filterLimitsRequestsPerHost() {
+        int id = createBooking();
+        ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(
+                host -> new AdaptiveConcurrencyLimiter("Limit test filter " + host, 20, 1, 200, 0.5, 2.0), 100, 1);
+        RequestSpecification request = given().baseUri(server.getBaseUri()).filter(filter);
+        server.setFaults(FaultInjector.parse("GET /booking/* : error503=0.5", 3));
+
+        long start = System.nanoTime();
+        int unavailable = 0;
+        for (int i = 0; i < 51; i++) {
+            if (request.get("/booking/" + id).getStatusCode() == 503) {
+                unavailable++;
+            }
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        AdaptiveConcurrencyLimiter limiter = filter.getLimiter(hostOf(server.getBaseUri()));
+        Assertions.assertNotNull(limiter);
+        Assertions.assertEquals(unavailable, limiter.getDrops());
+        Assertions.assertTrue(unavailable > 10, unavailable + " unavailable");
+        Assertions.assertTrue(limiter.getLimit() < 20, limiter.getSummary());
+        Assertions.assertTrue(elapsedMillis >= 490, elapsedMillis + "ms for 51 requests at 100 per second");
+        Assertions.assertTrue(AdaptiveConcurrencyLimiter.all().contains(limiter));
+    }
+
+    /**
+     * A refused connection, which REST Assured throws as an undeclared {@link IOException}, counts as a drop and
+     * lowers the limit, and its permit is released.
+     */
+    @Test
+    public void filterTreatsConnectFailureAsDrop() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            port = socket.getLocalPort();
+        }
+        ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(
+                host -> new AdaptiveConcurrencyLimiter("Limit test refused " + host, 20, 1, 200, 0.5, 2.0), 0, 1);
+        String baseUri = "http://127.0.0.1:" + port;
+
+        Assertions.assertThrows(IOException.class, () -> given().baseUri(baseUri).filter(filter).get("/booking"));
+
+        AdaptiveConcurrencyLimiter limiter = filter.getLimiter(hostOf(baseUri));
+        Assertions.assertEquals(1, limiter.getDrops(), limiter.getSummary());
+        Assertions.assertEquals(0, limiter.getInFlight(), limiter.getSummary());
+        Assertions.assertTrue(limiter.getLimit() < 20, limiter.getSummary());
+    }
+
+    private static void sleepMillis(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void busyWait(long nanos) {
+        long end = System.nanoTime() + nanos;
+        while (System.nanoTime() < end) {
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package nz.co.sundar.testautomation.restfulbooker.tests;
+
+import nz.co.sundar.testautomation.restfulbooker.load.BookingClient;
+import nz.co.sundar.testautomation.restfulbooker.load.ConsistencyRun;
+import nz.co.sundar.testautomation.restfulbooker.load.DirectBookingClient;
+import nz.co.sundar.testautomation.restfulbooker.load.History;
+import nz.co.sundar.testautomation.restfulbooker.load.History.Kind;
+import nz.co.sundar.testautomation.restfulbooker.load.History.Op;
+import nz.co.sundar.testautomation.restfulbooker.load.LinearizabilityChecker;
+import nz.co.sundar.testautomation.restfulbooker.load.LinearizabilityChecker.AnomalyType;
+import nz.co.sundar.testautomation.restfulbooker.load.LinearizabilityChecker.Report;
+import nz.co.sundar.testautomation.restfulbooker.pojo.Booking;
+import nz.co.sundar.testautomation.restfulbooker.standin.StandInServer;
+import nz.co.sundar.testautomation.restfulbooker.utils.DecodedResponse;
+import nz.co.sundar.testautomation.restfulbooker.utils.TokenPool.Credentials;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test class for the consistency checker: anomalies in hand-written histories and their minimal counterexamples,
+ * agreement with an exhaustive search, histories of a million operations, and recorded runs against the stand-in.
+ *
+ * <p>These tests start the stand-in on a free loopback port and do not call the public Restful Booker API.</p>
+ */
+public class ConsistencyCheckerTests {
+
+    private static StandInServer server;
+
+    @BeforeAll
+    public static void startServer() throws IOException {
+        server = StandInServer.start("admin", "password123");
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        server.close();
+    }
+
+    private static Op write(String value, long invoke, long complete) {
+        return new Op(0, 1, Kind.WRITE, value, invoke, complete);
+    }
+
+    private static Op read(String value, long invoke, long complete) {
+        return new Op(1, 1, Kind.READ, value, invoke, complete);
+    }
+
+    private static Op delete(long invoke, long complete) {
+        return new Op(2, 1, Kind.DELETE, null, invoke, complete);
+    }
+
+    private static Report check(Op... ops) {
+        return new LinearizabilityChecker(10).check(List.of(ops));
+    }
+
+    private static List<Op> onlyCounterexample(Report report, AnomalyType type) {
+        Assertions.assertEquals(Map.of(type, 1L), report.getCounts(), report.getSummary());
+        List<Op> counterexample = report.getAnomalies().get(0).counterexample();
+        Assertions.assertFalse(LinearizabilityChecker.isLinearizable(counterexample), report.getSummary());
+        return counterexample;
+    }
+
+    /**
+     * Each kind of anomaly is found, with a counterexample of just the operations that cause it.
+     */
+    @Test
+    public void anomaliesHaveMinimalCounterexamples() {
+        Assertions.assertTrue(check(write("a", 0, 1), write("b", 2, 5), read("b", 3, 6), read("a", 2, 4),
+                read("b", 7, 8), write("c", 6, 9), read("c", 10, 11)).isLinearizable());
+
+        Op staleRead = read("a", 4, 5);
+        Assertions.assertEquals(List.of(write("a", 0, 1), write("b", 2, 3), staleRead),
+                onlyCounterexample(check(write("a", 0, 1), write("b", 2, 3), staleRead), AnomalyType.STALE_READ));
+
+        // Two concurrent writes, then reads that see a, b and a again: the first read of a is not needed.
+        List<Op> conflicting = onlyCounterexample(check(write("a", 0, 10), write("b", 0, 10), read("a", 11, 12),
+                read("b", 13, 14), read("a", 15, 16)), AnomalyType.CONFLICTING_ORDER);
+        Assertions.assertEquals(List.of(write("a", 0, 10), write("b", 0, 10), read("b", 13, 14), read("a", 15, 16)),
+                conflicting);
+
+        Assertions.assertEquals(2, onlyCounterexample(check(write("a", 5, 6), read("a", 1, 2)),
+                AnomalyType.READ_BEFORE_WRITE).size());
+        Assertions.assertEquals(List.of(read("zzz", 1, 2)),
+                onlyCounterexample(check(write("a", 0, 1), read("zzz", 1, 2)), AnomalyType.PHANTOM_READ));
+        Assertions.assertEquals(List.of(read(null, 1, 2)),
+                onlyCounterexample(check(write("a", 0, 1), read(null, 1, 2)), AnomalyType.PHANTOM_READ));
+
+        Assertions.assertEquals(List.of(write("a", 0, 1), delete(2, 3), read("a", 4, 5)), onlyCounterexample(
+                check(write("a", 0, 1), delete(2, 3), read("a", 4, 5)), AnomalyType.SEEN_AFTER_DELETE));
+        // An update after the delete is wrong on its own: the earlier write is dropped from the counterexample.
+        Assertions.assertEquals(List.of(delete(2, 3), write("b", 4, 5)), onlyCounterexample(
+                check(write("a", 0, 1), delete(2, 3), write("b", 4, 5)), AnomalyType.SEEN_AFTER_DELETE));
+        Assertions.assertEquals(2, onlyCounterexample(check(write("a", 0, 1), delete(2, 3), delete(4, 5)),
+                AnomalyType.DOUBLE_DELETE).size());
+
+        // A write that timed out may take effect late, or never.
+        Assertions.assertTrue(check(write("a", 0, 1), write("b", 2, History.UNKNOWN), read("a", 3, 4),
+                read("b", 10, 11), write("c", 12, History.UNKNOWN), read("b", 20, 21)).isLinearizable());
+        Assertions.assertTrue(check(write("a", 0, 1), delete(2, History.UNKNOWN), read(null, 30, 31)).isLinearizable());
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> check(write("a", 0, 1), write("a", 2, 3)));
+    }
+
+    /**
+     * On thousands of small random histories, the zone check and the exhaustive search agree on every one.
+     */
+    @Test
+    public void agreesWithExhaustiveSearch() {
+        SplittableRandom random = new SplittableRandom(47);
+        int linearizable = 0;
+        int notLinearizable = 0;
+        for (int h = 0; h < 5_000; h++) {
+            List<Op> ops = new ArrayList<>();
+            List<String> values = new ArrayList<>(List.of("create"));
+            ops.add(write("create", 0, 1));
+            boolean deleted = false;
+            int size = 2 + random.nextInt(6);
+            for (int i = 0; i < size; i++) {
+                long invoke = 2 + random.nextInt(40) * 2L;
+                long complete = random.nextInt(8) == 0 ? History.UNKNOWN : invoke + 1 + random.nextInt(20) * 2L;
+                int kind = random.nextInt(10);
+                if (kind < 4) {
+                    String value = "v" + i;
+                    values.add(value);
+                    ops.add(new Op(i, 1, Kind.WRITE, value, invoke, complete));
+                } else if (kind < 5) {
+                    deleted = true;
+                    ops.add(new Op(i, 1, Kind.DELETE, null, invoke, complete));
+                } else {
+                    String value = deleted && random.nextInt(4) == 0 ? null
+                            : values.get(random.nextInt(values.size()));
+                    ops.add(new Op(i, 1, Kind.READ, value, invoke, complete == History.UNKNOWN ? invoke + 3 : complete));
+                }
+            }
+            boolean expected = LinearizabilityChecker.isLinearizable(ops);
+            Report report = new LinearizabilityChecker(1).check(ops);
+            Assertions.assertEquals(expected, report.isLinearizable(), () -> ops + "\n" + report.getSummary());
+            if (expected) {
+                linearizable++;
+            } else {
+                notLinearizable++;
+                Assertions.assertFalse(LinearizabilityChecker.isLinearizable(
+                        report.getAnomalies().get(0).counterexample()), report::getSummary);
+            }
+        }
+        Assertions.assertTrue(linearizable > 500 && notLinearizable > 500, linearizable + " / " + notLinearizable);
+    }
+
+    /**
+     * A million overlapping operations on a thousand bookings are checked in seconds, and one stale read added to
+     * them is found.
+     */
+    @Test
+    public void checksAMillionOperations() {
+        SplittableRandom random = new SplittableRandom(1);
+        List<Op> ops = new ArrayList<>(1_000_010);
+        for (int key = 0; key < 1_000; key++) {
+            // Each operation takes effect at its own instant, and overlaps its neighbours by up to 50 steps.
+            String value = null;
+            for (int i = 0; i < 1_000; i++) {
+                long point = i * 10L;
+                long invoke = point - random.nextInt(50);
+                long complete = point + random.nextInt(50);
+                boolean isWrite = value == null || random.nextInt(3) == 0;
+                if (isWrite) {
+                    value = key + "-" + i;
+                }
+                ops.add(new Op(i % 16, key, isWrite ? Kind.WRITE : Kind.READ, value, invoke, complete));
+            }
+        }
+        LinearizabilityChecker checker = new LinearizabilityChecker(5);
+        Report report = checker.check(ops);
+        Assertions.assertTrue(report.isLinearizable(), report::getSummary);
+        Assertions.assertEquals(1_000_000, report.getOps());
+        Assertions.assertEquals(1_000, report.getKeys());
+        Assertions.assertTrue(report.getElapsedNanos() < TimeUnit.SECONDS.toNanos(20), report.getSummary());
+
+        ops.add(new Op(0, 7, Kind.WRITE, "late", 20_000, 20_001));
+        ops.add(new Op(0, 7, Kind.WRITE, "later", 20_002, 20_003));
+        ops.add(new Op(1, 7, Kind.READ, "late", 20_004, 20_005));
+        report = checker.check(ops);
+        Assertions.assertEquals(Map.of(AnomalyType.STALE_READ, 1L), report.getCounts(), report.getSummary());
+        Assertions.assertEquals(3, report.getAnomalies().get(0).counterexample().size(), report.getSummary());
+    }
+
+    /**
+     * Workers sharing four bookings on the stand-in leave a linearizable history, which survives being written to
+     * a file and read back; a client that serves reads from a stale cache does not.
+     */
+    @Test
+    public void standInIsLinearizableAndStaleCacheIsNot(@TempDir Path directory) throws Exception {
+        DirectBookingClient client = new DirectBookingClient(server.getBaseUri(),
+                new Credentials("admin", "password123"));
+        History history = new ConsistencyRun(client, 4, 4, TimeUnit.SECONDS.toNanos(2), 6, 3, 0.01, 7).run();
+        Report report = new LinearizabilityChecker(5).check(history);
+        Assertions.assertTrue(report.isLinearizable(), report.getSummary());
+        Assertions.assertTrue(history.size() > 50, "operations: " + history.size());
+        Assertions.assertTrue(history.getOps().stream().anyMatch(op -> op.kind() == Kind.WRITE && op.process() < 4));
+
+        Path file = directory.resolve("history.tsv");
+        history.writeTo(file);
+        History read = History.read(file);
+        Assertions.assertEquals(history.size(), read.size());
+        Assertions.assertEquals(history.getOps().get(0), read.getOps().get(0));
+        Assertions.assertTrue(new LinearizabilityChecker(5).check(read).isLinearizable());
+
+        History stale = new ConsistencyRun(new StaleCacheClient(client), 2, 4, TimeUnit.SECONDS.toNanos(2), 6, 3, 0,
+                7).run();
+        report = new LinearizabilityChecker(5).check(stale);
+        Assertions.assertFalse(report.isLinearizable(), report.getSummary());
+        Assertions.assertFalse(report.getAnomalies().isEmpty());
+        for (LinearizabilityChecker.Anomaly anomaly : report.getAnomalies()) {
+            Assertions.assertTrue(anomaly.counterexample().size() <= 6, report.getSummary());
+        }
+    }
+
+    /**
+     * Serves a booking's reads from a copy up to 30ms old, as a cache that is not invalidated by updates would.
+     */
+    private static final class StaleCacheClient implements BookingClient {
+
+        private record Cached(DecodedResponse response, long fetchedNanos) {
+        }
+
+        private final BookingClient delegate;
+        private final Map<Integer, Cached> cache = new ConcurrentHashMap<>();
+
+        StaleCacheClient(BookingClient delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public DecodedResponse getBooking(int bookingId) {
+            Cached cached = cache.get(bookingId);
+            if (cached != null && System.nanoTime() - cached.fetchedNanos() < TimeUnit.MILLISECONDS.toNanos(30)) {
+                return cached.response();
+            }
+            DecodedResponse response = delegate.getBooking(bookingId);
+            cache.put(bookingId, new Cached(response, System.nanoTime()));
+            return response;
+        }
+
+        @Override
+        public DecodedResponse createBooking(Booking booking) {
+            return delegate.createBooking(booking);
+        }
+
+        @Override
+        public DecodedResponse updateBooking(int bookingId, Booking booking) {
+            return delegate.updateBooking(bookingId, booking);
+        }
+
+        @Override
+        public DecodedResponse deleteBooking(int bookingId) {
+            return delegate.deleteBooking(bookingId);
+        }
+
+        @Override
+        public DecodedResponse listBookings() {
+            return delegate.listBookings();
+        }
+
+        @Override
+        public DecodedResponse authenticate() {
+            return delegate.authenticate();
+        }
+    }
+}
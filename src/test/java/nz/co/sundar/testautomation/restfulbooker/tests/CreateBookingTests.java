@@ -1,13 +1,14 @@
 package nz.co.sundar.testautomation.restfulbooker.tests;
 
-import io.restassured.response.Response;
+import nz.co.sundar.testautomation.restfulbooker.base.LoadTest;
 import nz.co.sundar.testautomation.restfulbooker.base.TestBase;
 import nz.co.sundar.testautomation.restfulbooker.pojo.Booking;
 import nz.co.sundar.testautomation.restfulbooker.pojo.BookingData;
 import nz.co.sundar.testautomation.restfulbooker.pojo.BookingResponse;
 import nz.co.sundar.testautomation.restfulbooker.utils.AssertionsUtils;
 import nz.co.sundar.testautomation.restfulbooker.utils.BookingUtils;
-import nz.co.sundar.testautomation.restfulbooker.utils.PojoUtils;
+import nz.co.sundar.testautomation.restfulbooker.utils.DecodedResponse;
+import nz.co.sundar.testautomation.restfulbooker.utils.ResponseSchema;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVRecord;
 import org.junit.jupiter.api.Assertions;
@@ -95,12 +96,13 @@ public class CreateBookingTests extends TestBase {
      */
     @ParameterizedTest(name = "CreateBooking Test #{index} - {0}")
     @MethodSource("bookingDataProvider")
+    @LoadTest(rate = 5, duration = "20s", concurrency = 2)
     public void createBookingTest(BookingData createData) {
 
-        Response response = BookingUtils.createTestBooking(createData.firstname, createData.lastname, createData.totalprice,
+        DecodedResponse response = BookingUtils.createTestBooking(createData.firstname, createData.lastname, createData.totalprice,
                 createData.depositpaid, createData.checkin, createData.checkout, createData.additionalneeds);
 
-        BookingResponse bookingResponse = PojoUtils.convertJsonToBookingResponse(response.asString());
+        BookingResponse bookingResponse = response.bookingResponse();
 
         Booking booking = bookingResponse.getBooking();
 
@@ -120,11 +122,11 @@ public class CreateBookingTests extends TestBase {
             Assertions.fail("Booking ID is not valid: " + e.getMessage());
         }
 
+        AssertionsUtils.assertMatchesSchema(response, ResponseSchema.BOOKING_RESPONSE);
         AssertionsUtils.assertBookingResponse(booking, httpStatusCode,
                 createData.firstname, createData.lastname, createData.totalprice,
                 createData.depositpaid, createData.checkin, createData.checkout, createData.additionalneeds);
 
-        reportManager.logInfo("Create booking response: " + response.asString());
         reportManager.getTest().info("Booking created with ID: " + bookingId);
         reportManager.logInfo("Response field validation for Booking ID " + bookingId + " completed successfully.");
 
@@ -141,13 +143,13 @@ public class CreateBookingTests extends TestBase {
     @Test
     public void createNullNameBookingTest() {
 
-        Response response = BookingUtils.createTestBooking(null, null);
+        DecodedResponse response = BookingUtils.createTestBooking(null, null);
 
         logRequestDetails(method);
 
         AssertionsUtils.assertErrorResponse(response, 500, "Internal Server Error");
 
-        reportManager.logInfo("Booking not created with expected response: " + response.asString());
+        reportManager.logInfo("Booking not created with expected status code: " + response.getStatusCode());
     }
 
     /**
@@ -156,11 +158,11 @@ public class CreateBookingTests extends TestBase {
     @Test
     public void createInvalidDepositTest() {
 
-        Response response = BookingUtils.createInvalidBooking();
+        DecodedResponse response = BookingUtils.createInvalidBooking();
 
         logRequestDetails(method);
 
-        boolean depositPaid = response.jsonPath().getBoolean("booking.depositpaid");
+        boolean depositPaid = response.getBoolean("booking.depositpaid");
 
         try {
         Assertions.assertTrue(depositPaid, "Expected depositpaid as true. Actual: " + depositPaid);
@@ -184,11 +186,11 @@ public class CreateBookingTests extends TestBase {
     @Test
     public void createInvalidPriceTest() {
 
-        Response response = BookingUtils.createInvalidBooking();
+        DecodedResponse response = BookingUtils.createInvalidBooking();
 
         logRequestDetails(method);
 
-        Object totalPrice = response.jsonPath().get("booking.totalprice");
+        String totalPrice = response.getString("booking.totalprice");
 
         try {
             Assertions.assertNull(totalPrice, "Expected totalprice as null. Actual: " + totalPrice);
@@ -211,12 +213,12 @@ public class CreateBookingTests extends TestBase {
     @Test
     public void createInvalidCheckInCheckOutDateTest() {
 
-        Response response = BookingUtils.createInvalidBooking();
+        DecodedResponse response = BookingUtils.createInvalidBooking();
 
         logRequestDetails(method);
 
-        String invalidcheckin = response.jsonPath().getString("booking.bookingdates.checkin");
-        String invalidcheckout = response.jsonPath().getString("booking.bookingdates.checkout");
+        String invalidcheckin = response.getString("booking.bookingdates.checkin");
+        String invalidcheckout = response.getString("booking.bookingdates.checkout");
 
         try {
             Assertions.assertEquals("0NaN-aN-aN", invalidcheckin, "Expected invalid checkin value");
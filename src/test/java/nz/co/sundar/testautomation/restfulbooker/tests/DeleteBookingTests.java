@@ -1,11 +1,11 @@
 package nz.co.sundar.testautomation.restfulbooker.tests;
 
-import io.restassured.response.Response;
+import nz.co.sundar.testautomation.restfulbooker.base.LoadTest;
 import nz.co.sundar.testautomation.restfulbooker.base.TestBase;
 import nz.co.sundar.testautomation.restfulbooker.pojo.BookingResponse;
 import nz.co.sundar.testautomation.restfulbooker.utils.AssertionsUtils;
 import nz.co.sundar.testautomation.restfulbooker.utils.BookingUtils;
-import nz.co.sundar.testautomation.restfulbooker.utils.PojoUtils;
+import nz.co.sundar.testautomation.restfulbooker.utils.DecodedResponse;
 import nz.co.sundar.testautomation.restfulbooker.utils.ReportManager;
 import org.junit.jupiter.api.Test;
 
@@ -46,11 +46,12 @@ public class DeleteBookingTests extends TestBase {
      * <p>This test validates both the API's DELETE functionality and the integration with the reporting and assertion framework.</p>
      */
     @Test
+    @LoadTest(rate = 5, duration = "20s", concurrency = 2)
     public void deleteBookingTest() {
 
-        Response response = BookingUtils.createTestBooking();
+        DecodedResponse response = BookingUtils.createTestBooking();
 
-        BookingResponse bookingResponse = PojoUtils.convertJsonToBookingResponse(response.asString());
+        BookingResponse bookingResponse = response.bookingResponse();
         int bookingId = bookingResponse.getBookingid();
 
         logRequestForBookingId(method, bookingId);
@@ -72,9 +73,9 @@ public class DeleteBookingTests extends TestBase {
     @Test
     public void deleteBookingTwiceTest() {
 
-        Response response = BookingUtils.createTestBooking();
+        DecodedResponse response = BookingUtils.createTestBooking();
 
-        BookingResponse bookingResponse = PojoUtils.convertJsonToBookingResponse(response.asString());
+        BookingResponse bookingResponse = response.bookingResponse();
         int bookingId = bookingResponse.getBookingid();
 
         response = BookingUtils.deleteTestBookingId(bookingId);
@@ -89,10 +90,10 @@ public class DeleteBookingTests extends TestBase {
        try {
             AssertionsUtils.assertErrorResponse(response, 405, "Method Not Allowed");
         } catch (AssertionError e) {
-            reportManager.logFail("Expected 405 Method Not Allowed but got: " + response.getStatusCode() + " - " + response.asString());
+            reportManager.logFail("Expected 405 Method Not Allowed but got: " + response.getStatusCode());
             throw e; // Re-throw to fail the test
         }
-        reportManager.logInfo("Booking not deleted with expected response: " + response.asString());
+        reportManager.logInfo("Booking not deleted with expected status code: " + response.getStatusCode());
 
     }
 /**
@@ -103,17 +104,17 @@ public class DeleteBookingTests extends TestBase {
     @Test
     public void deleteEmptyBookingIdTest() {
         String bookingId = ""; // Empty booking ID
-        Response response = BookingUtils.deleteTestBookingId(bookingId);
+        DecodedResponse response = BookingUtils.deleteTestBookingId(bookingId);
 
         logRequestForBookingId(method, bookingId);
 
         try {
             AssertionsUtils.assertErrorResponse(response, 404, "Not Found");
         } catch (AssertionError e) {
-            reportManager.logFail("Expected 404 Not Found but got: " + response.getStatusCode() + " - " + response.asString());
+            reportManager.logFail("Expected 404 Not Found but got: " + response.getStatusCode());
             throw e; // Re-throw to fail the test
         }
-        reportManager.logInfo("Booking not deleted with expected response: " + response.asString());
+        reportManager.logInfo("Booking not deleted with expected status code: " + response.getStatusCode());
     }
 /**
      * Test case to verify that attempting to delete a booking with an invalid booking ID returns a 405 Method Not Allowed error.
@@ -123,18 +124,18 @@ public class DeleteBookingTests extends TestBase {
     @Test
     public void deleteInvalidBookingIdTest() {
         String bookingId = "abc"; // Invalid booking ID
-        Response response = BookingUtils.deleteTestBookingId(bookingId);
+        DecodedResponse response = BookingUtils.deleteTestBookingId(bookingId);
 
         logRequestForBookingId(method, bookingId);
 
         try {
             AssertionsUtils.assertErrorResponse(response, 405, "Method Not Allowed");
         } catch (AssertionError e) {
-            reportManager.logFail("Expected 405 Method Not Allowed but got: " + response.getStatusCode() + " - " + response.asString());
+            reportManager.logFail("Expected 405 Method Not Allowed but got: " + response.getStatusCode());
 
             throw e; // Re-throw to fail the test
         }
-        reportManager.logInfo("Invalid Booking not deleted with expected response: " + response.asString());
+        reportManager.logInfo("Invalid Booking not deleted with expected status code: " + response.getStatusCode());
     }
 /**
      * Test case to verify that deleting a booking without authentication returns a 403 Forbidden error.
@@ -144,16 +145,16 @@ public class DeleteBookingTests extends TestBase {
     @Test
     public void deleteWithNoAuthTest() {
         int bookingId = 1; // Assuming booking ID 1 exists for testing purposes
-        Response response = BookingUtils.deleteBookingWithNoAuthTest(bookingId, "");
+        DecodedResponse response = BookingUtils.deleteBookingWithNoAuthTest(bookingId, "");
 
         logRequestForBookingId(method, bookingId);
         try {
             AssertionsUtils.assertErrorResponse(response, 403, "Forbidden");
         } catch (AssertionError e) {
-            reportManager.logFail("Expected 403 Forbidden but got: " + response.getStatusCode() + " - " + response.asString());
+            reportManager.logFail("Expected 403 Forbidden but got: " + response.getStatusCode());
             throw e; // Re-throw to fail the test
         }
-        reportManager.logInfo("Booking not deleted with expected response: " + response.asString());
+        reportManager.logInfo("Booking not deleted with expected status code: " + response.getStatusCode());
     }
 }
 
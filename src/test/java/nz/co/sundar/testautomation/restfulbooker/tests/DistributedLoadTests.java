@@ -0,0 +1,173 @@
+package nz.co.sundar.testautomation.restfulbooker.tests;
+
+import nz.co.sundar.testautomation.restfulbooker.load.LoadCoordinator;
+import nz.co.sundar.testautomation.restfulbooker.load.Operation;
+import nz.co.sundar.testautomation.restfulbooker.load.OperationStats;
+import nz.co.sundar.testautomation.restfulbooker.load.PhaseResult;
+import nz.co.sundar.testautomation.restfulbooker.load.WorkloadDefinition;
+import nz.co.sundar.testautomation.restfulbooker.standin.StandInServer;
+import nz.co.sundar.testautomation.restfulbooker.utils.LatencyHistogram;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test class for distributed load: splitting a workload between workers, sending histograms and results between
+ * JVMs, and a {@link LoadCoordinator} running worker JVMs on this machine against the stand-in.
+ *
+ * <p>These tests start the stand-in on a free loopback port and do not call the public Restful Booker API.</p>
+ */
+public class DistributedLoadTests {
+
+    private static StandInServer server;
+
+    @BeforeAll
+    public static void startServer() throws IOException {
+        server = StandInServer.start("admin", "password123");
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        server.close();
+    }
+
+    private static Properties settings(String text) throws IOException {
+        Properties properties = new Properties();
+        properties.load(new StringReader(text));
+        return properties;
+    }
+
+    /**
+     * Each worker's share adds up to the whole workload: rates and preloads are divided, workers are spread with
+     * at least one each, and every worker draws from its own seed.
+     */
+    @Test
+    public void workloadIsSharedBetweenWorkers() throws IOException {
+        WorkloadDefinition workload = WorkloadDefinition.parse(settings("""
+                seed = 10
+                preload = 10
+                operation.getBooking.weight = 1
+                phases = run
+                phase.run.duration = 5s
+                phase.run.workers = 4
+                phase.run.ratePerSecond = 90
+                """), "shared");
+        int preload = 0;
+        int workers = 0;
+        double rate = 0;
+        for (int index = 0; index < 3; index++) {
+            WorkloadDefinition share = workload.forWorker(index, 3);
+            Assertions.assertEquals(10 + index, share.getSeed());
+            preload += share.getPreload();
+            workers += share.getPhases().get(0).workers();
+            rate += share.getPhases().get(0).ratePerSecond();
+            Assertions.assertEquals(5_000_000_000L, share.getPhases().get(0).durationNanos());
+        }
+        Assertions.assertEquals(10, preload);
+        Assertions.assertEquals(4, workers);
+        Assertions.assertEquals(90, rate, 1e-9);
+        Assertions.assertEquals(1, workload.forWorker(5, 8).getPhases().get(0).workers());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> workload.forWorker(3, 3));
+    }
+
+    /**
+     * Histograms and phase results survive the trip between JVMs, and merging two workers' results gives the same
+     * counts, statuses and percentiles as recording everything in one.
+     */
+    @Test
+    public void resultsAreSentAndMergedExactly() throws IOException {
+        PhaseResult first = new PhaseResult("run", "uniform");
+        PhaseResult second = new PhaseResult("run", "uniform");
+        PhaseResult together = new PhaseResult("run", "uniform");
+        for (int i = 0; i < 1_000; i++) {
+            PhaseResult worker = i % 2 == 0 ? first : second;
+            long latency = TimeUnit.MICROSECONDS.toNanos(100 + 37L * i);
+            int status = i % 50 == 0 ? 404 : 200;
+            worker.get(Operation.GET_BOOKING).record(latency, status);
+            together.get(Operation.GET_BOOKING).record(latency, status);
+            worker.recordTarget(i % 7);
+            together.recordTarget(i % 7);
+        }
+        second.get(Operation.AUTH).record(TimeUnit.MILLISECONDS.toNanos(3), OperationStats.NO_RESPONSE);
+        together.get(Operation.AUTH).record(TimeUnit.MILLISECONDS.toNanos(3), OperationStats.NO_RESPONSE);
+        second.recordMissed();
+        together.recordMissed();
+
+        PhaseResult merged = new PhaseResult("run", "uniform");
+        merged.add(roundTrip(first));
+        merged.add(roundTrip(second));
+
+        Assertions.assertEquals(together.getCount(), merged.getCount());
+        Assertions.assertEquals(together.getErrors(), merged.getErrors());
+        Assertions.assertEquals(1, merged.getMissed());
+        Assertions.assertEquals(7, merged.getDistinctTargets());
+        Assertions.assertEquals(together.getHottestTargetShare(), merged.getHottestTargetShare(), 1e-12);
+        Assertions.assertEquals(together.get(Operation.GET_BOOKING).getStatusCounts(),
+                merged.get(Operation.GET_BOOKING).getStatusCounts());
+        LatencyHistogram expected = together.getLatencies();
+        LatencyHistogram actual = merged.getLatencies();
+        for (double percentile : new double[]{1, 50, 90, 99, 99.9, 100}) {
+            Assertions.assertEquals(expected.getPercentileNanos(percentile), actual.getPercentileNanos(percentile));
+        }
+        Assertions.assertEquals(expected.getMaxNanos(), actual.getMaxNanos());
+
+        LatencyHistogram empty = new LatencyHistogram();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        empty.writeTo(new DataOutputStream(bytes));
+        Assertions.assertEquals(0, LatencyHistogram.readFrom(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))).getCount());
+    }
+
+    private static PhaseResult roundTrip(PhaseResult result) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        result.writeTo(new DataOutputStream(bytes));
+        return PhaseResult.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    /**
+     * Two worker JVMs on this machine share a rate-capped phase against the stand-in; the coordinator hears from
+     * them every second and merges their results into the rate the workload asked for.
+     */
+    @Test
+    public void coordinatorMergesLocalWorkerJvms() throws Exception {
+        LoadCoordinator coordinator = new LoadCoordinator(settings("""
+                preload = 20
+                operation.getBooking.weight = 3
+                operation.createBooking.weight = 1
+                phases = run
+                phase.run.duration = 4s
+                phase.run.workers = 4
+                phase.run.ratePerSecond = 40
+                """), "distributed", server.getBaseUri(), "direct:admin:password123", 0, 2, 0,
+                List.of("-Xmx256m", "-XX:TieredStopAtLevel=1"), TimeUnit.SECONDS.toNanos(60));
+        List<PhaseResult> results = coordinator.run();
+
+        Assertions.assertEquals(1, results.size());
+        PhaseResult run = results.get(0);
+        Assertions.assertEquals(0, run.getErrors(), run.getSummary());
+        // 40 req/s for 4 seconds, split between two JVMs; the first requests of each are slow to set up.
+        Assertions.assertTrue(run.getCount() >= 100 && run.getCount() <= 180, run.getSummary());
+        Assertions.assertTrue(run.get(Operation.GET_BOOKING).getCount() > run.get(Operation.CREATE_BOOKING).getCount(),
+                run.getSummary());
+        Assertions.assertTrue(coordinator.getReportsReceived() >= 4, "reports: " + coordinator.getReportsReceived());
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new LoadCoordinator(settings("phases = none"),
+                "broken", server.getBaseUri(), "direct:admin:password123", 0, 1, 0, List.of(), 1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new LoadCoordinator(settings("""
+                operation.getBooking.weight = 1
+                phases = run
+                phase.run.duration = 1s
+                """), "broken", server.getBaseUri(), "telnet", 0, 1, 0, List.of(), 1));
+    }
+}
@@ -1,11 +1,10 @@
 package nz.co.sundar.testautomation.restfulbooker.tests;
 
-import io.restassured.response.Response;
 import nz.co.sundar.testautomation.restfulbooker.base.TestBase;
 import nz.co.sundar.testautomation.restfulbooker.pojo.BookingId;
 import nz.co.sundar.testautomation.restfulbooker.utils.AssertionsUtils;
 import nz.co.sundar.testautomation.restfulbooker.utils.BookingUtils;
-import nz.co.sundar.testautomation.restfulbooker.utils.PojoUtils;
+import nz.co.sundar.testautomation.restfulbooker.utils.DecodedResponse;
 import nz.co.sundar.testautomation.restfulbooker.utils.ReportManager;
 import org.junit.jupiter.api.Test;
 
@@ -25,7 +24,7 @@ import java.util.List;
  * <p><strong>Output:</strong> Response is parsed and validated, and results are logged to ExtentReports.</p>
  *
  * @see BookingUtils#getAllBookingIds(boolean)
- * @see PojoUtils#convertJsonToBookingIdList(String)
+ * @see DecodedResponse#bookingIds()
  * @see ReportManager
  * @see TestBase
  * @see BookingId
@@ -51,11 +50,11 @@ public class GetAllBookingIdsTests extends TestBase {
     @Test
     public void getAllBookingIdsTest() {
 
-        Response response = BookingUtils.getAllBookingIds(true);
+        DecodedResponse response = BookingUtils.getAllBookingIds(true);
         logRequestDetails(method);
 
         // Deserialize JSON response into List of BookingId POJOs
-        List<BookingId> bookingIdList = PojoUtils.convertJsonToBookingIdList(response.asString());
+        List<BookingId> bookingIdList = response.bookingIds();
         int httpStatusCode = response.getStatusCode();
 
         AssertionsUtils.assertBookingIdListResponse(bookingIdList, httpStatusCode, ReportManager.getInstance());
@@ -73,11 +72,11 @@ public class GetAllBookingIdsTests extends TestBase {
     @Test
     public void getAllBookingIdsTestWithNoHeaders() {
 
-        Response response = BookingUtils.getAllBookingIds(false);
+        DecodedResponse response = BookingUtils.getAllBookingIds(false);
         logRequestDetails(method);
 
         // Deserialize JSON response into List of BookingId POJOs
-        List<BookingId> bookingIdList = PojoUtils.convertJsonToBookingIdList(response.asString());
+        List<BookingId> bookingIdList = response.bookingIds();
         int httpStatusCode = response.getStatusCode();
 
         AssertionsUtils.assertBookingIdListResponse(bookingIdList, httpStatusCode, ReportManager.getInstance());
@@ -86,5 +85,34 @@ public class GetAllBookingIdsTests extends TestBase {
 
     }
 
-}
+    /**
+     * Test case to validate filtering booking IDs by name and dates.
+     *
+     * <p>A booking with a unique name is created first, so that the filtered list is small and the created ID
+     * must be in it. A check-in filter before the booking's check-in date must keep it and one after it must
+     * exclude it.</p>
+     */
+    @Test
+    public void getFilteredBookingIdsTest() {
+
+        String firstName = "Filter" + System.currentTimeMillis();
+        DecodedResponse response = BookingUtils.createTestBooking(firstName, "Brown");
+        int bookingId = response.bookingResponse().getBookingid();
+        logRequestDetails(method);
 
+        response = BookingUtils.getAllBookingIds(firstName, "Brown", null, null);
+        AssertionsUtils.assertBookingIdListContains(response.bookingIds(), response.getStatusCode(), bookingId,
+                true, ReportManager.getInstance());
+
+        response = BookingUtils.getAllBookingIds(firstName, null, "2022-12-01", null);
+        AssertionsUtils.assertBookingIdListContains(response.bookingIds(), response.getStatusCode(), bookingId,
+                true, ReportManager.getInstance());
+
+        response = BookingUtils.getAllBookingIds(firstName, null, "2023-06-01", null);
+        AssertionsUtils.assertBookingIdListContains(response.bookingIds(), response.getStatusCode(), bookingId,
+                false, ReportManager.getInstance());
+
+        reportManager.getTest().info("Filtered booking IDs by name and dates for ID: " + bookingId);
+    }
+
+}
@@ -1,13 +1,13 @@
 package nz.co.sundar.testautomation.restfulbooker.tests;
 
-import io.restassured.response.Response;
 import nz.co.sundar.testautomation.restfulbooker.base.TestBase;
 import nz.co.sundar.testautomation.restfulbooker.pojo.Booking;
 import nz.co.sundar.testautomation.restfulbooker.pojo.BookingResponse;
 import nz.co.sundar.testautomation.restfulbooker.utils.AssertionsUtils;
 import nz.co.sundar.testautomation.restfulbooker.utils.BookingUtils;
-import nz.co.sundar.testautomation.restfulbooker.utils.PojoUtils;
+import nz.co.sundar.testautomation.restfulbooker.utils.DecodedResponse;
 import nz.co.sundar.testautomation.restfulbooker.utils.ReportManager;
+import nz.co.sundar.testautomation.restfulbooker.utils.ResponseSchema;
 import org.junit.jupiter.api.Test;
 /**
  * Test class to validate the retrieval of a specific booking from the Restful Booker API.
@@ -26,7 +26,7 @@ import org.junit.jupiter.api.Test;
  * @see BookingUtils
  * @see BookingResponse
  * @see Booking
- * @see PojoUtils
+ * @see DecodedResponse
  * @see ReportManager
  * @see TestBase
  *
@@ -51,8 +51,8 @@ public class GetSpecificJobBookingIdTests extends TestBase {
     public void getSpecificBookingIdTest() {
 
         // Step 1: Create a booking first
-        Response response = BookingUtils.createTestBooking();
-        BookingResponse bookingResponse = PojoUtils.convertJsonToBookingResponse(response.asString());
+        DecodedResponse response = BookingUtils.createTestBooking();
+        BookingResponse bookingResponse = response.bookingResponse();
 
         int bookingId = bookingResponse.getBookingid();
 
@@ -62,8 +62,9 @@ public class GetSpecificJobBookingIdTests extends TestBase {
 
         int httpStatusCode = response.getStatusCode();
         // Step 3: Convert updated response directly to Booking POJO
-        Booking booking = PojoUtils.convertJsonToBooking(response.asString());
+        Booking booking = response.booking();
         // Step 4: Assert response content
+        AssertionsUtils.assertMatchesSchema(response, ResponseSchema.BOOKING);
         AssertionsUtils.assertBookingResponse(booking, httpStatusCode,"Jim", "Brown", 111, true,"2023-01-01", "2023-01-02", "Breakfast");
 
         reportManager.logInfo("Validating BookingId: " + bookingId);
@@ -84,7 +85,7 @@ public class GetSpecificJobBookingIdTests extends TestBase {
     @Test
     public void getInvalidBookingIdTest() {
         String bookingId = "abc"; // Invalid booking ID
-        Response response = BookingUtils.getSpecificBookingId(bookingId);
+        DecodedResponse response = BookingUtils.getSpecificBookingId(bookingId);
         logRequestForBookingId(method, bookingId);
         try {
             AssertionsUtils.assertErrorResponse(response, 404, "Not Found");
@@ -92,6 +93,6 @@ public class GetSpecificJobBookingIdTests extends TestBase {
             reportManager.logFail("Expected error response not received for invalid booking ID Retrieval: " + e.getMessage());
             throw e; // Re-throw to fail the test
         }
-        reportManager.logInfo("Invalid Booking not updated with expected response: " + response.asString());
+        reportManager.logInfo("Invalid Booking not updated with expected status code: " + response.getStatusCode());
     }
 }
@@ -0,0 +1,214 @@
+package nz.co.sundar.testautomation.restfulbooker.tests;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.restassured.RestAssured;
+import io.restassured.filter.Filter;
+import io.restassured.response.Response;
+import nz.co.sundar.testautomation.restfulbooker.filters.HarCaptureFilter;
+import nz.co.sundar.testautomation.restfulbooker.filters.HarExporter;
+import nz.co.sundar.testautomation.restfulbooker.filters.TrafficLog.Header;
+import nz.co.sundar.testautomation.restfulbooker.load.DirectBookingClient;
+import nz.co.sundar.testautomation.restfulbooker.pojo.Booking;
+import nz.co.sundar.testautomation.restfulbooker.pojo.BookingDates;
+import nz.co.sundar.testautomation.restfulbooker.standin.StandInServer;
+import nz.co.sundar.testautomation.restfulbooker.utils.TokenBucket;
+import nz.co.sundar.testautomation.restfulbooker.utils.TokenPool.Credentials;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Test class for the streaming HAR export: a captured session is a valid HAR without its tokens, files rotate and
+ * bodies are truncated, and a full queue drops entries rather than slowing requests down.
+ *
+ * <p>These tests start the stand-in on a free loopback port and do not call the public Restful Booker API.</p>
+ */
+public class HarExportTests {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @BeforeAll
+    public static void warmUp() throws IOException {
+        // The first request through REST Assured is slow to set up.
+        try (StandInServer server = StandInServer.start("admin", "password123")) {
+            RestAssured.given().baseUri(server.getBaseUri()).get("/booking");
+        }
+    }
+
+    private static String read(Path file) throws IOException {
+        try (InputStream in = file.toString().endsWith(".gz")
+                ? new GZIPInputStream(Files.newInputStream(file)) : Files.newInputStream(file)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static Booking booking(String additionalneeds) {
+        return new Booking("Jim", "Brown", 111, true, new BookingDates("2026-01-01", "2026-01-02"), additionalneeds);
+    }
+
+    /**
+     * Creating, updating, reading and deleting a booking exports a gzipped HAR 1.2 log in which the token cookie,
+     * the issued token and the password appear only as {@code [redacted]}.
+     */
+    @Test
+    public void capturedSessionIsValidHarWithoutSecrets(@TempDir Path directory) throws IOException {
+        Set<String> tokens = ConcurrentHashMap.newKeySet();
+        Filter spy = (requestSpec, responseSpec, ctx) -> {
+            requestSpec.getCookies().forEach(cookie -> tokens.add(cookie.getValue()));
+            Response response = ctx.next(requestSpec, responseSpec);
+            if (requestSpec.getURI().endsWith("/auth")) {
+                tokens.add(response.jsonPath().getString("token"));
+            }
+            return response;
+        };
+        HarExporter exporter = new HarExporter(directory.resolve("run.har"), true, 1 << 20, 5, 4096,
+                Set.of("Cookie", "Set-Cookie"), Set.of("token", "password"), 1024);
+        try (StandInServer server = StandInServer.start("admin", "password123")) {
+            List<Filter> filters = new ArrayList<>(RestAssured.filters());
+            RestAssured.filters(new HarCaptureFilter(exporter), spy);
+            try {
+                DirectBookingClient client = new DirectBookingClient(server.getBaseUri(),
+                        new Credentials("admin", "password123"));
+                int id = Integer.parseInt(client.createBooking(booking("Breakfast")).getString("bookingid"));
+                client.updateBooking(id, booking("Lunch"));
+                client.getBooking(id);
+                client.deleteBooking(id);
+            } finally {
+                RestAssured.replaceFiltersWith(filters);
+                exporter.close();
+            }
+        }
+
+        Assertions.assertEquals(1, exporter.getFiles().size());
+        Path file = exporter.getFiles().get(0);
+        Assertions.assertEquals("run.0001.har.gz", file.getFileName().toString());
+        String text = read(file);
+        Assertions.assertFalse(tokens.isEmpty());
+        for (String token : tokens) {
+            Assertions.assertFalse(text.contains(token), "token " + token + " leaked");
+        }
+        Assertions.assertFalse(text.contains("password123"));
+
+        JsonNode log = MAPPER.readTree(text).get("log");
+        Assertions.assertEquals("1.2", log.get("version").asText());
+        JsonNode entries = log.get("entries");
+        // A login for the writes, then the create, update, read and delete.
+        Assertions.assertEquals(5, entries.size(), text);
+        Assertions.assertEquals(5, exporter.getExported());
+        for (JsonNode entry : entries) {
+            Assertions.assertTrue(entry.get("time").asDouble() >= 0);
+            Assertions.assertTrue(entry.get("startedDateTime").asText().endsWith("Z"));
+            Assertions.assertTrue(entry.get("response").get("status").asInt() >= 200);
+            JsonNode request = entry.get("request");
+            if (request.get("method").asText().equals("PUT")) {
+                JsonNode cookie = request.get("cookies").get(0);
+                Assertions.assertEquals("token", cookie.get("name").asText());
+                Assertions.assertEquals(HarExporter.REDACTED, cookie.get("value").asText());
+                Assertions.assertEquals("application/json", request.get("postData").get("mimeType").asText()
+                        .split(";")[0]);
+                Assertions.assertTrue(request.get("postData").get("text").asText().contains("Lunch"));
+            }
+            if (request.get("url").asText().endsWith("/auth")) {
+                Assertions.assertTrue(request.get("postData").get("text").asText()
+                        .contains("\"password\":\"" + HarExporter.REDACTED + "\""));
+                Assertions.assertTrue(entry.get("response").get("content").get("text").asText()
+                        .contains("\"token\":\"" + HarExporter.REDACTED + "\""));
+            }
+        }
+    }
+
+    private static HarExporter.Entry entry(int i, String body) {
+        return new HarExporter.Entry(System.currentTimeMillis(), 2_000_000, "GET",
+                "http://localhost:3001/booking/" + i + "?token=abc&firstname=Jim", List.of(), new byte[0], 200, "OK",
+                List.of(new Header("Content-Type", "application/json; charset=utf-8")),
+                body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Files are finished once they reach the size limit and only the newest are kept; each is a complete HAR with
+     * long bodies truncated and query parameters redacted.
+     */
+    @Test
+    public void rotatesFilesAndTruncatesBodies(@TempDir Path directory) throws IOException {
+        String body = "{\"additionalneeds\":\"" + "x".repeat(1_000) + "\"}";
+        HarExporter exporter = new HarExporter(directory.resolve("run.har"), false, 20_000, 3, 100,
+                Set.of("Cookie"), Set.of("token"), 1024);
+        for (int i = 0; i < 200; i++) {
+            while (!exporter.offer(entry(i, body))) {
+                // Wait for the writer rather than dropping, to count every entry below.
+                Thread.onSpinWait();
+            }
+        }
+        exporter.close();
+        Assertions.assertEquals(200, exporter.getExported());
+
+        List<Path> files = exporter.getFiles();
+        Assertions.assertEquals(3, files.size(), files.toString());
+        try (var listing = Files.list(directory)) {
+            Assertions.assertEquals(3, listing.count());
+        }
+        Assertions.assertNotEquals("run.0001.har", files.get(0).getFileName().toString());
+        int kept = 0;
+        for (Path file : files) {
+            Assertions.assertTrue(Files.size(file) < 20_000 + 2_000, file + " is " + Files.size(file) + " bytes");
+            JsonNode entries = MAPPER.readTree(read(file)).get("log").get("entries");
+            for (JsonNode entry : entries) {
+                JsonNode content = entry.get("response").get("content");
+                Assertions.assertEquals(100, content.get("text").asText().length());
+                Assertions.assertEquals(body.length(), content.get("size").asInt());
+                Assertions.assertTrue(content.get("comment").asText().contains("Truncated from"));
+                Assertions.assertTrue(entry.get("request").get("url").asText()
+                        .endsWith("?token=" + HarExporter.REDACTED + "&firstname=Jim"));
+                Assertions.assertEquals(HarExporter.REDACTED,
+                        entry.get("request").get("queryString").get(0).get("value").asText());
+            }
+            kept += entries.size();
+        }
+        Assertions.assertTrue(kept > 0 && kept < 200, "kept " + kept);
+    }
+
+    /**
+     * Offering never waits: a flood into a tiny queue drops what the writer cannot take, and every entry is either
+     * exported or counted as dropped, while a steady load-mode rate is exported in full.
+     */
+    @Test
+    public void neverBlocksTheRequestPath(@TempDir Path directory) {
+        String body = "{\"firstname\":\"Jim\",\"lastname\":\"Brown\",\"totalprice\":111}";
+        HarExporter flooded = new HarExporter(directory.resolve("flood.har"), true, 1 << 24, 2, 4096,
+                Set.of("Cookie"), Set.of("token"), 16);
+        long start = System.nanoTime();
+        for (int i = 0; i < 50_000; i++) {
+            flooded.offer(entry(i, body));
+        }
+        long offerNanos = System.nanoTime() - start;
+        flooded.close();
+        Assertions.assertTrue(flooded.getDropped() > 0);
+        Assertions.assertEquals(50_000, flooded.getExported() + flooded.getDropped());
+        // Far less than writing 50,000 entries would take.
+        Assertions.assertTrue(offerNanos < 2_000_000_000L, "offering took " + offerNanos / 1_000_000 + "ms");
+
+        HarExporter steady = new HarExporter(directory.resolve("steady.har"), true, 1 << 24, 2, 4096,
+                Set.of("Cookie"), Set.of("token"), 8192);
+        TokenBucket bucket = new TokenBucket(2_000, 50);
+        for (int i = 0; i < 4_000; i++) {
+            bucket.acquire();
+            steady.offer(entry(i, body));
+        }
+        steady.close();
+        Assertions.assertEquals(0, steady.getDropped());
+        Assertions.assertEquals(4_000, steady.getExported());
+    }
+}
@@ -0,0 +1,232 @@
+package nz.co.sundar.testautomation.restfulbooker.tests;
+
+import nz.co.sundar.testautomation.restfulbooker.load.DirectBookingClient;
+import nz.co.sundar.testautomation.restfulbooker.load.KeyDistribution;
+import nz.co.sundar.testautomation.restfulbooker.load.LiveIdSet;
+import nz.co.sundar.testautomation.restfulbooker.load.LoadDriver;
+import nz.co.sundar.testautomation.restfulbooker.load.Operation;
+import nz.co.sundar.testautomation.restfulbooker.load.PhaseResult;
+import nz.co.sundar.testautomation.restfulbooker.load.SkewReport;
+import nz.co.sundar.testautomation.restfulbooker.load.WorkloadDefinition;
+import nz.co.sundar.testautomation.restfulbooker.standin.ContentionStats;
+import nz.co.sundar.testautomation.restfulbooker.standin.StandInServer;
+import nz.co.sundar.testautomation.restfulbooker.standin.StripedBookingStore;
+import nz.co.sundar.testautomation.restfulbooker.utils.TokenPool.Credentials;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.SplittableRandom;
+
+/**
+ * Test class for the {@link KeyDistribution}s that choose which live booking a load run targets, and for how skew
+ * shows in a run's results.
+ *
+ * <p>These tests start the stand-in on a free loopback port and do not call the public Restful Booker API.</p>
+ */
+public class KeyDistributionTests {
+
+    private static StandInServer server;
+    private static DirectBookingClient client;
+
+    @BeforeAll
+    public static void startServer() throws IOException {
+        server = StandInServer.start("admin", "password123");
+        client = new DirectBookingClient(server.getBaseUri(), new Credentials("admin", "password123"));
+        // The first REST Assured request is slow to set up; keep it out of the timed phases.
+        client.listBookings();
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        server.close();
+    }
+
+    private static int[] histogram(KeyDistribution keys, int size, int samples) {
+        SplittableRandom random = new SplittableRandom(3);
+        int[] counts = new int[size];
+        for (int i = 0; i < samples; i++) {
+            counts[keys.pickRank(size, random)]++;
+        }
+        return counts;
+    }
+
+    /**
+     * Zipfian ranks follow {@code 1 / (r + 1)^s}, for exponents below, at and above 1 and for any number of live
+     * bookings.
+     */
+    @Test
+    public void zipfianMatchesItsProbabilities() {
+        int samples = 200_000;
+        for (double exponent : new double[]{0.5, 0.99, 1.0, 1.5}) {
+            for (int size : new int[]{1, 2, 100, 5_000}) {
+                int[] counts = histogram(KeyDistribution.zipfian(exponent), size, samples);
+                double normaliser = 0;
+                for (int r = 1; r <= size; r++) {
+                    normaliser += Math.pow(r, -exponent);
+                }
+                for (int rank = 0; rank < Math.min(size, 5); rank++) {
+                    double expected = Math.pow(rank + 1, -exponent) / normaliser;
+                    Assertions.assertEquals(expected, counts[rank] / (double) samples, 0.005,
+                            "exponent " + exponent + " size " + size + " rank " + rank);
+                }
+            }
+        }
+
+        // latest is the same shape counted from the newest booking.
+        int[] latest = histogram(KeyDistribution.latest(0.99), 100, samples);
+        int[] zipfian = histogram(KeyDistribution.zipfian(0.99), 100, samples);
+        Assertions.assertEquals(zipfian[0], latest[99]);
+        Assertions.assertEquals(zipfian[1], latest[98]);
+    }
+
+    /**
+     * Hotspot sends the configured share of picks to the oldest bookings, and uniform spreads them evenly.
+     */
+    @Test
+    public void hotspotAndUniformSpreadAsConfigured() {
+        int samples = 100_000;
+        int[] hotspot = histogram(KeyDistribution.hotspot(0.1, 0.9), 1_000, samples);
+        int hot = 0;
+        for (int rank = 0; rank < 100; rank++) {
+            hot += hotspot[rank];
+        }
+        Assertions.assertEquals(0.9, hot / (double) samples, 0.01);
+        // One hot booking at least, even in a small set.
+        Assertions.assertEquals(0.9, histogram(KeyDistribution.hotspot(0.01, 0.9), 5, samples)[0]
+                / (double) samples, 0.01);
+
+        int[] uniform = histogram(KeyDistribution.uniform(), 10, samples);
+        for (int count : uniform) {
+            Assertions.assertEquals(0.1, count / (double) samples, 0.01);
+        }
+
+        Assertions.assertEquals("zipfian(0.99)", KeyDistribution.parse(" zipfian(0.99) ").toString());
+        Assertions.assertEquals("hotspot(0.01,0.9)", KeyDistribution.parse("hotspot(0.01, 0.9)").toString());
+        Assertions.assertEquals("uniform", KeyDistribution.parse("uniform").toString());
+        Assertions.assertEquals("latest(1.0)", KeyDistribution.parse("latest(1)").toString());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> KeyDistribution.parse("zipfian"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> KeyDistribution.parse("zipfian(0)"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> KeyDistribution.parse("hotspot(2,0.5)"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> KeyDistribution.parse("gaussian(1)"));
+    }
+
+    /**
+     * The live id set orders bookings by id, so ranks are ages, and takes picked ids out for deletes.
+     */
+    @Test
+    public void liveIdSetRanksBookingsByAge() {
+        LiveIdSet ids = new LiveIdSet();
+        for (int id : new int[]{5, 3, 9, 1, 7}) {
+            Assertions.assertTrue(ids.add(id));
+        }
+        Assertions.assertFalse(ids.add(7));
+        Assertions.assertEquals(1, ids.idAt(0));
+        Assertions.assertEquals(9, ids.idAt(4));
+        Assertions.assertEquals(-1, ids.idAt(5));
+
+        SplittableRandom random = new SplittableRandom(1);
+        Assertions.assertEquals(9, ids.take(KeyDistribution.latest(50), random));
+        Assertions.assertEquals(1, ids.pick(KeyDistribution.zipfian(50), random));
+        Assertions.assertFalse(ids.contains(9));
+        Assertions.assertTrue(ids.remove(3));
+        Assertions.assertFalse(ids.remove(3));
+        Assertions.assertEquals(3, ids.size());
+
+        for (int id = 10; id < 1_000; id++) {
+            ids.add(id);
+        }
+        List<Integer> taken = new ArrayList<>();
+        while (ids.size() > 0) {
+            taken.add(ids.take(KeyDistribution.uniform(), random));
+        }
+        Assertions.assertEquals(ids.pick(KeyDistribution.uniform(), random), -1);
+        Assertions.assertEquals(993, taken.stream().distinct().count());
+    }
+
+    /**
+     * Workload files set the distribution for the workload, a phase and an operation, most specific first.
+     */
+    @Test
+    public void workloadKeysAreOverriddenByPhaseThenOperation() throws IOException {
+        Properties properties = new Properties();
+        properties.load(new StringReader("""
+                keys = zipfian(0.99)
+                operation.getBooking.weight = 1
+                operation.deleteBooking.weight = 1
+                operation.deleteBooking.keys = latest(0.5)
+                phases = plain, hot
+                phase.plain.duration = 1s
+                phase.hot.duration = 1s
+                phase.hot.keys = hotspot(0.01,0.99)
+                """));
+        WorkloadDefinition workload = WorkloadDefinition.parse(properties, "test");
+        WorkloadDefinition.Phase plain = workload.getPhases().get(0);
+        WorkloadDefinition.Phase hot = workload.getPhases().get(1);
+        Assertions.assertEquals("zipfian(0.99)", workload.getKeyDistribution(Operation.GET_BOOKING, plain).toString());
+        Assertions.assertEquals("hotspot(0.01,0.99)",
+                workload.getKeyDistribution(Operation.GET_BOOKING, hot).toString());
+        Assertions.assertEquals("latest(0.5)", workload.getKeyDistribution(Operation.DELETE_BOOKING, hot).toString());
+        Assertions.assertEquals("hotspot(0.01,0.99)", workload.getKeyDistribution(hot).toString());
+
+        properties.setProperty("operation.listBookings.keys", "uniform");
+        Assertions.assertThrows(IllegalArgumentException.class, () -> WorkloadDefinition.parse(properties, "test"));
+    }
+
+    /**
+     * Under Zipfian updates a few bookings take most writes, both in the driver's target counts and in the
+     * stand-in's lock stripes, and the skew report lays the phases out side by side.
+     */
+    @Test
+    public void skewConcentratesWritesOnHotBookings() throws Exception {
+        List<PhaseResult> results = new ArrayList<>();
+        List<Double> hottestStripeShares = new ArrayList<>();
+        StripedBookingStore store = (StripedBookingStore) server.getHandler().getStore();
+        for (String keys : new String[]{"uniform", "zipfian(1.2)"}) {
+            Properties properties = new Properties();
+            properties.load(new StringReader("""
+                    preload = 200
+                    operation.getBooking.weight = 1
+                    operation.updateBooking.weight = 1
+                    operation.updateBooking.payload = generated
+                    phases = %s
+                    phase.%s.duration = 2s
+                    phase.%s.workers = 4
+                    phase.%s.keys = %s
+                    """.formatted("run", "run", "run", "run", keys)));
+            LoadDriver driver = new LoadDriver(WorkloadDefinition.parse(properties, keys), client);
+            ContentionStats before = store.getContention();
+            PhaseResult result = driver.run().get(0);
+            ContentionStats during = store.getContention().since(before);
+            results.add(result);
+
+            long hottestStripe = 0;
+            for (int stripe = 0; stripe < during.getStripeCount(); stripe++) {
+                hottestStripe = Math.max(hottestStripe, during.getWrites(stripe));
+            }
+            hottestStripeShares.add(hottestStripe / (double) during.getTotalWrites());
+            Assertions.assertEquals(0, result.getErrors(), result.getSummary());
+        }
+
+        PhaseResult uniform = results.get(0);
+        PhaseResult zipfian = results.get(1);
+        Assertions.assertTrue(zipfian.getHottestTargetShare() > 5 * uniform.getHottestTargetShare(),
+                uniform.getSummary() + System.lineSeparator() + zipfian.getSummary());
+        Assertions.assertTrue(zipfian.getDistinctTargets() < uniform.getDistinctTargets());
+        // Preloading 200 bookings writes every stripe; the hot bookings' stripes then take most of the updates.
+        Assertions.assertTrue(hottestStripeShares.get(1) > 2 * hottestStripeShares.get(0),
+                hottestStripeShares.toString());
+
+        String report = SkewReport.format(results, Operation.GET_BOOKING, Operation.UPDATE_BOOKING);
+        String[] lines = report.split(System.lineSeparator());
+        Assertions.assertEquals(3, lines.length, report);
+        Assertions.assertTrue(lines[0].contains("PUT /booking/{id}"), report);
+        Assertions.assertTrue(lines[2].contains("zipfian(1.2)"), report);
+    }
+}
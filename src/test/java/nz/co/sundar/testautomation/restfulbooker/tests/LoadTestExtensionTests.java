@@ -0,0 +1,136 @@
+package nz.co.sundar.testautomation.restfulbooker.tests;
+
+import com.aventstack.extentreports.model.Log;
+import nz.co.sundar.testautomation.restfulbooker.base.LoadTest;
+import nz.co.sundar.testautomation.restfulbooker.base.LoadTestResult;
+import nz.co.sundar.testautomation.restfulbooker.load.DirectBookingClient;
+import nz.co.sundar.testautomation.restfulbooker.pojo.Booking;
+import nz.co.sundar.testautomation.restfulbooker.pojo.BookingDates;
+import nz.co.sundar.testautomation.restfulbooker.standin.StandInServer;
+import nz.co.sundar.testautomation.restfulbooker.utils.DecodedResponse;
+import nz.co.sundar.testautomation.restfulbooker.utils.ReportManager;
+import nz.co.sundar.testautomation.restfulbooker.utils.TokenPool.Credentials;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInfo;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.opentest4j.AssertionFailedError;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Test class for {@link LoadTest}: rerunning a functional test as a load scenario, counting its failed assertions
+ * and attaching the latency histogram to its Extent node.
+ *
+ * <p>These tests start the stand-in on a free loopback port and do not call the public Restful Booker API.</p>
+ */
+public class LoadTestExtensionTests {
+
+    private static StandInServer server;
+    private static DirectBookingClient client;
+    private static final AtomicInteger calls = new AtomicInteger();
+    private static final AtomicInteger beforeEachRuns = new AtomicInteger();
+
+    @BeforeAll
+    public static void startServer() throws IOException {
+        server = StandInServer.start("admin", "password123");
+        client = new DirectBookingClient(server.getBaseUri(), new Credentials("admin", "password123"));
+        // The first request through REST Assured is slow to set up.
+        client.listBookings();
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        server.close();
+    }
+
+    @BeforeEach
+    public void createReportNode(TestInfo testInfo) {
+        calls.set(0);
+        beforeEachRuns.incrementAndGet();
+        ReportManager.getInstance().createTest(testInfo.getDisplayName());
+    }
+
+    /**
+     * The stand-in version of a create-booking test, failing its assertion on every fourth call, run as a
+     * two-second scenario at 50 calls per second.
+     */
+    @ParameterizedTest(name = "load {0}")
+    @ValueSource(strings = {"Jim"})
+    @LoadTest(always = true, rate = 50, duration = "2s", concurrency = 2, maxFailureRate = 0.5)
+    public void createBookingUnderLoad(String firstname) {
+        DecodedResponse response = client.createBooking(new Booking(firstname, "Brown", 111, true,
+                new BookingDates("2026-01-01", "2026-01-02"), "Breakfast"));
+        ReportManager.getInstance().logInfo("Created booking " + response.getString("bookingid"));
+        Assertions.assertEquals(200, response.getStatusCode());
+        Assertions.assertEquals(firstname, response.getString("booking.firstname"));
+        Assertions.assertTrue(calls.incrementAndGet() % 4 != 0, "every fourth call fails");
+    }
+
+    /**
+     * After the scenario, its test node holds the summary and tables rather than a log line per call, and
+     * {@code @BeforeEach} ran once for the whole scenario.
+     */
+    @AfterEach
+    public void checkReportNode(TestInfo testInfo) {
+        if (!testInfo.getDisplayName().startsWith("load")) {
+            return;
+        }
+        List<Log> logs = ReportManager.getInstance().getTest().getModel().getLogs();
+        String details = logs.stream().map(Log::getDetails).collect(Collectors.joining("\n"));
+        // Once for this test and at most once for the other, however many calls the scenario made.
+        Assertions.assertTrue(beforeEachRuns.get() <= 2, "@BeforeEach runs: " + beforeEachRuns.get());
+        // 50 calls per second for two seconds; the first calls of each thread may be slower.
+        Assertions.assertTrue(calls.get() >= 40 && calls.get() <= 110, "calls: " + calls.get());
+        Assertions.assertTrue(details.contains("Load test at 50.0 calls/s for 2s with 2 threads: " + calls.get()
+                + " calls"), details);
+        Assertions.assertTrue(details.contains("p99.9") && details.contains("every fourth call fails"), details);
+        Assertions.assertFalse(details.contains("Created booking"), "calls log to throwaway nodes: " + details);
+        Assertions.assertEquals(3, logs.size(), details);
+    }
+
+    /**
+     * Failed assertions and other exceptions are counted apart, grouped by the first line of their messages, and
+     * fail the test only above the allowed share of calls.
+     */
+    @Test
+    public void failuresAreCountedAndChecked() {
+        LoadTestResult result = new LoadTestResult();
+        for (int i = 0; i < 96; i++) {
+            result.recordPass(TimeUnit.MILLISECONDS.toNanos(10 + i % 10));
+        }
+        result.recordFailure(TimeUnit.MILLISECONDS.toNanos(30), new AssertionFailedError("status 500\nat line 1"));
+        result.recordFailure(TimeUnit.MILLISECONDS.toNanos(30), new AssertionFailedError("status 500\nat line 2"));
+        result.recordFailure(TimeUnit.MILLISECONDS.toNanos(30), new AssertionFailedError("missing id"));
+        result.recordError(TimeUnit.SECONDS.toNanos(2), new IllegalStateException("connection reset"));
+
+        Assertions.assertEquals(100, result.getCalls());
+        Assertions.assertEquals(3, result.getFailures());
+        Assertions.assertEquals(1, result.getErrors());
+        Assertions.assertEquals(0.04, result.getFailureRate(), 1e-12);
+        Assertions.assertEquals("AssertionFailedError: status 500", result.getTopFailures().get(0).getKey());
+        Assertions.assertEquals(2L, result.getTopFailures().get(0).getValue());
+        Assertions.assertEquals(3, result.getTopFailures().size());
+
+        String[][] table = result.getLatencyTable();
+        Assertions.assertEquals("Percentile", table[0][0]);
+        Assertions.assertEquals("max", table[table.length - 1][0]);
+        Assertions.assertEquals("100", table[table.length - 1][2]);
+
+        result.check(0.04);
+        AssertionFailedError failure = Assertions.assertThrows(AssertionFailedError.class, () -> result.check(0.01));
+        Assertions.assertTrue(failure.getMessage().contains("2 x AssertionFailedError: status 500"),
+                failure.getMessage());
+        Assertions.assertTrue(failure.getMessage().contains("1 x IllegalStateException: connection reset"),
+                failure.getMessage());
+    }
+}
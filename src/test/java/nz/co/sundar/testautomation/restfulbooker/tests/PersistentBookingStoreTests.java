@@ -0,0 +1,201 @@
+package nz.co.sundar.testautomation.restfulbooker.tests;
+
+import nz.co.sundar.testautomation.restfulbooker.standin.FsyncPolicy;
+import nz.co.sundar.testautomation.restfulbooker.standin.PersistentBookingStore;
+import nz.co.sundar.testautomation.restfulbooker.standin.StoredBooking;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Test class for the stand-in's memory-mapped {@link PersistentBookingStore}.
+ *
+ * <p>These tests use temporary directories and run without the Restful Booker API.</p>
+ */
+public class PersistentBookingStoreTests {
+
+    private static final int SEGMENT_BYTES = 64 * 1024;
+
+    @TempDir
+    Path directory;
+
+    private static PersistentBookingStore open(Path directory) throws IOException {
+        return PersistentBookingStore.open(directory, new PersistentBookingStore.Options()
+                .segmentBytes(SEGMENT_BYTES).compactionRatio(0));
+    }
+
+    private static StoredBooking booking(int i) {
+        return new StoredBooking("Guest" + i, i % 2 == 0 ? "Brown" : "Wilson", i % 7 == 0 ? null : i, i % 3 == 0,
+                "2023-01-01", i % 5 == 0 ? "0NaN-aN-aN" : "2023-01-05", i % 4 == 0 ? null : "Breakfast");
+    }
+
+    /**
+     * Writes a mix of creates, updates and deletes and returns the expected contents.
+     */
+    private static TreeMap<Integer, StoredBooking> populate(PersistentBookingStore store, int count) {
+        TreeMap<Integer, StoredBooking> expected = new TreeMap<>();
+        for (int i = 0; i < count; i++) {
+            StoredBooking booking = booking(i);
+            expected.put(store.create(booking), booking);
+        }
+        for (int id = 1; id <= count; id += 3) {
+            StoredBooking booking = booking(id + 1000);
+            Assertions.assertTrue(store.update(id, booking));
+            expected.put(id, booking);
+        }
+        for (int id = 2; id <= count; id += 5) {
+            Assertions.assertTrue(store.delete(id));
+            expected.remove(id);
+        }
+        return expected;
+    }
+
+    private static void assertContents(Map<Integer, StoredBooking> expected, PersistentBookingStore store) {
+        Assertions.assertEquals(expected.size(), store.size());
+        Assertions.assertArrayEquals(expected.keySet().stream().mapToInt(Integer::intValue).toArray(), store.ids());
+        for (Map.Entry<Integer, StoredBooking> entry : expected.entrySet()) {
+            Assertions.assertEquals(entry.getValue().toString(), String.valueOf(store.get(entry.getKey())),
+                    "Booking " + entry.getKey());
+        }
+    }
+
+    /**
+     * Bookings written across several segments are all there after a clean restart, and new ids continue after
+     * the highest one used.
+     */
+    @Test
+    public void bookingsSurviveRestart() throws IOException {
+        TreeMap<Integer, StoredBooking> expected;
+        try (PersistentBookingStore store = open(directory)) {
+            expected = populate(store, 3_000);
+            Assertions.assertTrue(store.getLogFileBytes() > SEGMENT_BYTES, "Log should span several segments");
+        }
+
+        try (PersistentBookingStore store = open(directory)) {
+            assertContents(expected, store);
+            Assertions.assertEquals(3_001, store.create(booking(1)));
+        }
+    }
+
+    /**
+     * Without a clean shutdown the whole log is replayed, and a torn last record is dropped.
+     */
+    @Test
+    public void recoversFromCrashWithTornTail() throws IOException {
+        Path crashed = directory.resolve("crashed");
+        TreeMap<Integer, StoredBooking> expected;
+        try (PersistentBookingStore store = open(directory.resolve("live"))) {
+            expected = populate(store, 500);
+            StoredBooking last = booking(9_999);
+            int lastId = store.create(last);
+            // Copy the files while the store is open, as a crash would leave them: no checkpoint.
+            Files.createDirectories(crashed);
+            try (Stream<Path> files = Files.list(directory.resolve("live"))) {
+                for (Path file : files.toList()) {
+                    Files.copy(file, crashed.resolve(file.getFileName()));
+                }
+            }
+            Assertions.assertFalse(Files.exists(crashed.resolve("bookings.idx")));
+            Assertions.assertNotNull(store.get(lastId));
+        }
+
+        tearLastRecord(crashed);
+        try (PersistentBookingStore store = open(crashed)) {
+            assertContents(expected, store);
+        }
+    }
+
+    /**
+     * Flips the last non-zero byte of the log, which belongs to the last record.
+     */
+    private static void tearLastRecord(Path directory) throws IOException {
+        Path lastSegment;
+        try (Stream<Path> files = Files.list(directory)) {
+            lastSegment = files.filter(file -> file.toString().endsWith(".log")).sorted().reduce((a, b) -> b)
+                    .orElseThrow();
+        }
+        try (RandomAccessFile file = new RandomAccessFile(lastSegment.toFile(), "rw")) {
+            for (long position = file.length() - 1; position >= 0; position--) {
+                file.seek(position);
+                int value = file.read();
+                if (value != 0) {
+                    file.seek(position);
+                    file.write(value ^ 0xFF);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Compaction drops dead records into a smaller new generation and keeps every live booking, before and after
+     * a restart.
+     */
+    @Test
+    public void compactionKeepsLiveBookings() throws IOException {
+        TreeMap<Integer, StoredBooking> expected;
+        try (PersistentBookingStore store = open(directory)) {
+            expected = populate(store, 2_000);
+            for (int round = 0; round < 3; round++) {
+                for (int id : expected.keySet()) {
+                    store.update(id, expected.get(id));
+                }
+            }
+            long before = store.getLogFileBytes();
+            Assertions.assertTrue(store.getDeadBytes() > 0);
+
+            store.compact();
+
+            Assertions.assertEquals(0, store.getDeadBytes());
+            Assertions.assertTrue(store.getLogFileBytes() < before, "Compacted log should be smaller");
+            assertContents(expected, store);
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            Assertions.assertTrue(files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(".log")).allMatch(name -> name.startsWith("bookings-000001-")));
+        }
+        try (PersistentBookingStore store = open(directory)) {
+            assertContents(expected, store);
+        }
+    }
+
+    private static boolean hasGenerationZero(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.anyMatch(file -> file.getFileName().toString().startsWith("bookings-000000-"));
+        }
+    }
+
+    /**
+     * Every fsync policy writes readable records; automatic compaction runs in the background once enough of the
+     * log is dead.
+     */
+    @Test
+    public void fsyncPoliciesAndAutomaticCompaction() throws Exception {
+        for (FsyncPolicy policy : FsyncPolicy.values()) {
+            Path policyDirectory = directory.resolve(policy.name());
+            try (PersistentBookingStore store = PersistentBookingStore.open(policyDirectory,
+                    new PersistentBookingStore.Options().fsyncPolicy(policy).fsyncIntervalMillis(10)
+                            .segmentBytes(SEGMENT_BYTES).compactionRatio(0.5).compactionCheckMillis(20))) {
+                int id = store.create(booking(1));
+                for (int i = 0; i < 400; i++) {
+                    store.update(id, booking(i));
+                }
+                long deadline = System.currentTimeMillis() + 5_000;
+                while (hasGenerationZero(policyDirectory) && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(20);
+                }
+                Assertions.assertFalse(hasGenerationZero(policyDirectory), policy + " should have compacted");
+                Assertions.assertEquals(booking(399).toString(), store.get(id).toString());
+            }
+        }
+    }
+}
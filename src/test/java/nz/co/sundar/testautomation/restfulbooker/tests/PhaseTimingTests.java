@@ -0,0 +1,152 @@
+package nz.co.sundar.testautomation.restfulbooker.tests;
+
+import io.restassured.RestAssured;
+import io.restassured.config.RestAssuredConfig;
+import nz.co.sundar.testautomation.restfulbooker.load.DirectBookingClient;
+import nz.co.sundar.testautomation.restfulbooker.pojo.Booking;
+import nz.co.sundar.testautomation.restfulbooker.pojo.BookingDates;
+import nz.co.sundar.testautomation.restfulbooker.standin.FaultInjector;
+import nz.co.sundar.testautomation.restfulbooker.standin.StandInServer;
+import nz.co.sundar.testautomation.restfulbooker.utils.LatencyHistogram;
+import nz.co.sundar.testautomation.restfulbooker.utils.PhaseTimingHttpClient;
+import nz.co.sundar.testautomation.restfulbooker.utils.PhaseTimings;
+import nz.co.sundar.testautomation.restfulbooker.utils.PhaseTimings.Phase;
+import nz.co.sundar.testautomation.restfulbooker.utils.TokenPool.Credentials;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test class for per-request phase timings ({@link PhaseTimingHttpClient}): every request is recorded under its
+ * endpoint with the phases it went through, a slow server shows up in time to first byte and a slow body in the
+ * download, and a reused connection skips the connection phases.
+ *
+ * <p>These tests start the stand-in on a free loopback port and do not call the public Restful Booker API.</p>
+ */
+public class PhaseTimingTests {
+
+    private RestAssuredConfig config;
+    private PhaseTimings timings;
+
+    @BeforeAll
+    public static void warmUp() throws IOException {
+        // The first request through REST Assured is slow to set up.
+        try (StandInServer server = StandInServer.start("admin", "password123")) {
+            RestAssured.given().baseUri(server.getBaseUri()).get("/booking");
+        }
+    }
+
+    @BeforeEach
+    public void installClient() {
+        config = RestAssured.config();
+        timings = new PhaseTimings();
+        PhaseTimingHttpClient.install(timings);
+    }
+
+    @AfterEach
+    public void restoreClient() {
+        RestAssured.config = config;
+    }
+
+    private static Booking booking(String additionalneeds) {
+        return new Booking("Jim", "Brown", 111, true, new BookingDates("2026-01-01", "2026-01-02"), additionalneeds);
+    }
+
+    private static long millis(LatencyHistogram histogram, double percentile) {
+        return TimeUnit.NANOSECONDS.toMillis(histogram.getPercentileNanos(percentile));
+    }
+
+    /**
+     * Each endpoint gets its own histograms; over plain HTTP with a new connection per request, every request
+     * resolves, connects, writes, waits and downloads, and none does a TLS handshake.
+     */
+    @Test
+    public void recordsEveryPhasePerEndpoint() throws IOException {
+        try (StandInServer server = StandInServer.start("admin", "password123")) {
+            DirectBookingClient client = new DirectBookingClient(server.getBaseUri(),
+                    new Credentials("admin", "password123"));
+            int id = Integer.parseInt(client.createBooking(booking("Breakfast")).getString("bookingid"));
+            for (int i = 0; i < 3; i++) {
+                client.getBooking(id);
+            }
+            client.updateBooking(id, booking("Lunch"));
+            client.deleteBooking(id);
+        }
+
+        Assertions.assertEquals(
+                List.of("DELETE /booking/{id}", "GET /booking/{id}", "POST /auth", "POST /booking",
+                        "PUT /booking/{id}"),
+                timings.getEndpoints().stream().toList());
+        String endpoint = "GET /booking/{id}";
+        Assertions.assertEquals(3, timings.getRequests(endpoint));
+        Assertions.assertEquals(3, timings.getNewConnections(endpoint), timings.getSummary(endpoint));
+        for (Phase phase : new Phase[]{Phase.DNS, Phase.CONNECT, Phase.WRITE, Phase.TTFB, Phase.DOWNLOAD}) {
+            Assertions.assertEquals(3, timings.getHistogram(endpoint, phase).getCount(), phase.name());
+        }
+        Assertions.assertEquals(0, timings.getHistogram(endpoint, Phase.TLS).getCount());
+        String summary = timings.getSummary(endpoint);
+        Assertions.assertTrue(summary.startsWith("requests=3 new connections=3 (100%) p50/p99 dns"), summary);
+        Assertions.assertFalse(summary.contains("tls"), summary);
+
+        String[][] table = timings.getTable();
+        Assertions.assertEquals(6, table.length);
+        Assertions.assertEquals("TLS p50/p99", table[0][5]);
+        Assertions.assertEquals("-", table[2][5]);
+    }
+
+    /**
+     * A server that waits 100ms before answering shows up in time to first byte, a body written a few bytes at a
+     * time in the download, and neither in the connect.
+     */
+    @Test
+    public void separatesServerTimeFromConnectionAndTransfer() throws IOException {
+        try (StandInServer server = StandInServer.start("admin", "password123")) {
+            DirectBookingClient client = new DirectBookingClient(server.getBaseUri(),
+                    new Credentials("admin", "password123"));
+            int id = Integer.parseInt(client.createBooking(booking("Breakfast")).getString("bookingid"));
+            server.setFaults(FaultInjector.parse("GET /booking/* : latency=fixed(100ms) drip=16/10ms", 1));
+            for (int i = 0; i < 3; i++) {
+                client.getBooking(id);
+            }
+        }
+
+        String endpoint = "GET /booking/{id}";
+        String summary = timings.getSummary(endpoint);
+        Assertions.assertTrue(millis(timings.getHistogram(endpoint, Phase.TTFB), 50) >= 95, summary);
+        // The booking is over 100 bytes, so at least six more chunks 10ms apart.
+        Assertions.assertTrue(millis(timings.getHistogram(endpoint, Phase.DOWNLOAD), 50) >= 50, summary);
+        Assertions.assertTrue(millis(timings.getHistogram(endpoint, Phase.CONNECT), 99) < 50, summary);
+        Assertions.assertTrue(millis(timings.getHistogram("POST /booking", Phase.TTFB), 99) < 95,
+                timings.getSummary("POST /booking"));
+    }
+
+    /**
+     * When REST Assured reuses its client, later requests reuse its connection and record no connection phases.
+     */
+    @Test
+    public void reusedConnectionsSkipConnectionPhases() throws IOException {
+        RestAssured.config = RestAssured.config().httpClient(
+                RestAssured.config().getHttpClientConfig().reuseHttpClientInstance());
+        try (StandInServer server = StandInServer.start("admin", "password123")) {
+            DirectBookingClient client = new DirectBookingClient(server.getBaseUri(),
+                    new Credentials("admin", "password123"));
+            int id = Integer.parseInt(client.createBooking(booking("Breakfast")).getString("bookingid"));
+            for (int i = 0; i < 10; i++) {
+                client.getBooking(id);
+            }
+        }
+
+        String endpoint = "GET /booking/{id}";
+        Assertions.assertEquals(10, timings.getRequests(endpoint));
+        long connections = timings.getNewConnections(endpoint);
+        Assertions.assertTrue(connections < 10, timings.getSummary(endpoint));
+        Assertions.assertEquals(connections, timings.getHistogram(endpoint, Phase.CONNECT).getCount());
+        Assertions.assertEquals(10, timings.getHistogram(endpoint, Phase.TTFB).getCount());
+    }
+}
@@ -0,0 +1,250 @@
+package nz.co.sundar.testautomation.restfulbooker.tests;
+
+import io.restassured.http.ContentType;
+import io.restassured.response.Response;
+import io.restassured.specification.RequestSpecification;
+import nz.co.sundar.testautomation.restfulbooker.payloads.BookingPayloads;
+import nz.co.sundar.testautomation.restfulbooker.standin.FaultInjector;
+import nz.co.sundar.testautomation.restfulbooker.standin.StandInServer;
+import nz.co.sundar.testautomation.restfulbooker.utils.HedgingPolicy;
+import nz.co.sundar.testautomation.restfulbooker.utils.LatencyHistogram;
+import nz.co.sundar.testautomation.restfulbooker.utils.PolicyStats;
+import nz.co.sundar.testautomation.restfulbooker.utils.RetryBudget;
+import nz.co.sundar.testautomation.restfulbooker.utils.RetryPolicy;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.restassured.RestAssured.given;
+
+/**
+ * Test class for the client-side {@link RetryPolicy}, {@link HedgingPolicy} and {@link LatencyHistogram}, using
+ * the stand-in's fault injection to make the server slow or failing.
+ *
+ * <p>These tests start the stand-in on a free loopback port and do not call the public Restful Booker API.</p>
+ */
+public class RequestPolicyTests {
+
+    private static StandInServer server;
+
+    @BeforeAll
+    public static void startServer() throws IOException {
+        server = StandInServer.start("admin", "password123");
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        server.close();
+    }
+
+    @AfterEach
+    public void clearFaults() {
+        server.setFaults(null);
+    }
+
+    private static RequestSpecification request() {
+        return given().baseUri(server.getBaseUri()).contentType(ContentType.JSON);
+    }
+
+    private static int createBooking() {
+        return request().body(BookingPayloads.createBookingPayload("Jim", "Brown", 111, true,
+                "2023-01-01", "2023-01-05", "Breakfast")).post("/booking").jsonPath().getInt("bookingid");
+    }
+
+    private static String token() {
+        return request().body("{\"username\":\"admin\",\"password\":\"password123\"}")
+                .post("/auth").jsonPath().getString("token");
+    }
+
+    /**
+     * Percentiles are within the histogram's bucket resolution of the exact values.
+     */
+    @Test
+    public void histogramPercentilesAreAccurate() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Random random = new Random(37);
+        long[] samples = new long[100_000];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (long) (Math.exp(Math.log(2_000_000) + random.nextGaussian()) + 1_000);
+            histogram.recordNanos(samples[i]);
+        }
+        Arrays.sort(samples);
+
+        Assertions.assertEquals(samples.length, histogram.getCount());
+        for (double percentile : new double[]{50, 90, 95, 99, 99.9}) {
+            long exact = samples[(int) Math.ceil(percentile / 100 * samples.length) - 1];
+            long reported = histogram.getPercentileNanos(percentile);
+            Assertions.assertTrue(reported >= exact - 1_000 && reported <= exact * 1.07,
+                    "p" + percentile + " exact " + exact + " reported " + reported);
+        }
+        Assertions.assertEquals(samples[samples.length - 1] / 1_000 * 1_000, histogram.getMaxNanos());
+    }
+
+    /**
+     * Statuses and exceptions are classified as documented, and backoff stays under its ceiling.
+     */
+    @Test
+    public void classificationAndBackoff() {
+        RetryPolicy idempotent = new RetryPolicy("Classification test", 3, 100, 300, Set.of(503), true,
+                new RetryBudget(0.2, 10));
+        RetryPolicy nonIdempotent = new RetryPolicy("Classification test", 3, 100, 300, Set.of(503), false,
+                new RetryBudget(0.2, 10));
+
+        Assertions.assertTrue(idempotent.isRetryable(503));
+        Assertions.assertFalse(idempotent.isRetryable(405));
+        Assertions.assertTrue(nonIdempotent.isRetryable(new ConnectException("refused")));
+        Assertions.assertTrue(nonIdempotent.isRetryable(new IllegalStateException(new ConnectException("refused"))));
+        Assertions.assertTrue(idempotent.isRetryable(new SocketException("Connection reset")));
+        Assertions.assertFalse(nonIdempotent.isRetryable(new SocketException("Connection reset")));
+        Assertions.assertFalse(idempotent.isRetryable(new IllegalArgumentException("bad request")));
+
+        for (int i = 0; i < 1_000; i++) {
+            Assertions.assertTrue(idempotent.backoffMillis(1) <= 100);
+            Assertions.assertTrue(idempotent.backoffMillis(2) <= 200);
+            Assertions.assertTrue(idempotent.backoffMillis(10) <= 300);
+        }
+    }
+
+    /**
+     * Transient 503s are retried until they succeed, and the budget stops retries once most calls fail.
+     */
+    @Test
+    public void retriesRecoverFromTransientErrorsWithinBudget() {
+        int id = createBooking();
+        RetryPolicy policy = new RetryPolicy("Retry test 503", 4, 1, 5, Set.of(503), true, new RetryBudget(0.5, 5));
+        server.setFaults(FaultInjector.parse("GET /booking/* : error503=0.3", 3));
+        int ok = 0;
+        for (int i = 0; i < 200; i++) {
+            if (policy.execute(() -> request().get("/booking/" + id)).getStatusCode() == 200) {
+                ok++;
+            }
+        }
+        Assertions.assertTrue(ok >= 195, ok + " of 200 calls succeeded");
+
+        RetryBudget budget = new RetryBudget(0.1, 5);
+        RetryPolicy limited = new RetryPolicy("Retry test budget", 5, 0, 0, Set.of(503), true, budget);
+        server.setFaults(FaultInjector.parse("GET /booking/* : error503=1", 3));
+        for (int i = 0; i < 100; i++) {
+            Assertions.assertEquals(503, limited.execute(() -> request().get("/booking/" + id)).getStatusCode());
+        }
+        long retries = limited.getStats().getExtraRequests();
+        Assertions.assertTrue(retries <= 5 + 5 * 0.1 + 100 * 0.1, retries + " retries for 100 failing calls");
+        Assertions.assertTrue(retries >= 10, retries + " retries for 100 failing calls");
+    }
+
+    /**
+     * An expired token is refreshed before the retry, as {@code BookingUtils} does for updates and deletes. Under
+     * seed 11 the first two deletes expire their token.
+     */
+    @Test
+    public void forbiddenIsRetriedWithAFreshToken() {
+        int id = createBooking();
+        RetryPolicy policy = new RetryPolicy("Retry test 403", 3, 0, 0, Set.of(403), false, new RetryBudget(0.2, 10));
+        String[] token = {token()};
+        server.setFaults(FaultInjector.parse("DELETE /booking/* : expire=0.5", 11));
+
+        Response response = policy.execute(() -> request().cookie("token", token[0]).delete("/booking/" + id),
+                failed -> token[0] = token());
+
+        Assertions.assertEquals(201, response.getStatusCode());
+        Assertions.assertEquals(2, policy.getStats().getExtraRequests());
+    }
+
+    /**
+     * With one request in twenty taking 300-400 ms, hedging at the p90 cuts the p99 for a few percent extra
+     * requests, and the report summary shows both.
+     */
+    @Test
+    public void hedgingCutsTailLatency() {
+        int id = createBooking();
+        server.setFaults(FaultInjector.parse("GET /booking/* : latency=histogram(2ms:95,300ms:0,400ms:5)", 11));
+        HedgingPolicy policy = new HedgingPolicy("Hedge test", true, 90, 20, 5);
+
+        for (int i = 0; i < 500; i++) {
+            Assertions.assertEquals(200, policy.execute(() -> request().get("/booking/" + id)).getStatusCode());
+        }
+        PolicyStats stats = policy.getStats();
+        awaitCalls(stats, 500);
+        long baselineP99 = stats.getBaseline().getPercentileNanos(99);
+        long effectiveP99 = stats.getEffective().getPercentileNanos(99);
+        Assertions.assertTrue(baselineP99 > 300_000_000L, stats.getSummary());
+        Assertions.assertTrue(effectiveP99 < baselineP99 / 2, stats.getSummary());
+        Assertions.assertTrue(stats.getExtraRequests() > 0, stats.getSummary());
+        Assertions.assertTrue(stats.getExtraRequests() < 0.15 * stats.getCalls(), stats.getSummary());
+        Assertions.assertTrue(PolicyStats.all().contains(stats));
+    }
+
+    /**
+     * A slow first copy that fails, or answers {@code 503}, is beaten by the hedge; a fast failure is not hedged
+     * and reaches the caller.
+     */
+    @Test
+    public void hedgeAnswersSlowFailures() {
+        int id = createBooking();
+        HedgingPolicy policy = new HedgingPolicy("Hedge rescue test", true, 90, 20, 5);
+        for (int i = 0; i < 20; i++) {
+            policy.execute(() -> request().get("/booking/" + id));
+        }
+
+        AtomicInteger copies = new AtomicInteger();
+        Response response = policy.execute(() -> {
+            if (copies.incrementAndGet() == 1) {
+                sleep(300);
+                throw new IllegalStateException("Connection reset");
+            }
+            return request().get("/booking/" + id);
+        });
+        Assertions.assertEquals(200, response.getStatusCode());
+        Assertions.assertEquals(2, copies.get());
+        awaitCalls(policy.getStats(), 21);
+        Assertions.assertEquals(1, policy.getStats().getExtraRequests(), policy.getStats().getSummary());
+
+        server.setFaults(FaultInjector.parse("GET /booking/* : latency=fixed(300ms) error503=1", 1));
+        copies.set(0);
+        long start = System.nanoTime();
+        response = policy.execute(() -> copies.incrementAndGet() == 1
+                ? request().get("/booking/" + id) : request().get("/ping"));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        Assertions.assertEquals(201, response.getStatusCode());
+        Assertions.assertTrue(elapsedMillis < 250, "took " + elapsedMillis + "ms");
+        awaitCalls(policy.getStats(), 22);
+        Assertions.assertEquals(2, policy.getStats().getExtraRequests(), policy.getStats().getSummary());
+
+        IllegalStateException failure = Assertions.assertThrows(IllegalStateException.class,
+                () -> policy.execute(() -> {
+                    throw new IllegalStateException("Refused");
+                }));
+        Assertions.assertEquals("Refused", failure.getMessage());
+        Assertions.assertEquals(2, policy.getStats().getExtraRequests(), policy.getStats().getSummary());
+    }
+
+    /**
+     * Waits for the stats of calls that the hedge won, which are recorded once their slow first copy finishes.
+     */
+    private static void awaitCalls(PolicyStats stats, long calls) {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (stats.getCalls() < calls && System.nanoTime() < deadline) {
+            sleep(10);
+        }
+        Assertions.assertEquals(calls, stats.getCalls(), stats.getSummary());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package nz.co.sundar.testautomation.restfulbooker.tests;
+
+import nz.co.sundar.testautomation.restfulbooker.utils.ResponseSchema;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Test class for the streaming {@link ResponseSchema} validation used by {@code AssertionsUtils.assertMatchesSchema}.
+ *
+ * <p>These tests run without the Restful Booker API; they validate sample response bodies.</p>
+ */
+public class ResponseSchemaTests {
+
+    private static final String VALID_BOOKING = """
+            {"firstname":"Jim","lastname":"Brown","totalprice":111,"depositpaid":true,
+             "bookingdates":{"checkin":"2023-01-01","checkout":"2024-02-29"},"additionalneeds":"Breakfast"}""";
+
+    private static List<String> validate(ResponseSchema schema, String json) {
+        return schema.validate(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Valid create, get and auth responses have no violations.
+     */
+    @Test
+    public void validResponsesMatch() {
+        Assertions.assertEquals(List.of(), validate(ResponseSchema.BOOKING, VALID_BOOKING));
+        Assertions.assertEquals(List.of(), validate(ResponseSchema.BOOKING_RESPONSE,
+                "{\"bookingid\":42,\"booking\":" + VALID_BOOKING + "}"));
+        Assertions.assertEquals(List.of(), validate(ResponseSchema.AUTH_TOKEN, "{\"token\":\"abc123\"}"));
+    }
+
+    /**
+     * The response of an invalid create request (string price and dates) is flagged field by field.
+     */
+    @Test
+    public void invalidTypesAndDatesAreReported() {
+        String invalid = """
+                {"bookingid":7,"booking":{"firstname":"John","lastname":"Doe","totalprice":null,"depositpaid":true,
+                 "bookingdates":{"checkin":"0NaN-aN-aN","checkout":"2023-02-30"},"additionalneeds":"Breakfast"}}""";
+
+        Assertions.assertEquals(List.of(
+                "Booking.totalprice: expected integer but was null",
+                "BookingDates.checkin: expected a yyyy-MM-dd date but was \"0NaN-aN-aN\"",
+                "BookingDates.checkout: expected a yyyy-MM-dd date but was \"2023-02-30\""),
+                validate(ResponseSchema.BOOKING_RESPONSE, invalid));
+    }
+
+    /**
+     * Missing required fields and undeclared fields are both reported; optional fields may be absent.
+     */
+    @Test
+    public void missingAndUnexpectedFieldsAreReported() {
+        String json = """
+                {"firstname":"Jim","totalprice":111,"depositpaid":false,"bookingdates":{"checkin":"2023-01-01",
+                 "checkout":"2023-01-02"},"extra":{"nested":[1,2]}}""";
+
+        Assertions.assertEquals(List.of(
+                "Booking.extra: unexpected field",
+                "Booking.lastname: required field is missing"),
+                validate(ResponseSchema.BOOKING, json));
+    }
+
+    /**
+     * Bodies that are not JSON objects, such as the plain text error responses, are rejected.
+     */
+    @Test
+    public void nonObjectBodiesAreRejected() {
+        Assertions.assertEquals(1, validate(ResponseSchema.BOOKING, "[]").size());
+        Assertions.assertTrue(validate(ResponseSchema.AUTH_TOKEN, "Not Found").get(0).startsWith("AuthToken: malformed JSON"));
+    }
+}
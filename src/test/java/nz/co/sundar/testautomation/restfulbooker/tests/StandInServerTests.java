@@ -0,0 +1,247 @@
+package nz.co.sundar.testautomation.restfulbooker.tests;
+
+import io.restassured.http.ContentType;
+import io.restassured.path.json.JsonPath;
+import io.restassured.response.Response;
+import io.restassured.specification.RequestSpecification;
+import nz.co.sundar.testautomation.restfulbooker.payloads.BookingPayloads;
+import nz.co.sundar.testautomation.restfulbooker.standin.BookingHandler;
+import nz.co.sundar.testautomation.restfulbooker.standin.HttpRequest;
+import nz.co.sundar.testautomation.restfulbooker.standin.HttpResponse;
+import nz.co.sundar.testautomation.restfulbooker.standin.StandInServer;
+import nz.co.sundar.testautomation.restfulbooker.standin.StripedBookingStore;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.MatchResult;
+import java.util.regex.Pattern;
+
+import static io.restassured.RestAssured.given;
+
+/**
+ * Test class for the local {@link StandInServer}, checking that it answers with the responses the API tests
+ * assert on.
+ *
+ * <p>These tests start the stand-in on a free loopback port and do not call the public Restful Booker API.</p>
+ */
+public class StandInServerTests {
+
+    private static final String USERNAME = "admin";
+    private static final String PASSWORD = "password123";
+
+    private static final Pattern STATUS_LINE = Pattern.compile("HTTP/1\\.1 \\d{3} [A-Za-z ]+?(?=\\r\\n)");
+
+    private static StandInServer server;
+
+    @BeforeAll
+    public static void startServer() throws IOException {
+        server = StandInServer.start(USERNAME, PASSWORD);
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        server.close();
+    }
+
+    private static RequestSpecification request() {
+        return given().baseUri(server.getBaseUri()).contentType(ContentType.JSON);
+    }
+
+    private static int createBooking() {
+        String payload = BookingPayloads.createBookingPayload("Jim", "Brown", 111, true,
+                "2023-01-01", "2023-01-05", "Breakfast");
+        return request().body(payload).post("/booking").jsonPath().getInt("bookingid");
+    }
+
+    private static String token() {
+        return request().body("{\"username\":\"" + USERNAME + "\",\"password\":\"" + PASSWORD + "\"}")
+                .post("/auth").jsonPath().getString("token");
+    }
+
+    /**
+     * A created booking is returned with its id and can be read back.
+     */
+    @Test
+    public void createAndGetBooking() {
+        String payload = BookingPayloads.createBookingPayload("Jim", "Brown", 111, true,
+                "2023-01-01", "2023-01-05", "Breakfast");
+        Response created = request().body(payload).post("/booking");
+
+        Assertions.assertEquals(200, created.getStatusCode());
+        int id = created.jsonPath().getInt("bookingid");
+        Assertions.assertTrue(id > 0);
+        Assertions.assertEquals("Jim", created.jsonPath().getString("booking.firstname"));
+        Assertions.assertEquals(111, created.jsonPath().getInt("booking.totalprice"));
+        Assertions.assertEquals("2023-01-05", created.jsonPath().getString("booking.bookingdates.checkout"));
+
+        Response fetched = request().get("/booking/" + id);
+        Assertions.assertEquals(200, fetched.getStatusCode());
+        Assertions.assertEquals("Brown", fetched.jsonPath().getString("lastname"));
+        Assertions.assertTrue(fetched.jsonPath().getBoolean("depositpaid"));
+        Assertions.assertEquals("Breakfast", fetched.jsonPath().getString("additionalneeds"));
+
+        Assertions.assertTrue(request().get("/booking").jsonPath().getList("bookingid", Integer.class).contains(id));
+    }
+
+    /**
+     * Missing names give 500 and invalid values are coerced the way the public API does.
+     */
+    @Test
+    public void invalidCreatePayloads() {
+        Response missingName = request().body(BookingPayloads.createBookingPayload(null, "Brown", 1, true,
+                "2023-01-01", "2023-01-05", null)).post("/booking");
+        Assertions.assertEquals(500, missingName.getStatusCode());
+        Assertions.assertEquals("Internal Server Error", missingName.asString());
+
+        Response coerced = request().body(BookingPayloads.createInvalidBookingPayload("John", "Doe", "abc", "yes",
+                "2023-13-45", "2023-01-05", "Breakfast")).post("/booking");
+        Assertions.assertEquals(200, coerced.getStatusCode());
+        Assertions.assertNull(coerced.jsonPath().get("booking.totalprice"));
+        Assertions.assertTrue(coerced.jsonPath().getBoolean("booking.depositpaid"));
+        Assertions.assertEquals("0NaN-aN-aN", coerced.jsonPath().getString("booking.bookingdates.checkin"));
+    }
+
+    /**
+     * Error responses for unknown ids, empty ids and unauthorised writes.
+     */
+    @Test
+    public void errorResponses() {
+        Assertions.assertEquals(404, request().get("/booking/999999").getStatusCode());
+        Assertions.assertEquals("Not Found", request().get("/booking/999999").asString());
+        Assertions.assertEquals(404, request().delete("/booking/").getStatusCode());
+
+        int id = createBooking();
+        Response forbidden = request().body("{}").put("/booking/" + id);
+        Assertions.assertEquals(403, forbidden.getStatusCode());
+        Assertions.assertEquals("Forbidden", forbidden.asString());
+        Assertions.assertEquals(403, request().cookie("token", "invalid").delete("/booking/" + id).getStatusCode());
+
+        Assertions.assertEquals(405, request().cookie("token", token()).delete("/booking/999999").getStatusCode());
+        Assertions.assertEquals(405, request().cookie("token", token()).delete("/booking/abc").getStatusCode());
+    }
+
+    /**
+     * Tokens from {@code /auth} authorise updates and deletes; bad credentials give a reason with status 200.
+     */
+    @Test
+    public void authorisedUpdateAndDelete() {
+        Response badCredentials = request().body("{\"username\":\"admin\",\"password\":\"wrong\"}").post("/auth");
+        Assertions.assertEquals(200, badCredentials.getStatusCode());
+        Assertions.assertEquals("Bad credentials", badCredentials.jsonPath().getString("reason"));
+
+        int id = createBooking();
+        String token = token();
+        String update = BookingPayloads.createBookingPayload("James", "Brown", 222, false,
+                "2024-01-01", "2024-01-05", null);
+        Response updated = request().cookie("token", token).body(update).put("/booking/" + id);
+        Assertions.assertEquals(200, updated.getStatusCode());
+        Assertions.assertEquals("James", updated.jsonPath().getString("firstname"));
+        Assertions.assertEquals("James", request().get("/booking/" + id).jsonPath().getString("firstname"));
+
+        Response deleted = request().auth().preemptive().basic(USERNAME, PASSWORD).delete("/booking/" + id);
+        Assertions.assertEquals(201, deleted.getStatusCode());
+        Assertions.assertEquals("Created", deleted.asString());
+        Assertions.assertEquals(404, request().get("/booking/" + id).getStatusCode());
+    }
+
+    /**
+     * Issuing more tokens than the handler keeps forgets the oldest first, so a load of logins cannot grow the
+     * token set without bound.
+     */
+    @Test
+    public void oldestTokensAreForgottenBeyondTheCap() {
+        BookingHandler handler = new BookingHandler(new StripedBookingStore(), USERNAME, PASSWORD, 2);
+        HttpRequest auth = new HttpRequest("POST", "/auth", null, null, null,
+                ("{\"username\":\"" + USERNAME + "\",\"password\":\"" + PASSWORD + "\"}")
+                        .getBytes(StandardCharsets.UTF_8));
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            HttpResponse response = handler.handle(auth);
+            byte[] encoded = response.getEncoded();
+            String body = new String(encoded, response.getBodyOffset(), encoded.length - response.getBodyOffset(),
+                    StandardCharsets.UTF_8);
+            tokens.add(JsonPath.from(body).getString("token"));
+        }
+
+        // Deleting an unknown id answers 403 without a valid token and 405 with one.
+        List<Integer> statuses = tokens.stream().map(token -> handler.handle(new HttpRequest("DELETE",
+                "/booking/999999", null, "token=" + token, null, new byte[0])).getStatus()).toList();
+        Assertions.assertEquals(List.of(403, 405, 405), statuses);
+    }
+
+    /**
+     * {@code GET /booking} applies name and date filters from the query string.
+     */
+    @Test
+    public void filteredBookingIds() {
+        String firstname = "Filtered" + System.nanoTime();
+        int id = request().body(BookingPayloads.createBookingPayload(firstname, "Brown", 111, true,
+                "2023-03-01", "2023-03-05", null)).post("/booking").jsonPath().getInt("bookingid");
+
+        Response byName = request().queryParam("firstname", firstname).queryParam("lastname", "Brown").get("/booking");
+        Assertions.assertEquals(200, byName.getStatusCode());
+        Assertions.assertEquals(List.of(id), byName.jsonPath().getList("bookingid", Integer.class));
+        Assertions.assertEquals(List.of(id), request().queryParam("firstname", firstname)
+                .queryParam("checkin", "2023-03-01").queryParam("checkout", "2023-03-05")
+                .get("/booking").jsonPath().getList("bookingid", Integer.class));
+        Assertions.assertEquals(List.of(), request().queryParam("firstname", firstname)
+                .queryParam("checkin", "2023-03-02").get("/booking").jsonPath().getList("bookingid", Integer.class));
+        Assertions.assertEquals(500, request().queryParam("checkin", "soon").get("/booking").getStatusCode());
+    }
+
+    /**
+     * Pipelined requests on one connection are all answered in order.
+     */
+    @Test
+    public void pipelinedRequestsAreAnsweredInOrder() throws IOException {
+        int id = createBooking();
+        String get = "GET /booking/" + id + " HTTP/1.1\r\nHost: localhost\r\n\r\n";
+        String missing = "GET /booking/999999 HTTP/1.1\r\nHost: localhost\r\n\r\n";
+        String ping = "GET /ping HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n";
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            OutputStream out = socket.getOutputStream();
+            out.write((get + missing + get + ping).getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            InputStream in = socket.getInputStream();
+            String responses = new String(in.readAllBytes(), StandardCharsets.US_ASCII);
+
+            String[] statusLines = STATUS_LINE.matcher(responses).results().map(MatchResult::group)
+                    .toArray(String[]::new);
+            Assertions.assertArrayEquals(new String[]{"HTTP/1.1 200 OK", "HTTP/1.1 404 Not Found",
+                    "HTTP/1.1 200 OK", "HTTP/1.1 201 Created"}, statusLines);
+        }
+    }
+
+    /**
+     * A request line followed directly by the blank line, with no headers at all, is a valid request; an
+     * HTTP/1.0 one closes the connection after its response.
+     */
+    @Test
+    public void requestsWithoutHeadersAreAnswered() throws IOException {
+        String missing = "GET /booking/999999 HTTP/1.1\r\n\r\n";
+        String ping = "GET /ping HTTP/1.0\r\n\r\n";
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            OutputStream out = socket.getOutputStream();
+            out.write((missing + ping).getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            String responses = new String(socket.getInputStream().readAllBytes(), StandardCharsets.US_ASCII);
+
+            String[] statusLines = STATUS_LINE.matcher(responses).results().map(MatchResult::group)
+                    .toArray(String[]::new);
+            Assertions.assertArrayEquals(new String[]{"HTTP/1.1 404 Not Found", "HTTP/1.1 201 Created"},
+                    statusLines, responses);
+        }
+    }
+}
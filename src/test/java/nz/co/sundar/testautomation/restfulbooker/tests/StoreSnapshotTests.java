@@ -0,0 +1,229 @@
+package nz.co.sundar.testautomation.restfulbooker.tests;
+
+import io.restassured.http.ContentType;
+import io.restassured.specification.RequestSpecification;
+import nz.co.sundar.testautomation.restfulbooker.standin.BookingHandler;
+import nz.co.sundar.testautomation.restfulbooker.standin.BookingQuery;
+import nz.co.sundar.testautomation.restfulbooker.standin.HttpRequest;
+import nz.co.sundar.testautomation.restfulbooker.standin.PersistentBookingStore;
+import nz.co.sundar.testautomation.restfulbooker.standin.SnapshottableStore;
+import nz.co.sundar.testautomation.restfulbooker.standin.StandInServer;
+import nz.co.sundar.testautomation.restfulbooker.standin.StoredBooking;
+import nz.co.sundar.testautomation.restfulbooker.standin.StripedBookingStore;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static io.restassured.RestAssured.given;
+
+/**
+ * Test class for named copy-on-write snapshots of the stand-in's {@link StripedBookingStore}.
+ *
+ * <p>These tests run without the Restful Booker API.</p>
+ */
+public class StoreSnapshotTests {
+
+    private static StoredBooking booking(CSVRecord record) {
+        return new StoredBooking(record.get("firstname"), record.get("lastname"),
+                Integer.parseInt(record.get("totalprice")), Boolean.parseBoolean(record.get("depositpaid")),
+                record.get("checkin"), record.get("checkout"), record.get("additionalneeds"));
+    }
+
+    /**
+     * Loads the first four rows of {@code create_booking.csv} plus a fifth booking that is deleted again, the
+     * starting point {@code deleteBookingTwiceTest} needs.
+     *
+     * @return the id of the deleted booking
+     */
+    private static int loadCsvDataset(StripedBookingStore store) throws IOException {
+        try (Reader reader = Files.newBufferedReader(Paths.get("src/test/resources/csv/create_booking.csv"))) {
+            List<CSVRecord> records = CSVFormat.DEFAULT.builder().setHeader().setSkipHeaderRecord(true).build()
+                    .parse(reader).getRecords();
+            for (CSVRecord record : records.subList(0, 4)) {
+                store.create(booking(record));
+            }
+            int deleted = store.create(booking(records.get(4)));
+            store.delete(deleted);
+            return deleted;
+        }
+    }
+
+    private static TreeMap<Integer, String> contents(StripedBookingStore store) {
+        TreeMap<Integer, String> contents = new TreeMap<>();
+        for (int id : store.ids()) {
+            contents.put(id, store.get(id).toString());
+        }
+        return contents;
+    }
+
+    /**
+     * A restored snapshot has the same bookings, the same next id and an index that answers filtered queries
+     * for the restored bookings only.
+     */
+    @Test
+    public void restoreReturnsToCsvDataset() throws IOException {
+        StripedBookingStore store = new StripedBookingStore(4);
+        int deletedId = loadCsvDataset(store);
+        store.snapshot("csv");
+        TreeMap<Integer, String> expected = contents(store);
+
+        Assertions.assertTrue(store.delete(1));
+        Assertions.assertTrue(store.update(2, new StoredBooking("Changed", "Name", 1, true,
+                "2030-01-01", "2030-01-02", null)));
+        int created = store.create(new StoredBooking("Extra", "Guest", 1, true, "2030-01-01", "2030-01-02", null));
+        Assertions.assertEquals(deletedId + 1, created);
+
+        for (int round = 0; round < 2; round++) {
+            Assertions.assertTrue(store.restore("csv"));
+            Assertions.assertEquals(expected, contents(store));
+            Assertions.assertNull(store.get(deletedId));
+            Assertions.assertFalse(store.delete(deletedId), "Deleting the deleted id again must fail");
+            Assertions.assertArrayEquals(new int[]{1, 3}, store.query(new BookingQuery("sundar", null, null, null)));
+            Assertions.assertArrayEquals(new int[0], store.query(new BookingQuery("Changed", null, null, null)));
+            Assertions.assertArrayEquals(new int[0], store.query(new BookingQuery("Extra", null, null, null)));
+            Assertions.assertEquals(created, store.create(new StoredBooking("Extra", "Guest", 1, true,
+                    "2030-01-01", "2030-01-02", null)), "Ids continue from the snapshot");
+        }
+
+        Assertions.assertFalse(store.restore("missing"));
+        Assertions.assertEquals(Set.of("csv"), store.getSnapshotNames());
+        Assertions.assertTrue(store.deleteSnapshot("csv"));
+        Assertions.assertFalse(store.restore("csv"));
+    }
+
+    /**
+     * Several snapshots taken between random writes each restore to exactly what they recorded, and the index
+     * agrees with a scan after every restore.
+     */
+    @Test
+    public void interleavedSnapshotsMatchReferenceMaps() {
+        StripedBookingStore store = new StripedBookingStore(8);
+        Random random = new Random(35);
+        String[] names = {"Jim", "Sally", "Mark", "Eric"};
+        Map<String, TreeMap<Integer, String>> recorded = new HashMap<>();
+        List<Integer> live = new ArrayList<>();
+
+        for (int round = 0; round < 200; round++) {
+            for (int i = 0; i < 50; i++) {
+                StoredBooking booking = new StoredBooking(names[random.nextInt(names.length)], "Brown",
+                        random.nextInt(500), true, "2023-01-0" + (1 + random.nextInt(9)), "2023-02-01", null);
+                int op = random.nextInt(10);
+                if (op < 5 || live.isEmpty()) {
+                    live.add(store.create(booking));
+                } else if (op < 8) {
+                    store.update(live.get(random.nextInt(live.size())), booking);
+                } else {
+                    store.delete(live.remove(random.nextInt(live.size())));
+                }
+            }
+            String name = "s" + random.nextInt(5);
+            if (random.nextBoolean() || !recorded.containsKey(name)) {
+                store.snapshot(name);
+                recorded.put(name, contents(store));
+            } else {
+                Assertions.assertTrue(store.restore(name));
+                Assertions.assertEquals(recorded.get(name), contents(store), name);
+                live = new ArrayList<>(recorded.get(name).keySet());
+                for (String firstname : names) {
+                    BookingQuery query = new BookingQuery(firstname, null, "2023-01-05", null);
+                    int[] scanned = recorded.get(name).keySet().stream().mapToInt(Integer::intValue)
+                            .filter(id -> query.matches(store.get(id))).toArray();
+                    Assertions.assertArrayEquals(scanned, store.query(query), name + " " + firstname);
+                }
+            }
+        }
+    }
+
+    /**
+     * Taking a snapshot does not copy bookings, and restoring after a few writes only touches the stripes that
+     * changed, so both stay fast with a large dataset.
+     */
+    @Test
+    public void snapshotAndRestoreDoNotCopyTheDataset() {
+        StripedBookingStore store = new StripedBookingStore(256);
+        StandInServer.seed(store, 500_000);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            store.snapshot("base");
+        }
+        double snapshotMillis = (System.nanoTime() - start) / 1_000_000.0 / 100;
+
+        start = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            store.update(1 + i, new StoredBooking("Changed", "Brown", 1, true, "2023-01-01", "2023-01-02", null));
+            store.restore("base");
+        }
+        double restoreMillis = (System.nanoTime() - start) / 1_000_000.0 / 100;
+
+        Assertions.assertEquals(500_000, store.size());
+        Assertions.assertEquals("Jim", store.get(1).getFirstname());
+        Assertions.assertTrue(snapshotMillis < 1.0, "Average snapshot time " + snapshotMillis + " ms");
+        Assertions.assertTrue(restoreMillis < 5.0, "Average write and restore time " + restoreMillis + " ms");
+    }
+
+    private static RequestSpecification request(StandInServer server) {
+        return given().baseUri(server.getBaseUri()).contentType(ContentType.JSON);
+    }
+
+    /**
+     * The control endpoints take, list, restore and delete snapshots over HTTP.
+     */
+    @Test
+    public void snapshotControlEndpoints() throws IOException {
+        try (StandInServer server = StandInServer.start("admin", "password123")) {
+            StripedBookingStore store = (StripedBookingStore) server.getHandler().getStore();
+            int deletedId = loadCsvDataset(store);
+
+            Assertions.assertEquals(200, request(server).put("/standin/snapshots/csv").getStatusCode());
+            Assertions.assertEquals(List.of("csv"), request(server).get("/standin/snapshots")
+                    .jsonPath().getList("snapshots", String.class));
+
+            Assertions.assertEquals(201, request(server).auth().preemptive().basic("admin", "password123")
+                    .delete("/booking/1").getStatusCode());
+            Assertions.assertEquals(404, request(server).get("/booking/1").getStatusCode());
+
+            Assertions.assertEquals(4, request(server).post("/standin/snapshots/csv/restore")
+                    .jsonPath().getInt("bookings"));
+            Assertions.assertEquals("sundar", request(server).get("/booking/1").jsonPath().getString("firstname"));
+            Assertions.assertEquals(405, request(server).auth().preemptive().basic("admin", "password123")
+                    .delete("/booking/" + deletedId).getStatusCode());
+
+            Assertions.assertEquals(404, request(server).post("/standin/snapshots/other/restore").getStatusCode());
+            Assertions.assertEquals(400, request(server).put("/standin/snapshots/bad name").getStatusCode());
+            Assertions.assertEquals(201, request(server).delete("/standin/snapshots/csv").getStatusCode());
+            Assertions.assertEquals(404, request(server).delete("/standin/snapshots/csv").getStatusCode());
+        }
+    }
+
+    /**
+     * Stores that are not a {@link SnapshottableStore} answer every control endpoint with {@code 501}.
+     */
+    @Test
+    public void unsupportedStoresAnswerNotImplemented(@TempDir Path directory) throws IOException {
+        try (PersistentBookingStore store = PersistentBookingStore.open(directory,
+                new PersistentBookingStore.Options().segmentBytes(64 * 1024))) {
+            BookingHandler handler = new BookingHandler(store, "admin", "password123");
+            HttpRequest snapshot = new HttpRequest("PUT", "/standin/snapshots/csv", null, null, null, new byte[0]);
+            HttpRequest list = new HttpRequest("GET", "/standin/snapshots", null, null, null, new byte[0]);
+
+            Assertions.assertEquals(501, handler.handle(snapshot).getStatus());
+            Assertions.assertEquals(501, handler.handle(list).getStatus());
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package nz.co.sundar.testautomation.restfulbooker.tests;
+
+import nz.co.sundar.testautomation.restfulbooker.standin.ContentionStats;
+import nz.co.sundar.testautomation.restfulbooker.standin.StoredBooking;
+import nz.co.sundar.testautomation.restfulbooker.standin.StripedBookingStore;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Test class for the stand-in server's {@link StripedBookingStore}.
+ *
+ * <p>These tests run without the Restful Booker API.</p>
+ */
+public class StripedBookingStoreTests {
+
+    private static StoredBooking booking(String firstname, int price) {
+        return new StoredBooking(firstname, "Brown", price, true, "2023-01-01", "2023-01-05", null);
+    }
+
+    /**
+     * Random creates, updates and deletes give the same contents as a reference map, including after tables grow
+     * and deletions shift colliding entries back.
+     */
+    @Test
+    public void randomOperationsMatchReferenceMap() {
+        for (int stripeCount : new int[]{1, 4, 64}) {
+            StripedBookingStore store = new StripedBookingStore(stripeCount);
+            TreeMap<Integer, StoredBooking> reference = new TreeMap<>();
+            List<Integer> live = new ArrayList<>();
+            Random random = new Random(stripeCount);
+
+            for (int i = 0; i < 20_000; i++) {
+                int op = random.nextInt(10);
+                if (op < 5 || live.isEmpty()) {
+                    StoredBooking booking = booking("Jim", i);
+                    int id = store.create(booking);
+                    reference.put(id, booking);
+                    live.add(id);
+                } else if (op < 7) {
+                    int id = live.get(random.nextInt(live.size()));
+                    StoredBooking booking = booking("James", i);
+                    Assertions.assertTrue(store.update(id, booking));
+                    reference.put(id, booking);
+                } else {
+                    int id = live.remove(random.nextInt(live.size()));
+                    Assertions.assertTrue(store.delete(id));
+                    Assertions.assertFalse(store.delete(id));
+                    reference.remove(id);
+                }
+            }
+
+            Assertions.assertEquals(reference.size(), store.size());
+            Assertions.assertArrayEquals(reference.keySet().stream().mapToInt(Integer::intValue).toArray(), store.ids());
+            for (int id = 1; id <= reference.lastKey(); id++) {
+                Assertions.assertSame(reference.get(id), store.get(id), "Booking " + id);
+            }
+            Assertions.assertNull(store.get(0));
+            Assertions.assertNull(store.get(-1));
+            Assertions.assertFalse(store.update(Integer.MAX_VALUE, booking("Jim", 1)));
+        }
+    }
+
+    /**
+     * Concurrent writers each updating their own bookings keep every last write, and every write is counted in the
+     * contention statistics.
+     */
+    @Test
+    public void concurrentWritersKeepTheirLastWrite() throws Exception {
+        StripedBookingStore store = new StripedBookingStore(8);
+        int threads = 8;
+        int bookingsPerThread = 500;
+        int updatesPerBooking = 5;
+        ContentionStats before = store.getContention();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Map<Integer, StoredBooking>>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                String name = "Writer" + t;
+                results.add(executor.submit(() -> {
+                    Map<Integer, StoredBooking> written = new TreeMap<>();
+                    for (int i = 0; i < bookingsPerThread; i++) {
+                        int id = store.create(booking(name, 0));
+                        for (int u = 1; u <= updatesPerBooking; u++) {
+                            StoredBooking booking = booking(name, u);
+                            store.update(id, booking);
+                            written.put(id, booking);
+                        }
+                        Assertions.assertNotNull(store.get(id));
+                    }
+                    return written;
+                }));
+            }
+            for (Future<Map<Integer, StoredBooking>> result : results) {
+                for (Map.Entry<Integer, StoredBooking> entry : result.get().entrySet()) {
+                    Assertions.assertSame(entry.getValue(), store.get(entry.getKey()));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Assertions.assertEquals(threads * bookingsPerThread, store.size());
+        ContentionStats stats = store.getContention().since(before);
+        Assertions.assertEquals(8, stats.getStripeCount());
+        Assertions.assertEquals((long) threads * bookingsPerThread * (1 + updatesPerBooking), stats.getTotalWrites());
+        Assertions.assertTrue(stats.getTotalContendedWrites() <= stats.getTotalWrites());
+        Assertions.assertTrue(stats.getTotalLockWaitNanos() >= 0);
+    }
+
+    /**
+     * Stripe counts must be powers of two.
+     */
+    @Test
+    public void stripeCountMustBePowerOfTwo() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new StripedBookingStore(12));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new StripedBookingStore(0));
+        Assertions.assertEquals(1, Integer.bitCount(new StripedBookingStore().getStripeCount()));
+    }
+}
@@ -0,0 +1,239 @@
+package nz.co.sundar.testautomation.restfulbooker.tests;
+
+import io.restassured.http.ContentType;
+import io.restassured.specification.RequestSpecification;
+import nz.co.sundar.testautomation.restfulbooker.payloads.BookingPayloads;
+import nz.co.sundar.testautomation.restfulbooker.standin.FaultInjector;
+import nz.co.sundar.testautomation.restfulbooker.standin.StandInServer;
+import nz.co.sundar.testautomation.restfulbooker.utils.TokenPool;
+import nz.co.sundar.testautomation.restfulbooker.utils.TokenPool.Assignment;
+import nz.co.sundar.testautomation.restfulbooker.utils.TokenPool.Credentials;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.restassured.RestAssured.given;
+
+/**
+ * Test class for the {@link TokenPool} behind {@code TokenManager}: assignment, per-token invalidation, scheduled
+ * refreshes and usage counts.
+ *
+ * <p>These tests start the stand-in on a free loopback port and do not call the public Restful Booker API. The
+ * stand-in accepts one account, so the pools below open several sessions for it.</p>
+ */
+public class TokenPoolTests {
+
+    private static final Credentials ADMIN = new Credentials("admin", "password123");
+
+    private static StandInServer server;
+    private static int bookingId;
+
+    @BeforeAll
+    public static void startServer() throws IOException {
+        server = StandInServer.start(ADMIN.username(), ADMIN.password());
+        bookingId = request().body(payload()).post("/booking").jsonPath().getInt("bookingid");
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        server.close();
+    }
+
+    @AfterEach
+    public void clearFaults() {
+        server.setFaults(null);
+    }
+
+    private static RequestSpecification request() {
+        return given().baseUri(server.getBaseUri()).contentType(ContentType.JSON);
+    }
+
+    private static String payload() {
+        return BookingPayloads.createBookingPayload("Jim", "Brown", 111, true,
+                "2023-01-01", "2023-01-05", "Breakfast");
+    }
+
+    private static String generateToken(String username, String password) {
+        String token = request().body("{\"username\":\"" + username + "\",\"password\":\"" + password + "\"}")
+                .post("/auth").jsonPath().getString("token");
+        if (token == null) {
+            throw new IllegalStateException("Bad credentials for " + username);
+        }
+        return token;
+    }
+
+    private static int update(String token) {
+        return request().cookie("token", token).body(payload()).put("/booking/" + bookingId).getStatusCode();
+    }
+
+    /**
+     * Round-robin assignment spreads calls evenly over one token per credential.
+     */
+    @Test
+    public void roundRobinSpreadsCallsOverTokens() {
+        TokenPool pool = new TokenPool(List.of(ADMIN, ADMIN, ADMIN), Assignment.ROUND_ROBIN, 0,
+                TokenPoolTests::generateToken);
+        Set<String> tokens = new HashSet<>();
+        for (int i = 0; i < 9; i++) {
+            String token = pool.getToken();
+            tokens.add(token);
+            Assertions.assertEquals(200, update(token));
+        }
+
+        Assertions.assertEquals(3, tokens.size());
+        for (TokenPool.Slot slot : pool.getSlots()) {
+            Assertions.assertEquals("uses=3 failures=0 refreshes=1", slot.getSummary(), slot.getName());
+        }
+        Assertions.assertEquals("Token 2 (admin)", pool.getSlots().get(1).getName());
+    }
+
+    /**
+     * With affinity, each worker thread keeps one token for all its calls.
+     */
+    @Test
+    public void affinityKeepsEachThreadOnOneToken() throws InterruptedException {
+        TokenPool pool = new TokenPool(List.of(ADMIN, ADMIN, ADMIN), Assignment.AFFINITY, 0,
+                TokenPoolTests::generateToken);
+        Set<String> perThread = ConcurrentHashMap.newKeySet();
+        List<String> failures = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> workers = new ArrayList<>();
+        for (int w = 0; w < 3; w++) {
+            Thread worker = new Thread(() -> {
+                String first = pool.getToken();
+                for (int i = 0; i < 10; i++) {
+                    if (!first.equals(pool.getToken())) {
+                        failures.add(Thread.currentThread().getName() + " changed token");
+                    }
+                }
+                perThread.add(first);
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        Assertions.assertEquals(List.of(), failures);
+        Assertions.assertEquals(3, perThread.size());
+    }
+
+    /**
+     * A refused token is replaced in its own slot only, and a burst of refusals of one token costs one refresh.
+     */
+    @Test
+    public void refusedTokenIsReplacedWithoutDisturbingOthers() throws InterruptedException {
+        TokenPool pool = new TokenPool(List.of(ADMIN, ADMIN), Assignment.ROUND_ROBIN, 0,
+                TokenPoolTests::generateToken);
+        String first = pool.getToken();
+        String second = pool.getToken();
+
+        // The stand-in revokes the first token as if it had expired.
+        server.setFaults(FaultInjector.parse("PUT /booking/* : expire=1", 1));
+        Assertions.assertEquals(403, update(first));
+        server.setFaults(null);
+
+        int workers = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < workers; w++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                pool.getSlots().get(0).invalidate(first);
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        String replacement = pool.getToken();
+        Assertions.assertNotEquals(first, replacement);
+        Assertions.assertEquals(200, update(replacement));
+        Assertions.assertEquals(second, pool.getToken());
+        Assertions.assertEquals(200, update(second));
+
+        // A late refusal of the old token does not throw away its replacement.
+        pool.getSlots().get(0).invalidate(first);
+        Assertions.assertEquals(replacement, pool.getToken());
+
+        Assertions.assertEquals("uses=3 failures=9 refreshes=2", pool.getSlots().get(0).getSummary());
+        Assertions.assertEquals("uses=2 failures=0 refreshes=1", pool.getSlots().get(1).getSummary());
+    }
+
+    /**
+     * {@link TokenPool#invalidateLastToken()} drops the token the calling thread last used, as
+     * {@code TokenManager.invalidateToken()} does after a 403.
+     */
+    @Test
+    public void invalidateLastTokenTargetsTheCallersToken() {
+        TokenPool pool = new TokenPool(List.of(ADMIN, ADMIN), Assignment.ROUND_ROBIN, 0,
+                TokenPoolTests::generateToken);
+        String first = pool.getToken();
+        String second = pool.getToken();
+        pool.invalidateLastToken();
+
+        Assertions.assertEquals(first, pool.getToken());
+        Assertions.assertNotEquals(second, pool.getToken());
+        Assertions.assertEquals(0, pool.getSlots().get(0).getFailures());
+        Assertions.assertEquals(1, pool.getSlots().get(1).getFailures());
+    }
+
+    /**
+     * Tokens are fetched again on their own schedule, and a credential that cannot log in fails alone.
+     */
+    @Test
+    public void scheduledRefreshAndFailingCredential() throws InterruptedException {
+        AtomicInteger generated = new AtomicInteger();
+        TokenPool pool = new TokenPool(List.of(ADMIN, new Credentials("admin", "wrong")), Assignment.ROUND_ROBIN,
+                500, (username, password) -> {
+                    generated.incrementAndGet();
+                    return generateToken(username, password);
+                });
+
+        // The first call fetches the good token; the schedule is measured from there.
+        Assertions.assertEquals(200, update(pool.getToken()));
+        long start = System.nanoTime();
+        int refused = 0;
+        for (int round = 0; round < 10; round++) {
+            try {
+                pool.getToken();
+            } catch (IllegalStateException e) {
+                refused++;
+            }
+            Assertions.assertEquals(200, update(pool.getToken()));
+            Thread.sleep(100);
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        TokenPool.Slot good = pool.getSlots().get(0);
+        // At least 500ms between refreshes, and at most one round over that.
+        Assertions.assertTrue(good.getRefreshes() <= 1 + elapsedMillis / 500
+                && good.getRefreshes() >= elapsedMillis / 1_000 && good.getRefreshes() >= 2,
+                good.getSummary() + " in " + elapsedMillis + "ms");
+        Assertions.assertEquals(10, refused);
+        Assertions.assertEquals(10, pool.getSlots().get(1).getRefreshes());
+        Assertions.assertEquals(good.getRefreshes() + refused, generated.get());
+
+        Assertions.assertEquals(new Credentials("user1", "pa:ss"), Credentials.parse(" user1 : pa:ss "));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Credentials.parse("nopassword"));
+    }
+}
@@ -0,0 +1,189 @@
+package nz.co.sundar.testautomation.restfulbooker.tests;
+
+import io.restassured.RestAssured;
+import io.restassured.filter.Filter;
+import nz.co.sundar.testautomation.restfulbooker.filters.TrafficCaptureFilter;
+import nz.co.sundar.testautomation.restfulbooker.filters.TrafficLog;
+import nz.co.sundar.testautomation.restfulbooker.filters.TrafficLog.Exchange;
+import nz.co.sundar.testautomation.restfulbooker.filters.TrafficLog.Header;
+import nz.co.sundar.testautomation.restfulbooker.load.DirectBookingClient;
+import nz.co.sundar.testautomation.restfulbooker.load.TrafficReplayer;
+import nz.co.sundar.testautomation.restfulbooker.pojo.Booking;
+import nz.co.sundar.testautomation.restfulbooker.pojo.BookingDates;
+import nz.co.sundar.testautomation.restfulbooker.standin.StandInServer;
+import nz.co.sundar.testautomation.restfulbooker.utils.DecodedResponse;
+import nz.co.sundar.testautomation.restfulbooker.utils.TokenPool.Credentials;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test class for capturing traffic to a binary log and replaying it: the log format, a recorded session replayed
+ * against another stand-in with its booking ids and tokens remapped, and replaying at scaled speed.
+ *
+ * <p>These tests start the stand-in on a free loopback port and do not call the public Restful Booker API.</p>
+ */
+public class TrafficReplayTests {
+
+    @BeforeAll
+    public static void warmUp() throws IOException {
+        // The first request through REST Assured is slow to set up.
+        try (StandInServer server = StandInServer.start("admin", "password123")) {
+            RestAssured.given().baseUri(server.getBaseUri()).get("/booking");
+        }
+    }
+
+    private static Exchange get(long startMillis, String path, int status, String body) {
+        return new Exchange(TimeUnit.MILLISECONDS.toNanos(startMillis), TimeUnit.MILLISECONDS.toNanos(3), "GET", path,
+                List.of(new Header("Accept", "application/json")), new byte[0], status,
+                List.of(new Header("Content-Type", "application/json; charset=utf-8")),
+                body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Exchanges come back from the log as they went in, in microseconds, and repeated headers and bodies are
+     * written once.
+     */
+    @Test
+    public void logIsCompactAndLossless() throws IOException {
+        String body = "{\"firstname\":\"Jim\",\"lastname\":\"Brown\",\"additionalneeds\":\"" + "x".repeat(500) + "\"}";
+        List<Exchange> exchanges = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            exchanges.add(get(i, "/booking/" + (i % 10), 200, body));
+        }
+        exchanges.add(new Exchange(2_000_000_123L, 0, "POST", "/auth?x=%20y", List.of(), new byte[]{1, 2, 3}, 0,
+                List.of(), new byte[0]));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (TrafficLog.Writer writer = new TrafficLog.Writer(bytes)) {
+            for (Exchange exchange : exchanges) {
+                writer.write(exchange);
+            }
+        }
+        // About a dozen bytes an exchange, plus the body once.
+        Assertions.assertTrue(bytes.size() < 20_000, "log size " + bytes.size());
+
+        try (TrafficLog.Reader reader = new TrafficLog.Reader(new ByteArrayInputStream(bytes.toByteArray()))) {
+            for (Exchange expected : exchanges) {
+                Exchange actual = reader.next();
+                Assertions.assertEquals(expected.startNanos() / 1_000 * 1_000, actual.startNanos());
+                Assertions.assertEquals(expected.method(), actual.method());
+                Assertions.assertEquals(expected.path(), actual.path());
+                Assertions.assertEquals(expected.requestHeaders(), actual.requestHeaders());
+                Assertions.assertArrayEquals(expected.requestBody(), actual.requestBody());
+                Assertions.assertEquals(expected.status(), actual.status());
+                Assertions.assertEquals(expected.responseHeaders(), actual.responseHeaders());
+                Assertions.assertArrayEquals(expected.responseBody(), actual.responseBody());
+            }
+            Assertions.assertNull(reader.next());
+        }
+        Assertions.assertThrows(IOException.class,
+                () -> new TrafficLog.Reader(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5})));
+    }
+
+    /**
+     * A session captured against one stand-in replays against another that already holds more bookings: creates
+     * get new ids and the login a new token, the requests that used them follow, and every response matches.
+     */
+    @Test
+    public void recordedSessionReplaysWithRemappedIds(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("traffic.bin");
+        try (StandInServer recorded = StandInServer.start("admin", "password123")) {
+            List<Filter> filters = new ArrayList<>(RestAssured.filters());
+            TrafficLog.Writer log = TrafficLog.Writer.open(file);
+            RestAssured.filters(new TrafficCaptureFilter(log));
+            try {
+                DirectBookingClient client = new DirectBookingClient(recorded.getBaseUri(),
+                        new Credentials("admin", "password123"));
+                for (int i = 0; i < 3; i++) {
+                    DecodedResponse created = client.createBooking(booking("Jim" + i, "Breakfast"));
+                    int id = Integer.parseInt(created.getString("bookingid"));
+                    client.getBooking(id);
+                    client.updateBooking(id, booking("Jim" + i, "Lunch"));
+                    client.getBooking(id);
+                    if (i == 0) {
+                        client.deleteBooking(id);
+                        client.getBooking(id);
+                    }
+                }
+            } finally {
+                RestAssured.replaceFiltersWith(filters);
+                log.close();
+            }
+        }
+        List<Exchange> exchanges = TrafficLog.Reader.readAll(file);
+        // One login for the writes, then 3 creates, 7 reads, 3 updates and a delete.
+        Assertions.assertEquals(15, exchanges.size());
+        Assertions.assertTrue(exchanges.stream().anyMatch(e -> e.path().equals("/auth") && e.status() == 200));
+        Assertions.assertTrue(exchanges.stream().anyMatch(e -> e.method().equals("PUT")
+                && e.requestHeader("Cookie") != null && e.requestHeader("Cookie").startsWith("token=")));
+
+        try (StandInServer replayed = StandInServer.start("admin", "password123")) {
+            DirectBookingClient other = new DirectBookingClient(replayed.getBaseUri(),
+                    new Credentials("admin", "password123"));
+            for (int i = 0; i < 5; i++) {
+                other.createBooking(booking("Other", "None"));
+            }
+            TrafficReplayer.Report report = new TrafficReplayer(exchanges, replayed.getBaseUri(), 0, 4).run();
+            Assertions.assertEquals(15, report.getReplayed(), report.getSummary());
+            Assertions.assertEquals(0, report.getStatusMismatches() + report.getBodyMismatches()
+                    + report.getErrors() + report.getSkipped(), report.getSummary());
+            // Every read, update and delete went to a replayed booking.
+            Assertions.assertEquals(11, report.getRemappedIds(), report.getSummary());
+            Assertions.assertEquals(7, report.getLatencies().get("GET /booking/{id}").getCount(), report.getSummary());
+        }
+    }
+
+    private static Booking booking(String firstname, String additionalneeds) {
+        return new Booking(firstname, "Brown", 111, true, new BookingDates("2026-01-01", "2026-01-02"),
+                additionalneeds);
+    }
+
+    /**
+     * Ten reads recorded 100ms apart take about 900ms to replay at 1x, a quarter of that at 4x, and next to no time
+     * as fast as possible; a recorded body the server no longer returns is a mismatch.
+     */
+    @Test
+    public void replaysAtScaledSpeed() throws Exception {
+        try (StandInServer server = StandInServer.start("admin", "password123")) {
+            DirectBookingClient client = new DirectBookingClient(server.getBaseUri(),
+                    new Credentials("admin", "password123"));
+            String path = "/booking/" + client.createBooking(booking("Jim", "Breakfast")).getString("bookingid");
+            String actual = RestAssured.given().baseUri(server.getBaseUri()).get(path).asString();
+            List<Exchange> exchanges = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                exchanges.add(get(100L * i, path, 200, i == 9 ? "{\"firstname\":\"Nobody\"}" : actual));
+            }
+
+            TrafficReplayer.Report normal = new TrafficReplayer(exchanges, server.getBaseUri(), 1, 2).run();
+            long normalMillis = TimeUnit.NANOSECONDS.toMillis(normal.getReplaySpanNanos());
+            Assertions.assertTrue(normalMillis >= 880 && normalMillis < 2_000, normal.getSummary());
+            Assertions.assertEquals(1, normal.getBodyMismatches(), normal.getSummary());
+            Assertions.assertEquals(0, normal.getStatusMismatches(), normal.getSummary());
+
+            TrafficReplayer.Report faster = new TrafficReplayer(exchanges, server.getBaseUri(), 4, 2).run();
+            long fasterMillis = TimeUnit.NANOSECONDS.toMillis(faster.getReplaySpanNanos());
+            Assertions.assertTrue(fasterMillis >= 215 && fasterMillis < 800, faster.getSummary());
+
+            TrafficReplayer.Report fastest = new TrafficReplayer(exchanges, server.getBaseUri(), 0, 2).run();
+            Assertions.assertTrue(fastest.getReplaySpanNanos() < faster.getReplaySpanNanos(), fastest.getSummary());
+            Assertions.assertEquals(10, fastest.getReplayed());
+
+            List<Exchange> missing = List.of(get(0, "/booking/999999", 200, actual));
+            TrafficReplayer.Report notFound = new TrafficReplayer(missing, server.getBaseUri(), 0, 1).run();
+            Assertions.assertEquals(1, notFound.getStatusMismatches(), notFound.getSummary());
+            Assertions.assertTrue(notFound.getExamples().get(0).contains("status 404, recorded 200"),
+                    notFound.getSummary());
+        }
+    }
+}
@@ -1,13 +1,13 @@
 package nz.co.sundar.testautomation.restfulbooker.tests;
 
-import io.restassured.response.Response;
 import nz.co.sundar.testautomation.restfulbooker.base.TestBase;
 import nz.co.sundar.testautomation.restfulbooker.pojo.Booking;
 import nz.co.sundar.testautomation.restfulbooker.pojo.BookingData;
 import nz.co.sundar.testautomation.restfulbooker.pojo.BookingResponse;
 import nz.co.sundar.testautomation.restfulbooker.utils.AssertionsUtils;
 import nz.co.sundar.testautomation.restfulbooker.utils.BookingUtils;
-import nz.co.sundar.testautomation.restfulbooker.utils.PojoUtils;
+import nz.co.sundar.testautomation.restfulbooker.utils.DecodedResponse;
+import nz.co.sundar.testautomation.restfulbooker.utils.ResponseSchema;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVRecord;
 import org.junit.jupiter.api.Test;
@@ -88,13 +88,12 @@ public class UpdateBookingTests extends TestBase {
     @MethodSource("bookingDataProvider")
     public void updateBookingTest(BookingData createData, BookingData updateData) {
         // Step 1: Create a booking first
-        Response response = BookingUtils.createTestBooking(createData.firstname, createData.lastname, createData.totalprice,
+        DecodedResponse response = BookingUtils.createTestBooking(createData.firstname, createData.lastname, createData.totalprice,
                 createData.depositpaid, createData.checkin, createData.checkout, createData.additionalneeds);
 
-        BookingResponse bookingResponse = PojoUtils.convertJsonToBookingResponse(response.asString());
+        BookingResponse bookingResponse = response.bookingResponse();
         int bookingId = bookingResponse.getBookingid();
 
-        reportManager.logInfo("Create booking response: " + response.asString());
         reportManager.logInfo("BookingId created: " + bookingId);
         // Step 2: Update the booking using the ID
 
@@ -105,15 +104,15 @@ public class UpdateBookingTests extends TestBase {
         logRequestForBookingId(method, bookingId);
 
         // Step 3: Convert updated response directly to Booking POJO
-        Booking updatedBooking = PojoUtils.convertJsonToBooking(response.asString());
+        Booking updatedBooking = response.booking();
         reportManager.logInfo("Updated BookingId: " + bookingId);
 
         // Step 4: Log update ID and assert updated values
+        AssertionsUtils.assertMatchesSchema(response, ResponseSchema.BOOKING);
         AssertionsUtils.assertBookingResponse(updatedBooking, httpStatusCode,
                 updateData.firstname, updateData.lastname, updateData.totalprice,
                 updateData.depositpaid, updateData.checkin, updateData.checkout, updateData.additionalneeds);
 
-        reportManager.logInfo("Update booking response: " + response.asString());
         reportManager.getTest().info("Booking updated successfully for ID: " + bookingId);
         reportManager.logInfo("Response field validation for Booking ID " + bookingId + " passed successfully.");
     }
@@ -127,17 +126,17 @@ public class UpdateBookingTests extends TestBase {
     @Test
     public void updateEmptyBookingIdTest() {
         String bookingId = ""; // Empty booking ID
-        Response response = BookingUtils.updateEmptyBookingId(bookingId);
+        DecodedResponse response = BookingUtils.updateEmptyBookingId(bookingId);
 
         logRequestForBookingId(method, bookingId);
 
         try {
             AssertionsUtils.assertErrorResponse(response, 404, "Not Found");
         } catch (AssertionError e) {
-            reportManager.logFail("Expected 404 Not Found but got: " + response.getStatusCode() + " - " + response.asString());
+            reportManager.logFail("Expected 404 Not Found but got: " + response.getStatusCode());
             throw e; // Re-throw to fail the test
         }
-        reportManager.logInfo("Booking not Updated with expected response: " + response.asString());
+        reportManager.logInfo("Booking not Updated with expected status code: " + response.getStatusCode());
     }
     /**
      * Test case to update a booking with an invalid booking ID.
@@ -149,7 +148,7 @@ public class UpdateBookingTests extends TestBase {
     @Test
     public void updateInvalidBookingIdTest() {
         String bookingId = "abc"; // Invalid booking ID
-        Response response = BookingUtils.updateInvalidBookingId(bookingId);
+        DecodedResponse response = BookingUtils.updateInvalidBookingId(bookingId);
 
         logRequestForBookingId(method, bookingId);
 
@@ -159,7 +158,7 @@ public class UpdateBookingTests extends TestBase {
             reportManager.logFail("Expected error response not received for invalid booking ID update: " + e.getMessage());
             throw e; // Re-throw to fail the test
         }
-        reportManager.logInfo("Invalid Booking not updated with expected response: " + response.asString());
+        reportManager.logInfo("Invalid Booking not updated with expected status code: " + response.getStatusCode());
 
     }
     /**
@@ -172,8 +171,8 @@ public class UpdateBookingTests extends TestBase {
     @Test
     public void UpdateBookingWithNoAuthTest() {
         // Step 1: Create a valid booking first
-        Response response = BookingUtils.createTestBooking();
-        BookingResponse bookingResponse = PojoUtils.convertJsonToBookingResponse(response.asString());
+        DecodedResponse response = BookingUtils.createTestBooking();
+        BookingResponse bookingResponse = response.bookingResponse();
 
         int bookingId = bookingResponse.getBookingid();
 
@@ -187,6 +186,6 @@ public class UpdateBookingTests extends TestBase {
             reportManager.logFail("Expected error response not received for update without auth token: " + e.getMessage());
             throw e; // Re-throw to fail the test
         }
-        reportManager.logInfo("Booking not updated with expected response: " + response.asString());
+        reportManager.logInfo("Booking not updated with expected status code: " + response.getStatusCode());
     }
 }
\ No newline at end of file
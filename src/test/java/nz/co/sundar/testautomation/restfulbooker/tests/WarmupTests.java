@@ -0,0 +1,185 @@
+package nz.co.sundar.testautomation.restfulbooker.tests;
+
+import io.restassured.builder.ResponseBuilder;
+import nz.co.sundar.testautomation.restfulbooker.load.BookingClient;
+import nz.co.sundar.testautomation.restfulbooker.load.LoadDriver;
+import nz.co.sundar.testautomation.restfulbooker.load.PhaseResult;
+import nz.co.sundar.testautomation.restfulbooker.load.SteadyStateDetector;
+import nz.co.sundar.testautomation.restfulbooker.load.WorkloadDefinition;
+import nz.co.sundar.testautomation.restfulbooker.pojo.Booking;
+import nz.co.sundar.testautomation.restfulbooker.utils.DecodedResponse;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test class for steady-state detection and the automatic warm-up that keeps a load run's first seconds out of its
+ * headline numbers.
+ *
+ * <p>These tests load a simulated server inside the test JVM and do not call the public Restful Booker API.</p>
+ */
+public class WarmupTests {
+
+    /**
+     * Answers {@code GET /booking} in 40ms at first, like a server with cold caches, getting steadily faster until it
+     * answers in 5ms from {@code coldMillis} after its first request.
+     */
+    private static final class ColdStartServer implements BookingClient {
+
+        private final long coldMillis;
+        private volatile long firstRequestNanos;
+
+        ColdStartServer(long coldMillis) {
+            this.coldMillis = coldMillis;
+        }
+
+        @Override
+        public DecodedResponse listBookings() {
+            long now = System.nanoTime();
+            if (firstRequestNanos == 0) {
+                firstRequestNanos = now;
+            }
+            double cold = coldMillis == 0 ? 0
+                    : Math.max(0, 1 - (now - firstRequestNanos) / (coldMillis * 1e6));
+            try {
+                TimeUnit.MICROSECONDS.sleep((long) (5_000 + 35_000 * cold));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return respond("[]");
+        }
+
+        @Override
+        public DecodedResponse createBooking(Booking booking) {
+            return respond("{\"bookingid\":1}");
+        }
+
+        @Override
+        public DecodedResponse getBooking(int bookingId) {
+            return respond("{}");
+        }
+
+        @Override
+        public DecodedResponse updateBooking(int bookingId, Booking booking) {
+            return respond("{}");
+        }
+
+        @Override
+        public DecodedResponse deleteBooking(int bookingId) {
+            return respond("Created");
+        }
+
+        @Override
+        public DecodedResponse authenticate() {
+            return respond("{\"token\":\"abc123\"}");
+        }
+
+        private static DecodedResponse respond(String body) {
+            return new DecodedResponse(new ResponseBuilder().setStatusCode(200)
+                    .setContentType("application/json").setBody(body).build());
+        }
+    }
+
+    @BeforeAll
+    public static void warmUp() {
+        // Building the first REST Assured response is slow; keep it out of the timed phases.
+        new ColdStartServer(0).authenticate();
+    }
+
+    private static WorkloadDefinition listing(String warmup) throws IOException {
+        Properties properties = new Properties();
+        properties.load(new StringReader("""
+                operation.listBookings.weight = 1
+                phases = run
+                phase.run.duration = 1s
+                phase.run.workers = 2
+                """ + warmup));
+        return WorkloadDefinition.parse(properties, "listing");
+    }
+
+    /**
+     * Steady means every one of the last {@code window} intervals agrees on both throughput and p50; a trend, a
+     * spike or an interval that answered nothing is not steady.
+     */
+    @Test
+    public void detectorNeedsAFullWindowOfAgreeingIntervals() {
+        SteadyStateDetector detector = new SteadyStateDetector(3, 0.1);
+        Assertions.assertFalse(detector.add(50, 40_000_000));
+        Assertions.assertFalse(detector.add(120, 12_000_000));
+        Assertions.assertTrue(Double.isNaN(detector.getThroughputCv()));
+        Assertions.assertFalse(detector.add(200, 5_000_000));
+        Assertions.assertTrue(detector.getThroughputCv() > 0.1);
+        Assertions.assertFalse(detector.add(205, 5_100_000));
+        Assertions.assertTrue(detector.add(198, 4_900_000));
+        Assertions.assertEquals(5, detector.getIntervals());
+        Assertions.assertTrue(detector.getThroughputCv() <= 0.1 && detector.getLatencyCv() <= 0.1);
+
+        // Throughput alone is not enough: a latency spike breaks the window.
+        Assertions.assertFalse(detector.add(200, 9_000_000));
+
+        SteadyStateDetector idle = new SteadyStateDetector(2, 0.1);
+        Assertions.assertFalse(idle.add(0, 0));
+        Assertions.assertFalse(idle.add(0, 0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new SteadyStateDetector(1, 0.1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new SteadyStateDetector(3, 0));
+    }
+
+    /**
+     * A phase with {@code warmup = auto} keeps the cold start in its warm-up section: the headline p50 is the
+     * warm server's, and the phase's duration is measured from the end of the warm-up.
+     */
+    @Test
+    public void warmupKeepsTheColdStartOutOfTheHeadline() throws Exception {
+        WorkloadDefinition workload = listing("""
+                warmup = auto
+                warmup.interval = 200ms
+                warmup.window = 4
+                warmup.maxCv = 0.2
+                warmup.maxDuration = 10s
+                """);
+        PhaseResult result = new LoadDriver(workload, new ColdStartServer(1_000)).run().get(0);
+
+        PhaseResult warmup = result.getWarmup();
+        Assertions.assertNotNull(warmup, result.getSummary());
+        Assertions.assertTrue(result.isSteady(), result.getSummary());
+        Assertions.assertTrue(warmup.getDurationNanos() >= TimeUnit.MILLISECONDS.toNanos(1_000), result.getSummary());
+        Assertions.assertEquals(1.0, result.getDurationNanos() / 1e9, 0.3, result.getSummary());
+        Assertions.assertTrue(warmup.getLatencies().getMaxNanos() >= TimeUnit.MILLISECONDS.toNanos(35),
+                result.getSummary());
+        Assertions.assertTrue(result.getLatencies().getPercentileNanos(99) < TimeUnit.MILLISECONDS.toNanos(20),
+                result.getSummary());
+        Assertions.assertTrue(result.getSummary().contains("excluded warm-up, steady after"), result.getSummary());
+
+        // Without a warm-up, the same cold start lands in the headline numbers.
+        PhaseResult cold = new LoadDriver(listing(""), new ColdStartServer(500)).run().get(0);
+        Assertions.assertNull(cold.getWarmup());
+        Assertions.assertTrue(cold.getLatencies().getPercentileNanos(99) >= TimeUnit.MILLISECONDS.toNanos(30),
+                cold.getSummary());
+    }
+
+    /**
+     * A warm-up too short to ever fill the window runs out of time, and the phase is measured anyway but reported as
+     * not steady.
+     */
+    @Test
+    public void warmupThatRunsOutOfTimeIsReportedAsNotSteady() throws Exception {
+        WorkloadDefinition workload = listing("""
+                warmup = auto
+                warmup.interval = 200ms
+                warmup.window = 5
+                warmup.maxDuration = 600ms
+                """);
+        PhaseResult result = new LoadDriver(workload, new ColdStartServer(0)).run().get(0);
+        Assertions.assertFalse(result.isSteady(), result.getSummary());
+        Assertions.assertTrue(result.getCount() > 0, result.getSummary());
+        Assertions.assertTrue(result.getSummary().contains("NOT steady"), result.getSummary());
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> listing("warmup = sometimes"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> listing("warmup = auto\nwarmup.windows = 3"));
+    }
+}
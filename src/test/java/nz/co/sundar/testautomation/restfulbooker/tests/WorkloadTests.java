@@ -0,0 +1,223 @@
+package nz.co.sundar.testautomation.restfulbooker.tests;
+
+import nz.co.sundar.testautomation.restfulbooker.load.DirectBookingClient;
+import nz.co.sundar.testautomation.restfulbooker.load.LoadDriver;
+import nz.co.sundar.testautomation.restfulbooker.load.Operation;
+import nz.co.sundar.testautomation.restfulbooker.load.OperationStats;
+import nz.co.sundar.testautomation.restfulbooker.load.PayloadSource;
+import nz.co.sundar.testautomation.restfulbooker.load.PhaseResult;
+import nz.co.sundar.testautomation.restfulbooker.load.WorkloadDefinition;
+import nz.co.sundar.testautomation.restfulbooker.pojo.Booking;
+import nz.co.sundar.testautomation.restfulbooker.standin.StandInServer;
+import nz.co.sundar.testautomation.restfulbooker.utils.TokenPool.Credentials;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * Test class for declarative workloads: parsing workload files, the weighted operation mix, payload sources, and
+ * the {@link LoadDriver} running phases against the stand-in.
+ *
+ * <p>These tests start the stand-in on a free loopback port and do not call the public Restful Booker API.</p>
+ */
+public class WorkloadTests {
+
+    private static final Path READ_HEAVY = Path.of("src/test/resources/workloads/read-heavy.properties");
+
+    private static StandInServer server;
+    private static DirectBookingClient client;
+
+    @BeforeAll
+    public static void startServer() throws IOException {
+        server = StandInServer.start("admin", "password123");
+        client = new DirectBookingClient(server.getBaseUri(), new Credentials("admin", "password123"));
+        // The first REST Assured request is slow to set up; keep it out of the timed phases.
+        client.listBookings();
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        server.close();
+    }
+
+    private static WorkloadDefinition parse(String settings) throws IOException {
+        Properties properties = new Properties();
+        properties.load(new StringReader(settings));
+        return WorkloadDefinition.parse(properties, "test");
+    }
+
+    /**
+     * The sample workload file is read with its weights, payloads, think time and phases, and mistakes in a file
+     * are rejected rather than ignored.
+     */
+    @Test
+    public void workloadFileIsParsedAndMistakesAreRejected() {
+        WorkloadDefinition workload = WorkloadDefinition.load(READ_HEAVY);
+        Assertions.assertEquals("read-heavy", workload.getName());
+        Assertions.assertEquals(50, workload.getPreload());
+        Assertions.assertEquals(60, workload.getWeights().get(Operation.GET_BOOKING));
+        Assertions.assertEquals(5, workload.getWeights().get(Operation.AUTH));
+        Assertions.assertEquals("sundar", workload.getPayloadSource(Operation.CREATE_BOOKING)
+                .next(new SplittableRandom(1)).getFirstname());
+
+        List<WorkloadDefinition.Phase> phases = workload.getPhases();
+        Assertions.assertEquals(List.of("steady"), phases.stream().map(WorkloadDefinition.Phase::name).toList());
+        Assertions.assertEquals(60_000_000_000L, phases.get(0).durationNanos());
+        Assertions.assertEquals(8, phases.get(0).workers());
+        Assertions.assertEquals(100.0, phases.get(0).ratePerSecond());
+        Assertions.assertEquals(new WorkloadDefinition.Warmup(1_000_000_000L, 5, 0.1, 60_000_000_000L),
+                workload.getWarmup());
+
+        String phase = "\nphases = only\nphase.only.duration = 1s\n";
+        Assertions.assertThrows(IllegalArgumentException.class, () -> parse("operation.getBookings.weight = 1" + phase));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> parse("operation.getBooking.weight = 1\noperation.getBooking.payload = generated" + phase));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> parse("operation.auth.weight = 0" + phase));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> parse("operation.auth.weight = 1\nphases = only"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> parse("operation.auth.weight = 1"));
+    }
+
+    /**
+     * Operations are picked in proportion to their weights.
+     */
+    @Test
+    public void operationsArePickedInProportionToTheirWeights() {
+        WorkloadDefinition workload = WorkloadDefinition.load(READ_HEAVY);
+        SplittableRandom random = new SplittableRandom(7);
+        Map<Operation, Integer> picked = new EnumMap<>(Operation.class);
+        int picks = 100_000;
+        for (int i = 0; i < picks; i++) {
+            picked.merge(workload.pick(random), 1, Integer::sum);
+        }
+        for (Operation operation : Operation.values()) {
+            double expected = workload.getWeights().get(operation) / 100.0;
+            Assertions.assertEquals(expected, picked.get(operation) / (double) picks, 0.01, operation.getKey());
+        }
+    }
+
+    /**
+     * The defaults source sends the {@code createTestBooking()} booking, a CSV source cycles through its rows, and
+     * generated bookings are valid and reproducible under a seed.
+     */
+    @Test
+    public void payloadSources() {
+        Booking defaults = PayloadSource.defaults().next(new SplittableRandom(1));
+        Assertions.assertEquals("Jim", defaults.getFirstname());
+        Assertions.assertEquals(111, defaults.getTotalprice());
+
+        PayloadSource rows = PayloadSource.parse("csv:src/test/resources/csv/update_booking.csv");
+        SplittableRandom random = new SplittableRandom(1);
+        Assertions.assertEquals("sundar", rows.next(random).getFirstname());
+        Assertions.assertEquals("Jack", rows.next(random).getFirstname());
+        for (int i = 0; i < 7; i++) {
+            rows.next(random);
+        }
+        Assertions.assertEquals("sundar", rows.next(random).getFirstname());
+
+        PayloadSource generated = PayloadSource.parse("generated");
+        SplittableRandom first = new SplittableRandom(42);
+        SplittableRandom second = new SplittableRandom(42);
+        for (int i = 0; i < 100; i++) {
+            Booking booking = generated.next(first);
+            Assertions.assertEquals(booking.toString(), generated.next(second).toString());
+            LocalDate checkin = LocalDate.parse(booking.getBookingdates().getCheckin());
+            Assertions.assertTrue(checkin.isBefore(LocalDate.parse(booking.getBookingdates().getCheckout())));
+            Assertions.assertTrue(booking.getTotalprice() >= 50 && booking.getTotalprice() <= 500);
+        }
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> PayloadSource.parse("random"));
+    }
+
+    /**
+     * A run against the stand-in sends the configured mix, every operation succeeds, and the live bookings are
+     * the preloaded ones plus those created minus those deleted.
+     */
+    @Test
+    public void driverSendsTheWeightedMix() throws Exception {
+        WorkloadDefinition workload = parse("""
+                preload = 20
+                operation.getBooking.weight = 60
+                operation.createBooking.weight = 15
+                operation.updateBooking.weight = 10
+                operation.updateBooking.payload = generated
+                operation.deleteBooking.weight = 5
+                operation.listBookings.weight = 5
+                operation.auth.weight = 5
+                phases = steady
+                phase.steady.duration = 3s
+                phase.steady.workers = 4
+                """);
+        LoadDriver driver = new LoadDriver(workload, client);
+        PhaseResult steady = driver.run().get(0);
+
+        long total = steady.getCount();
+        Assertions.assertTrue(total > 100, steady.getSummary());
+        for (Operation operation : Operation.values()) {
+            OperationStats stats = steady.get(operation);
+            double expected = workload.getWeights().get(operation) / 100.0;
+            double tolerance = 4 * Math.sqrt(expected * (1 - expected) / total);
+            Assertions.assertEquals(expected, stats.getCount() / (double) total, tolerance, steady.getSummary());
+        }
+        // A read may race a delete of the same booking; nothing else may fail.
+        Assertions.assertEquals(steady.get(Operation.GET_BOOKING).getErrors()
+                        + steady.get(Operation.UPDATE_BOOKING).getErrors(), steady.getErrors(), steady.getSummary());
+        Assertions.assertTrue(steady.getErrors() * 100 < total, steady.getSummary());
+        Assertions.assertEquals(20 + steady.get(Operation.CREATE_BOOKING).getCount()
+                        - steady.get(Operation.DELETE_BOOKING).getStatusCounts().getOrDefault(201, 0L),
+                driver.getLiveIds().size());
+        Assertions.assertTrue(steady.getThroughput() > 0);
+    }
+
+    /**
+     * Phases run in order with their own rate cap and think time, and creates use the configured payload source.
+     */
+    @Test
+    public void phasesApplyTheirRateCapAndThinkTime() throws Exception {
+        WorkloadDefinition workload = parse("""
+                operation.createBooking.weight = 1
+                operation.createBooking.payload = csv:src/test/resources/csv/create_booking.csv
+                thinkTime = fixed(100ms)
+                phases = capped, thinking
+                phase.capped.duration = 2s
+                phase.capped.workers = 4
+                phase.capped.ratePerSecond = 10
+                phase.capped.thinkTime = fixed(0ms)
+                phase.thinking.duration = 1s
+                phase.thinking.workers = 2
+                """);
+        LoadDriver driver = new LoadDriver(workload, client);
+        List<PhaseResult> results = driver.run();
+
+        PhaseResult capped = results.get(0);
+        Assertions.assertEquals("capped", capped.getName());
+        // 10 per second for 2 seconds, plus the initial burst of one per worker.
+        Assertions.assertTrue(capped.getCount() >= 12 && capped.getCount() <= 25, capped.getSummary());
+
+        PhaseResult thinking = results.get(1);
+        // Each worker pauses 100ms after every request, so it sends at most 11 in a second.
+        Assertions.assertTrue(thinking.getCount() >= 4 && thinking.getCount() <= 22, thinking.getSummary());
+        Assertions.assertEquals(0, capped.getErrors() + thinking.getErrors());
+
+        // Every booking was created from a CSV row; workers take rows in turn, so all rows were used.
+        Set<String> sent = new HashSet<>();
+        for (int rank = 0; rank < driver.getLiveIds().size(); rank++) {
+            Booking booking = client.getBooking(driver.getLiveIds().idAt(rank)).booking();
+            sent.add(booking.getFirstname() + " " + booking.getLastname() + " " + booking.getTotalprice());
+        }
+        Assertions.assertEquals(Set.of("sundar ram 115", " ram 110", "sundar  100", "  100", "sundar ram -1",
+                "John Doe 100", "Jim Brown 100", "Sundar ram 90"), sent);
+    }
+}
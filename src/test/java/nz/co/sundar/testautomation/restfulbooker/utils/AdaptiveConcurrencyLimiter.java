@@ -0,0 +1,280 @@
+package nz.co.sundar.testautomation.restfulbooker.utils;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits how many requests are in flight to a server, finding the limit from the server's latency and errors
+ * instead of a fixed number.
+ * <p>
+ * The limit grows by one per round trip (additive increase) while latency stays within {@code latencyTolerance}
+ * of the no-load latency. It is multiplied by {@code backoffRatio} (multiplicative decrease) when a request is
+ * dropped, i.e. answered with {@code 429} or a {@code 5xx} gateway status or failed with an I/O error, or when the
+ * recent latency rises above the tolerance, which means requests are queueing inside the server. Latency only
+ * moves the limit while at least half of it is in use: a slow call from a client that is mostly idle says nothing
+ * about whether its concurrency is too high, and lowering the limit then would only hold back hedged requests.
+ * A request sent before the last decrease cannot cause another, so a burst of failures from one overloaded moment
+ * lowers the limit once rather than collapsing it.
+ * <p>
+ * The no-load latency is the lowest latency seen in the last {@value #LATENCY_WINDOW} requests, and may rise by at
+ * most a tenth per window so that a server that became slower for good is eventually accepted as such.
+ * <p>
+ * Limiters are registered under their name and summarised in the report by {@link ReportManager#flushReport()}.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    /**
+     * What a request's result says about the server's load.
+     */
+    public enum Outcome {
+        /** The server answered normally; its latency is used. */
+        SUCCESS,
+        /** The server shed the request or failed, so the limit is lowered. */
+        DROPPED,
+        /** The result says nothing about load, e.g. a client-side error; only the permit is returned. */
+        IGNORED
+    }
+
+    private static final int LATENCY_WINDOW = 500;
+    private static final double SMOOTHING = 0.2;
+    private static final Map<String, AdaptiveConcurrencyLimiter> REGISTRY = new ConcurrentSkipListMap<>();
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double latencyTolerance;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitAvailable = lock.newCondition();
+
+    private double limit;
+    private int inFlight;
+    private long noLoadNanos = Long.MAX_VALUE;
+    private long windowMinNanos = Long.MAX_VALUE;
+    private int windowSamples;
+    private double recentNanos;
+    private long lastDecreaseNanos;
+    private long requests;
+    private long drops;
+    private long decreases;
+
+    /**
+     * @param name             the name the limiter is reported under
+     * @param initialLimit     requests allowed in flight before anything has been measured
+     * @param minLimit         the lowest the limit can fall, at least 1
+     * @param maxLimit         the highest the limit can grow
+     * @param backoffRatio     the factor applied to the limit on each decrease, e.g. {@code 0.9}
+     * @param latencyTolerance how many times the no-load latency the recent latency may reach before the limit
+     *                         is lowered, e.g. {@code 2.0}
+     */
+    public AdaptiveConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit, double backoffRatio,
+                                      double latencyTolerance) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Concurrency limits must satisfy 1 <= min <= max");
+        }
+        if (backoffRatio <= 0 || backoffRatio >= 1 || latencyTolerance <= 1) {
+            throw new IllegalArgumentException("Backoff ratio must be in (0, 1) and latency tolerance above 1");
+        }
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyTolerance = latencyTolerance;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        REGISTRY.put(name, this);
+    }
+
+    /**
+     * Builds a limiter from the {@code concurrency.*} properties.
+     *
+     * @param name the name the limiter is reported under
+     */
+    public static AdaptiveConcurrencyLimiter fromConfig(String name) {
+        return new AdaptiveConcurrencyLimiter(name,
+                Integer.parseInt(ConfigReader.getProperty("concurrency.initialLimit", "20")),
+                Integer.parseInt(ConfigReader.getProperty("concurrency.minLimit", "1")),
+                Integer.parseInt(ConfigReader.getProperty("concurrency.maxLimit", "200")),
+                Double.parseDouble(ConfigReader.getProperty("concurrency.backoffRatio", "0.9")),
+                Double.parseDouble(ConfigReader.getProperty("concurrency.latencyTolerance", "2.0")));
+    }
+
+    /**
+     * @return every limiter created so far, ordered by name
+     */
+    public static Collection<AdaptiveConcurrencyLimiter> all() {
+        return REGISTRY.values();
+    }
+
+    /**
+     * Waits until a request may be sent. Every successful call must be followed by {@link #release}.
+     *
+     * @throws IllegalStateException if the thread is interrupted while waiting
+     */
+    public void acquire() {
+        lock.lock();
+        try {
+            while (inFlight >= (int) limit) {
+                permitAvailable.await();
+            }
+            inFlight++;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for " + name, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes a permit only if one is free.
+     *
+     * @return {@code true} if a request may be sent, in which case {@link #release} must follow
+     */
+    public boolean tryAcquire() {
+        lock.lock();
+        try {
+            if (inFlight >= (int) limit) {
+                return false;
+            }
+            inFlight++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until a request may be sent, giving up after a timeout.
+     *
+     * @param timeout the longest time to wait
+     * @param unit    the unit of {@code timeout}
+     * @return {@code false} if no permit became free in time
+     * @throws IllegalStateException if the thread is interrupted while waiting
+     */
+    public boolean tryAcquire(long timeout, TimeUnit unit) {
+        long remaining = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (inFlight >= (int) limit) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = permitAvailable.awaitNanos(remaining);
+            }
+            inFlight++;
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for " + name, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a permit and adjusts the limit from the request's result.
+     *
+     * @param latencyNanos how long the request took
+     * @param outcome      what the result says about the server's load
+     */
+    public void release(long latencyNanos, Outcome outcome) {
+        lock.lock();
+        try {
+            boolean limitInUse = inFlight * 2 >= limit;
+            inFlight--;
+            requests++;
+            if (outcome == Outcome.DROPPED) {
+                drops++;
+                decrease(latencyNanos);
+            } else if (outcome == Outcome.SUCCESS) {
+                sample(latencyNanos);
+                if (!limitInUse) {
+                    // Latency while mostly idle says nothing about this client's concurrency.
+                } else if (recentNanos > noLoadNanos * latencyTolerance) {
+                    decrease(latencyNanos);
+                } else {
+                    limit = Math.min(maxLimit, limit + 1 / limit);
+                }
+            }
+            permitAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void sample(long latencyNanos) {
+        latencyNanos = Math.max(1, latencyNanos);
+        recentNanos = recentNanos == 0 ? latencyNanos : recentNanos + SMOOTHING * (latencyNanos - recentNanos);
+        windowMinNanos = Math.min(windowMinNanos, latencyNanos);
+        noLoadNanos = Math.min(noLoadNanos, latencyNanos);
+        if (++windowSamples == LATENCY_WINDOW) {
+            noLoadNanos = Math.min(windowMinNanos, (long) (noLoadNanos * 1.1));
+            windowMinNanos = Long.MAX_VALUE;
+            windowSamples = 0;
+        }
+    }
+
+    private void decrease(long latencyNanos) {
+        long now = System.nanoTime();
+        if (decreases > 0 && now - latencyNanos - lastDecreaseNanos < 0) {
+            return;
+        }
+        limit = Math.max(minLimit, limit * backoffRatio);
+        lastDecreaseNanos = now;
+        decreases++;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the current limit; {@code (int) getLimit()} requests may be in flight
+     */
+    public double getLimit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getDrops() {
+        lock.lock();
+        try {
+            return drops;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return a one-line state such as {@code limit=14.2 inFlight=3 requests=900 drops=12 decreases=5
+     * noLoad=1.9ms recent=2.4ms}
+     */
+    public String getSummary() {
+        lock.lock();
+        try {
+            return String.format("limit=%.1f inFlight=%d requests=%d drops=%d decreases=%d noLoad=%s recent=%s",
+                    limit, inFlight, requests, drops, decreases,
+                    LatencyHistogram.formatMillis(noLoadNanos == Long.MAX_VALUE ? 0 : noLoadNanos),
+                    LatencyHistogram.formatMillis((long) recentNanos));
+        } finally {
+            lock.unlock();
+        }
+    }
+}
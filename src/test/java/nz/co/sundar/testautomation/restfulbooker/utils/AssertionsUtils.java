@@ -1,7 +1,8 @@
 package nz.co.sundar.testautomation.restfulbooker.utils;
 
-import io.restassured.response.Response;
+import nz.co.sundar.testautomation.restfulbooker.filters.ExchangeRecorder;
 import nz.co.sundar.testautomation.restfulbooker.pojo.Booking;
+import nz.co.sundar.testautomation.restfulbooker.pojo.BookingDates;
 import nz.co.sundar.testautomation.restfulbooker.pojo.BookingId;
 import org.junit.jupiter.api.Assertions;
 
@@ -48,7 +49,7 @@ public class AssertionsUtils {
     }
 
     /**
-     * Asserts the details of a booking object and logs each results.
+     * Asserts the details of a booking object and logs the results.
      *
      * @param booking           The booking object to validate
      * @param httpStatusCode    Expected HTTP status code
@@ -65,24 +66,59 @@ public class AssertionsUtils {
                                              String expectedCheckin, String expectedCheckout,
                                              String expectedAdditionalNeeds) {
 
+        Booking expected = new Booking(expectedFirstName, expectedLastName, expectedTotalPrice, expectedDepositPaid,
+                new BookingDates(expectedCheckin, expectedCheckout), expectedAdditionalNeeds);
+        assertBookingResponse(expected, booking, httpStatusCode);
+    }
 
+    /**
+     * Asserts that a booking matches the expected booking using {@link BookingDiff}.
+     * A single PASS line is logged when every field matches; otherwise a FAIL line is logged for each
+     * mismatching field only.
+     *
+     * @param expected       The expected booking
+     * @param actual         The booking returned by the API
+     * @param httpStatusCode HTTP status code of the response
+     */
+    public static void assertBookingResponse(Booking expected, Booking actual, int httpStatusCode) {
         List<String> errors = new ArrayList<>();
 
-        try {
-            assertEquals(200, httpStatusCode, "Validating http status code", errors);
-            assertEquals(expectedFirstName, booking.getFirstname(), "Validating First Name", errors);
-            assertEquals(expectedLastName, booking.getLastname(), "Validating Last Name", errors);
-            assertEquals(expectedTotalPrice, booking.getTotalprice(), "Validating Total Price", errors);
-            assertEquals(expectedDepositPaid, booking.isDepositpaid(), "Validating Deposit Paid", errors);
-            assertEquals(expectedCheckin, booking.getBookingdates().getCheckin(), "Validating Check-in date", errors);
-            assertEquals(expectedCheckout, booking.getBookingdates().getCheckout(), "Validating Check-out date", errors);
-            assertEquals(expectedAdditionalNeeds, booking.getAdditionalneeds(), "Validating Additionalneeds", errors);
-        } catch (Exception e) {
-            reportManager.logFail("EXCEPTION: Failed to assert booking response. Error: " + e.getMessage());
-            errors.add("Exception occurred: " + e.getMessage());
+        assertEquals(200, httpStatusCode, "Validating http status code", errors);
+
+        BookingDiff diff = BookingDiff.compare(expected, actual);
+        if (diff.isEmpty()) {
+            reportManager.logPass("PASS: All " + BookingDiff.FIELD_COUNT + " booking fields match the expected values");
+        } else {
+            for (String mismatch : diff.describe()) {
+                String errorMessage = "FAIL: " + mismatch;
+                reportManager.logFail(errorMessage);
+                errors.add(errorMessage);
+            }
         }
         assertAllErrors(errors, reportManager);
+    }
+
+    /**
+     * Asserts that a response body matches a precompiled {@link ResponseSchema}: value types, required fields,
+     * date formats and no undeclared fields.
+     *
+     * @param response The API response to validate
+     * @param schema   The schema the body must match, e.g. {@link ResponseSchema#BOOKING}
+     */
+    public static void assertMatchesSchema(DecodedResponse response, ResponseSchema schema) {
+        List<String> errors = new ArrayList<>();
 
+        List<String> violations = schema.validate(response.asByteArray());
+        if (violations.isEmpty()) {
+            reportManager.logPass("PASS: Response matches the " + schema.getName() + " schema");
+        } else {
+            for (String violation : violations) {
+                String errorMessage = "FAIL: Schema violation: " + violation;
+                reportManager.logFail(errorMessage);
+                errors.add(errorMessage);
+            }
+        }
+        assertAllErrors(errors, reportManager);
     }
 
     /**
@@ -119,13 +155,35 @@ public class AssertionsUtils {
         assertAllErrors(errors, reportManager);
     }
 
+    /**
+     * Asserts that a filtered booking ID list contains, or does not contain, a given booking ID.
+     *
+     * @param bookingIdList   The booking IDs returned by the filtered request
+     * @param statusCode      The HTTP status code of the response
+     * @param bookingId       The booking ID to look for
+     * @param expectedPresent Whether the booking ID is expected in the list
+     * @param reportManager   The report manager for logging
+     */
+    public static void assertBookingIdListContains(List<BookingId> bookingIdList, int statusCode, int bookingId,
+                                                   boolean expectedPresent, ReportManager reportManager) {
+        List<String> errors = new ArrayList<>();
+
+        assertEquals(200, statusCode, "Validating http status code", errors);
+
+        boolean present = bookingIdList != null
+                && bookingIdList.stream().anyMatch(id -> id.getBookingid() == bookingId);
+        assertEquals(expectedPresent, present, "Validating booking ID " + bookingId + " in filtered list", errors);
+
+        assertAllErrors(errors, reportManager);
+    }
+
     /**
      * Asserts the status code of a booking delete response.
      *
      * @param response      The response from the delete operation
      * @param reportManager The report manager to log test results
      */
-    public static void assertDeleteBookingResponse(Response response, ReportManager reportManager) {
+    public static void assertDeleteBookingResponse(DecodedResponse response, ReportManager reportManager) {
         List<String> errors = null;
         try {
             errors = new ArrayList<>();
@@ -140,7 +198,8 @@ public class AssertionsUtils {
     }
 
     /**
-     * Aggregates and reports all soft assertion failures.
+     * Aggregates and reports all soft assertion failures. When there are failures, the recent HTTP exchanges of
+     * the current thread are written to the report before the error is thrown.
      *
      * @param errors        List of assertion error messages
      * @param reportManager The ExtentTest object used for logging
@@ -150,6 +209,7 @@ public class AssertionsUtils {
             for (String error : errors) {
                 reportManager.logInfo("ASSERTION FAILURE: " + error);
             }
+            ExchangeRecorder.dumpToReport(errors.size() + " assertion failure(s)");
             throw new AssertionError("Test failed due to assertion errors: " + errors);
         }
     }
@@ -160,10 +220,10 @@ public class AssertionsUtils {
      * @param expectedStatusCode  The expected HTTP status code
      * @param expectedErrorMessage The expected error message in the response body
      */
-    public static void assertErrorResponse(Response response, int expectedStatusCode, String expectedErrorMessage) {
+    public static void assertErrorResponse(DecodedResponse response, int expectedStatusCode, String expectedErrorMessage) {
         try {
             Assertions.assertEquals(expectedStatusCode, response.getStatusCode(), "Validating http status code");
-            Assertions.assertEquals(expectedErrorMessage, response.getBody().asString(), "Validating error message");
+            Assertions.assertEquals(expectedErrorMessage, response.asString(), "Validating error message");
 
             reportManager.logPass("PASS: Error response validated successfully. Status Code: " + expectedStatusCode + ", Message: " + expectedErrorMessage);
         } catch (Exception e) {
@@ -179,10 +239,10 @@ public class AssertionsUtils {
      * @param expectedStatusCode  The expected HTTP status code
      * @param expectedErrorMessage The expected error message in the response body
      */
-    public static void assertAuthErrorResponse(Response response, int expectedStatusCode, String expectedErrorMessage) {
+    public static void assertAuthErrorResponse(DecodedResponse response, int expectedStatusCode, String expectedErrorMessage) {
         try {
             Assertions.assertEquals(expectedStatusCode, response.getStatusCode(), "Validating http status code");
-            Assertions.assertEquals(expectedErrorMessage, response.jsonPath().getString("reason"), "Validating error message");
+            Assertions.assertEquals(expectedErrorMessage, response.getString("reason"), "Validating error message");
 
             reportManager.logPass("PASS: Error response validated successfully. Status Code: " + expectedStatusCode + ", Message: " + expectedErrorMessage);
         } catch (Exception e) {
@@ -197,18 +257,17 @@ public class AssertionsUtils {
      * @param response            The API response to validate
      * @param expectedStatusCode  The expected HTTP status code
      */
-    public static void assertAuthValidResponse(Response response, int expectedStatusCode) {
+    public static void assertAuthValidResponse(DecodedResponse response, int expectedStatusCode) {
         try {
             Assertions.assertEquals(expectedStatusCode, response.getStatusCode(), "Validating http status code");
 
-            String actualtoken = response.jsonPath().getString("token");
-            //For security reasons, we will not log the full token for reporting
-            String maskedToken = actualtoken.substring(0, 4) + "****" + actualtoken.substring(actualtoken.length() - 4);
-
-            Assertions.assertEquals(actualtoken, response.jsonPath().getString("token"), "Validating token message");
+            String actualtoken = response.getString("token");
             Assertions.assertNotNull(actualtoken, "Token should not be null");
             Assertions.assertFalse(actualtoken.trim().isEmpty(), "Token should not be empty");
 
+            //For security reasons, we will not log the full token for reporting
+            String maskedToken = actualtoken.substring(0, 4) + "****" + actualtoken.substring(actualtoken.length() - 4);
+
             reportManager.logPass("PASS: Token response validated successfully. Status Code: " + expectedStatusCode + ", Actual Token : " + maskedToken);
         } catch (Exception e) {
             reportManager.logFail("FAIL: Token response validation failed. " + e.getMessage());
@@ -0,0 +1,240 @@
+package nz.co.sundar.testautomation.restfulbooker.utils;
+
+import io.restassured.response.Response;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Client-side cache of {@code GET /booking/{id}} responses, used by {@link BookingUtils#getSpecificBookingId} when
+ * {@code cache.enabled} is set.
+ * <p>
+ * Only {@code 200} responses are kept, up to {@code cache.maxEntries}, evicting the least recently read booking.
+ * {@link BookingUtils} invalidates a booking after every update or delete sent for it, so a read that starts after
+ * a write has returned never sees the old booking. A read that was already in flight when the write happened does
+ * not fill the cache either: a miss first reserves the entry, and the invalidation removes the reservation, so the
+ * stale response is returned to that caller only.
+ * <p>
+ * Each hit returns a new {@link DecodedResponse} over the cached REST Assured response, so callers on different
+ * threads never share decoded state. Tests that must reach the server can read inside {@link #bypass()}.
+ */
+public class BookingCache {
+
+    private static final ThreadLocal<Integer> BYPASS_DEPTH = ThreadLocal.withInitial(() -> 0);
+
+    private final boolean enabled;
+    private final int maxEntries;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, Object> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * @param enabled    whether responses are cached at all
+     * @param maxEntries the most bookings kept, at least 1
+     */
+    public BookingCache(boolean enabled, int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Booking cache needs room for at least one entry");
+        }
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+                if (size() <= BookingCache.this.maxEntries) {
+                    return false;
+                }
+                if (eldest.getValue() instanceof Response) {
+                    evictions.increment();
+                }
+                return true;
+            }
+        };
+    }
+
+    /**
+     * @return the cache configured by the {@code cache.*} properties, shared by {@link BookingUtils}
+     */
+    public static BookingCache getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Makes reads on the calling thread skip the cache until the returned scope is closed:
+     * <pre>{@code
+     * try (BookingCache.Bypass ignored = BookingCache.bypass()) {
+     *     response = BookingUtils.getSpecificBookingId(bookingId);
+     * }
+     * }</pre>
+     * Responses read while bypassing are not cached either. Writes still invalidate.
+     *
+     * @return the scope to close
+     */
+    public static Bypass bypass() {
+        BYPASS_DEPTH.set(BYPASS_DEPTH.get() + 1);
+        return new Bypass();
+    }
+
+    /**
+     * Returns the booking's cached response, or fetches it on a miss.
+     *
+     * @param bookingId the booking id as sent in the path
+     * @param fetch     sends the {@code GET} request
+     * @return the cached or fetched response
+     */
+    public DecodedResponse get(String bookingId, Supplier<Response> fetch) {
+        if (!enabled || BYPASS_DEPTH.get() > 0) {
+            return new DecodedResponse(fetch.get());
+        }
+        Object reservation = new Object();
+        lock.lock();
+        try {
+            Object cached = entries.get(bookingId);
+            if (cached instanceof Response response) {
+                hits.increment();
+                return new DecodedResponse(response);
+            }
+            misses.increment();
+            if (cached == null) {
+                entries.put(bookingId, reservation);
+            } else {
+                // Another thread is already fetching this booking; only its response may fill the entry.
+                reservation = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        DecodedResponse fetched = null;
+        try {
+            // Reading the body here means the cached response never reads from the connection again.
+            fetched = new DecodedResponse(fetch.get());
+            return fetched;
+        } finally {
+            if (reservation != null) {
+                fill(bookingId, reservation, fetched);
+            }
+        }
+    }
+
+    private void fill(String bookingId, Object reservation, DecodedResponse fetched) {
+        lock.lock();
+        try {
+            // The reservation is gone if the booking was invalidated while it was being fetched.
+            if (entries.get(bookingId) == reservation) {
+                if (fetched != null && fetched.statusCode() == 200) {
+                    entries.put(bookingId, fetched.getResponse());
+                } else {
+                    entries.remove(bookingId);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops a booking's cached response, and any read of it still in flight, after a write was sent for it.
+     *
+     * @param bookingId the booking id as sent in the path
+     */
+    public void invalidate(String bookingId) {
+        if (!enabled) {
+            return;
+        }
+        invalidations.increment();
+        lock.lock();
+        try {
+            entries.remove(bookingId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops every cached response, e.g. after the stand-in was restored from a snapshot.
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the number of bookings cached or being fetched
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    /**
+     * @return a one-line summary such as {@code hits=900 (90.0%) misses=100 evictions=0 invalidations=40 size=60}
+     */
+    public String getSummary() {
+        long hitCount = hits.sum();
+        long reads = hitCount + misses.sum();
+        return String.format("hits=%d (%.1f%%) misses=%d evictions=%d invalidations=%d size=%d",
+                hitCount, reads == 0 ? 0.0 : 100.0 * hitCount / reads, misses.sum(), evictions.sum(),
+                invalidations.sum(), size());
+    }
+
+    private static final class Holder {
+        // Loaded on first use, so that a cache created directly does not need config.properties.
+        static final BookingCache INSTANCE = new BookingCache(
+                Boolean.parseBoolean(ConfigReader.getProperty("cache.enabled", "false")),
+                Integer.parseInt(ConfigReader.getProperty("cache.maxEntries", "1000")));
+    }
+
+    /**
+     * A scope in which the calling thread's reads skip the cache, returned by {@link #bypass()}.
+     */
+    public static final class Bypass implements AutoCloseable {
+
+        private boolean closed;
+
+        private Bypass() {
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                BYPASS_DEPTH.set(BYPASS_DEPTH.get() - 1);
+            }
+        }
+    }
+}
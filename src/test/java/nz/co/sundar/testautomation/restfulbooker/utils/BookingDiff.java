@@ -0,0 +1,190 @@
+package nz.co.sundar.testautomation.restfulbooker.utils;
+
+import nz.co.sundar.testautomation.restfulbooker.pojo.Booking;
+import nz.co.sundar.testautomation.restfulbooker.pojo.BookingDates;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Structural comparison of an expected and an actual {@link Booking}.
+ * <p>
+ * Mismatching fields are recorded as bits in an {@code int} mask. When every field matches, {@link #compare}
+ * returns the shared {@link #NONE} instance, so verifying a matching booking allocates nothing; messages are only
+ * built by {@link #describe()} for bookings that differ. This keeps bulk verification in load and consistency runs
+ * cheap enough to check thousands of bookings per second.
+ */
+public final class BookingDiff {
+
+    public static final int FIRSTNAME = 1;
+    public static final int LASTNAME = 1 << 1;
+    public static final int TOTALPRICE = 1 << 2;
+    public static final int DEPOSITPAID = 1 << 3;
+    public static final int CHECKIN = 1 << 4;
+    public static final int CHECKOUT = 1 << 5;
+    public static final int ADDITIONALNEEDS = 1 << 6;
+    /** The actual booking was {@code null}, so no field could be compared. */
+    public static final int BOOKING_MISSING = 1 << 7;
+
+    /** Number of booking fields compared. */
+    public static final int FIELD_COUNT = 7;
+
+    private static final String[] FIELD_NAMES = {
+            "First Name", "Last Name", "Total Price", "Deposit Paid", "Check-in date", "Check-out date", "Additionalneeds"
+    };
+
+    /** Result shared by every comparison where nothing differs. */
+    public static final BookingDiff NONE = new BookingDiff(0, null, null);
+
+    private final int mismatches;
+    private final Booking expected;
+    private final Booking actual;
+
+    private BookingDiff(int mismatches, Booking expected, Booking actual) {
+        this.mismatches = mismatches;
+        this.expected = expected;
+        this.actual = actual;
+    }
+
+    /**
+     * Compares two bookings field by field.
+     *
+     * @param expected the expected booking
+     * @param actual   the booking returned by the API, may be {@code null}
+     * @return {@link #NONE} if every field matches, otherwise a diff describing the mismatching fields
+     */
+    public static BookingDiff compare(Booking expected, Booking actual) {
+        int mask = mismatches(expected, actual);
+        return mask == 0 ? NONE : new BookingDiff(mask, expected, actual);
+    }
+
+    /**
+     * Computes the mismatch mask of two bookings without allocating.
+     *
+     * @param expected the expected booking
+     * @param actual   the booking returned by the API, may be {@code null}
+     * @return a mask of the field constants that differ, 0 when the bookings match
+     */
+    public static int mismatches(Booking expected, Booking actual) {
+        if (expected == actual) {
+            return 0;
+        }
+        if (actual == null || expected == null) {
+            return BOOKING_MISSING;
+        }
+        BookingDates expectedDates = expected.getBookingdates();
+        BookingDates actualDates = actual.getBookingdates();
+
+        int mask = 0;
+        if (!Objects.equals(expected.getFirstname(), actual.getFirstname())) {
+            mask |= FIRSTNAME;
+        }
+        if (!Objects.equals(expected.getLastname(), actual.getLastname())) {
+            mask |= LASTNAME;
+        }
+        if (expected.getTotalprice() != actual.getTotalprice()) {
+            mask |= TOTALPRICE;
+        }
+        if (expected.isDepositpaid() != actual.isDepositpaid()) {
+            mask |= DEPOSITPAID;
+        }
+        if (!Objects.equals(checkin(expectedDates), checkin(actualDates))) {
+            mask |= CHECKIN;
+        }
+        if (!Objects.equals(checkout(expectedDates), checkout(actualDates))) {
+            mask |= CHECKOUT;
+        }
+        if (!Objects.equals(expected.getAdditionalneeds(), actual.getAdditionalneeds())) {
+            mask |= ADDITIONALNEEDS;
+        }
+        return mask;
+    }
+
+    /**
+     * Compares two lists of bookings pairwise and collects the diffs of the pairs that differ.
+     *
+     * @param expected   the expected bookings
+     * @param actual     the actual bookings, in the same order as {@code expected}
+     * @param mismatches receives a diff for every mismatching pair, may be {@code null} to only count
+     * @return the number of mismatching pairs, including pairs missing from {@code actual}
+     */
+    public static int compareAll(List<Booking> expected, List<Booking> actual, List<BookingDiff> mismatches) {
+        int count = 0;
+        for (int i = 0; i < expected.size(); i++) {
+            Booking actualBooking = i < actual.size() ? actual.get(i) : null;
+            int mask = mismatches(expected.get(i), actualBooking);
+            if (mask != 0) {
+                count++;
+                if (mismatches != null) {
+                    mismatches.add(new BookingDiff(mask, expected.get(i), actualBooking));
+                }
+            }
+        }
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return mismatches == 0;
+    }
+
+    /**
+     * @return the mask of mismatching field constants
+     */
+    public int getMismatches() {
+        return mismatches;
+    }
+
+    /**
+     * @param field one of the field constants
+     * @return whether that field differs
+     */
+    public boolean hasMismatch(int field) {
+        return (mismatches & field) != 0;
+    }
+
+    /**
+     * Builds a message for every mismatching field in the form used by {@code AssertionsUtils}.
+     *
+     * @return one message per mismatching field, empty when nothing differs
+     */
+    public List<String> describe() {
+        List<String> messages = new ArrayList<>(Integer.bitCount(mismatches));
+        if (hasMismatch(BOOKING_MISSING)) {
+            messages.add("Validating Booking | expected: " + expected + " but was: " + actual);
+            return messages;
+        }
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            if ((mismatches & (1 << field)) != 0) {
+                messages.add("Validating " + FIELD_NAMES[field] + " | expected: " + value(expected, field)
+                        + " but was: " + value(actual, field));
+            }
+        }
+        return messages;
+    }
+
+    @Override
+    public String toString() {
+        return isEmpty() ? "BookingDiff{none}" : "BookingDiff" + describe();
+    }
+
+    private static Object value(Booking booking, int field) {
+        return switch (field) {
+            case 0 -> booking.getFirstname();
+            case 1 -> booking.getLastname();
+            case 2 -> booking.getTotalprice();
+            case 3 -> booking.isDepositpaid();
+            case 4 -> checkin(booking.getBookingdates());
+            case 5 -> checkout(booking.getBookingdates());
+            default -> booking.getAdditionalneeds();
+        };
+    }
+
+    private static String checkin(BookingDates dates) {
+        return dates == null ? null : dates.getCheckin();
+    }
+
+    private static String checkout(BookingDates dates) {
+        return dates == null ? null : dates.getCheckout();
+    }
+}
@@ -3,22 +3,37 @@ package nz.co.sundar.testautomation.restfulbooker.utils;
 import io.restassured.RestAssured;
 import io.restassured.http.ContentType;
 import io.restassured.response.Response;
+import io.restassured.specification.RequestSpecification;
 import nz.co.sundar.testautomation.restfulbooker.payloads.BookingPayloads;
 import nz.co.sundar.testautomation.restfulbooker.pojo.Booking;
 import nz.co.sundar.testautomation.restfulbooker.pojo.BookingDates;
 
+import java.util.function.Supplier;
+
 import static io.restassured.RestAssured.given;
 
 public class BookingUtils {
     public static String bookingResourcePath = "/booking";
 
-    public static Response createTestBooking() {
+    /**
+     * Retries updates on an expired token (after refreshing it) and on transient failures. Updates are idempotent.
+     */
+    private static final RetryPolicy UPDATE_RETRY = RetryPolicy.fromConfig("Update booking retry", true);
+    /**
+     * Retries deletes like updates, except after ambiguous failures: a delete that was applied before the
+     * connection dropped would answer 405 when sent again.
+     */
+    private static final RetryPolicy DELETE_RETRY = RetryPolicy.fromConfig("Delete booking retry", false);
+    private static final HedgingPolicy GET_BOOKING_HEDGE = HedgingPolicy.fromConfig("Get booking hedge");
+    private static final HedgingPolicy LIST_BOOKINGS_HEDGE = HedgingPolicy.fromConfig("List bookings hedge");
+    private static final BookingCache CACHE = BookingCache.getInstance();
+
+    public static DecodedResponse createTestBooking() {
 
-        Response response = BookingUtils.createTestBooking("Jim", "Brown");
-        return response;
+        return BookingUtils.createTestBooking("Jim", "Brown");
     }
 
-    public static Response createTestBooking(String firstName, String lastName) {
+    public static DecodedResponse createTestBooking(String firstName, String lastName) {
 
         String payload = BookingPayloads.createBookingPayload(
                 firstName,
@@ -30,29 +45,28 @@ public class BookingUtils {
                 "Breakfast"    // additionalNeeds
         );
 
-        return given()
+        return new DecodedResponse(given()
                 .contentType(ContentType.JSON)
                 .body(payload)
-                .post(bookingResourcePath);
+                .post(bookingResourcePath));
     }
 
-    public static Response createTestBooking(String firstName, String lastName, int totalPrice,
+    public static DecodedResponse createTestBooking(String firstName, String lastName, int totalPrice,
                                              boolean depositPaid, String checkin, String checkout,
                                              String additionalNeeds) {
 
         BookingDates dates = new BookingDates(checkin, checkout);
         Booking booking = new Booking(firstName, lastName, totalPrice, depositPaid, dates, additionalNeeds);
 
-        return RestAssured
+        return new DecodedResponse(RestAssured
                 .given()
                 .contentType(ContentType.JSON)
-                .log().body()
                 .body(booking)
                 .when()
-                .post(bookingResourcePath);
+                .post(bookingResourcePath));
     }
 
-    public static Response createInvalidBooking() {
+    public static DecodedResponse createInvalidBooking() {
 
         String payload = BookingPayloads.createInvalidBookingPayload(
                 "John",
@@ -64,14 +78,13 @@ public class BookingUtils {
                 "Breakfast"    // additionalNeeds
         );
 
-        return given()
+        return new DecodedResponse(given()
                 .contentType(ContentType.JSON)
-                .log().body()
                 .body(payload)
-                .post(bookingResourcePath);
+                .post(bookingResourcePath));
     }
 
-    public static Response updateSpecificBooking(int bookingId,
+    public static DecodedResponse updateSpecificBooking(int bookingId,
                                                  String firstName,
                                                  String lastName,
                                                  int totalPrice,
@@ -91,112 +104,139 @@ public class BookingUtils {
                 additionalNeeds
         );
 
-        String token = TokenManager.getToken();
-
-        Response response = TokenManager.sendUpdateRequest(token, bookingIdResourcePath, payload);
-        // Retry logic for 403 Forbidden
-        if (response.statusCode() == 403) {
-            // Token expired or invalid. Refreshing token and retrying...
-            TokenManager.invalidateToken(); // Reset token
-            token = TokenManager.getToken(); // Get a new one
-            response = TokenManager.sendUpdateRequest(token, bookingIdResourcePath, payload);
-        }
-
-        return response;
+        return afterWrite(String.valueOf(bookingId), () -> UPDATE_RETRY.execute(
+                () -> TokenManager.sendUpdateRequest(TokenManager.getToken(), bookingIdResourcePath, payload),
+                BookingUtils::refreshTokenOnForbidden));
     }
 
-    public static Response getSpecificBookingId(int bookingId) {
+    public static DecodedResponse getSpecificBookingId(int bookingId) {
         return getSpecificBookingId(String.valueOf(bookingId));
     }
 
-    public static Response getSpecificBookingId(String bookingId) {
+    /**
+     * Reads a booking, from the {@link BookingCache} when it is enabled. Use {@link BookingCache#bypass()} to make
+     * sure the request reaches the server.
+     */
+    public static DecodedResponse getSpecificBookingId(String bookingId) {
         String bookingIdResourcePath = bookingResourcePath + "/" + bookingId;
 
-        return given()
+        return CACHE.get(bookingId, () -> GET_BOOKING_HEDGE.execute(() -> given()
                 .contentType(ContentType.JSON)
                 .when()
                 .get(bookingIdResourcePath)
                 .then()
                 .extract()
-                .response();
+                .response()));
     }
 
-    public static Response getAllBookingIds(boolean includeHeaders) {
+    public static DecodedResponse getAllBookingIds(boolean includeHeaders) {
 
-        return (includeHeaders ? given().contentType(ContentType.JSON) : given())
-                .when()
-                .get(bookingResourcePath)
-                .then()
-                .extract()
-                .response();
+        return new DecodedResponse(LIST_BOOKINGS_HEDGE.execute(() ->
+                (includeHeaders ? given().contentType(ContentType.JSON) : given())
+                        .when()
+                        .get(bookingResourcePath)
+                        .then()
+                        .extract()
+                        .response()));
     }
 
-    public static Response deleteTestBookingId(int bookingId) {
+    /**
+     * Lists the booking IDs matching the given filters. Filters that are {@code null} are not sent.
+     *
+     * @param firstName exact first name
+     * @param lastName  exact last name
+     * @param checkin   bookings checking in on or after this date (yyyy-MM-dd)
+     * @param checkout  bookings checking out on or after this date (yyyy-MM-dd)
+     */
+    public static DecodedResponse getAllBookingIds(String firstName, String lastName, String checkin, String checkout) {
+        // A hedge sends the request again from another thread, so each copy builds its own specification.
+        return new DecodedResponse(LIST_BOOKINGS_HEDGE.execute(() -> {
+            RequestSpecification request = given().contentType(ContentType.JSON);
+            if (firstName != null) {
+                request.queryParam("firstname", firstName);
+            }
+            if (lastName != null) {
+                request.queryParam("lastname", lastName);
+            }
+            if (checkin != null) {
+                request.queryParam("checkin", checkin);
+            }
+            if (checkout != null) {
+                request.queryParam("checkout", checkout);
+            }
+            return request
+                    .when()
+                    .get(bookingResourcePath)
+                    .then()
+                    .extract()
+                    .response();
+        }));
+    }
+
+    public static DecodedResponse deleteTestBookingId(int bookingId) {
         return deleteTestBookingId(String.valueOf(bookingId));
     }
 
-    public static Response deleteTestBookingId(String bookingId) {
+    public static DecodedResponse deleteTestBookingId(String bookingId) {
         return deleteTestBookingId(String.valueOf(bookingId), TokenManager.getToken());
     }
 
-    public static Response deleteTestBookingId(String bookingId, String token) {
+    public static DecodedResponse deleteTestBookingId(String bookingId, String token) {
         String bookingIdResourcePath = bookingResourcePath + "/" + bookingId;
 
-        Response response = TokenManager.sendDeleteRequest(token, bookingIdResourcePath);
-        // Retry logic for 403 Forbidden
-        if (response.statusCode() == 403) {
-            // Token expired or invalid. Refreshing token and retrying...
-            TokenManager.invalidateToken(); // Reset token
-            token = TokenManager.getToken(); // Get a new one
-            response = TokenManager.sendDeleteRequest(token, bookingIdResourcePath);
-        }
-
-        return response;
+        // The given token is used first; retries after a 403 use a fresh one from the TokenManager.
+        String[] current = {token};
+        return afterWrite(bookingId, () -> DELETE_RETRY.execute(
+                () -> TokenManager.sendDeleteRequest(current[0], bookingIdResourcePath),
+                response -> {
+                    refreshTokenOnForbidden(response);
+                    current[0] = TokenManager.getToken();
+                }));
     }
 
     /**
      * As token is being refreshed in the middle of tests, this method is used to test the No Auth scenario when calling
      * UpdateTestBookingId with NoAuth 403 validation specifically.
      */
-    public static Response UpdateBookingWithNoAuthTest(int bookingId, String token) {
+    public static DecodedResponse UpdateBookingWithNoAuthTest(int bookingId, String token) {
         String bookingIdResourcePath = bookingResourcePath + "/" + bookingId;
 
-        return given()
+        return afterWrite(String.valueOf(bookingId), () -> given()
                 .header("Cookie", "token=" + token)
                 .contentType(ContentType.JSON)
                 .when()
                 .put(bookingIdResourcePath)
                 .then()
                 .extract()
-                .response();
+                .response());
     }
 
     /**
      * As token is being refreshed in the middle of tests, this method is used to test the No Auth scenario when calling
      * DeleteTestBookingId with NoAuth.
      */
-    public static Response deleteBookingWithNoAuthTest(int bookingId, String token) {
+    public static DecodedResponse deleteBookingWithNoAuthTest(int bookingId, String token) {
         String bookingIdResourcePath = bookingResourcePath + "/" + bookingId;
 
-        return given()
+        return afterWrite(String.valueOf(bookingId), () -> given()
                 .header("Cookie", "token=" + token)
                 .contentType(ContentType.JSON)
                 .when()
                 .delete(bookingIdResourcePath)
                 .then()
                 .extract()
-                .response();
+                .response());
     }
 
-    public static Response updateInvalidBookingId(String bookingId) {
+    public static DecodedResponse updateInvalidBookingId(String bookingId) {
         return updateEmptyBookingId(String.valueOf(bookingId), TokenManager.getToken());
     }
 
-    public static Response updateEmptyBookingId(String bookingId) {
+    public static DecodedResponse updateEmptyBookingId(String bookingId) {
         return updateEmptyBookingId(String.valueOf(bookingId), TokenManager.getToken());
     }
 
-    public static Response updateEmptyBookingId(String bookingId, String token) {
+    public static DecodedResponse updateEmptyBookingId(String bookingId, String token) {
         String bookingIdResourcePath = bookingResourcePath + "/" + bookingId;
         String payload = BookingPayloads.createInvalidBookingPayload(
                 "John",
@@ -207,16 +247,34 @@ public class BookingUtils {
                 "invalid check-out",  // invalid checkout
                 "Breakfast"    // additionalNeeds
         );
-        Response response = TokenManager.sendUpdateRequest(token, bookingIdResourcePath, payload);
-        // Retry logic for 403 Forbidden
-        if (response.statusCode() == 403) {
-            // Token expired or invalid. Refreshing token and retrying...
-            TokenManager.invalidateToken(); // Reset token
-            token = TokenManager.getToken(); // Get a new one
-            response = TokenManager.sendUpdateRequest(token, bookingIdResourcePath, payload);
+        String[] current = {token};
+        return afterWrite(bookingId, () -> UPDATE_RETRY.execute(
+                () -> TokenManager.sendUpdateRequest(current[0], bookingIdResourcePath, payload),
+                response -> {
+                    refreshTokenOnForbidden(response);
+                    current[0] = TokenManager.getToken();
+                }));
+    }
+
+    /**
+     * Sends a write for a booking and then drops the booking from the {@link BookingCache}, even if the write
+     * failed, since it may still have been applied.
+     */
+    private static DecodedResponse afterWrite(String bookingId, Supplier<Response> write) {
+        try {
+            return new DecodedResponse(write.get());
+        } finally {
+            CACHE.invalidate(bookingId);
         }
+    }
 
-        return response;
+    /**
+     * Called before a retry: a 403 means the cached token has expired or is invalid, so a new one is fetched.
+     */
+    private static void refreshTokenOnForbidden(Response response) {
+        if (response != null && response.statusCode() == 403) {
+            TokenManager.invalidateToken();
+        }
     }
 
    }
\ No newline at end of file
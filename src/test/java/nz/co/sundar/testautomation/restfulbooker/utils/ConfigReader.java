@@ -22,5 +22,17 @@ public class ConfigReader {
     public static String getProperty(String key) {
         return properties.getProperty(key);
     }
+
+    /**
+     * Returns the trimmed value of a property, or the default value when the key is missing or blank.
+     *
+     * @param key          the property key
+     * @param defaultValue the value returned when the property is not set
+     * @return the configured value or the default
+     */
+    public static String getProperty(String key, String defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
 }
 
@@ -0,0 +1,196 @@
+package nz.co.sundar.testautomation.restfulbooker.utils;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import io.restassured.response.Response;
+import nz.co.sundar.testautomation.restfulbooker.pojo.Booking;
+import nz.co.sundar.testautomation.restfulbooker.pojo.BookingId;
+import nz.co.sundar.testautomation.restfulbooker.pojo.BookingResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A REST Assured {@link Response} whose body is read once and decoded at most once per representation.
+ * <p>
+ * {@code response.asString()} and {@code response.jsonPath()} re-decode the body on every call, and each
+ * {@code jsonPath()} builds a new Groovy-based parser. This wrapper keeps the body bytes and lazily caches the
+ * String, the Jackson tree and the typed POJOs, so a test or load loop pays for one parse per response however
+ * many fields it reads.
+ * <p>
+ * Instances are not thread-safe; a response is expected to be inspected by the thread that received it.
+ */
+public class DecodedResponse {
+
+    private static final TypeReference<List<BookingId>> BOOKING_ID_LIST = new TypeReference<>() {};
+
+    private final Response response;
+    private final int statusCode;
+    private final byte[] body;
+
+    private String text;
+    private JsonNode tree;
+    private BookingResponse bookingResponse;
+    private Booking booking;
+    private List<BookingId> bookingIds;
+
+    public DecodedResponse(Response response) {
+        this.response = response;
+        this.statusCode = response.getStatusCode();
+        this.body = response.asByteArray();
+    }
+
+    /**
+     * Returns the underlying REST Assured response for headers, cookies and timings.
+     *
+     * @return the raw response
+     */
+    public Response getResponse() {
+        return response;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public int statusCode() {
+        return statusCode;
+    }
+
+    public byte[] asByteArray() {
+        return body;
+    }
+
+    /**
+     * Returns the body as a UTF-8 String, decoding it on first use.
+     *
+     * @return the response body
+     */
+    public String asString() {
+        if (text == null) {
+            text = new String(body, StandardCharsets.UTF_8);
+        }
+        return text;
+    }
+
+    /**
+     * Returns the body as a Jackson tree, parsing it on first use. Bodies that are not JSON, such as
+     * {@code "Not Found"}, yield a {@link MissingNode}.
+     *
+     * @return the parsed body
+     */
+    public JsonNode jsonTree() {
+        if (tree == null) {
+            try {
+                tree = PojoUtils.getObjectMapper().readTree(body);
+            } catch (IOException e) {
+                tree = null;
+            }
+            if (tree == null) {
+                tree = MissingNode.getInstance();
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * Navigates the cached tree using a dot separated path such as {@code "booking.bookingdates.checkin"}.
+     *
+     * @param path the dot separated field path
+     * @return the node at the path, or a {@link MissingNode} if any segment is absent
+     */
+    public JsonNode node(String path) {
+        JsonNode node = jsonTree();
+        int start = 0;
+        while (start <= path.length() && !node.isMissingNode()) {
+            int end = path.indexOf('.', start);
+            if (end < 0) {
+                end = path.length();
+            }
+            node = node.path(path.substring(start, end));
+            start = end + 1;
+        }
+        return node;
+    }
+
+    /**
+     * Returns the text value at a path, or {@code null} when the field is missing or JSON {@code null}.
+     *
+     * @param path the dot separated field path
+     * @return the field value as text
+     */
+    public String getString(String path) {
+        JsonNode node = node(path);
+        return node.isMissingNode() || node.isNull() ? null : node.asText();
+    }
+
+    /**
+     * Returns the boolean value at a path, or {@code false} when the field is missing.
+     *
+     * @param path the dot separated field path
+     * @return the field value as a boolean
+     */
+    public boolean getBoolean(String path) {
+        return node(path).asBoolean();
+    }
+
+    /**
+     * Returns the body of a create booking response as a {@link BookingResponse}, or {@code null} if the body
+     * does not match.
+     *
+     * @return the cached booking response
+     */
+    public BookingResponse bookingResponse() {
+        if (bookingResponse == null) {
+            bookingResponse = convert(BookingResponse.class);
+        }
+        return bookingResponse;
+    }
+
+    /**
+     * Returns the body of a get or update booking response as a {@link Booking}, or {@code null} if the body
+     * does not match.
+     *
+     * @return the cached booking
+     */
+    public Booking booking() {
+        if (booking == null) {
+            booking = convert(Booking.class);
+        }
+        return booking;
+    }
+
+    /**
+     * Returns the body of a get all bookings response, or an empty list if the body does not match.
+     *
+     * @return the cached list of booking ids
+     */
+    public List<BookingId> bookingIds() {
+        if (bookingIds == null) {
+            try {
+                bookingIds = PojoUtils.getObjectMapper().readerFor(BOOKING_ID_LIST).readValue(jsonTree());
+            } catch (IOException | IllegalArgumentException e) {
+                bookingIds = null;
+            }
+            if (bookingIds == null) {
+                bookingIds = new ArrayList<>();
+            }
+        }
+        return bookingIds;
+    }
+
+    private <T> T convert(Class<T> type) {
+        JsonNode node = jsonTree();
+        if (node.isMissingNode()) {
+            return null;
+        }
+        try {
+            return PojoUtils.getObjectMapper().treeToValue(node, type);
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package nz.co.sundar.testautomation.restfulbooker.utils;
+
+import io.restassured.response.Response;
+import nz.co.sundar.testautomation.restfulbooker.filters.ExchangeRecorder;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Sends a second copy of a slow idempotent request and returns whichever copy answers first.
+ * <p>
+ * The hedge is sent once the first request has taken longer than a percentile, by default the p95, of the
+ * latencies this policy has seen for first requests, so about one call in twenty costs an extra request while
+ * the slowest calls finish as soon as either copy does. Until {@code hedge.minSamples} calls have been seen,
+ * calls are not hedged. A {@code 5xx} answer does not win the race; it is returned only if the other copy does
+ * no better.
+ * <p>
+ * Both copies of a hedged call run on pooled threads and record their exchanges into the calling thread's
+ * {@link ExchangeRecorder} ring, so they appear in the calling test's failure diagnostics. The losing copy is
+ * cancelled; a copy already waiting on the server cannot be aborted through REST Assured, so it finishes in the
+ * background, its response is read and dropped, and the first copy's latency is recorded as the baseline in
+ * {@link PolicyStats}. Only wrap calls that may safely be sent twice, such as the {@code GET}s in
+ * {@link BookingUtils}.
+ */
+public class HedgingPolicy {
+
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "hedged-request");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final boolean enabled;
+    private final double percentile;
+    private final int minSamples;
+    private final long minDelayNanos;
+    private final LatencyHistogram firstRequests = new LatencyHistogram();
+    private final PolicyStats stats;
+
+    /**
+     * @param name           the name the policy is reported under
+     * @param enabled        whether calls are hedged at all; disabled policies still record statistics
+     * @param percentile     the percentile of first-request latency after which the hedge is sent, e.g. 95
+     * @param minSamples     calls to observe before hedging starts
+     * @param minDelayMillis the shortest wait before hedging, so fast calls are never duplicated
+     */
+    public HedgingPolicy(String name, boolean enabled, double percentile, int minSamples, long minDelayMillis) {
+        this.enabled = enabled;
+        this.percentile = percentile;
+        this.minSamples = minSamples;
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(minDelayMillis);
+        this.stats = PolicyStats.forPolicy(name);
+    }
+
+    /**
+     * Builds a policy from the {@code hedge.*} properties.
+     *
+     * @param name the name the policy is reported under
+     */
+    public static HedgingPolicy fromConfig(String name) {
+        return new HedgingPolicy(name,
+                Boolean.parseBoolean(ConfigReader.getProperty("hedge.enabled", "false")),
+                Double.parseDouble(ConfigReader.getProperty("hedge.percentile", "95")),
+                Integer.parseInt(ConfigReader.getProperty("hedge.minSamples", "20")),
+                Long.parseLong(ConfigReader.getProperty("hedge.minDelayMillis", "5")));
+    }
+
+    /**
+     * @return how long a call waits before sending its hedge, or -1 while hedging is off or still warming up
+     */
+    public long getHedgeDelayNanos() {
+        if (!enabled || firstRequests.getCount() < minSamples) {
+            return -1;
+        }
+        return Math.max(minDelayNanos, firstRequests.getPercentileNanos(percentile));
+    }
+
+    /**
+     * Sends a request, hedging it if the first copy is slow.
+     *
+     * @param call sends the request; called a second time for the hedge
+     * @return the first response to arrive below {@code 500}, else the first copy's response, else the hedge's
+     */
+    public Response execute(Supplier<Response> call) {
+        long delayNanos = getHedgeDelayNanos();
+        long start = System.nanoTime();
+        if (delayNanos < 0) {
+            return executeDirectly(call, start);
+        }
+
+        Supplier<Response> recorded = ExchangeRecorder.recordingToCurrentThread(call);
+        Copy first = new Copy(recorded);
+        first.result.whenComplete((response, failure) -> firstRequests.recordNanos(first.elapsedNanos));
+        try {
+            Response response = first.result.get(delayNanos, TimeUnit.NANOSECONDS);
+            long elapsed = System.nanoTime() - start;
+            stats.record(elapsed, isAnswer(response), elapsed, isAnswer(response), 0);
+            return response;
+        } catch (TimeoutException e) {
+            // Slow: hedge below.
+        } catch (ExecutionException e) {
+            long elapsed = System.nanoTime() - start;
+            stats.record(elapsed, false, elapsed, false, 0);
+            throw rethrow(e.getCause());
+        } catch (InterruptedException e) {
+            first.cancel();
+            throw interrupted(e);
+        }
+
+        Copy hedge = new Copy(recorded);
+        CompletableFuture<Copy> winner = new CompletableFuture<>();
+        AtomicInteger finished = new AtomicInteger();
+        for (Copy copy : List.of(first, hedge)) {
+            copy.result.whenComplete((response, failure) -> {
+                if (failure == null && isAnswer(response)) {
+                    winner.complete(copy);
+                } else if (finished.incrementAndGet() == 2) {
+                    winner.complete(null);
+                }
+            });
+        }
+        Copy won;
+        try {
+            won = winner.get();
+        } catch (InterruptedException e) {
+            first.cancel();
+            hedge.cancel();
+            throw interrupted(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        long effectiveNanos = System.nanoTime() - start;
+
+        if (won == null) {
+            stats.record(first.elapsedNanos, false, effectiveNanos, false, 1);
+            // Neither copy got an answer below 500: prefer what the first copy got, as without hedging.
+            Response response = first.response != null ? first.response : hedge.response;
+            if (response == null) {
+                throw rethrow(first.failure);
+            }
+            return response;
+        }
+        (won == first ? hedge : first).cancel();
+        // The baseline is the first copy's latency, known once it finishes even if the hedge won.
+        first.result.whenComplete((response, failure) -> stats.record(first.elapsedNanos,
+                failure == null ? isAnswer(response) : first.cancelled, effectiveNanos, true, 1));
+        return won.response;
+    }
+
+    /**
+     * @return whether a response answers the call, rather than being a server error that the other copy may beat
+     */
+    private static boolean isAnswer(Response response) {
+        return response.getStatusCode() < 500;
+    }
+
+    private static RuntimeException rethrow(Throwable failure) {
+        if (failure instanceof Error error) {
+            throw error;
+        }
+        return RetryPolicy.<RuntimeException>sneakyThrow((Exception) failure);
+    }
+
+    private IllegalStateException interrupted(InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return new IllegalStateException("Interrupted while waiting for " + stats.getName(), e);
+    }
+
+    private Response executeDirectly(Supplier<Response> call, long start) {
+        boolean ok = false;
+        try {
+            Response response = call.get();
+            ok = true;
+            return response;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            firstRequests.recordNanos(elapsed);
+            stats.record(elapsed, ok, elapsed, ok, 0);
+        }
+    }
+
+    public PolicyStats getStats() {
+        return stats;
+    }
+
+    /**
+     * One copy of a hedged request, sent from a pooled thread as soon as it is created.
+     */
+    private static final class Copy {
+
+        final CompletableFuture<Response> result = new CompletableFuture<>();
+        final long start = System.nanoTime();
+        // Set before result completes, so readers that have seen the result see them too.
+        volatile long elapsedNanos = -1;
+        volatile Response response;
+        volatile Throwable failure;
+        volatile boolean cancelled;
+        final Future<?> task;
+
+        Copy(Supplier<Response> call) {
+            task = EXECUTOR.submit(() -> {
+                try {
+                    response = call.get();
+                    elapsedNanos = System.nanoTime() - start;
+                    result.complete(response);
+                } catch (Throwable e) {
+                    failure = e;
+                    elapsedNanos = System.nanoTime() - start;
+                    result.completeExceptionally(e);
+                }
+            });
+        }
+
+        /**
+         * Interrupts the copy if it is still waiting, e.g. for a concurrency permit, and drops its response if it
+         * arrives anyway. A failure caused by the cancellation does not count against the baseline.
+         */
+        void cancel() {
+            cancelled = true;
+            task.cancel(true);
+            result.thenAccept(Copy::discard);
+        }
+
+        private static void discard(Response response) {
+            try {
+                // Reads the body to the end so that its connection is released.
+                response.asByteArray();
+            } catch (RuntimeException e) {
+                // Nobody is waiting for this copy any more.
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package nz.co.sundar.testautomation.restfulbooker.utils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * A fixed-size, thread-safe histogram of latencies with log-linear buckets.
+ * <p>
+ * Latencies are recorded in microseconds. Values below 16 us get a bucket each; above that every power of two is
+ * split into 16 buckets, so a reported percentile is at most about 6% above the true value whatever its
+ * magnitude. Recording is a single atomic increment and never allocates, so it can be called on every request.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records one latency.
+     *
+     * @param nanos the latency in nanoseconds; negative values are recorded as 0
+     */
+    public void recordNanos(long nanos) {
+        long micros = Math.max(0, nanos / 1_000);
+        counts.incrementAndGet(bucketOf(micros));
+        maxMicros.accumulate(micros);
+    }
+
+    /**
+     * @return the number of recorded latencies
+     */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the latency at or below which the given percentage of recorded latencies fall.
+     *
+     * @param percentile between 0 and 100, e.g. {@code 99}
+     * @return the latency in nanoseconds, rounded up to its bucket's upper bound, or 0 if nothing was recorded
+     */
+    public long getPercentileNanos(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), maxMicros.get()) * 1_000;
+            }
+        }
+        return maxMicros.get() * 1_000;
+    }
+
+    public long getMaxNanos() {
+        return maxMicros.get() * 1_000;
+    }
+
+    /**
+     * Adds every latency recorded in another histogram to this one, e.g. to combine operations or runs. Not atomic
+     * with respect to concurrent recording into {@code other}.
+     *
+     * @param other the histogram to add; it is not changed
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = other.counts.get(i);
+            if (count != 0) {
+                counts.addAndGet(i, count);
+            }
+        }
+        maxMicros.accumulate(other.maxMicros.get());
+    }
+
+    /**
+     * Writes the histogram compactly, as its maximum and the index and count of each non-empty bucket, so that
+     * another JVM can read it with {@link #readFrom(DataInput)} and {@link #add(LatencyHistogram)} it to others.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        long[] snapshot = new long[BUCKETS];
+        int used = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            if (snapshot[i] != 0) {
+                used++;
+            }
+        }
+        out.writeLong(maxMicros.get());
+        out.writeInt(used);
+        for (int i = 0; i < BUCKETS && used > 0; i++) {
+            if (snapshot[i] != 0) {
+                out.writeShort(i);
+                out.writeLong(snapshot[i]);
+                used--;
+            }
+        }
+    }
+
+    /**
+     * Reads a histogram written by {@link #writeTo(DataOutput)}.
+     */
+    public static LatencyHistogram readFrom(DataInput in) throws IOException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.maxMicros.accumulate(in.readLong());
+        int used = in.readInt();
+        for (int i = 0; i < used; i++) {
+            int bucket = in.readUnsignedShort();
+            if (bucket >= BUCKETS) {
+                throw new IOException("Histogram bucket out of range: " + bucket);
+            }
+            histogram.counts.addAndGet(bucket, in.readLong());
+        }
+        return histogram;
+    }
+
+    /**
+     * Clears all recorded latencies. Not atomic with respect to concurrent recording.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        maxMicros.reset();
+    }
+
+    /**
+     * @return a short summary such as {@code n=120 p50=12.1ms p95=40.3ms p99=88.0ms max=91.2ms}
+     */
+    public String getSummary() {
+        return "n=" + getCount() + " p50=" + formatMillis(getPercentileNanos(50))
+                + " p95=" + formatMillis(getPercentileNanos(95)) + " p99=" + formatMillis(getPercentileNanos(99))
+                + " max=" + formatMillis(getMaxNanos());
+    }
+
+    public static String formatMillis(long nanos) {
+        return String.format("%.1fms", nanos / 1_000_000.0);
+    }
+
+    static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((micros >>> shift) - SUB_BUCKETS);
+    }
+
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
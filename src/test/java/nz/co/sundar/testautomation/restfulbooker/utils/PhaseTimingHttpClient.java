@@ -0,0 +1,349 @@
+package nz.co.sundar.testautomation.restfulbooker.utils;
+
+import io.restassured.RestAssured;
+import io.restassured.config.HttpClientConfig;
+import nz.co.sundar.testautomation.restfulbooker.utils.PhaseTimings.Phase;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.client.protocol.ClientContext;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.ClientConnectionOperator;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.HttpInetSocketAddress;
+import org.apache.http.conn.OperatedClientConnection;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeLayeredSocketFactory;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.scheme.SchemeSocketFactory;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.BasicClientConnectionManager;
+import org.apache.http.impl.conn.DefaultClientConnectionOperator;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestExecutor;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.util.Arrays;
+
+/**
+ * The {@link DefaultHttpClient} that REST Assured creates for every request, with hooks that time each phase of the
+ * request into {@link PhaseTimings}.
+ * <p>
+ * The connection operator times resolving the host, the TCP connect and, for HTTPS, the TLS handshake separately:
+ * it connects a plain socket and then layers the scheme's TLS socket over it, which is what the TLS socket factory
+ * would otherwise do in one step. The request executor times writing the request and waiting for the response
+ * headers, and the response body is wrapped to time reading it to the end. Each request is recorded under its
+ * method and path with ids replaced, e.g. {@code GET /booking/{id}}, once its body has been read.
+ * <p>
+ * {@link #install()} makes REST Assured use this client for {@code BookingUtils}, {@code TokenManager} and
+ * everything else sent through it when {@code timing.phases} is {@code true}.
+ */
+@SuppressWarnings("deprecation")
+public class PhaseTimingHttpClient extends DefaultHttpClient {
+
+    private static final String TIMING = PhaseTimingHttpClient.class.getName() + ".timing";
+
+    private static boolean installed;
+
+    private final PhaseTimings timings;
+
+    public PhaseTimingHttpClient(PhaseTimings timings) {
+        this.timings = timings;
+        addResponseInterceptor(new DownloadTimer());
+    }
+
+    /**
+     * Makes REST Assured create this client, recording into {@link PhaseTimings#getInstance()}, if
+     * {@code timing.phases} is {@code true}. Only the first call has any effect.
+     */
+    public static synchronized void install() {
+        if (installed) {
+            return;
+        }
+        installed = true;
+        if (Boolean.parseBoolean(ConfigReader.getProperty("timing.phases", "false"))) {
+            install(PhaseTimings.getInstance());
+        }
+    }
+
+    /**
+     * Makes REST Assured create this client, recording into the given timings, for every request from now on.
+     */
+    public static void install(PhaseTimings timings) {
+        HttpClientConfig config = RestAssured.config().getHttpClientConfig();
+        RestAssured.config = RestAssured.config()
+                .httpClient(config.httpClientFactory(() -> new PhaseTimingHttpClient(timings)));
+    }
+
+    @Override
+    protected ClientConnectionManager createClientConnectionManager() {
+        return new BasicClientConnectionManager(SchemeRegistryFactory.createDefault()) {
+            @Override
+            protected ClientConnectionOperator createConnectionOperator(SchemeRegistry registry) {
+                return new TimingConnectionOperator(registry);
+            }
+        };
+    }
+
+    @Override
+    protected HttpRequestExecutor createRequestExecutor() {
+        return new TimingRequestExecutor();
+    }
+
+    /**
+     * One request's phases so far, kept in its {@link HttpContext}.
+     */
+    private static final class Timing {
+
+        private final long[] nanos = new long[Phase.values().length];
+        private boolean newConnection;
+        private String endpoint;
+        private long headersReceivedNanos;
+        private boolean recorded;
+
+        private Timing() {
+            Arrays.fill(nanos, -1);
+        }
+
+        static Timing of(HttpContext context) {
+            Timing timing = (Timing) context.getAttribute(TIMING);
+            if (timing == null) {
+                timing = new Timing();
+                context.setAttribute(TIMING, timing);
+            }
+            return timing;
+        }
+
+        /**
+         * Adds to a phase, so that a retried connect or request counts both attempts.
+         */
+        void add(Phase phase, long elapsed) {
+            int i = phase.ordinal();
+            nanos[i] = Math.max(nanos[i], 0) + elapsed;
+        }
+    }
+
+    private void record(Timing timing, HttpContext context) {
+        synchronized (timing) {
+            if (timing.recorded || timing.endpoint == null) {
+                return;
+            }
+            timing.recorded = true;
+        }
+        context.removeAttribute(TIMING);
+        timings.record(timing.endpoint, timing.nanos, timing.newConnection);
+    }
+
+    static String endpoint(HttpRequest request) {
+        String uri = request.getRequestLine().getUri();
+        String path;
+        try {
+            path = URI.create(uri).getRawPath();
+        } catch (IllegalArgumentException e) {
+            int query = uri.indexOf('?');
+            path = query < 0 ? uri : uri.substring(0, query);
+        }
+        return request.getRequestLine().getMethod() + " " + (path == null || path.isEmpty() ? "/" : path)
+                .replaceAll("/\\d+(?=/|$)", "/{id}");
+    }
+
+    private static final class TimingConnectionOperator extends DefaultClientConnectionOperator {
+
+        TimingConnectionOperator(SchemeRegistry registry) {
+            super(registry);
+        }
+
+        @Override
+        public void openConnection(OperatedClientConnection conn, HttpHost target, InetAddress local,
+                                   HttpContext context, HttpParams params) throws IOException {
+            Timing timing = Timing.of(context);
+            SchemeRegistry registry = (SchemeRegistry) context.getAttribute(ClientContext.SCHEME_REGISTRY);
+            Scheme scheme = (registry == null ? schemeRegistry : registry).getScheme(target.getSchemeName());
+            SchemeSocketFactory factory = scheme.getSchemeSocketFactory();
+
+            long start = System.nanoTime();
+            InetAddress[] addresses = resolveHostname(target.getHostName());
+            timing.add(Phase.DNS, System.nanoTime() - start);
+
+            int port = scheme.resolvePort(target.getPort());
+            InetSocketAddress localAddress = local == null ? null : new InetSocketAddress(local, 0);
+            for (int i = 0; i < addresses.length; i++) {
+                InetSocketAddress remote = new HttpInetSocketAddress(target, addresses[i], port);
+                try {
+                    Socket socket = connect(conn, target, factory, remote, localAddress, context, params, timing);
+                    prepareSocket(socket, context, params);
+                    conn.openCompleted(factory.isSecure(socket), params);
+                    timing.newConnection = true;
+                    return;
+                } catch (ConnectException | ConnectTimeoutException e) {
+                    if (i == addresses.length - 1) {
+                        throw e;
+                    }
+                }
+            }
+        }
+
+        private static Socket connect(OperatedClientConnection conn, HttpHost target, SchemeSocketFactory factory,
+                                      InetSocketAddress remote, InetSocketAddress local, HttpContext context,
+                                      HttpParams params, Timing timing) throws IOException {
+            long start = System.nanoTime();
+            if (!(factory instanceof SchemeLayeredSocketFactory layered)) {
+                Socket socket = factory.createSocket(params);
+                conn.opening(socket, target);
+                try {
+                    Socket connected = factory.connectSocket(socket, remote, local, params);
+                    if (connected != socket) {
+                        conn.opening(connected, target);
+                    }
+                    return connected;
+                } finally {
+                    timing.add(Phase.CONNECT, System.nanoTime() - start);
+                }
+            }
+
+            PlainSocketFactory plain = PlainSocketFactory.getSocketFactory();
+            Socket socket = plain.createSocket(params);
+            conn.opening(socket, target);
+            try {
+                socket = plain.connectSocket(socket, remote, local, params);
+            } finally {
+                timing.add(Phase.CONNECT, System.nanoTime() - start);
+            }
+            start = System.nanoTime();
+            try {
+                // Handshakes and checks the host name before it returns.
+                Socket secure = layered.createLayeredSocket(socket, target.getHostName(), remote.getPort(), params);
+                conn.opening(secure, target);
+                return secure;
+            } finally {
+                timing.add(Phase.TLS, System.nanoTime() - start);
+            }
+        }
+    }
+
+    private static final class TimingRequestExecutor extends HttpRequestExecutor {
+
+        @Override
+        protected HttpResponse doSendRequest(HttpRequest request, HttpClientConnection conn, HttpContext context)
+                throws IOException, HttpException {
+            Timing timing = Timing.of(context);
+            timing.endpoint = endpoint(request);
+            long start = System.nanoTime();
+            try {
+                return super.doSendRequest(request, conn, context);
+            } finally {
+                timing.add(Phase.WRITE, System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        protected HttpResponse doReceiveResponse(HttpRequest request, HttpClientConnection conn,
+                                                 HttpContext context) throws HttpException, IOException {
+            Timing timing = Timing.of(context);
+            long start = System.nanoTime();
+            try {
+                return super.doReceiveResponse(request, conn, context);
+            } finally {
+                timing.headersReceivedNanos = System.nanoTime();
+                timing.add(Phase.TTFB, timing.headersReceivedNanos - start);
+            }
+        }
+    }
+
+    /**
+     * Records a response without a body at once, and wraps one with a body to record it when it has been read.
+     */
+    private final class DownloadTimer implements HttpResponseInterceptor {
+
+        @Override
+        public void process(HttpResponse response, HttpContext context) {
+            Timing timing = Timing.of(context);
+            HttpEntity entity = response.getEntity();
+            if (entity == null) {
+                timing.add(Phase.DOWNLOAD, 0);
+                record(timing, context);
+            } else {
+                response.setEntity(new TimedEntity(entity, timing, context));
+            }
+        }
+    }
+
+    private final class TimedEntity extends HttpEntityWrapper {
+
+        private final Timing timing;
+        private final HttpContext context;
+
+        TimedEntity(HttpEntity entity, Timing timing, HttpContext context) {
+            super(entity);
+            this.timing = timing;
+            this.context = context;
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            return new FilterInputStream(super.getContent()) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b < 0) {
+                        finished();
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    int n = super.read(b, off, len);
+                    if (n < 0) {
+                        finished();
+                    }
+                    return n;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        finished();
+                    }
+                }
+            };
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            try {
+                super.writeTo(out);
+            } finally {
+                finished();
+            }
+        }
+
+        private void finished() {
+            synchronized (timing) {
+                if (timing.recorded) {
+                    return;
+                }
+                timing.add(Phase.DOWNLOAD, System.nanoTime() - timing.headersReceivedNanos);
+            }
+            record(timing, context);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package nz.co.sundar.testautomation.restfulbooker.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Per-endpoint histograms of where each request's time went, recorded by {@link PhaseTimingHttpClient} and written
+ * to the report by {@link ReportManager#flushReport()}.
+ * <p>
+ * A request that opened a connection spends time in {@link Phase#DNS}, {@link Phase#CONNECT} and, over HTTPS,
+ * {@link Phase#TLS} before it is written; one that reused a pooled connection does not, and those phases are simply
+ * not recorded for it. Comparing the connection phases and the share of requests that opened a connection with
+ * {@link Phase#TTFB} tells connection churn apart from a slow server.
+ */
+public class PhaseTimings {
+
+    private static final PhaseTimings INSTANCE = new PhaseTimings();
+
+    public enum Phase {
+        /** Resolving the host name. */
+        DNS,
+        /** The TCP handshake. */
+        CONNECT,
+        /** The TLS handshake, including certificate and host name checks. */
+        TLS,
+        /** Writing the request line, headers and body. */
+        WRITE,
+        /** From the end of the write to the response headers: mostly the server's time. */
+        TTFB,
+        /** Reading the response body. */
+        DOWNLOAD
+    }
+
+    private final Map<String, Endpoint> endpoints = new ConcurrentSkipListMap<>();
+
+    /**
+     * @return the timings that {@link PhaseTimingHttpClient#install()} records into
+     */
+    public static PhaseTimings getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Records one request.
+     *
+     * @param endpoint      e.g. {@code GET /booking/{id}}
+     * @param phaseNanos    time spent in each {@link Phase}, by ordinal, or a negative value if it did not happen
+     * @param newConnection whether the request opened a connection
+     */
+    public void record(String endpoint, long[] phaseNanos, boolean newConnection) {
+        endpoints.computeIfAbsent(endpoint, name -> new Endpoint()).record(phaseNanos, newConnection);
+    }
+
+    /**
+     * @return the endpoints recorded so far, in order
+     */
+    public Set<String> getEndpoints() {
+        return endpoints.keySet();
+    }
+
+    public long getRequests(String endpoint) {
+        Endpoint stats = endpoints.get(endpoint);
+        return stats == null ? 0 : stats.getRequests();
+    }
+
+    public long getNewConnections(String endpoint) {
+        Endpoint stats = endpoints.get(endpoint);
+        return stats == null ? 0 : stats.getNewConnections();
+    }
+
+    /**
+     * @return a copy of the endpoint's histogram for the phase, empty if nothing was recorded
+     */
+    public LatencyHistogram getHistogram(String endpoint, Phase phase) {
+        Endpoint stats = endpoints.get(endpoint);
+        return stats == null ? new LatencyHistogram() : stats.copy(phase);
+    }
+
+    public void reset() {
+        endpoints.clear();
+    }
+
+    /**
+     * @return e.g. {@code requests=40 new connections=40 (100%) p50/p99 dns 0.1/0.3ms connect 0.2/0.9ms
+     * write 0.1/0.2ms ttfb 3.1/12.4ms download 0.1/0.1ms}, leaving out phases that never happened
+     */
+    public String getSummary(String endpoint) {
+        long requests = getRequests(endpoint);
+        long connections = getNewConnections(endpoint);
+        StringBuilder summary = new StringBuilder(String.format("requests=%d new connections=%d (%.0f%%) p50/p99",
+                requests, connections, requests == 0 ? 0.0 : 100.0 * connections / requests));
+        for (Phase phase : Phase.values()) {
+            LatencyHistogram histogram = getHistogram(endpoint, phase);
+            if (histogram.getCount() > 0) {
+                summary.append(' ').append(phase.name().toLowerCase()).append(' ')
+                        .append(millis(histogram.getPercentileNanos(50))).append('/')
+                        .append(LatencyHistogram.formatMillis(histogram.getPercentileNanos(99)));
+            }
+        }
+        return summary.toString();
+    }
+
+    /**
+     * @return one row per endpoint with its request and connection counts and each phase's p50 and p99, the first
+     * row as the header; {@code -} marks a phase that never happened
+     */
+    public String[][] getTable() {
+        List<String[]> rows = new ArrayList<>();
+        List<String> header = new ArrayList<>(List.of("Endpoint", "Requests", "New connections"));
+        for (Phase phase : Phase.values()) {
+            header.add(phase.name() + " p50/p99");
+        }
+        rows.add(header.toArray(new String[0]));
+        for (String endpoint : getEndpoints()) {
+            List<String> row = new ArrayList<>(List.of(endpoint, String.valueOf(getRequests(endpoint)),
+                    String.valueOf(getNewConnections(endpoint))));
+            for (Phase phase : Phase.values()) {
+                LatencyHistogram histogram = getHistogram(endpoint, phase);
+                row.add(histogram.getCount() == 0 ? "-" : millis(histogram.getPercentileNanos(50)) + " / "
+                        + LatencyHistogram.formatMillis(histogram.getPercentileNanos(99)));
+            }
+            rows.add(row.toArray(new String[0]));
+        }
+        return rows.toArray(new String[0][]);
+    }
+
+    private static String millis(long nanos) {
+        String formatted = LatencyHistogram.formatMillis(nanos);
+        return formatted.endsWith("ms") ? formatted.substring(0, formatted.length() - 2) : formatted;
+    }
+
+    private static final class Endpoint {
+
+        private final LatencyHistogram[] phases = new LatencyHistogram[Phase.values().length];
+        private long requests;
+        private long newConnections;
+
+        Endpoint() {
+            for (int i = 0; i < phases.length; i++) {
+                phases[i] = new LatencyHistogram();
+            }
+        }
+
+        synchronized void record(long[] phaseNanos, boolean newConnection) {
+            requests++;
+            if (newConnection) {
+                newConnections++;
+            }
+            for (int i = 0; i < phases.length; i++) {
+                if (phaseNanos[i] >= 0) {
+                    phases[i].recordNanos(phaseNanos[i]);
+                }
+            }
+        }
+
+        synchronized long getRequests() {
+            return requests;
+        }
+
+        synchronized long getNewConnections() {
+            return newConnections;
+        }
+
+        synchronized LatencyHistogram copy(Phase phase) {
+            LatencyHistogram copy = new LatencyHistogram();
+            copy.add(phases[phase.ordinal()]);
+            return copy;
+        }
+    }
+}
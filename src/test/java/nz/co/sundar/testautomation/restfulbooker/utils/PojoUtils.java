@@ -11,6 +11,21 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class PojoUtils {
+    /**
+     * Shared mapper. {@link ObjectMapper} is thread-safe once configured and expensive to create, so every
+     * conversion reuses this instance.
+     */
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * Returns the shared Jackson mapper used for all booking conversions.
+     *
+     * @return the shared object mapper
+     */
+    public static ObjectMapper getObjectMapper() {
+        return OBJECT_MAPPER;
+    }
+
     public static void main(String[] args) {
         String jsonString = "{\n" +
                 "    \"firstname\": \"Jim\",\n" +
@@ -34,10 +49,9 @@ public class PojoUtils {
     }
 
     public static Booking convertJsonToBooking(String jsonString) {
-        ObjectMapper objectMapper = new ObjectMapper();
         Booking booking = null;
         try {
-            booking = objectMapper.readValue(jsonString, Booking.class);
+            booking = OBJECT_MAPPER.readValue(jsonString, Booking.class);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -45,10 +59,9 @@ public class PojoUtils {
     }
 
     public static BookingResponse convertJsonToBookingResponse(String jsonString) {
-        ObjectMapper objectMapper = new ObjectMapper();
         BookingResponse bookingResponse = null;
         try {
-            bookingResponse = objectMapper.readValue(jsonString, BookingResponse.class);
+            bookingResponse = OBJECT_MAPPER.readValue(jsonString, BookingResponse.class);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -56,10 +69,9 @@ public class PojoUtils {
     }
 
     public static List<BookingId> convertJsonToBookingIdList(String jsonString) {
-        ObjectMapper objectMapper = new ObjectMapper();
         List<BookingId> bookingIds = new ArrayList<>();
         try {
-            bookingIds = objectMapper.readValue(jsonString,
+            bookingIds = OBJECT_MAPPER.readValue(jsonString,
                     new TypeReference<List<BookingId>>() {});
         } catch (IOException e) {
             e.printStackTrace();
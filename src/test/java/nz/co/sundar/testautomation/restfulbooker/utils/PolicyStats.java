@@ -0,0 +1,108 @@
+package nz.co.sundar.testautomation.restfulbooker.utils;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * What a {@link RetryPolicy} or {@link HedgingPolicy} changed about the calls it wrapped, written to the report by
+ * {@link ReportManager#flushReport()}.
+ * <p>
+ * Every call records two outcomes: the baseline, which is what the first request alone would have given without
+ * the policy, and the effective outcome the caller actually got. Comparing their p99 latency and success rate
+ * shows what each policy buys for the extra requests it sends.
+ */
+public class PolicyStats {
+
+    private static final Map<String, PolicyStats> REGISTRY = new ConcurrentSkipListMap<>();
+
+    private final String name;
+    private final LatencyHistogram baseline = new LatencyHistogram();
+    private final LatencyHistogram effective = new LatencyHistogram();
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder extraRequests = new LongAdder();
+    private final LongAdder baselineFailures = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    private PolicyStats(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the statistics of the policy with the given name, creating and registering them on first use.
+     *
+     * @param name the policy name shown in the report
+     */
+    public static PolicyStats forPolicy(String name) {
+        return REGISTRY.computeIfAbsent(name, PolicyStats::new);
+    }
+
+    /**
+     * @return the statistics of every policy used so far, ordered by name
+     */
+    public static Collection<PolicyStats> all() {
+        return REGISTRY.values();
+    }
+
+    /**
+     * Records one call.
+     *
+     * @param baselineNanos  latency of the first request
+     * @param baselineOk     whether the first request succeeded
+     * @param effectiveNanos latency the caller saw
+     * @param ok             whether the caller got a successful result
+     * @param extra          requests sent beyond the first
+     */
+    public void record(long baselineNanos, boolean baselineOk, long effectiveNanos, boolean ok, int extra) {
+        calls.increment();
+        baseline.recordNanos(baselineNanos);
+        effective.recordNanos(effectiveNanos);
+        extraRequests.add(extra);
+        if (!baselineOk) {
+            baselineFailures.increment();
+        }
+        if (!ok) {
+            failures.increment();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    public long getExtraRequests() {
+        return extraRequests.sum();
+    }
+
+    public LatencyHistogram getBaseline() {
+        return baseline;
+    }
+
+    public LatencyHistogram getEffective() {
+        return effective;
+    }
+
+    /**
+     * @return a one-line comparison such as {@code calls=200 extra=9 (4.5%) p99 412.0ms -> 180.3ms (-56%)
+     * success 97.5% -> 100.0%}
+     */
+    public String getSummary() {
+        long count = calls.sum();
+        if (count == 0) {
+            return "calls=0";
+        }
+        long before = baseline.getPercentileNanos(99);
+        long after = effective.getPercentileNanos(99);
+        long extra = extraRequests.sum();
+        return String.format("calls=%d extra=%d (%.1f%%) p99 %s -> %s (%+.0f%%) success %.1f%% -> %.1f%%",
+                count, extra, 100.0 * extra / count,
+                LatencyHistogram.formatMillis(before), LatencyHistogram.formatMillis(after),
+                before == 0 ? 0.0 : 100.0 * (after - before) / before,
+                100.0 * (count - baselineFailures.sum()) / count, 100.0 * (count - failures.sum()) / count);
+    }
+}
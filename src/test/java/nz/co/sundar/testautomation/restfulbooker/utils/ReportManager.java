@@ -3,6 +3,7 @@ package nz.co.sundar.testautomation.restfulbooker.utils;
 import com.aventstack.extentreports.ExtentReports;
 import com.aventstack.extentreports.ExtentTest;
 import com.aventstack.extentreports.Status;
+import com.aventstack.extentreports.markuputils.MarkupHelper;
 import com.aventstack.extentreports.reporter.ExtentSparkReporter;
 
 import java.time.Duration;
@@ -19,9 +20,17 @@ import java.time.format.DateTimeFormatter;
 
 public class ReportManager {
 
+    /**
+     * Directory the HTML report is written to. Files linked from the report are resolved relative to it.
+     */
+    public static final String REPORT_DIRECTORY = "target/test-results";
+
     private static ReportManager instance;
     private final ExtentReports extentReports;
     private ExtentTest test;
+    /** Never flushed: holds the nodes of load test iterations, which are thrown away. */
+    private final ExtentReports iterationReports = new ExtentReports();
+    private final ThreadLocal<ExtentTest> iterationTest = new ThreadLocal<>();
     private final Instant startTime;
     private final ZoneId pacificAucklandZone = ZoneId.of("Pacific/Auckland");
     private final ZonedDateTime testStartTime;
@@ -30,7 +39,7 @@ public class ReportManager {
      */
     private ReportManager() {
         extentReports = new ExtentReports();
-        ExtentSparkReporter sparkReporter = new ExtentSparkReporter("target/test-results/BookerAPITestResults.html");
+        ExtentSparkReporter sparkReporter = new ExtentSparkReporter(REPORT_DIRECTORY + "/BookerAPITestResults.html");
         sparkReporter.config().setDocumentTitle("BookerAPI Test Report");
         sparkReporter.config().setReportName("BookerAPI Test Automation Report");
         startTime = Instant.now();
@@ -58,9 +67,41 @@ public class ReportManager {
     public void createTest(String testName) {
         test = extentReports.createTest(testName);
     }
+
+    /**
+     * Sends this thread's logging to a throwaway node until {@link #endIteration()}, so that the thousands of
+     * iterations of a {@code @LoadTest} do not each log into the test's node.
+     *
+     * @param name the iteration's name
+     */
+    public void beginIteration(String name) {
+        synchronized (iterationReports) {
+            iterationTest.set(iterationReports.createTest(name));
+        }
+    }
+
+    /**
+     * Discards this thread's iteration node and logs to the current test again.
+     */
+    public void endIteration() {
+        ExtentTest iteration = iterationTest.get();
+        if (iteration != null) {
+            iterationTest.remove();
+            synchronized (iterationReports) {
+                iterationReports.removeTest(iteration);
+            }
+        }
+    }
+
+    private ExtentTest current() {
+        ExtentTest iteration = iterationTest.get();
+        return iteration != null ? iteration : test;
+    }
     /**
      * Finalizes and flushes the report output.
-     * Also records the total execution time and test duration.
+     * Also records the total execution time and test duration, what each retry and hedging policy changed, where
+     * each host's concurrency limit ended up, how often the booking cache was hit, how each pooled token was used and
+     * where each endpoint's requests spent their time.
      */
     public void flushReport() {
         Instant endTime = Instant.now();
@@ -79,6 +120,25 @@ public class ReportManager {
         extentReports.setSystemInfo("Test Start Time", testStartTime.format(dateFormatter));
         extentReports.setSystemInfo("Test End Time", endTimeAuckland.format(dateFormatter));
         extentReports.setSystemInfo("Total Execution Time", formattedTime);
+        for (PolicyStats stats : PolicyStats.all()) {
+            extentReports.setSystemInfo(stats.getName(), stats.getSummary());
+        }
+        for (AdaptiveConcurrencyLimiter limiter : AdaptiveConcurrencyLimiter.all()) {
+            extentReports.setSystemInfo(limiter.getName(), limiter.getSummary());
+        }
+        TokenPool tokenPool = TokenManager.getTokenPoolIfCreated();
+        if (tokenPool != null) {
+            for (TokenPool.Slot slot : tokenPool.getSlots()) {
+                extentReports.setSystemInfo(slot.getName(), slot.getSummary());
+            }
+        }
+        if (BookingCache.getInstance().isEnabled()) {
+            extentReports.setSystemInfo("Booking cache", BookingCache.getInstance().getSummary());
+        }
+        PhaseTimings phaseTimings = PhaseTimings.getInstance();
+        for (String endpoint : phaseTimings.getEndpoints()) {
+            extentReports.setSystemInfo("Phases " + endpoint, phaseTimings.getSummary(endpoint));
+        }
 
         extentReports.flush();
     }
@@ -89,7 +149,16 @@ public class ReportManager {
      * @param toLog the message to log
      */
     public void logInfo(String toLog) {
-        test.log(Status.INFO, toLog);
+        current().log(Status.INFO, toLog);
+    }
+
+    /**
+     * Logs a table to the current test, the first row as its header.
+     *
+     * @param rows the table's cells, row by row
+     */
+    public void logTable(String[][] rows) {
+        current().info(MarkupHelper.createTable(rows));
     }
     /**
      * Logs a PASS message with green color.
@@ -100,7 +169,7 @@ public class ReportManager {
         /* Commented out the MarkupHelper line as it is not used in the current version of ExtentReports. Can be used if needed for
         color text to appear on the report.*/
        // test.pass(MarkupHelper.createLabel(message, ExtentColor.GREEN));
-        test.pass(message);
+        current().pass(message);
     }
 
     /**
@@ -110,7 +179,7 @@ public class ReportManager {
      */
     public void logFail(String message) {
        // test.fail(MarkupHelper.createLabel(message, ExtentColor.RED));
-        test.fail(message);
+        current().fail(message);
     }
     /**
      * Returns the current test instance.
@@ -118,6 +187,16 @@ public class ReportManager {
      * @return the current ExtentTest instance
      */
     public ExtentTest getTest() {
-        return test;
+        return current();
+    }
+
+    /**
+     * Returns the name of the current test, or {@code null} when no test has been created yet.
+     *
+     * @return the current test name
+     */
+    public String getTestName() {
+        ExtentTest current = current();
+        return current == null ? null : current.getModel().getName();
     }
 }
@@ -0,0 +1,271 @@
+package nz.co.sundar.testautomation.restfulbooker.utils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A precompiled description of a JSON object returned by the Restful Booker API.
+ * <p>
+ * A schema is compiled once into parallel arrays of field types plus a name lookup table, and
+ * {@link #validate(byte[])} checks a response in a single streaming pass over its bytes with a Jackson
+ * {@link JsonParser}: no tree or POJO is built. It checks value types, required fields and {@code yyyy-MM-dd}
+ * dates, and flags fields the schema does not declare. The violation list is only allocated when something is
+ * wrong, so the check is cheap enough to run on every response in load mode.
+ */
+public final class ResponseSchema {
+
+    /**
+     * The JSON value type expected for a field.
+     */
+    public enum Type {
+        STRING, INTEGER, BOOLEAN, DATE, OBJECT
+    }
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    public static final ResponseSchema BOOKING_DATES = object("BookingDates")
+            .required("checkin", Type.DATE)
+            .required("checkout", Type.DATE)
+            .build();
+
+    public static final ResponseSchema BOOKING = object("Booking")
+            .required("firstname", Type.STRING)
+            .required("lastname", Type.STRING)
+            .required("totalprice", Type.INTEGER)
+            .required("depositpaid", Type.BOOLEAN)
+            .required("bookingdates", BOOKING_DATES)
+            .optional("additionalneeds", Type.STRING)
+            .build();
+
+    public static final ResponseSchema BOOKING_RESPONSE = object("BookingResponse")
+            .required("bookingid", Type.INTEGER)
+            .required("booking", BOOKING)
+            .build();
+
+    public static final ResponseSchema AUTH_TOKEN = object("AuthToken")
+            .required("token", Type.STRING)
+            .build();
+
+    private final String name;
+    private final String[] fieldNames;
+    private final Type[] types;
+    private final ResponseSchema[] nested;
+    private final long requiredMask;
+    private final Map<String, Integer> fieldIndex;
+
+    private ResponseSchema(Builder builder) {
+        this.name = builder.name;
+        this.fieldNames = builder.fieldNames.toArray(new String[0]);
+        this.types = builder.types.toArray(new Type[0]);
+        this.nested = builder.nested.toArray(new ResponseSchema[0]);
+        this.requiredMask = builder.requiredMask;
+        this.fieldIndex = new HashMap<>(builder.fieldIndex);
+    }
+
+    /**
+     * Starts building a schema for a JSON object.
+     *
+     * @param name the name used in violation messages
+     * @return a builder for the object's fields
+     */
+    public static Builder object(String name) {
+        return new Builder(name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Validates a JSON document against this schema in one streaming pass.
+     *
+     * @param json the response body
+     * @return the violations found, an empty immutable list when the document matches
+     */
+    public List<String> validate(byte[] json) {
+        List<String> violations = null;
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            violations = validateObject(parser, parser.nextToken(), violations);
+            if (parser.nextToken() != null) {
+                violations = add(violations, name + ": unexpected content after the root object");
+            }
+        } catch (JsonProcessingException e) {
+            violations = add(violations, name + ": malformed JSON - " + e.getOriginalMessage());
+        } catch (IOException e) {
+            violations = add(violations, name + ": unreadable body - " + e.getMessage());
+        }
+        return violations == null ? Collections.emptyList() : violations;
+    }
+
+    private List<String> validateObject(JsonParser parser, JsonToken token, List<String> violations) throws IOException {
+        if (token != JsonToken.START_OBJECT) {
+            violations = add(violations, name + ": expected an object but was " + describe(parser, token));
+            parser.skipChildren();
+            return violations;
+        }
+        long seen = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            Integer index = fieldIndex.get(field);
+            if (index == null) {
+                violations = add(violations, name + "." + field + ": unexpected field");
+                parser.skipChildren();
+                continue;
+            }
+            long bit = 1L << index;
+            if ((seen & bit) != 0) {
+                violations = add(violations, name + "." + field + ": duplicate field");
+            }
+            seen |= bit;
+            violations = validateValue(parser, value, index, violations);
+        }
+        long missing = requiredMask & ~seen;
+        while (missing != 0) {
+            int index = Long.numberOfTrailingZeros(missing);
+            violations = add(violations, name + "." + fieldNames[index] + ": required field is missing");
+            missing &= missing - 1;
+        }
+        return violations;
+    }
+
+    private List<String> validateValue(JsonParser parser, JsonToken value, int index, List<String> violations)
+            throws IOException {
+        if (types[index] == Type.OBJECT) {
+            return nested[index].validateObject(parser, value, violations);
+        }
+        boolean valid = switch (types[index]) {
+            case STRING -> value == JsonToken.VALUE_STRING;
+            case INTEGER -> value == JsonToken.VALUE_NUMBER_INT;
+            case BOOLEAN -> value == JsonToken.VALUE_TRUE || value == JsonToken.VALUE_FALSE;
+            case DATE -> value == JsonToken.VALUE_STRING
+                    && isIsoDate(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+            case OBJECT -> false;
+        };
+        if (!valid) {
+            violations = add(violations, name + "." + fieldNames[index] + ": expected "
+                    + (types[index] == Type.DATE ? "a yyyy-MM-dd date" : types[index].name().toLowerCase())
+                    + " but was " + describe(parser, value));
+            parser.skipChildren();
+        }
+        return violations;
+    }
+
+    /**
+     * Checks a {@code yyyy-MM-dd} calendar date directly on the parser's character buffer.
+     */
+    static boolean isIsoDate(char[] text, int offset, int length) {
+        if (length != 10 || text[offset + 4] != '-' || text[offset + 7] != '-') {
+            return false;
+        }
+        int year = digits(text, offset, 4);
+        int month = digits(text, offset + 5, 2);
+        int day = digits(text, offset + 8, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1) {
+            return false;
+        }
+        int daysInMonth = switch (month) {
+            case 2 -> (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+        return day <= daysInMonth;
+    }
+
+    private static int digits(char[] text, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            char c = text[i];
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static String describe(JsonParser parser, JsonToken token) throws IOException {
+        if (token == null) {
+            return "end of input";
+        }
+        return switch (token) {
+            case VALUE_STRING -> "\"" + parser.getText() + "\"";
+            case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT, VALUE_TRUE, VALUE_FALSE, VALUE_NULL -> parser.getText();
+            case START_ARRAY -> "an array";
+            case START_OBJECT -> "an object";
+            default -> token.name();
+        };
+    }
+
+    private static List<String> add(List<String> violations, String violation) {
+        List<String> list = violations == null ? new ArrayList<>() : violations;
+        list.add(violation);
+        return list;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    /**
+     * Collects the fields of a schema before compiling it.
+     */
+    public static final class Builder {
+        private final String name;
+        private final List<String> fieldNames = new ArrayList<>();
+        private final List<Type> types = new ArrayList<>();
+        private final List<ResponseSchema> nested = new ArrayList<>();
+        private final Map<String, Integer> fieldIndex = new HashMap<>();
+        private long requiredMask;
+
+        private Builder(String name) {
+            this.name = name;
+        }
+
+        public Builder required(String field, Type type) {
+            return field(field, type, null, true);
+        }
+
+        public Builder optional(String field, Type type) {
+            return field(field, type, null, false);
+        }
+
+        public Builder required(String field, ResponseSchema schema) {
+            return field(field, Type.OBJECT, schema, true);
+        }
+
+        public Builder optional(String field, ResponseSchema schema) {
+            return field(field, Type.OBJECT, schema, false);
+        }
+
+        private Builder field(String field, Type type, ResponseSchema schema, boolean required) {
+            if (fieldNames.size() == Long.SIZE) {
+                throw new IllegalStateException("A schema supports at most " + Long.SIZE + " fields");
+            }
+            if (fieldIndex.putIfAbsent(field, fieldNames.size()) != null) {
+                throw new IllegalArgumentException("Field " + field + " is already declared in " + name);
+            }
+            if (required) {
+                requiredMask |= 1L << fieldNames.size();
+            }
+            fieldNames.add(field);
+            types.add(type);
+            nested.add(schema);
+            return this;
+        }
+
+        public ResponseSchema build() {
+            return new ResponseSchema(this);
+        }
+    }
+}
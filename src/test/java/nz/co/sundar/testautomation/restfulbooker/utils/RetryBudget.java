@@ -0,0 +1,53 @@
+package nz.co.sundar.testautomation.restfulbooker.utils;
+
+/**
+ * Caps retries at a fraction of the calls made, so that retries cannot multiply the load on a server that is
+ * already failing.
+ * <p>
+ * Every call deposits {@code ratio} of a retry into the budget and every retry withdraws a whole one. The balance
+ * starts at, and never exceeds, {@code minRetries} plus {@code ratio} times that again, which lets a short burst
+ * of failures be retried while a sustained outage is retried at most {@code ratio} times per call.
+ */
+public class RetryBudget {
+
+    private final double ratio;
+    private final double maxBalance;
+    private double balance;
+
+    /**
+     * @param ratio      retries allowed per call in the long run, e.g. {@code 0.2}
+     * @param minRetries retries allowed in a burst regardless of the ratio
+     */
+    public RetryBudget(double ratio, int minRetries) {
+        if (ratio < 0 || minRetries < 0) {
+            throw new IllegalArgumentException("Retry budget ratio and minimum must not be negative");
+        }
+        this.ratio = ratio;
+        this.maxBalance = minRetries * (1 + ratio);
+        this.balance = maxBalance;
+    }
+
+    /**
+     * Deposits the share of a retry earned by one call.
+     */
+    public synchronized void onCall() {
+        balance = Math.min(maxBalance, balance + ratio);
+    }
+
+    /**
+     * Withdraws one retry if the budget allows it.
+     *
+     * @return {@code false} if the budget is exhausted and the call should not be retried
+     */
+    public synchronized boolean tryRetry() {
+        if (balance < 1) {
+            return false;
+        }
+        balance -= 1;
+        return true;
+    }
+
+    public synchronized double getBalance() {
+        return balance;
+    }
+}
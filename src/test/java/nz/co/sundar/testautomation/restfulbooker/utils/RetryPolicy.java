@@ -0,0 +1,210 @@
+package nz.co.sundar.testautomation.restfulbooker.utils;
+
+import io.restassured.response.Response;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Retries REST Assured calls that failed for a transient reason, with exponential backoff, full jitter and a
+ * {@link RetryBudget}.
+ * <p>
+ * A call is retried when
+ * <ul>
+ *   <li>its response status is one of the retryable statuses, by default {@code 403} (expired token, see
+ *       {@link BookingUtils}), {@code 429}, {@code 502}, {@code 503} and {@code 504}, or</li>
+ *   <li>it failed to connect, which means the request was never sent, or</li>
+ *   <li>it failed with any other I/O error, such as a reset or a read timeout, and the call is idempotent. Such a
+ *       request may already have been applied, so non-idempotent calls are not retried.</li>
+ * </ul>
+ * Before retry {@code n} the policy sleeps a random time between 0 and
+ * {@code min(maxDelay, baseDelay * 2^(n-1))}, which spreads out clients that failed together.
+ * <p>
+ * The policy is read from {@code config.properties} using the {@code retry.*} keys, and its effect is recorded in
+ * {@link PolicyStats} under its name.
+ */
+public class RetryPolicy {
+
+    private final String name;
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final Set<Integer> retryableStatuses;
+    private final boolean idempotent;
+    private final RetryBudget budget;
+    private final PolicyStats stats;
+
+    /**
+     * @param name              the name the policy is reported under
+     * @param maxAttempts       the most requests sent for one call, including the first
+     * @param baseDelayMillis   the backoff ceiling before the first retry, doubled for each further retry
+     * @param maxDelayMillis    the largest backoff ceiling
+     * @param retryableStatuses response statuses that are retried
+     * @param idempotent        whether requests that may have been applied can be sent again
+     * @param budget            limits retries across all calls made with this policy
+     */
+    public RetryPolicy(String name, int maxAttempts, long baseDelayMillis, long maxDelayMillis,
+                       Set<Integer> retryableStatuses, boolean idempotent, RetryBudget budget) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("A call needs at least one attempt");
+        }
+        this.name = name;
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.retryableStatuses = Set.copyOf(retryableStatuses);
+        this.idempotent = idempotent;
+        this.budget = budget;
+        this.stats = PolicyStats.forPolicy(name);
+    }
+
+    /**
+     * Builds a policy from the {@code retry.*} properties.
+     *
+     * @param name       the name the policy is reported under
+     * @param idempotent whether requests that may have been applied can be sent again
+     */
+    public static RetryPolicy fromConfig(String name, boolean idempotent) {
+        Set<Integer> statuses = Arrays.stream(ConfigReader.getProperty("retry.statuses", "403,429,502,503,504")
+                        .split(","))
+                .map(String::trim)
+                .filter(status -> !status.isEmpty())
+                .map(Integer::valueOf)
+                .collect(Collectors.toSet());
+        return new RetryPolicy(name,
+                Integer.parseInt(ConfigReader.getProperty("retry.maxAttempts", "3")),
+                Long.parseLong(ConfigReader.getProperty("retry.baseDelayMillis", "100")),
+                Long.parseLong(ConfigReader.getProperty("retry.maxDelayMillis", "2000")),
+                statuses, idempotent,
+                new RetryBudget(Double.parseDouble(ConfigReader.getProperty("retry.budgetRatio", "0.2")),
+                        Integer.parseInt(ConfigReader.getProperty("retry.budgetMinRetries", "10"))));
+    }
+
+    /**
+     * Sends a request, retrying it while it fails for a retryable reason.
+     *
+     * @param call sends the request; called again for each retry
+     * @return the last response
+     */
+    public Response execute(Supplier<Response> call) {
+        return execute(call, response -> {
+        });
+    }
+
+    /**
+     * Sends a request, retrying it while it fails for a retryable reason.
+     *
+     * @param call        sends the request; called again for each retry
+     * @param beforeRetry called before each retry with the failed response, or {@code null} after an exception,
+     *                    e.g. to refresh an expired token
+     * @return the last response
+     */
+    public Response execute(Supplier<Response> call, Consumer<Response> beforeRetry) {
+        budget.onCall();
+        long start = System.nanoTime();
+        long firstNanos = 0;
+        boolean firstOk = false;
+        Response response = null;
+        Exception failure = null;
+        int attempt = 0;
+        while (true) {
+            attempt++;
+            long attemptStart = System.nanoTime();
+            try {
+                response = call.get();
+                failure = null;
+            } catch (Exception e) {
+                // REST Assured rethrows checked I/O exceptions undeclared, so they are caught here as well.
+                response = null;
+                failure = e;
+            }
+            boolean retryable = failure != null ? isRetryable(failure) : isRetryable(response.statusCode());
+            if (attempt == 1) {
+                firstNanos = System.nanoTime() - attemptStart;
+                firstOk = failure == null && !retryable;
+            }
+            if (!retryable || attempt >= maxAttempts || !budget.tryRetry()) {
+                break;
+            }
+            beforeRetry.accept(response);
+            if (!sleep(backoffMillis(attempt))) {
+                break;
+            }
+        }
+        stats.record(firstNanos, firstOk, System.nanoTime() - start,
+                failure == null && !isRetryable(response.statusCode()), attempt - 1);
+        if (failure != null) {
+            throw RetryPolicy.<RuntimeException>sneakyThrow(failure);
+        }
+        return response;
+    }
+
+    /**
+     * @param statusCode an HTTP response status
+     * @return whether a response with this status is retried
+     */
+    public boolean isRetryable(int statusCode) {
+        return retryableStatuses.contains(statusCode);
+    }
+
+    /**
+     * @param failure an exception thrown while sending a request
+     * @return whether the request is retried: always when it could not connect, otherwise only for I/O errors of
+     * idempotent calls
+     */
+    public boolean isRetryable(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConnectException || cause instanceof NoRouteToHostException
+                    || cause instanceof UnknownHostException) {
+                return true;
+            }
+            if (cause instanceof IOException) {
+                return idempotent;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param retry the 1-based retry number
+     * @return a random backoff in milliseconds between 0 and the ceiling for that retry
+     */
+    public long backoffMillis(int retry) {
+        long ceiling = Math.min(maxDelayMillis, baseDelayMillis << Math.min(retry - 1, 30));
+        return ceiling <= 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public PolicyStats getStats() {
+        return stats;
+    }
+
+    private static boolean sleep(long millis) {
+        if (millis <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T extends Exception> T sneakyThrow(Exception exception) throws T {
+        throw (T) exception;
+    }
+}
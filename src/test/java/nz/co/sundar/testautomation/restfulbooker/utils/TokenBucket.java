@@ -0,0 +1,63 @@
+package nz.co.sundar.testautomation.restfulbooker.utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps the rate of requests: tokens are added at a fixed rate up to a burst size, and each request takes one.
+ * <p>
+ * A request that finds the bucket empty reserves the next token and sleeps until it is due, so waiting callers are
+ * served in the order they arrived and the long-run rate never exceeds the cap.
+ */
+public class TokenBucket {
+
+    private final double tokensPerNano;
+    private final int burst;
+    private double tokens;
+    private long lastRefillNanos;
+
+    /**
+     * @param ratePerSecond requests allowed per second in the long run
+     * @param burst         requests that may be sent at once after a quiet period, at least 1
+     */
+    public TokenBucket(double ratePerSecond, int burst) {
+        if (ratePerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Token bucket rate must be positive and burst at least 1");
+        }
+        this.tokensPerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+        this.tokens = burst;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Takes a token, sleeping until one is available.
+     *
+     * @throws IllegalStateException if the thread is interrupted while waiting
+     */
+    public void acquire() {
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - lastRefillNanos) * tokensPerNano);
+            lastRefillNanos = now;
+            // A negative balance is a queue of reservations for tokens that have not been added yet.
+            tokens -= 1;
+            waitNanos = tokens >= 0 ? 0 : (long) Math.ceil(-tokens / tokensPerNano);
+        }
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for a rate limit token", e);
+            }
+        }
+    }
+
+    /**
+     * @return requests allowed per second in the long run
+     */
+    public double getRatePerSecond() {
+        return tokensPerNano * TimeUnit.SECONDS.toNanos(1);
+    }
+}
@@ -10,54 +10,71 @@ import static io.restassured.RestAssured.given;
  * Restful Booker API. It retrieves credentials from a properties file and provides
  * a mechanism to retrieve and cache the token so that authentication does not need
  * to be performed repeatedly during test execution.
+ * <p>
+ * Tokens come from a {@link TokenPool}, which holds one token per credential in {@code auth.credentials}, or a
+ * single token for {@code username} and {@code password} when that is blank.
  */
 
 public class TokenManager {
     /**
-     * Stores the authentication token after it has been generated.
+     * Holds the authentication tokens after they have been generated; created on first use.
      */
-    private static String token;
+    private static TokenPool tokenPool;
 
     /**
      * Endpoint URL for generating the authentication token.
      */
     private static final String AUTH_URL = ConfigReader.getProperty("authURL");
     /**
-     * Returns the current authentication token. If the token has not yet been generated,
-     * it invokes the {@link #generateToken()} method to get a new one.
+     * Returns an authentication token from the pool. If the token has not yet been generated,
+     * it invokes the {@link #generateToken(String, String)} method to get a new one.
      *
      * @return A valid authentication token as a {@code String}.
      */
     public static String getToken() {
-        if (token == null) {
-            token = generateToken();
+        return getTokenPool().getToken();
+    }
+
+    /**
+     * Returns the token pool, creating it from {@code config.properties} on first use.
+     *
+     * @return the pool that {@link #getToken()} takes tokens from
+     */
+    public static synchronized TokenPool getTokenPool() {
+        if (tokenPool == null) {
+            tokenPool = TokenPool.fromConfig(TokenManager::generateToken);
         }
-        return token;
+        return tokenPool;
+    }
+
+    /**
+     * Returns the token pool only if a token has been requested, for reporting.
+     *
+     * @return the pool, or {@code null}
+     */
+    static synchronized TokenPool getTokenPoolIfCreated() {
+        return tokenPool;
     }
     /**
      * Generates a new authentication token by sending a POST request to the authentication
-     * endpoint. The username and password are retrieved from a {@code config.properties} file
-     * using the {@link ConfigReader} utility. If the request is successful (HTTP 200),
+     * endpoint with one of the pool's credentials. If the request is successful (HTTP 200),
      * the token is extracted from the response and returned. If not, a {@link RuntimeException}
      * is thrown with the response status code.
      *
      * @return A valid authentication token as a {@code String}.
      * @throws RuntimeException if the HTTP response code is not 200.
      */
-    private static String generateToken() {
-        Response response = generateTokenResponse(
-                ConfigReader.getProperty("username"),
-                ConfigReader.getProperty("password")
-        );
+    private static String generateToken(String username, String password) {
+        DecodedResponse response = generateTokenResponse(username, password);
 
         if (response.statusCode() == 200) {
-            return response.jsonPath().getString("token");
+            return response.getString("token");
         } else {
             throw new RuntimeException("Failed to generate token. Status code: " + response.statusCode());
         }
     }
 
-    public static Response generateTokenResponse(String username, String password) {
+    public static DecodedResponse generateTokenResponse(String username, String password) {
         String authPayload = String.format("""
         {
             "username" : "%s",
@@ -65,21 +82,24 @@ public class TokenManager {
         }
         """, username, password);
 
-        return given()
+        return new DecodedResponse(given()
                 .contentType(ContentType.JSON)
                 .body(authPayload)
-                .post(AUTH_URL);
+                .post(AUTH_URL));
     }
 
+    /**
+     * Drops the token last returned to the calling thread after it was refused, so that its pool slot fetches a
+     * new one. Other slots keep their tokens.
+     */
     public static void invalidateToken() {
-        token = null;
+        getTokenPool().invalidateLastToken();
     }
 
     public static Response sendUpdateRequest(String token, String bookingIdResourcePath, String payload) {
         return given()
                 .header("Cookie", "token=" + token)
                 .contentType(ContentType.JSON)
-                .log().body()
                 .body(payload)
                 .put(bookingIdResourcePath);
     }
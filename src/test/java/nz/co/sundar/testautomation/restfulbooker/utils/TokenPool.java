@@ -0,0 +1,245 @@
+package nz.co.sundar.testautomation.restfulbooker.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+
+/**
+ * A pool of authentication tokens, one per configured credential, so that concurrent workers do not all write
+ * through one session and a burst of {@code 403}s only costs the token that received them.
+ * <p>
+ * Callers take a token with {@link #getToken()} and report a refused one with {@link #invalidateLastToken()}.
+ * Slots are handed out in turn ({@link Assignment#ROUND_ROBIN}), or each thread keeps the slot it was first given
+ * ({@link Assignment#AFFINITY}), which keeps a worker's writes in one session. A slot fetches its token on first use, again after
+ * {@link Slot#invalidate(String)}, and, when a refresh interval is set, once its token is older than that interval.
+ * The intervals are spread by up to a tenth per slot so that the tokens do not all expire together.
+ * <p>
+ * {@link TokenManager} serves its token from a pool built by {@link #fromConfig(BiFunction)}. With no
+ * {@code auth.credentials} the pool holds the single {@code username} and {@code password}.
+ */
+public class TokenPool {
+
+    /**
+     * How slots are handed to callers.
+     */
+    public enum Assignment {
+        /** Each call to {@link #next()} takes the next slot in turn. */
+        ROUND_ROBIN,
+        /** Each thread keeps the slot it was first given. */
+        AFFINITY
+    }
+
+    /**
+     * A username and password accepted by {@code /auth}.
+     */
+    public record Credentials(String username, String password) {
+
+        /**
+         * @param spec {@code username:password}
+         */
+        public static Credentials parse(String spec) {
+            int colon = spec.indexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("Credentials must be username:password, got '" + spec + "'");
+            }
+            return new Credentials(spec.substring(0, colon).trim(), spec.substring(colon + 1).trim());
+        }
+
+        @Override
+        public String toString() {
+            return username;
+        }
+    }
+
+    private final List<Slot> slots;
+    private final Assignment assignment;
+    private final AtomicInteger nextSlot = new AtomicInteger();
+    private final ThreadLocal<Slot> assigned = new ThreadLocal<>();
+    private final ThreadLocal<Issued> lastIssued = new ThreadLocal<>();
+
+    /**
+     * @param credentials    one slot is created per entry; the same credentials may appear more than once to open
+     *                       several sessions for one account
+     * @param assignment     how slots are handed to callers
+     * @param refreshMillis  how old a token may get before it is fetched again, 0 or less to keep it until it is
+     *                       invalidated
+     * @param tokenGenerator fetches a token for a username and password, throwing if it cannot
+     */
+    public TokenPool(List<Credentials> credentials, Assignment assignment, long refreshMillis,
+                     BiFunction<String, String, String> tokenGenerator) {
+        if (credentials.isEmpty()) {
+            throw new IllegalArgumentException("A token pool needs at least one credential");
+        }
+        this.assignment = assignment;
+        List<Slot> created = new ArrayList<>();
+        for (int i = 0; i < credentials.size(); i++) {
+            // Spread the refresh intervals over [0.9, 1.0] of the configured one.
+            long maxAgeNanos = refreshMillis <= 0 ? Long.MAX_VALUE
+                    : (long) (TimeUnit.MILLISECONDS.toNanos(refreshMillis) * (1 - 0.1 * i / credentials.size()));
+            created.add(new Slot(i, credentials.get(i), maxAgeNanos, tokenGenerator));
+        }
+        this.slots = Collections.unmodifiableList(created);
+    }
+
+    /**
+     * Builds a pool from the {@code auth.*} properties, falling back to {@code username} and {@code password}.
+     *
+     * @param tokenGenerator fetches a token for a username and password
+     */
+    public static TokenPool fromConfig(BiFunction<String, String, String> tokenGenerator) {
+        String spec = ConfigReader.getProperty("auth.credentials", "");
+        List<Credentials> credentials = spec.isBlank()
+                ? List.of(new Credentials(ConfigReader.getProperty("username"), ConfigReader.getProperty("password")))
+                : Arrays.stream(spec.split(",")).map(String::trim).filter(entry -> !entry.isEmpty())
+                        .map(Credentials::parse).toList();
+        return new TokenPool(credentials,
+                Assignment.valueOf(ConfigReader.getProperty("auth.assignment", "ROUND_ROBIN").toUpperCase()),
+                Long.parseLong(ConfigReader.getProperty("auth.refreshMillis", "0")),
+                tokenGenerator);
+    }
+
+    /**
+     * @return the slot the calling thread should use for its next request
+     */
+    public Slot next() {
+        Slot slot;
+        if (assignment == Assignment.AFFINITY) {
+            slot = assigned.get();
+            if (slot == null) {
+                slot = slots.get(Math.floorMod(nextSlot.getAndIncrement(), slots.size()));
+                assigned.set(slot);
+            }
+        } else {
+            slot = slots.get(Math.floorMod(nextSlot.getAndIncrement(), slots.size()));
+        }
+        return slot;
+    }
+
+    /**
+     * Returns a token from the calling thread's next slot, and remembers it for {@link #invalidateLastToken()}.
+     *
+     * @return a token for a {@code Cookie: token=...} header
+     */
+    public String getToken() {
+        Slot slot = next();
+        String token = slot.getToken();
+        lastIssued.set(new Issued(slot, token));
+        return token;
+    }
+
+    /**
+     * Reports that the token last returned by {@link #getToken()} on the calling thread was refused, so that its
+     * slot fetches a new one.
+     */
+    public void invalidateLastToken() {
+        Issued issued = lastIssued.get();
+        if (issued != null) {
+            issued.slot().invalidate(issued.token());
+        }
+    }
+
+    public List<Slot> getSlots() {
+        return slots;
+    }
+
+    private record Issued(Slot slot, String token) {
+    }
+
+    /**
+     * One credential's token and its usage counts.
+     */
+    public static final class Slot {
+
+        private final int index;
+        private final Credentials credentials;
+        private final long maxAgeNanos;
+        private final BiFunction<String, String, String> tokenGenerator;
+        private final LongAdder uses = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder refreshes = new LongAdder();
+        private volatile String token;
+        private volatile long fetchedNanos;
+
+        private Slot(int index, Credentials credentials, long maxAgeNanos,
+                     BiFunction<String, String, String> tokenGenerator) {
+            this.index = index;
+            this.credentials = credentials;
+            this.maxAgeNanos = maxAgeNanos;
+            this.tokenGenerator = tokenGenerator;
+        }
+
+        /**
+         * Returns the slot's token, fetching it first if there is none or it has reached its refresh age.
+         *
+         * @return a token for a {@code Cookie: token=...} header
+         */
+        public String getToken() {
+            uses.increment();
+            String current = token;
+            if (current == null || System.nanoTime() - fetchedNanos >= maxAgeNanos) {
+                current = refresh(current);
+            }
+            return current;
+        }
+
+        private synchronized String refresh(String stale) {
+            // Another thread may have refreshed while this one waited for the lock.
+            if (token != null && token != stale) {
+                return token;
+            }
+            refreshes.increment();
+            token = tokenGenerator.apply(credentials.username(), credentials.password());
+            fetchedNanos = System.nanoTime();
+            return token;
+        }
+
+        /**
+         * Records that a request with this slot's token was refused, and drops the token so that the next use
+         * fetches a new one. Nothing is dropped if the slot has already moved on to a newer token, so a burst of
+         * {@code 403}s for one token causes one refresh.
+         *
+         * @param rejected the token that was refused, or {@code null} to drop whatever token the slot holds
+         */
+        public synchronized void invalidate(String rejected) {
+            failures.increment();
+            if (rejected == null || rejected.equals(token)) {
+                token = null;
+            }
+        }
+
+        public Credentials getCredentials() {
+            return credentials;
+        }
+
+        public long getUses() {
+            return uses.sum();
+        }
+
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        public long getRefreshes() {
+            return refreshes.sum();
+        }
+
+        /**
+         * @return the name the slot is reported under, e.g. {@code Token 2 (admin)}
+         */
+        public String getName() {
+            return "Token " + (index + 1) + " (" + credentials + ")";
+        }
+
+        /**
+         * @return a one-line summary such as {@code uses=420 failures=3 refreshes=4}
+         */
+        public String getSummary() {
+            return String.format("uses=%d failures=%d refreshes=%d", uses.sum(), failures.sum(), refreshes.sum());
+        }
+    }
+}